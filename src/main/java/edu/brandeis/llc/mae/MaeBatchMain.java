@@ -0,0 +1,136 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae;
+
+import edu.brandeis.llc.mae.io.BatchProcessor;
+import edu.brandeis.llc.mae.io.ConllExporter;
+import edu.brandeis.llc.mae.util.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point to validate, convert, normalize or export annotation files
+ * without GUI. A JSON summary with a record of each file is written to the
+ * standard output, or to a file given with --summary.
+ */
+public class MaeBatchMain {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaeBatchMain.class.getName());
+
+    static final String USAGE = "usage: mae --batch --task <DTD> [--mode validate|convert|normalize|conll] " +
+            "[--threads N] [--out DIR] [--summary FILE] [--tokenizer whitespace|punctuation|CLASS] " +
+            "[--scheme bio|bilou] <file, directory or glob>...";
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs a batch and returns an exit status: 0 when all files are processed,
+     * 1 when any of them failed, and 2 on invalid arguments.
+     */
+    static int run(String[] args) {
+        File taskFile = null;
+        BatchProcessor.Mode mode = BatchProcessor.Mode.VALIDATE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outputDirectory = null;
+        File summaryFile = null;
+        Tokenizer tokenizer = Tokenizer.PUNCTUATION;
+        ConllExporter.Scheme scheme = ConllExporter.Scheme.BIO;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch":
+                        break;
+                    case "--task":
+                        taskFile = new File(args[++i]);
+                        break;
+                    case "--mode":
+                        mode = BatchProcessor.Mode.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--out":
+                        outputDirectory = new File(args[++i]);
+                        break;
+                    case "--summary":
+                        summaryFile = new File(args[++i]);
+                        break;
+                    case "--tokenizer":
+                        tokenizer = Tokenizer.forName(args[++i]);
+                        break;
+                    case "--scheme":
+                        scheme = ConllExporter.Scheme.valueOf(args[++i].toUpperCase());
+                        break;
+                    default:
+                        inputs.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | ReflectiveOperationException | ClassCastException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (taskFile == null || inputs.size() == 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            System.err.println("Cannot create an output directory: " + outputDirectory);
+            return 2;
+        }
+
+        BatchProcessor processor = new BatchProcessor(taskFile, mode, threads);
+        processor.setOutputDirectory(outputDirectory);
+        processor.setTokenizer(tokenizer);
+        processor.setLabelScheme(scheme);
+        try {
+            List<File> files = processor.collectFiles(inputs);
+            logger.info(String.format("%s %d files on %d threads", mode, files.size(), threads));
+            BatchProcessor.Summary summary = processor.process(files);
+            try (Writer writer = summaryFile == null ?
+                    new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8) :
+                    new OutputStreamWriter(new FileOutputStream(summaryFile), StandardCharsets.UTF_8)) {
+                summary.write(writer);
+                writer.write("\n");
+            }
+            logger.info(String.format("%d ok, %d with warnings, %d skipped, %d failed in %d ms",
+                    summary.count(BatchProcessor.Status.OK), summary.count(BatchProcessor.Status.WARNINGS),
+                    summary.count(BatchProcessor.Status.SKIPPED), summary.count(BatchProcessor.Status.FAILED),
+                    summary.getMillis()));
+            return summary.count(BatchProcessor.Status.FAILED) > 0 ? 1 : 0;
+        } catch (MaeException | IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae;
+
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.io.AnnotationFileDiff;
+import edu.brandeis.llc.mae.io.MaeXMLParser;
+import edu.brandeis.llc.mae.io.TaskSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Command line entry point to compare annotations in two files of a task,
+ * without opening them in adjudication mode. Differences are written to the
+ * standard output, or to a file given with --out, as text or JSON.
+ */
+public class MaeDiffMain {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaeDiffMain.class.getName());
+
+    static final String USAGE = "usage: mae --diff --task <DTD> [--format text|json] [--out FILE] <left XML> <right XML>";
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Compares two files and returns an exit status as diff does: 0 when annotations
+     * are the same, 1 when they differ, and 2 on errors.
+     */
+    static int run(String[] args) {
+        File taskFile = null;
+        boolean json = false;
+        File outFile = null;
+        List<File> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--diff":
+                        break;
+                    case "--task":
+                        taskFile = new File(args[++i]);
+                        break;
+                    case "--format":
+                        json = args[++i].equalsIgnoreCase("json");
+                        break;
+                    case "--out":
+                        outFile = new File(args[++i]);
+                        break;
+                    default:
+                        files.add(new File(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (taskFile == null || files.size() != 2) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        MaeDriverI driver = null;
+        try {
+            File dbFile = File.createTempFile("mae-diff", ".sqlite");
+            dbFile.deleteOnExit();
+            driver = new LocalSqliteDriverImpl(dbFile.getAbsolutePath());
+            driver.readTask(taskFile);
+            AnnotationFileDiff diff = diff(driver, files.get(0), files.get(1));
+            try (Writer writer = outFile == null ?
+                    new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8) :
+                    new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8)) {
+                if (json) {
+                    diff.writeJson(files.get(0).getPath(), files.get(1).getPath(), writer);
+                    writer.write("\n");
+                } else {
+                    diff.writeText(writer);
+                }
+            }
+            return diff.isEmpty() ? 0 : 1;
+        } catch (MaeException | IOException | RuntimeException e) {
+            // anything unexpected is an error too, not a difference
+            System.err.println(e.getMessage());
+            return 2;
+        } finally {
+            if (driver != null) {
+                try {
+                    driver.destroy();
+                } catch (MaeException e) {
+                    logger.warn("failed to destroy a DB", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses two files at the same time and compares them.
+     */
+    public static AnnotationFileDiff diff(MaeDriverI driver, File left, File right) throws MaeException {
+        long start = System.currentTimeMillis();
+        TaskSchema schema = TaskSchema.compile(driver);
+        CompletableFuture<MaeXMLParser> leftParse = CompletableFuture.supplyAsync(() -> parse(driver, schema, left));
+        MaeXMLParser leftParser;
+        MaeXMLParser rightParser;
+        try {
+            rightParser = parse(driver, schema, right);
+            leftParser = leftParse.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MaeException) {
+                throw (MaeException) cause;
+            }
+            throw new MaeException("Cannot compare " + left.getPath() + " and " + right.getPath() + ": " + cause, cause);
+        }
+        long parsed = System.currentTimeMillis();
+        AnnotationFileDiff diff = AnnotationFileDiff.compare(leftParser, rightParser);
+        logger.info(String.format("%s: parsed in %d ms, compared in %d ms",
+                diff, parsed - start, System.currentTimeMillis() - parsed));
+        return diff;
+    }
+
+    /**
+     * Parses a file, wrapping errors into a {@link MaeException} as the cause of an
+     * unchecked exception, to be run as an asynchronous task.
+     */
+    private static MaeXMLParser parse(MaeDriverI driver, TaskSchema schema, File file) {
+        MaeXMLParser parser = new MaeXMLParser(driver, schema);
+        try {
+            parser.readAnnotationFile(file);
+        } catch (MaeDBException e) {
+            throw new CompletionException(e);
+        } catch (IOException | SAXException | RuntimeException e) {
+            // e.g. a NumberFormatException from a malformed offset
+            throw new CompletionException(new MaeException("Cannot read " + file.getPath() + ": " + e.getMessage(), e));
+        }
+        if (!schema.getTaskName().equals(parser.getParsed().getTaskName())) {
+            throw new CompletionException(new MaeException(MaeStrings.getXmlNotMatchErr(file.getName(), schema.getTaskName())));
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae;
+
+import edu.brandeis.llc.mae.agreement.AgreementReport;
+import edu.brandeis.llc.mae.agreement.MaeAgreementMain;
+import edu.brandeis.llc.mae.agreement.MaeAgreementStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.TagType;
+import edu.brandeis.llc.mae.util.MappedSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Command line entry point to compute inter-annotator agreement of a dataset
+ * without GUI. Agreements are written to the standard output, or to a file
+ * given with --out, as JSON or CSV; progress of parsing is written to the
+ * standard error, one line per document. With --cache, what each document
+ * contributes to agreements is kept in a directory, and a following run only
+ * reads documents with changed files. With --bootstrap, each agreement comes
+ * with a confidence interval from resampling documents, the same for a seed.
+ * With --pairwise, agreement of every pair of annotators is computed as well,
+ * as matrices in JSON, or in place of agreements of all annotators in CSV.
+ */
+public class MaeIaaMain {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaeIaaMain.class.getName());
+
+    static final String USAGE = "usage: mae --iaa --task <DTD> --data <DIR> " +
+            "[--local alphau|multipi|multikappa TAG[:ATT,...]]... " +
+            "[--global alphau|multipi|multikappa TAG[:ATT,...]]... " +
+            "[--ignore ANNOTATOR]... [--multi-tag] [--pairwise] [--threads N] [--cache DIR] " +
+            "[--bootstrap RESAMPLES [--seed S] [--confidence 0.95]] [--format json|csv] [--out FILE]";
+
+    private static final Map<String, String> METRICS = new HashMap<>();
+    static {
+        METRICS.put("alphau", MaeAgreementStrings.ALPHAU_CALC_STRING);
+        METRICS.put("multipi", MaeAgreementStrings.MULTIPI_CALC_STRING);
+        METRICS.put("multikappa", MaeAgreementStrings.MULTIKAPPA_CALC_STRING);
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Computes agreements and returns an exit status: 0 on success, 1 when the
+     * dataset cannot be read or computed, and 2 on invalid arguments.
+     */
+    static int run(String[] args) {
+        File taskFile = null;
+        File datasetDir = null;
+        Map<String, MappedSet<String, String>> global = new LinkedHashMap<>();
+        Map<String, MappedSet<String, String>> local = new LinkedHashMap<>();
+        List<String> ignored = new ArrayList<>();
+        boolean allowMultiTagging = false;
+        boolean pairwise = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean csv = false;
+        File outFile = null;
+        File cacheDir = null;
+        int resamples = 0;
+        long seed = 0;
+        double confidenceLevel = 0.95;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--iaa":
+                        break;
+                    case "--task":
+                        taskFile = new File(args[++i]);
+                        break;
+                    case "--data":
+                        datasetDir = new File(args[++i]);
+                        break;
+                    case "--global":
+                        addTarget(global, args[++i], args[++i]);
+                        break;
+                    case "--local":
+                        addTarget(local, args[++i], args[++i]);
+                        break;
+                    case "--ignore":
+                        ignored.add(args[++i]);
+                        break;
+                    case "--multi-tag":
+                        allowMultiTagging = true;
+                        break;
+                    case "--pairwise":
+                        pairwise = true;
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--cache":
+                        cacheDir = new File(args[++i]);
+                        break;
+                    case "--bootstrap":
+                        resamples = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--confidence":
+                        confidenceLevel = Double.parseDouble(args[++i]);
+                        if (confidenceLevel <= 0 || confidenceLevel >= 1) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        break;
+                    case "--format":
+                        csv = args[++i].equalsIgnoreCase("csv");
+                        break;
+                    case "--out":
+                        outFile = new File(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (taskFile == null || datasetDir == null || !datasetDir.isDirectory() || global.size() + local.size() == 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        MaeDriverI driver = null;
+        try {
+            File dbFile = File.createTempFile("mae-iaa", ".sqlite");
+            dbFile.deleteOnExit();
+            driver = new LocalSqliteDriverImpl(dbFile.getAbsolutePath());
+            driver.readTask(taskFile);
+            String unknown = findUnknownTagType(driver, global, local);
+            if (unknown != null) {
+                System.err.println("Tag type not defined in the task: " + unknown);
+                return 2;
+            }
+
+            MaeAgreementMain calc = new MaeAgreementMain(driver);
+            calc.indexDataset(datasetDir);
+            for (String annotator : ignored) {
+                calc.ignoreAnnotator(annotator);
+            }
+            calc.setParallelism(threads);
+            calc.setContributionCacheDirectory(cacheDir);
+            calc.setBootstrap(resamples, seed, confidenceLevel);
+            calc.setProgressListener((docName, parsedCount, documentCount) ->
+                    System.err.println(String.format("parsed %s (%d/%d)", docName, parsedCount, documentCount)));
+            logger.info(String.format("computing agreements of %d annotators on %d documents with %d threads",
+                    calc.getApprovedAnnotators().size(), calc.getDocumentNames().size(), threads));
+            calc.loadXmlFiles();
+            AgreementReport report = calc.calcAgreementReport(global, local, allowMultiTagging, pairwise);
+            try (Writer writer = outFile == null ?
+                    new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8) :
+                    new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8)) {
+                if (csv && pairwise) {
+                    report.writePairwiseCsv(writer);
+                } else if (csv) {
+                    report.writeCsv(writer);
+                } else {
+                    report.writeJson(writer);
+                    writer.write("\n");
+                }
+            }
+            logger.info(String.format("computed %d agreements in %d ms", report.getEntries().size(), report.getMillis()));
+            return 0;
+        } catch (MaeException | IOException | SAXException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } finally {
+            if (driver != null) {
+                try {
+                    driver.destroy();
+                } catch (MaeException e) {
+                    logger.warn("failed to destroy a DB", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a target, given as a tag type name optionally followed by a colon and
+     * comma-separated attribute names, to the targets of a metric.
+     */
+    private static void addTarget(Map<String, MappedSet<String, String>> metricToTargetsMap,
+                                  String metricName, String target) {
+        String metricType = METRICS.get(metricName.toLowerCase());
+        if (metricType == null) {
+            throw new IllegalArgumentException("unknown metric: " + metricName);
+        }
+        int colon = target.indexOf(':');
+        String tagTypeName = colon < 0 ? target : target.substring(0, colon);
+        List<String> attTypeNames = new ArrayList<>();
+        if (colon >= 0) {
+            for (String attTypeName : target.substring(colon + 1).split(",")) {
+                if (attTypeName.length() > 0) {
+                    attTypeNames.add(attTypeName);
+                }
+            }
+        }
+        metricToTargetsMap.computeIfAbsent(metricType, k -> new MappedSet<>()).putCollection(tagTypeName, attTypeNames);
+    }
+
+    private static String findUnknownTagType(MaeDriverI driver, Map<String, MappedSet<String, String>> global,
+                                             Map<String, MappedSet<String, String>> local) throws MaeException {
+        Set<String> defined = new HashSet<>();
+        for (TagType tagType : driver.getAllTagTypes()) {
+            defined.add(tagType.getName());
+        }
+        List<MappedSet<String, String>> targets = new ArrayList<>(global.values());
+        targets.addAll(local.values());
+        for (MappedSet<String, String> target : targets) {
+            for (String tagTypeName : target.keyList()) {
+                if (!defined.contains(tagTypeName)) {
+                    return tagTypeName;
+                }
+            }
+        }
+        return null;
+    }
+}
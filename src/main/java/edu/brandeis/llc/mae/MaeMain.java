@@ -33,6 +33,7 @@ import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -84,6 +85,19 @@ public class MaeMain {
 
     public static void main(final String[] args) {
 
+        // headless tools, never touch Swing
+        if (Arrays.asList(args).contains("--batch")) {
+            MaeBatchMain.main(args);
+            return;
+        }
+        if (Arrays.asList(args).contains("--diff")) {
+            MaeDiffMain.main(args);
+            return;
+        }
+        if (Arrays.asList(args).contains("--iaa")) {
+            MaeIaaMain.main(args);
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             MaeMainController controller = createAndShowGUI();
 
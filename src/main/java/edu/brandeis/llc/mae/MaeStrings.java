@@ -105,6 +105,8 @@ public class MaeStrings {
     public final static String SB_ARGSEL_MODE_NOTI = "Now in arguments selection mode! Click anywhere to continue.";
     public final static String SB_NORM_MODE_NOTI = "Now in normal mode! Click anywhere to continue.";
     public final static String SB_FILEOPEN = "New document is successfully open! Click anywhere to continue.";
+    public final static String SB_FILE_RELOADED = "Changes in \"%s\" outside MAE are applied: %s";
+    public final static String SB_STANDOFF_IMPORTED = "Pre-annotations in \"%s\" are imported!";
     public final static String SB_NEWTASK = "New task is successfully loaded! Open a document to annotate.";
     public final static String SB_MSPAN_MODE_PREFIX = "Multi-span";
     public final static String SB_MSPAN_TEXT = SB_TEXT;
@@ -123,6 +125,8 @@ public class MaeStrings {
     public final static String MENUITEM_ADDFILE = "Add Document";
     public final static String MENUITEM_SAVEXML = "Save Annotation As XML";
     public final static String MENU_FILE_ITEM_SAVERTF = "Export Annotation as RTF";
+    public final static String MENUITEM_EXPORTJSONL = "Export Annotation as JSON Lines";
+    public final static String MENUITEM_IMPORT_STANDOFF = "Import Pre-annotations from TSV";
     public final static String MENU_FILE_ITEM_LOADGS = "Load Gold Standard File";
     public final static String MENUITEM_CLOSEFILE = "Close Document";
     public final static String MENUITEM_START_ADJUD = "Start Adjudication";
@@ -205,6 +209,12 @@ public class MaeStrings {
     public static String getXmlNotMatchErr(String filename, String taskName) {
         return String.format(XML_NOT_MATCH_ERR, filename, taskName);
     }
+    public static final String JOURNAL_RECOVERED = "Unsaved changes on \"%s\" from the last session are recovered.\n" +
+            "Save the document to keep them.";
+    public static final String FILE_MODIFIED_OUTSIDE = "\"%s\" is modified outside MAE, but it has unsaved changes.\n" +
+            "Are you sure to overwrite them with the changes in the file?";
+    public static final String FILE_TEXT_MODIFIED_OUTSIDE = "The primary text of \"%s\" is modified outside MAE.\n" +
+            "Close and open the file again to see the changes.";
 
     /* XML strings */
 
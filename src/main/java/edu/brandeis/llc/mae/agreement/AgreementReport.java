@@ -0,0 +1,337 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import edu.brandeis.llc.mae.agreement.calculator.AgreementMatrix;
+import edu.brandeis.llc.mae.agreement.calculator.ConfidenceInterval;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Agreement values of an IAA run in a flat, machine-readable form, one entry
+ * per scope, metric and target, as opposed to the formatted text shown in GUI.
+ * Agreement matrices of pairs of annotators, when computed, are kept the same way.
+ */
+public class AgreementReport {
+
+    private final String taskName;
+    private final List<String> annotators;
+    private final int documentCount;
+    private final boolean allowMultiTagging;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<MatrixEntry> matrices = new ArrayList<>();
+    private final Map<String, Integer> warningCounts = new TreeMap<>();
+    private long millis;
+    private int bootstrapResamples = 0;
+    private double confidenceLevel;
+
+    AgreementReport(String taskName, List<String> annotators, int documentCount, boolean allowMultiTagging) {
+        this.taskName = taskName;
+        this.annotators = new ArrayList<>(annotators);
+        this.documentCount = documentCount;
+        this.allowMultiTagging = allowMultiTagging;
+    }
+
+    void add(String scope, String metric, String target, Double agreement) {
+        add(scope, metric, target, agreement, null);
+    }
+
+    void add(String scope, String metric, String target, Double agreement, ConfidenceInterval interval) {
+        entries.add(new Entry(scope, metric, target, agreement, interval));
+    }
+
+    void addMatrix(String scope, String metric, String target, AgreementMatrix matrix) {
+        matrices.add(new MatrixEntry(scope, metric, target, matrix));
+    }
+
+    void setBootstrap(int resamples, double confidenceLevel) {
+        this.bootstrapResamples = resamples;
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    public boolean hasConfidenceIntervals() {
+        return bootstrapResamples > 0;
+    }
+
+    void addWarningCount(String fileName, int count) {
+        warningCounts.put(fileName, count);
+    }
+
+    void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public List<MatrixEntry> getMatrices() {
+        return Collections.unmodifiableList(matrices);
+    }
+
+    public List<String> getAnnotators() {
+        return Collections.unmodifiableList(annotators);
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public Map<String, Integer> getWarningCounts() {
+        return Collections.unmodifiableMap(warningCounts);
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Writes the report as a JSON object. An undefined agreement (NaN) is written as null.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+        generator.writeStringField("task", taskName);
+        generator.writeArrayFieldStart("annotators");
+        for (String annotator : annotators) {
+            generator.writeString(annotator);
+        }
+        generator.writeEndArray();
+        generator.writeNumberField("documents", documentCount);
+        generator.writeBooleanField("multiTagging", allowMultiTagging);
+        generator.writeNumberField("millis", millis);
+        if (hasConfidenceIntervals()) {
+            generator.writeObjectFieldStart("bootstrap");
+            generator.writeNumberField("resamples", bootstrapResamples);
+            generator.writeNumberField("confidence", confidenceLevel);
+            generator.writeEndObject();
+        }
+        generator.writeArrayFieldStart("agreements");
+        for (Entry entry : entries) {
+            generator.writeStartObject();
+            generator.writeStringField("scope", entry.getScope());
+            generator.writeStringField("metric", entry.getMetric());
+            generator.writeStringField("target", entry.getTarget());
+            generator.writeFieldName("agreement");
+            if (entry.isDefined()) {
+                generator.writeNumber(entry.getAgreement());
+            } else {
+                generator.writeNull();
+            }
+            if (hasConfidenceIntervals()) {
+                writeNullableNumberField(generator, "lower", entry.getLower());
+                writeNullableNumberField(generator, "upper", entry.getUpper());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        if (!matrices.isEmpty()) {
+            generator.writeArrayFieldStart("pairwise");
+            for (MatrixEntry entry : matrices) {
+                generator.writeStartObject();
+                generator.writeStringField("scope", entry.getScope());
+                generator.writeStringField("metric", entry.getMetric());
+                generator.writeStringField("target", entry.getTarget());
+                AgreementMatrix matrix = entry.getMatrix();
+                generator.writeArrayFieldStart("matrix");
+                for (int row = 0; row < matrix.size(); row++) {
+                    generator.writeStartArray();
+                    for (int column = 0; column < matrix.size(); column++) {
+                        writeNullableNumber(generator, matrix.get(row, column));
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("mean");
+                for (int row = 0; row < matrix.size(); row++) {
+                    writeNullableNumber(generator, matrix.getMeanAgreement(row));
+                }
+                generator.writeEndArray();
+                int outlier = matrix.getOutlier();
+                if (outlier == -1) {
+                    generator.writeNullField("outlier");
+                } else {
+                    generator.writeStringField("outlier", matrix.getAnnotators().get(outlier));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeObjectFieldStart("warnings");
+        for (Map.Entry<String, Integer> warningCount : warningCounts.entrySet()) {
+            generator.writeNumberField(warningCount.getKey(), warningCount.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private static void writeNullableNumberField(JsonGenerator generator, String name, double value) throws IOException {
+        generator.writeFieldName(name);
+        writeNullableNumber(generator, value);
+    }
+
+    private static void writeNullableNumber(JsonGenerator generator, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    /**
+     * Writes agreements as CSV with a header row, with bounds of confidence intervals
+     * in two more columns when they are computed. An undefined value is an empty field.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write(hasConfidenceIntervals() ? "scope,metric,target,agreement,lower,upper\n" : "scope,metric,target,agreement\n");
+        for (Entry entry : entries) {
+            writer.write(String.format("%s,%s,%s,%s", csvField(entry.getScope()), csvField(entry.getMetric()),
+                    csvField(entry.getTarget()), entry.isDefined() ? entry.getAgreement().toString() : ""));
+            if (hasConfidenceIntervals()) {
+                writer.write(String.format(",%s,%s", csvNumber(entry.getLower()), csvNumber(entry.getUpper())));
+            }
+            writer.write("\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes agreements of pairs of annotators as CSV with a header row, one row per
+     * pair in each matrix. An undefined agreement is an empty field.
+     */
+    public void writePairwiseCsv(Writer writer) throws IOException {
+        writer.write("scope,metric,target,first,second,agreement\n");
+        for (MatrixEntry entry : matrices) {
+            AgreementMatrix matrix = entry.getMatrix();
+            for (int first = 0; first < matrix.size(); first++) {
+                for (int second = first + 1; second < matrix.size(); second++) {
+                    writer.write(String.format("%s,%s,%s,%s,%s,%s\n", csvField(entry.getScope()), csvField(entry.getMetric()),
+                            csvField(entry.getTarget()), csvField(matrix.getAnnotators().get(first)),
+                            csvField(matrix.getAnnotators().get(second)), csvNumber(matrix.get(first, second))));
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private static String csvNumber(double value) {
+        return Double.isNaN(value) ? "" : Double.toString(value);
+    }
+
+    private static String csvField(String field) {
+        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+
+    public static class Entry {
+        private final String scope;
+        private final String metric;
+        private final String target;
+        private final Double agreement;
+        private final ConfidenceInterval interval;
+
+        Entry(String scope, String metric, String target, Double agreement, ConfidenceInterval interval) {
+            this.scope = scope;
+            this.metric = metric;
+            this.target = target;
+            this.agreement = agreement;
+            this.interval = interval;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public Double getAgreement() {
+            return agreement;
+        }
+
+        /**
+         * Returns the bootstrap confidence interval of the agreement, or null when not computed.
+         */
+        public ConfidenceInterval getInterval() {
+            return interval;
+        }
+
+        public double getLower() {
+            return interval == null ? Double.NaN : interval.getLower();
+        }
+
+        public double getUpper() {
+            return interval == null ? Double.NaN : interval.getUpper();
+        }
+
+        public boolean isDefined() {
+            return agreement != null && !agreement.isNaN() && !agreement.isInfinite();
+        }
+    }
+
+    public static class MatrixEntry {
+        private final String scope;
+        private final String metric;
+        private final String target;
+        private final AgreementMatrix matrix;
+
+        MatrixEntry(String scope, String metric, String target, AgreementMatrix matrix) {
+            this.scope = scope;
+            this.metric = metric;
+            this.target = target;
+            this.matrix = matrix;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public AgreementMatrix getMatrix() {
+            return matrix;
+        }
+    }
+}
@@ -26,36 +26,58 @@ package edu.brandeis.llc.mae.agreement;
 
 import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.AgreementContributionCache;
 import edu.brandeis.llc.mae.agreement.io.AnnotationDirsIndexer;
 import edu.brandeis.llc.mae.agreement.io.AnnotationFilesIndexer;
 import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.io.AnnotationPreamble;
 import edu.brandeis.llc.mae.io.MaeIOException;
 import edu.brandeis.llc.mae.io.MaeIOXMLException;
-import edu.brandeis.llc.mae.io.MaeXMLParser;
+import edu.brandeis.llc.mae.io.ParseWarnings;
+import edu.brandeis.llc.mae.io.TaskSchema;
 import edu.brandeis.llc.mae.util.FileHandler;
 import edu.brandeis.llc.mae.util.MappedSet;
 import edu.brandeis.llc.mae.agreement.calculator.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main controller for IAA calculator.
  */
 public class MaeAgreementMain {
 
+    private static final Logger logger = LoggerFactory.getLogger(MaeAgreementMain.class.getName());
+
     private final String SUCCESS = "%!$@#%!$%!";
 
     private AbstractAnnotationIndexer fileIdx;
     private MaeDriverI driver;
     private XMLParseCache parseCache;
     private int[] documentLength;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private XMLParseCache.ProgressListener progressListener;
+    private AgreementContributionCache contributionCache;
+    // by file name, of documents not cached
+    private Map<String, AnnotationPreamble> preambles;
+    private int bootstrapResamples = 0;
+    private long bootstrapSeed;
+    private double confidenceLevel = 0.95;
+    // agreement title -> score key -> interval, from the last calculation of each title
+    private final Map<String, Map<String, ConfidenceInterval>> confidenceIntervals = new ConcurrentHashMap<>();
 
     public MaeAgreementMain(MaeDriverI driver) {
         this.driver = driver;
@@ -83,8 +105,39 @@ public class MaeAgreementMain {
         fileIdx.approveAnnotator(annotatorId);
     }
 
+    public List<String> getApprovedAnnotators() {
+        return fileIdx.getApprovedAnnotators();
+    }
+
+    public List<String> getDocumentNames() {
+        return fileIdx.getDocumentNames();
+    }
+
+    /**
+     * Sets a listener to be notified, from parsing threads, as each document is parsed.
+     */
+    public void setProgressListener(XMLParseCache.ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Sets a directory to cache what each document contributes to agreement studies,
+     * so that following runs only read documents with changed files. Null disables caching.
+     */
+    public void setContributionCacheDirectory(File cacheDir) throws MaeIOException {
+        contributionCache = cacheDir == null ? null : new AgreementContributionCache(cacheDir);
+    }
+
+    private boolean isCached(String docName) {
+        return contributionCache != null && contributionCache.isCached(docName);
+    }
+
     public void loadXmlFiles() throws MaeIOException, IOException, SAXException, MaeDBException {
 
+        if (contributionCache != null) {
+            contributionCache.index(fileIdx, TaskSchema.compile(driver).getFingerprint());
+        }
+        readPreambles();
         String invalidTaskNameFile = validateTaskNames(driver.getTaskName());
         String invalidPrimaryTextFile = validateTextSharing();
         if (!invalidTaskNameFile.equals(SUCCESS)) {
@@ -93,49 +146,99 @@ public class MaeAgreementMain {
         if (!invalidPrimaryTextFile.equals(SUCCESS)) {
             throw new MaeIOException("XML file has different primary text: " + invalidPrimaryTextFile);
         }
-        parseCache = new XMLParseCache(driver, fileIdx);
+        if (parseCache != null) {
+            parseCache.shutdown();
+        }
+        parseCache = new XMLParseCache(driver, fileIdx, parallelism);
+        parseCache.setProgressListener(progressListener);
+        File spillDir = Files.createTempDirectory("mae-iaa").toFile();
+        spillDir.deleteOnExit();
+        parseCache.setSpillDirectory(spillDir);
+        List<String> docNames = fileIdx.getDocumentNames();
+        List<String> toParse = new ArrayList<>();
+        for (int i = 0; i < docNames.size(); i++) {
+            if (!isCached(docNames.get(i))) {
+                toParse.add(docNames.get(i));
+                if (contributionCache != null && getFirstNonNullIndex(fileIdx.getAnnotationsOfDocument(docNames.get(i))) != -1) {
+                    // validated, contributions are to be cached as computed
+                    contributionCache.putDocument(docNames.get(i), documentLength[i]);
+                }
+            }
+        }
+        parseCache.parse(toParse);
     }
 
-    public Map<String, String> getParseWarnings() {
+    public Map<String, ParseWarnings> getParseWarnings() {
         return parseCache.getParseWarnings();
     }
 
-    String validateTaskNames(String taskName) throws IOException, SAXException, MaeIOXMLException {
-        MaeXMLParser parser = new MaeXMLParser();
+    /**
+     * Reads preambles of all files of documents not cached, each in a single pass
+     * that stops at the end of the primary text.
+     */
+    private void readPreambles() throws IOException, SAXException, MaeIOXMLException {
+        long start = System.currentTimeMillis();
+        preambles = new HashMap<>();
         for (String docName : fileIdx.getDocumentNames()) {
+            if (isCached(docName)) {
+                continue;
+            }
             for (String fileName : fileIdx.getAnnotationsOfDocument(docName)) {
-                try {
-                    if (fileName != null && !parser.isTaskNameMatching(new File(fileName), taskName)) {
-                        return fileName;
+                if (fileName != null) {
+                    try {
+                        preambles.put(fileName, AnnotationPreamble.read(new File(fileName)));
+                    } catch (SAXParseException e) {
+                        throw new MaeIOXMLException(String.format("Invalid XML string (%s): %s", e.getMessage(), fileName));
                     }
-                } catch (SAXParseException e) {
-                    throw new MaeIOXMLException(String.format("Invalid XML string (%s): %s", e.getMessage(), fileName));
+                }
+            }
+        }
+        logger.info(String.format("read preambles of %d files in %d ms", preambles.size(), System.currentTimeMillis() - start));
+    }
+
+    String validateTaskNames(String taskName) throws IOException, SAXException, MaeIOXMLException {
+        if (preambles == null) {
+            readPreambles();
+        }
+        for (String docName : fileIdx.getDocumentNames()) {
+            if (isCached(docName)) {
+                continue;
+            }
+            for (String fileName : fileIdx.getAnnotationsOfDocument(docName)) {
+                if (fileName != null && !preambles.get(fileName).getTaskName().equals(taskName)) {
+                    return fileName;
                 }
             }
         }
         return SUCCESS;
     }
 
+    /**
+     * Checks that all files of a document share the primary text by comparing
+     * digests, and records the length of each document.
+     */
     String validateTextSharing() throws IOException, SAXException, MaeIOXMLException {
-        MaeXMLParser parser = new MaeXMLParser();
-        documentLength = new int[fileIdx.getDocumentNames().size()];
-        int curDoc = 0;
-        for (String docName : fileIdx.getDocumentNames()) {
+        if (preambles == null) {
+            readPreambles();
+        }
+        List<String> docNames = fileIdx.getDocumentNames();
+        documentLength = new int[docNames.size()];
+        for (int curDoc = 0; curDoc < docNames.size(); curDoc++) {
+            String docName = docNames.get(curDoc);
+            if (isCached(docName)) {
+                documentLength[curDoc] = contributionCache.getDocumentLength(docName);
+                continue;
+            }
             String[] fileNames = fileIdx.getAnnotationsOfDocument(docName);
             int seen = getFirstNonNullIndex(fileNames);
             if (seen == -1) {
                 continue;
             }
-            parser.readAnnotationPreamble(new File(fileNames[seen++]));
-            String primaryText = parser.getParsedPrimaryText();
-            documentLength[curDoc++] = primaryText.length();
+            AnnotationPreamble first = preambles.get(fileNames[seen++]);
+            documentLength[curDoc] = first.getTextLength();
             for (int i = seen; i < fileNames.length; i++) {
-                try {
-                    if (fileNames[i] != null && !parser.isPrimaryTextMatching(new File(fileNames[i]), primaryText)) {
-                        return fileNames[i];
-                    }
-                } catch (SAXParseException e) {
-                    throw new MaeIOXMLException(String.format("Invalid XML string (%s): %s", e.getMessage(), fileNames[i]));
+                if (fileNames[i] != null && !preambles.get(fileNames[i]).isTextMatching(first)) {
+                    return fileNames[i];
                 }
             }
         }
@@ -162,8 +265,15 @@ public class MaeAgreementMain {
 
     public String agreementsToString(String agreementType, Map<String, Double> agreements) {
         StringBuilder results = new StringBuilder(String.format("== %s ==\n\n", agreementType));
+        Map<String, ConfidenceInterval> intervals = getConfidenceIntervals(agreementType);
         for (String agreementKey : agreements.keySet()) {
-            results.append(agreementToString(agreementType, agreementKey, agreements.get(agreementKey)));
+            ConfidenceInterval interval = intervals.get(agreementKey);
+            if (interval == null) {
+                results.append(agreementToString(agreementType, agreementKey, agreements.get(agreementKey)));
+            } else {
+                results.append(String.format("% .4f [% .4f, % .4f] (%s) %s\n", agreements.get(agreementKey),
+                        interval.getLower(), interval.getUpper(), agreementType, agreementKey));
+            }
         }
         results.append("\n");
         return results.toString();
@@ -173,71 +283,308 @@ public class MaeAgreementMain {
         return String.format("% .4f (%s) %s\n", agr, agrType, agrKey );
     }
 
-    public String calcGlobalAgreementToString(
+    /**
+     * Sets the number of files to parse and of studies to compute at a time.
+     * Takes effect on parsing from the next call of {@link #loadXmlFiles()}.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Makes following calculations estimate bootstrap confidence intervals of scores,
+     * from the given number of resamples of documents, on the same threads as studies
+     * are computed. A non-positive number of resamples turns it off.
+     */
+    public void setBootstrap(int resamples, long seed, double confidenceLevel) {
+        if (confidenceLevel <= 0 || confidenceLevel >= 1) {
+            throw new IllegalArgumentException("confidence level must be between 0 and 1: " + confidenceLevel);
+        }
+        this.bootstrapResamples = resamples;
+        this.bootstrapSeed = seed;
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    public boolean isBootstrapping() {
+        return bootstrapResamples > 0;
+    }
+
+    /**
+     * Returns confidence intervals from the last calculation of agreements of the title,
+     * keyed as the agreements are, or an empty map when there is none.
+     */
+    public Map<String, ConfidenceInterval> getConfidenceIntervals(String agreementTitle) {
+        return confidenceIntervals.getOrDefault(agreementTitle, Collections.emptyMap());
+    }
+
+    private AbstractMaeAgreementCalc createCalc(String metricType, boolean global, ForkJoinPool pool) {
+        AbstractMaeAgreementCalc calc = createCalcOfType(metricType, global);
+        if (calc != null) {
+            calc.setContributionCache(contributionCache);
+            calc.setPool(pool);
+            calc.setBootstrap(bootstrapResamples, bootstrapSeed, confidenceLevel);
+        }
+        return calc;
+    }
+
+    private AbstractMaeAgreementCalc createCalcOfType(String metricType, boolean global) {
+        switch (metricType) {
+            case MaeAgreementStrings.ALPHAU_CALC_STRING:
+                return global ? new GlobalAlphaUCalc(fileIdx, parseCache, documentLength)
+                        : new LocalAlphaUCalc(fileIdx, parseCache, documentLength);
+            case MaeAgreementStrings.MULTIKAPPA_CALC_STRING:
+                return global ? new GlobalMultiKappaCalc(fileIdx, parseCache) : new LocalMultiKappaCalc(fileIdx, parseCache);
+            case MaeAgreementStrings.MULTIPI_CALC_STRING:
+                return global ? new GlobalMultiPiCalc(fileIdx, parseCache) : new LocalMultiPiCalc(fileIdx, parseCache);
+            default:
+                // ALPHA_CALC_STRING is not implemented yet
+                return null;
+        }
+    }
+
+    String getAgreementTitle(String metricType, MappedSet<String, String> targetTagsAndAtts, boolean global) {
+        return global ?
+                String.format("<%s> %s  %s", MaeAgreementStrings.SCOPE_CROSSTAG_STRING, metricType, targetTagsAndAtts.keyList()) :
+                String.format("<%s> %s", MaeAgreementStrings.SCOPE_LOCAL_STRING, metricType);
+    }
+
+    public Map<String, Map<String, Double>> calcGlobalAgreement(
             Map<String, MappedSet<String, String>> metricToTargetsMap,
             boolean allowMultiTagging)
             throws MaeException, SAXException, IOException {
-        StringBuilder result = new StringBuilder();
+        return calcAgreement(metricToTargetsMap, allowMultiTagging, true);
+    }
+
+    public Map<String, Map<String, Double>> calcLocalAgreement(
+            Map<String, MappedSet<String, String>> metricToTargetsMap,
+            boolean allowMultiTagging)
+            throws MaeException, SAXException, IOException {
+        return calcAgreement(metricToTargetsMap, allowMultiTagging, false);
+    }
+
+    /**
+     * Computes every study concurrently: one per metric on the cross-tag level,
+     * as all tag types make a single set of labels there, and one per metric and
+     * tag type on the tag level. Results are merged per metric, keyed by the
+     * title of the metric in the order metrics are given, and sorted by tag and
+     * attribute names within, so the output is the same as computed one by one.
+     * Metrics without a calculator are left out.
+     */
+    private Map<String, Map<String, Double>> calcAgreement(
+            Map<String, MappedSet<String, String>> metricToTargetsMap,
+            boolean allowMultiTagging, boolean global)
+            throws MaeException, SAXException, IOException {
+        Map<String, Map<String, ConfidenceInterval>> intervals = new ConcurrentHashMap<>();
+        Map<String, Map<String, Double>> results = calcStudies(metricToTargetsMap, global, (title, calc, study) -> {
+            Map<String, Double> agreements = calc.calculateAgreement(study, allowMultiTagging);
+            intervals.computeIfAbsent(title, k -> new ConcurrentSkipListMap<>()).putAll(calc.getConfidenceIntervals());
+            return agreements;
+        });
+        for (String title : results.keySet()) {
+            confidenceIntervals.put(title, intervals.getOrDefault(title, Collections.emptyMap()));
+        }
+        return results;
+    }
+
+    /**
+     * Computes agreement of every pair of approved annotators, keyed as agreements
+     * of all annotators are. Files are parsed once for all pairs, and pairs are
+     * computed concurrently within each study.
+     */
+    public Map<String, Map<String, AgreementMatrix>> calcGlobalPairwiseAgreement(
+            Map<String, MappedSet<String, String>> metricToTargetsMap,
+            boolean allowMultiTagging)
+            throws MaeException, SAXException, IOException {
+        return calcStudies(metricToTargetsMap, true, (title, calc, study) -> calc.calculatePairwiseAgreement(study, allowMultiTagging));
+    }
+
+    public Map<String, Map<String, AgreementMatrix>> calcLocalPairwiseAgreement(
+            Map<String, MappedSet<String, String>> metricToTargetsMap,
+            boolean allowMultiTagging)
+            throws MaeException, SAXException, IOException {
+        return calcStudies(metricToTargetsMap, false, (title, calc, study) -> calc.calculatePairwiseAgreement(study, allowMultiTagging));
+    }
+
+    private interface StudyTask<T> {
+        Map<String, T> compute(String title, AbstractMaeAgreementCalc calc, MappedSet<String, String> study)
+                throws IOException, SAXException, MaeException;
+    }
+
+    private <T> Map<String, Map<String, T>> calcStudies(
+            Map<String, MappedSet<String, String>> metricToTargetsMap,
+            boolean global, StudyTask<T> studyTask)
+            throws MaeException, SAXException, IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Map<String, List<CompletableFuture<Map<String, T>>>> tasks = new LinkedHashMap<>();
+            for (String metricType : metricToTargetsMap.keySet()) {
+                MappedSet<String, String> targetTagsAndAtts = metricToTargetsMap.get(metricType);
+                if (targetTagsAndAtts.size() == 0 || createCalcOfType(metricType, global) == null) {
+                    continue;
+                }
+                List<MappedSet<String, String>> studies = new ArrayList<>();
+                if (global) {
+                    studies.add(targetTagsAndAtts);
+                } else {
+                    for (String tagTypeName : targetTagsAndAtts.keyList()) {
+                        MappedSet<String, String> study = new MappedSet<>();
+                        study.putCollection(tagTypeName, targetTagsAndAtts.getAsList(tagTypeName));
+                        studies.add(study);
+                    }
+                }
+                String title = getAgreementTitle(metricType, targetTagsAndAtts, global);
+                List<CompletableFuture<Map<String, T>>> metricTasks = new ArrayList<>();
+                for (MappedSet<String, String> study : studies) {
+                    metricTasks.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return studyTask.compute(title, createCalc(metricType, global, pool), study);
+                        } catch (IOException | SAXException | MaeException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, pool));
+                }
+                tasks.put(title, metricTasks);
+            }
+
+            Map<String, Map<String, T>> results = new LinkedHashMap<>();
+            for (Map.Entry<String, List<CompletableFuture<Map<String, T>>>> metric : tasks.entrySet()) {
+                Map<String, T> agreements = new TreeMap<>();
+                for (CompletableFuture<Map<String, T>> task : metric.getValue()) {
+                    agreements.putAll(joinAgreementTask(task));
+                }
+                results.put(metric.getKey(), agreements);
+            }
+            if (contributionCache != null) {
+                contributionCache.save();
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> Map<String, T> joinAgreementTask(CompletableFuture<Map<String, T>> task)
+            throws MaeException, SAXException, IOException {
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MaeException) {
+                throw (MaeException) cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Computes both cross-tag and tag-level agreements into a report for
+     * machine-readable output.
+     */
+    public AgreementReport calcAgreementReport(
+            Map<String, MappedSet<String, String>> globalMetricToTargetsMap,
+            Map<String, MappedSet<String, String>> localMetricToTargetsMap,
+            boolean allowMultiTagging)
+            throws MaeException, SAXException, IOException {
+        return calcAgreementReport(globalMetricToTargetsMap, localMetricToTargetsMap, allowMultiTagging, false);
+    }
+
+    /**
+     * Computes agreements into a report, and also agreement matrices of pairs of
+     * annotators when asked for.
+     */
+    public AgreementReport calcAgreementReport(
+            Map<String, MappedSet<String, String>> globalMetricToTargetsMap,
+            Map<String, MappedSet<String, String>> localMetricToTargetsMap,
+            boolean allowMultiTagging, boolean pairwise)
+            throws MaeException, SAXException, IOException {
+        long start = System.currentTimeMillis();
+        AgreementReport report = new AgreementReport(driver.getTaskName(), getApprovedAnnotators(),
+                getDocumentNames().size(), allowMultiTagging);
+        if (isBootstrapping()) {
+            report.setBootstrap(bootstrapResamples, confidenceLevel);
+        }
+        addToReport(report, globalMetricToTargetsMap, calcGlobalAgreement(globalMetricToTargetsMap, allowMultiTagging), true);
+        addToReport(report, localMetricToTargetsMap, calcLocalAgreement(localMetricToTargetsMap, allowMultiTagging), false);
+        if (pairwise) {
+            addMatricesToReport(report, globalMetricToTargetsMap, calcGlobalPairwiseAgreement(globalMetricToTargetsMap, allowMultiTagging), true);
+            addMatricesToReport(report, localMetricToTargetsMap, calcLocalPairwiseAgreement(localMetricToTargetsMap, allowMultiTagging), false);
+        }
+        for (Map.Entry<String, ParseWarnings> warnings : getParseWarnings().entrySet()) {
+            report.addWarningCount(warnings.getKey(), warnings.getValue().getTotalCount());
+        }
+        report.setMillis(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    private void addToReport(AgreementReport report, Map<String, MappedSet<String, String>> metricToTargetsMap,
+                             Map<String, Map<String, Double>> agreements, boolean global) {
         for (String metricType : metricToTargetsMap.keySet()) {
             MappedSet<String, String> targetTagsAndAtts = metricToTargetsMap.get(metricType);
             if (targetTagsAndAtts.size() == 0) {
                 continue;
             }
-            String agrTitle = String.format("<%s> %s  %s", MaeAgreementStrings.SCOPE_CROSSTAG_STRING, metricType, targetTagsAndAtts.keyList());
-            AbstractMaeAgreementCalc calc = null;
-            switch (metricType) {
-                case MaeAgreementStrings.ALPHAU_CALC_STRING:
-                    calc = new GlobalAlphaUCalc(fileIdx, parseCache, documentLength);
-                    break;
-                case MaeAgreementStrings.ALPHA_CALC_STRING:
-                    break;
-                case MaeAgreementStrings.MULTIKAPPA_CALC_STRING:
-                    calc = new GlobalMultiKappaCalc(fileIdx, parseCache);
-                    break;
-                case MaeAgreementStrings.MULTIPI_CALC_STRING:
-                    calc = new GlobalMultiPiCalc(fileIdx, parseCache);
-                    break;
-            }
-            if (calc == null) {
-                result.append("metric not defined: ").append(metricType);
-            } else {
-                result.append(agreementsToString(agrTitle,
-                        calc.calculateAgreement(targetTagsAndAtts, allowMultiTagging)));
+            String title = getAgreementTitle(metricType, targetTagsAndAtts, global);
+            Map<String, Double> metricAgreements = agreements.get(title);
+            if (metricAgreements != null) {
+                Map<String, ConfidenceInterval> intervals = getConfidenceIntervals(title);
+                for (Map.Entry<String, Double> agreement : metricAgreements.entrySet()) {
+                    report.add(global ? MaeAgreementStrings.SCOPE_CROSSTAG_STRING : MaeAgreementStrings.SCOPE_LOCAL_STRING,
+                            metricType, agreement.getKey(), agreement.getValue(), intervals.get(agreement.getKey()));
+                }
             }
         }
-        return result.toString();
+    }
+
+    private void addMatricesToReport(AgreementReport report, Map<String, MappedSet<String, String>> metricToTargetsMap,
+                                     Map<String, Map<String, AgreementMatrix>> matrices, boolean global) {
+        for (String metricType : metricToTargetsMap.keySet()) {
+            MappedSet<String, String> targetTagsAndAtts = metricToTargetsMap.get(metricType);
+            Map<String, AgreementMatrix> metricMatrices = targetTagsAndAtts.size() == 0 ? null :
+                    matrices.get(getAgreementTitle(metricType, targetTagsAndAtts, global));
+            if (metricMatrices != null) {
+                for (Map.Entry<String, AgreementMatrix> matrix : metricMatrices.entrySet()) {
+                    report.addMatrix(global ? MaeAgreementStrings.SCOPE_CROSSTAG_STRING : MaeAgreementStrings.SCOPE_LOCAL_STRING,
+                            metricType, matrix.getKey(), matrix.getValue());
+                }
+            }
+        }
+    }
+
+    public String calcGlobalAgreementToString(
+            Map<String, MappedSet<String, String>> metricToTargetsMap,
+            boolean allowMultiTagging)
+            throws MaeException, SAXException, IOException {
+        return agreementsToString(metricToTargetsMap, calcGlobalAgreement(metricToTargetsMap, allowMultiTagging), true);
     }
 
     public String calcLocalAgreementToString(
             Map<String, MappedSet<String, String>> metricToTargetsMap,
             boolean allowMultiTagging)
             throws MaeException, SAXException, IOException {
+        return agreementsToString(metricToTargetsMap, calcLocalAgreement(metricToTargetsMap, allowMultiTagging), false);
+    }
+
+    private String agreementsToString(Map<String, MappedSet<String, String>> metricToTargetsMap,
+                                      Map<String, Map<String, Double>> agreements, boolean global) {
         StringBuilder result = new StringBuilder();
         for (String metricType : metricToTargetsMap.keySet()) {
             MappedSet<String, String> targetTagsAndAtts = metricToTargetsMap.get(metricType);
             if (targetTagsAndAtts.size() == 0) {
                 continue;
             }
-            String agrTitle = String.format("<%s> %s", MaeAgreementStrings.SCOPE_LOCAL_STRING, metricType);
-            AbstractMaeAgreementCalc calc = null;
-            switch (metricType) {
-                case MaeAgreementStrings.ALPHAU_CALC_STRING:
-                    calc = new LocalAlphaUCalc(fileIdx, parseCache, documentLength);
-                    break;
-                case MaeAgreementStrings.ALPHA_CALC_STRING:
-                    break;
-                case MaeAgreementStrings.MULTIKAPPA_CALC_STRING:
-                    calc = new LocalMultiKappaCalc(fileIdx, parseCache);
-                    break;
-                case MaeAgreementStrings.MULTIPI_CALC_STRING:
-                    calc = new LocalMultiPiCalc(fileIdx, parseCache);
-                    break;
-            }
-            if (calc == null) {
+            String agrTitle = getAgreementTitle(metricType, targetTagsAndAtts, global);
+            if (!agreements.containsKey(agrTitle)) {
                 result.append("metric not defined: ").append(metricType);
             } else {
-                result.append(agreementsToString(agrTitle,
-                        calc.calculateAgreement(targetTagsAndAtts, allowMultiTagging)));
+                result.append(agreementsToString(agrTitle, agreements.get(agrTitle)));
             }
         }
         return result.toString();
@@ -26,6 +26,7 @@ package edu.brandeis.llc.mae.agreement.calculator;
 
 import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.DocumentContribution;
 import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
 import edu.brandeis.llc.mae.io.MaeXMLParser;
 import edu.brandeis.llc.mae.io.ParsedAtt;
@@ -38,6 +39,8 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 import static edu.brandeis.llc.mae.agreement.MaeAgreementStrings.*;
@@ -48,10 +51,29 @@ import static edu.brandeis.llc.mae.agreement.MaeAgreementStrings.*;
  */
 public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCalc {
 
+    // per-document statistics of studies prepared last, only kept when bootstrapping
+    final Map<String, CodingStudyStatistics> localStatistics = new LinkedHashMap<>();
+    CodingStudyStatistics globalStatistics;
+
     public AbstractCodingAgreementCalc(AbstractAnnotationIndexer fileIdx, XMLParseCache parseCache) {
         super(fileIdx, parseCache);
     }
 
+    /**
+     * Bootstraps scores of studies, keyed as the scores are, from their per-document statistics.
+     */
+    void bootstrapCoding(Map<String, CodingStudyStatistics> statistics,
+                         ToDoubleBiFunction<CodingStudyStatistics, int[]> measure) {
+        List<CodingStudyStatistics> studies = new ArrayList<>(statistics.values());
+        bootstrap(new ArrayList<>(statistics.keySet()), fileIdx.getDocumentNames().size(), sample -> {
+            double[] scores = new double[studies.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = measure.applyAsDouble(studies.get(i), sample);
+            }
+            return scores;
+        });
+    }
+
     /**
      * Given an array of XML parses and a single tag name, return a set of
      * spans of relevant tags from the XML parses. Note that the final list does
@@ -62,17 +84,7 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
      * @return a set of spans of relevant tags
      */
     private Set<int[]> getSpansOfTagType(MaeXMLParser[] parses, String tagTypeName) {
-        TreeSet<int[]> spans = new TreeSet<>(new SortedIntArrayComparator());
-
-        Arrays.stream(parses).filter(
-                parse -> parse != null
-        ).forEach(
-                parse -> parse.getParsedTags().stream().filter(
-                        tag -> tagTypeName.equals(tag.getTagTypeName())
-                ).forEach(
-                        tag -> spans.add(tag.getSpans())
-                ));
-        return spans;
+        return getSpansOfTagTypes(parses, Collections.singleton(tagTypeName));
     }
 
     /**
@@ -87,25 +99,24 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
     private Set<int[]> getSpansOfTagTypes(MaeXMLParser[] parses, Set<String> tagTypeNames) {
 
         TreeSet<int[]> spans = new TreeSet<>(new SortedIntArrayComparator());
-
-        Arrays.stream(parses).filter(
-                parse -> parse != null
-        ).forEach(
-                parse -> parse.getParsedTags().stream().filter(
-                        tag -> tagTypeNames.contains(tag.getTagTypeName())
-                ).forEach(
-                        tag -> spans.add(tag.getSpans())
-                ));
+        for (MaeXMLParser parse : parses) {
+            if (parse != null) {
+                for (String tagTypeName : tagTypeNames) {
+                    spans.addAll(parse.getParsedSpans(tagTypeName));
+                }
+            }
+        }
         return spans;
     }
 
     List<ParsedTag> getTagsOfTagTypesAndSpans(int[] spans, Collection<String> tagTypeNames, MaeXMLParser parse) {
+        List<ParsedTag> tags = new ArrayList<>();
         if (parse != null) {
-            return parse.getParsedTags().stream().filter(
-                    tag -> tagTypeNames.contains(tag.getTagTypeName()) && Arrays.equals(tag.getSpans(), spans)
-            ).collect(Collectors.toList());
+            for (String tagTypeName : tagTypeNames) {
+                tags.addAll(parse.getParsedTags(tagTypeName, spans));
+            }
         }
-        return new ArrayList<>();
+        return tags;
     }
 
     /**
@@ -121,78 +132,33 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
             boolean allowMultiTagging)
             throws IOException, SAXException, MaeException {
 
-        // These two are reused at every tag, thus attribute name conflicts won't happen.
-        // maps [name of attribute name --> its "full" name (tag name + att name concatenated)]
-        Map<String, String> attFullNameMap;
-        // maps [bare attrib name --> its value]
-        Map<String, String[]> attValueMap;
-
         // maps [att "full" name --> behind-the-hood data structure for IAA]
         Map<String, CodingAnnotationStudy> attToStudyMap = new LinkedHashMap<>();
+        localStatistics.clear();
 
         for (String tagType : targetTagsAndAtts.keyList()) {
             List<String> attTypes = targetTagsAndAtts.getAsList(tagType);
             attTypes.add(0, SPAN_ATT);
 
-            attFullNameMap = new HashMap<>();
-            // attTypes already has SPAN_ATT item at this point
-            attValueMap = new HashMap<>();
-
             // add dummy item representing the tag itself
             // convert each att names to their "full" names and initiate bookkeepers
             for (String attType : attTypes) {
                 String attFull = tagType + TAG_ATT_DELIM + attType;
                 attToStudyMap.put(attFull, new CodingAnnotationStudy(numAnnotators));
-                attFullNameMap.put(attType, attFull);
-                attValueMap.put(attType, new String[numAnnotators]);
+                if (isBootstrapping()) {
+                    localStatistics.put(attFull, new CodingStudyStatistics(numAnnotators));
+                }
             }
 
-            for (String document : fileIdx.getDocumentNames()) {
-
-                MaeXMLParser[] parses = parseCache.getParses(document);
-                Set<int[]> relevantSpans = getSpansOfTagType(parses, tagType);
-
-                // will treat each span of a tag type that we found from the data set as a single annotation item
-                for (int[] span : relevantSpans) {
-
-                    // for each span, this will populate the att-value array
-                    for (int i = 0; i < parses.length; i++) {
-                        MaeXMLParser parse = parses[i];
-                        List<ParsedTag> relevantTags
-                                = getTagsOfTagTypesAndSpans(span, Collections.singletonList(tagType), parse);
-                        // when no tags are found or parse is null
-                        if (relevantTags.size() == 0) {
-                            for (String attName : attValueMap.keySet()) {
-                                // Why do we use "null" for not found attributes?
-                                // (Note that not all coding measures can handle null annotation.
-                                // e.g. FleissKapps can't, and ignores all null values - resulting in higher agreement)
-                                // The reason for using null value is to ensure the user can
-                                // see the agreements between annotators that actually tagged at this span.
-                                attValueMap.get(attName)[i] = attName.equals(SPAN_ATT) ? Boolean.toString(false) : null;
-                            }
-                        } else if (!allowMultiTagging) {
-                            if (relevantTags.size() == 1) {
-                                attValueMap.get(SPAN_ATT)[i] = Boolean.toString(true);
-                                String tid = relevantTags.get(0).getTid();
-                                fillAllAttValueOfTid(parse, i, tid, attValueMap);
-
-                            } else {
-                                int errorLocation = span.length == 0 ? -1 : span[0];
-                                StringBuilder errorBuilder = new StringBuilder("Error: an annotator marked the same range with two or labels - ");
-                                errorBuilder.append(String.format("Document: \"%s\", Annotator: \"%s\", Offset: \"%d\"", document, fileIdx.getApprovedAnnotators().get(i), errorLocation));
-                                relevantTags.forEach(tag -> errorBuilder.append(String.format("<%s> ", tag.getTagTypeName())));
-                                throw new MaeException(errorBuilder.toString());
-                            }
-                        } else {
-                            attValueMap.get(SPAN_ATT)[i] = Boolean.toString(true);
-                            List<String> tids = relevantTags.stream().map(ParsedTag::getTid).collect(Collectors.toList());
-                            concatThenFillAllAttValueOfTids(parse, i, tids, attValueMap);
-                        }
+            for (List<List<String[]>> documentItems : getLocalCodingItems(tagType, attTypes, allowMultiTagging)) {
+                for (int i = 0; i < attTypes.size(); i++) {
+                    String attFull = tagType + TAG_ATT_DELIM + attTypes.get(i);
+                    CodingAnnotationStudy study = attToStudyMap.get(attFull);
+                    for (String[] item : documentItems.get(i)) {
+                        study.addItemAsArray(item);
                     }
-
-                    for (String attTypeName : attValueMap.keySet()) {
-                        String attFullName = attFullNameMap.get(attTypeName);
-                        attToStudyMap.get(attFullName).addItemAsArray(attValueMap.get(attTypeName));
+                    if (isBootstrapping()) {
+                        localStatistics.get(attFull).addDocument(documentItems.get(i));
                     }
                 }
             }
@@ -211,9 +177,150 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
         return attToStudyMap;
     }
 
+    /**
+     * Returns coding items of each document, in the order of documents, for a tag type and
+     * each of the given attributes in order, where SPAN_ATT stands for the tag type itself.
+     * Items of all attributes are aligned, one per span of the tag type in a document.
+     */
+    private List<List<List<String[]>>> getLocalCodingItems(String tagType, List<String> attTypes, boolean allowMultiTagging)
+            throws IOException, SAXException, MaeException {
+        List<String> studyKeys = new ArrayList<>();
+        for (String attType : attTypes) {
+            studyKeys.add(getCodingStudyKey(tagType + TAG_ATT_DELIM + attType, allowMultiTagging));
+        }
+        List<List<List<String[]>>> items = new ArrayList<>();
+        for (String document : fileIdx.getDocumentNames()) {
+            Map<String, DocumentContribution> contributions = getContributions(document, studyKeys,
+                    parses -> collectLocalCodingItems(document, parses, tagType, attTypes, studyKeys, allowMultiTagging));
+            List<List<String[]>> documentItems = new ArrayList<>();
+            for (String studyKey : studyKeys) {
+                documentItems.add(contributions.get(studyKey).getItems());
+            }
+            items.add(documentItems);
+        }
+        return items;
+    }
+
+    /**
+     * Computes agreement of every pair of annotators on each tag type and its attributes,
+     * as if the pair were the only annotators: only spans either of them marked are items.
+     * Items are collected once and projected to each pair. Unlike studies of all
+     * annotators, a pair with too few categories gets NaN instead of an error.
+     */
+    Map<String, AgreementMatrix> calculateLocalPairwiseAgreement(
+            MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging,
+            ToDoubleFunction<CodingStudyStatistics> measure)
+            throws IOException, SAXException, MaeException {
+        Map<String, AgreementMatrix> matrices = new TreeMap<>();
+        for (String tagType : targetTagsAndAtts.keyList()) {
+            List<String> attTypes = targetTagsAndAtts.getAsList(tagType);
+            attTypes.add(0, SPAN_ATT);
+            List<String> attFulls = new ArrayList<>();
+            for (String attType : attTypes) {
+                attFulls.add(tagType + TAG_ATT_DELIM + attType);
+            }
+            List<List<List<String[]>>> items = getLocalCodingItems(tagType, attTypes, allowMultiTagging);
+            matrices.putAll(computePairwise(attFulls, (first, second) -> {
+                List<List<String[]>> pairItems = new ArrayList<>();
+                for (int i = 0; i < attTypes.size(); i++) {
+                    pairItems.add(new ArrayList<>());
+                }
+                for (List<List<String[]>> documentItems : items) {
+                    // items of the tag itself tell which spans the pair marked
+                    List<String[]> spans = documentItems.get(0);
+                    for (int item = 0; item < spans.size(); item++) {
+                        if (Boolean.parseBoolean(spans.get(item)[first]) || Boolean.parseBoolean(spans.get(item)[second])) {
+                            for (int i = 0; i < attTypes.size(); i++) {
+                                String[] labels = documentItems.get(i).get(item);
+                                pairItems.get(i).add(new String[]{labels[first], labels[second]});
+                            }
+                        }
+                    }
+                }
+                double[] scores = new double[attTypes.size()];
+                for (int i = 0; i < scores.length; i++) {
+                    CodingStudyStatistics statistics = new CodingStudyStatistics(2);
+                    statistics.addDocument(pairItems.get(i));
+                    scores[i] = measure.applyAsDouble(statistics);
+                }
+                return scores;
+            }));
+        }
+        return matrices;
+    }
+
+    static String getCodingStudyKey(String target, boolean allowMultiTagging) {
+        return String.format("coding%s%s%s", allowMultiTagging ? "-multi" : "", TAG_ATT_DELIM, target);
+    }
+
+    /**
+     * Collects coding items of a single document for a tag type and its attributes,
+     * one item per span of the tag type found in any of the parses.
+     */
+    private Map<String, DocumentContribution> collectLocalCodingItems(
+            String document, MaeXMLParser[] parses, String tagType, List<String> attTypes,
+            List<String> studyKeys, boolean allowMultiTagging) throws MaeException {
+
+        // maps [bare attrib name --> its value], reused at every span of a document
+        Map<String, String[]> attValueMap = new HashMap<>();
+        for (String attType : attTypes) {
+            attValueMap.put(attType, new String[numAnnotators]);
+        }
+        Map<String, DocumentContribution> contributions = new HashMap<>();
+        for (String studyKey : studyKeys) {
+            contributions.put(studyKey, new DocumentContribution());
+        }
+
+        Set<int[]> relevantSpans = getSpansOfTagType(parses, tagType);
+
+        // will treat each span of a tag type that we found from the data set as a single annotation item
+        for (int[] span : relevantSpans) {
+
+            // for each span, this will populate the att-value array
+            for (int i = 0; i < parses.length; i++) {
+                MaeXMLParser parse = parses[i];
+                List<ParsedTag> relevantTags
+                        = getTagsOfTagTypesAndSpans(span, Collections.singletonList(tagType), parse);
+                // when no tags are found or parse is null
+                if (relevantTags.size() == 0) {
+                    for (String attName : attValueMap.keySet()) {
+                        // Why do we use "null" for not found attributes?
+                        // (Note that not all coding measures can handle null annotation.
+                        // e.g. FleissKapps can't, and ignores all null values - resulting in higher agreement)
+                        // The reason for using null value is to ensure the user can
+                        // see the agreements between annotators that actually tagged at this span.
+                        attValueMap.get(attName)[i] = attName.equals(SPAN_ATT) ? Boolean.toString(false) : null;
+                    }
+                } else if (!allowMultiTagging) {
+                    if (relevantTags.size() == 1) {
+                        attValueMap.get(SPAN_ATT)[i] = Boolean.toString(true);
+                        String tid = relevantTags.get(0).getTid();
+                        fillAllAttValueOfTid(parse, i, tid, attValueMap);
+
+                    } else {
+                        int errorLocation = span.length == 0 ? -1 : span[0];
+                        StringBuilder errorBuilder = new StringBuilder("Error: an annotator marked the same range with two or labels - ");
+                        errorBuilder.append(String.format("Document: \"%s\", Annotator: \"%s\", Offset: \"%d\"", document, fileIdx.getApprovedAnnotators().get(i), errorLocation));
+                        relevantTags.forEach(tag -> errorBuilder.append(String.format("<%s> ", tag.getTagTypeName())));
+                        throw new MaeException(errorBuilder.toString());
+                    }
+                } else {
+                    attValueMap.get(SPAN_ATT)[i] = Boolean.toString(true);
+                    List<String> tids = relevantTags.stream().map(ParsedTag::getTid).collect(Collectors.toList());
+                    concatThenFillAllAttValueOfTids(parse, i, tids, attValueMap);
+                }
+            }
+
+            for (int i = 0; i < attTypes.size(); i++) {
+                contributions.get(studyKeys.get(i)).addItem(attValueMap.get(attTypes.get(i)).clone());
+            }
+        }
+        return contributions;
+    }
+
     void fillAllAttValueOfTid(MaeXMLParser annotation, int annotatorIdx, String tid, Map<String, String[]> attAnnotationsMap) {
-        for (ParsedAtt att : annotation.getParsedAtts()) {
-            if (att.getTid().equals(tid) && attAnnotationsMap.containsKey(att.getAttTypeName())) {
+        for (ParsedAtt att : annotation.getParsedAtts(tid)) {
+            if (attAnnotationsMap.containsKey(att.getAttTypeName())) {
                 String attTypeName = att.getAttTypeName();
                 if (att.getAttValue() != null && att.getAttValue().length() > 0) {
                     attAnnotationsMap.get(attTypeName)[annotatorIdx] = att.getAttValue();
@@ -228,16 +335,18 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
 
     void concatThenFillAllAttValueOfTids(MaeXMLParser annotation, int annotatorIdx, Collection< String> tids, Map<String, String[]> attAnnotationsMap) {
         MappedList<String, String> markedAttByAttName = new MappedList<>();
-        for (ParsedAtt att : annotation.getParsedAtts()) {
-            if (tids.contains(att.getTid()) && attAnnotationsMap.containsKey(att.getAttTypeName())) {
-                String attTypeName = att.getAttTypeName();
-                String attValue = att.getAttValue();
-                if (attValue == null || attValue.length() <= 0) {
-                    // using UNMARKED value ensures this attribute to be included in the calculation,
-                    // as opposed to null (e.g. FleissKapps will ignore null values, which results in higher agreement)
-                    attValue = UNMARKED_CAT;
+        for (String tid : new HashSet<>(tids)) {
+            for (ParsedAtt att : annotation.getParsedAtts(tid)) {
+                if (attAnnotationsMap.containsKey(att.getAttTypeName())) {
+                    String attTypeName = att.getAttTypeName();
+                    String attValue = att.getAttValue();
+                    if (attValue == null || attValue.length() <= 0) {
+                        // using UNMARKED value ensures this attribute to be included in the calculation,
+                        // as opposed to null (e.g. FleissKapps will ignore null values, which results in higher agreement)
+                        attValue = UNMARKED_CAT;
+                    }
+                    markedAttByAttName.putItem(attTypeName, attValue);
                 }
-                markedAttByAttName.putItem(attTypeName, attValue);
             }
         }
         for (String attTypeName : markedAttByAttName.keySet()) {
@@ -258,50 +367,112 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
         // so we only need one "study" for all tags.
         Set<String> targetTags = targetTagsAndAtts.keySet();
         CodingAnnotationStudy study = new CodingAnnotationStudy(numAnnotators);
+        globalStatistics = isBootstrapping() ? new CodingStudyStatistics(numAnnotators) : null;
+        for (List<String[]> documentItems : getGlobalCodingItems(targetTags, allowMultiTagging)) {
+            for (String[] item : documentItems) {
+                study.addItemAsArray(item);
+            }
+            if (globalStatistics != null) {
+                globalStatistics.addDocument(documentItems);
+            }
+        }
+        // do not worry about the study having only one category, as we forced
+        // null annotations to be "UNMARKED_CAT"
+        return study;
+    }
 
+    /**
+     * Returns coding items of each document, in the order of documents, for a set of
+     * tag types used as labels.
+     */
+    private List<List<String[]>> getGlobalCodingItems(Set<String> targetTags, boolean allowMultiTagging)
+            throws IOException, SAXException, MaeException {
+        List<String> studyKey = Collections.singletonList(
+                getCodingStudyKey(new TreeSet<>(targetTags).toString(), allowMultiTagging));
+        List<List<String[]>> items = new ArrayList<>();
         for (String document : fileIdx.getDocumentNames()) {
-            MaeXMLParser[] parses = parseCache.getParses(document);
-            Set<int[]> relevantSpans = getSpansOfTagTypes(parses, targetTags);
-            if (relevantSpans.size() == 0) {
-                Object[] unmarkedArray = new Object[numAnnotators];
-                Arrays.fill(unmarkedArray, UNMARKED_CAT);
-                study.addItem(unmarkedArray);
-                continue;
+            items.add(getContributions(document, studyKey, parses ->
+                    Collections.singletonMap(studyKey.get(0), collectGlobalCodingItems(document, parses, targetTags, allowMultiTagging)))
+                    .get(studyKey.get(0)).getItems());
+        }
+        return items;
+    }
+
+    /**
+     * Computes cross-tag agreement of every pair of annotators, as if the pair were the
+     * only annotators: only spans either of them marked are items, and a document
+     * where neither marked any is a single unmarked item.
+     */
+    Map<String, AgreementMatrix> calculateGlobalPairwiseAgreement(
+            MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging,
+            String key, ToDoubleFunction<CodingStudyStatistics> measure)
+            throws IOException, SAXException, MaeException {
+        List<List<String[]>> items = getGlobalCodingItems(targetTagsAndAtts.keySet(), allowMultiTagging);
+        return computePairwise(Collections.singletonList(key), (first, second) -> {
+            List<String[]> pairItems = new ArrayList<>();
+            for (List<String[]> documentItems : items) {
+                int marked = 0;
+                for (String[] labels : documentItems) {
+                    if (!UNMARKED_CAT.equals(labels[first]) || !UNMARKED_CAT.equals(labels[second])) {
+                        pairItems.add(new String[]{labels[first], labels[second]});
+                        marked++;
+                    }
+                }
+                if (marked == 0) {
+                    pairItems.add(new String[]{UNMARKED_CAT, UNMARKED_CAT});
+                }
             }
-            for (int[] span : relevantSpans) {
-                Object[] annotations = new String[numAnnotators];
-                for (int i = 0; i < parses.length; i++) {
-                    // we pass targetTags as a whole set since all tags on
-                    // the global level are treated as a set of labels
-                    List<ParsedTag> relevantTags = getTagsOfTagTypesAndSpans(span, targetTags, parses[i]);
-                    if (relevantTags.size() == 0) {
-                        annotations[i] = UNMARKED_CAT;
-                    } else if (!allowMultiTagging) {
-                        if (relevantTags.size() == 1) {
-                            annotations[i] = relevantTags.get(0).getTagTypeName();
-                        } else {
-                            int errorLocation = span.length == 0 ? -1 : span[0];
-                            StringBuilder errorBuilder = new StringBuilder("Error: an annotator marked the same range with two or labels: \n");
-                            errorBuilder.append(String.format("Document: \"%s\", Annotator: \"%s\", Offset: \"%d\"", document, fileIdx.getApprovedAnnotators().get(i), errorLocation));
-                            relevantTags.forEach(tag -> errorBuilder.append(String.format("<%s> ", tag.getTagTypeName())));
-                            throw new MaeException(errorBuilder.toString());
-                        }
+            CodingStudyStatistics statistics = new CodingStudyStatistics(2);
+            statistics.addDocument(pairItems);
+            return new double[]{measure.applyAsDouble(statistics)};
+        });
+    }
+
+    /**
+     * Collects coding items of a single document for a set of tag types used as labels,
+     * or a single unmarked item when none of them are found.
+     */
+    private DocumentContribution collectGlobalCodingItems(
+            String document, MaeXMLParser[] parses, Set<String> targetTags, boolean allowMultiTagging)
+            throws MaeException {
+        DocumentContribution contribution = new DocumentContribution();
+        Set<int[]> relevantSpans = getSpansOfTagTypes(parses, targetTags);
+        if (relevantSpans.size() == 0) {
+            String[] unmarkedArray = new String[numAnnotators];
+            Arrays.fill(unmarkedArray, UNMARKED_CAT);
+            contribution.addItem(unmarkedArray);
+            return contribution;
+        }
+        for (int[] span : relevantSpans) {
+            String[] annotations = new String[numAnnotators];
+            for (int i = 0; i < parses.length; i++) {
+                // we pass targetTags as a whole set since all tags on
+                // the global level are treated as a set of labels
+                List<ParsedTag> relevantTags = getTagsOfTagTypesAndSpans(span, targetTags, parses[i]);
+                if (relevantTags.size() == 0) {
+                    annotations[i] = UNMARKED_CAT;
+                } else if (!allowMultiTagging) {
+                    if (relevantTags.size() == 1) {
+                        annotations[i] = relevantTags.get(0).getTagTypeName();
                     } else {
-                        String[] markedTags = new String[relevantTags.size()];
-                        for (int j = 0; j < relevantTags.size(); j++) {
-                            markedTags[j] = relevantTags.get(j).getTagTypeName();
-                        }
-                        Arrays.sort(markedTags);
-                        annotations[i] = Arrays.toString(markedTags);
+                        int errorLocation = span.length == 0 ? -1 : span[0];
+                        StringBuilder errorBuilder = new StringBuilder("Error: an annotator marked the same range with two or labels: \n");
+                        errorBuilder.append(String.format("Document: \"%s\", Annotator: \"%s\", Offset: \"%d\"", document, fileIdx.getApprovedAnnotators().get(i), errorLocation));
+                        relevantTags.forEach(tag -> errorBuilder.append(String.format("<%s> ", tag.getTagTypeName())));
+                        throw new MaeException(errorBuilder.toString());
                     }
-
+                } else {
+                    String[] markedTags = new String[relevantTags.size()];
+                    for (int j = 0; j < relevantTags.size(); j++) {
+                        markedTags[j] = relevantTags.get(j).getTagTypeName();
+                    }
+                    Arrays.sort(markedTags);
+                    annotations[i] = Arrays.toString(markedTags);
                 }
-                study.addItem(annotations);
+
             }
+            contribution.addItem(annotations);
         }
-        // do not worry about the study having only one category, as we forced
-        // null annotations to be "UNMARKED_CAT"
-        return study;
+        return contribution;
     }
 }
-
@@ -26,12 +26,18 @@ package edu.brandeis.llc.mae.agreement.calculator;
 
 import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.AgreementContributionCache;
+import edu.brandeis.llc.mae.agreement.io.DocumentContribution;
 import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
+import edu.brandeis.llc.mae.io.MaeXMLParser;
 import edu.brandeis.llc.mae.util.MappedSet;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 /**
  * Abstract superclass for all AgreementCalc classes to hold common instance fields.
@@ -41,6 +47,12 @@ public abstract class AbstractMaeAgreementCalc {
     int numAnnotators;
     AbstractAnnotationIndexer fileIdx;
     XMLParseCache parseCache;
+    AgreementContributionCache contributionCache;
+    int bootstrapResamples = 0;
+    long bootstrapSeed;
+    double confidenceLevel = 0.95;
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    final Map<String, ConfidenceInterval> confidenceIntervals = new TreeMap<>();
 
     public AbstractMaeAgreementCalc(AbstractAnnotationIndexer fileIdx, XMLParseCache parseCache) {
         this.fileIdx = fileIdx;
@@ -48,8 +60,194 @@ public abstract class AbstractMaeAgreementCalc {
         this.numAnnotators = fileIdx.getApprovedAnnotatorCount();
     }
 
+    /**
+     * Sets a cache to reuse contributions of unchanged documents from, and to put new ones into.
+     */
+    public void setContributionCache(AgreementContributionCache contributionCache) {
+        this.contributionCache = contributionCache;
+    }
+
+    /**
+     * Sets the pool to compute resamples and pairs of annotators on.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Makes the calculator estimate a confidence interval of every score by resampling
+     * documents with replacement, the given number of times. Resamples are drawn from
+     * the seed only, so intervals are the same at any parallelism. No resampling is
+     * done when the number of resamples is not positive.
+     */
+    public void setBootstrap(int resamples, long seed, double confidenceLevel) {
+        if (confidenceLevel <= 0 || confidenceLevel >= 1) {
+            throw new IllegalArgumentException("confidence level must be between 0 and 1: " + confidenceLevel);
+        }
+        this.bootstrapResamples = resamples;
+        this.bootstrapSeed = seed;
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    /**
+     * Returns confidence intervals from the last calculation, keyed as its scores,
+     * or an empty map when no resampling was asked for.
+     */
+    public Map<String, ConfidenceInterval> getConfidenceIntervals() {
+        return confidenceIntervals;
+    }
+
+    boolean isBootstrapping() {
+        return bootstrapResamples > 0;
+    }
+
+    interface ResampleScorer {
+        /**
+         * Scores a resample, given as indices of documents drawn, once per key.
+         */
+        double[] score(int[] sample);
+    }
+
+    /**
+     * Resamples documents and puts a confidence interval for each key from scores of
+     * all resamples. Scorers are called concurrently, and should only read data
+     * aggregated per document beforehand.
+     */
+    void bootstrap(List<String> keys, int documentCount, ResampleScorer scorer) {
+        if (!isBootstrapping() || keys.isEmpty() || documentCount == 0) {
+            return;
+        }
+        long[] seeds = new SplittableRandom(bootstrapSeed).longs(bootstrapResamples).toArray();
+        double[][] scores = new double[keys.size()][bootstrapResamples];
+        forEachInParallel(bootstrapResamples, 8, resample -> {
+            SplittableRandom random = new SplittableRandom(seeds[resample]);
+            int[] sample = new int[documentCount];
+            for (int i = 0; i < documentCount; i++) {
+                sample[i] = random.nextInt(documentCount);
+            }
+            double[] resampled = scorer.score(sample);
+            for (int key = 0; key < resampled.length; key++) {
+                scores[key][resample] = resampled[key];
+            }
+        });
+        for (int i = 0; i < keys.size(); i++) {
+            confidenceIntervals.put(keys.get(i), ConfidenceInterval.ofResampledScores(scores[i], confidenceLevel));
+        }
+    }
+
+    interface PairScorer {
+        /**
+         * Scores a pair of annotators, given as indices of approved annotators, once per key.
+         */
+        double[] score(int first, int second);
+    }
+
+    /**
+     * Scores every pair of approved annotators concurrently, into a matrix for each key.
+     */
+    Map<String, AgreementMatrix> computePairwise(List<String> keys, PairScorer scorer) {
+        List<String> annotators = fileIdx.getApprovedAnnotators();
+        List<int[]> pairs = new ArrayList<>();
+        for (int first = 0; first < annotators.size(); first++) {
+            for (int second = first + 1; second < annotators.size(); second++) {
+                pairs.add(new int[]{first, second});
+            }
+        }
+        Map<String, AgreementMatrix> matrices = new TreeMap<>();
+        for (String key : keys) {
+            matrices.put(key, new AgreementMatrix(annotators));
+        }
+        forEachInParallel(pairs.size(), 1, pair -> {
+            int[] annotatorPair = pairs.get(pair);
+            double[] scores = scorer.score(annotatorPair[0], annotatorPair[1]);
+            for (int key = 0; key < scores.length; key++) {
+                matrices.get(keys.get(key)).set(annotatorPair[0], annotatorPair[1], scores[key]);
+            }
+        });
+        return matrices;
+    }
+
+    /**
+     * Runs the action for every index below the count on the pool, splitting the
+     * range in halves down to the given number of indices per task.
+     */
+    void forEachInParallel(int count, int grain, IntConsumer action) {
+        if (count > 0) {
+            pool.invoke(new RangeTask(0, count, grain, action));
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final IntConsumer action;
+
+        RangeTask(int from, int to, int grain, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, middle, grain, action), new RangeTask(middle, to, grain, action));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                action.accept(i);
+            }
+        }
+    }
+
+    interface ContributionBuilder {
+        Map<String, DocumentContribution> build(MaeXMLParser[] parses) throws IOException, SAXException, MaeException;
+    }
+
+    /**
+     * Returns contributions of a document to studies of the given keys. They are taken
+     * from the cache when all of them are there, otherwise all are built at once from
+     * parses of the document, as parsing is what takes time.
+     */
+    Map<String, DocumentContribution> getContributions(String document, List<String> studyKeys, ContributionBuilder builder)
+            throws IOException, SAXException, MaeException {
+        if (contributionCache != null) {
+            Map<String, DocumentContribution> cached = new HashMap<>();
+            for (String studyKey : studyKeys) {
+                DocumentContribution contribution = contributionCache.get(document, studyKey);
+                if (contribution == null) {
+                    break;
+                }
+                cached.put(studyKey, contribution);
+            }
+            if (cached.size() == studyKeys.size()) {
+                return cached;
+            }
+        }
+        Map<String, DocumentContribution> built = builder.build(parseCache.getParses(document));
+        if (contributionCache != null) {
+            for (Map.Entry<String, DocumentContribution> contribution : built.entrySet()) {
+                contributionCache.put(document, contribution.getKey(), contribution.getValue());
+            }
+        }
+        return built;
+    }
+
     public abstract Map<String, Double> calculateAgreement(
             MappedSet<String, String> targetTagsAndAtts,
             boolean allowMultiTagging)
             throws IOException, SAXException, MaeException;
+
+    /**
+     * Computes agreement of every pair of approved annotators, keyed as scores of
+     * {@link #calculateAgreement(MappedSet, boolean)} are. Parses and what each
+     * document contributes are shared by all pairs.
+     */
+    public abstract Map<String, AgreementMatrix> calculatePairwiseAgreement(
+            MappedSet<String, String> targetTagsAndAtts,
+            boolean allowMultiTagging)
+            throws IOException, SAXException, MaeException;
 }
@@ -24,21 +24,27 @@
 
 package edu.brandeis.llc.mae.agreement.calculator;
 
+import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.DocumentContribution;
 import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
-import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.io.MaeXMLParser;
 import edu.brandeis.llc.mae.io.ParsedAtt;
 import edu.brandeis.llc.mae.io.ParsedTag;
 import edu.brandeis.llc.mae.util.MappedSet;
 import edu.brandeis.llc.mae.util.SpanHandler;
-import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
 
+import static edu.brandeis.llc.mae.agreement.MaeAgreementStrings.SPAN_ATT;
+import static edu.brandeis.llc.mae.agreement.MaeAgreementStrings.TAG_ATT_DELIM;
+
 /**
  * Created by krim on 4/23/2016.
  */
@@ -55,49 +61,121 @@ public abstract class AbstractUnitizationAgreementCalc extends AbstractMaeAgreem
 
     }
 
-    void addTagAsUnits(String tagTypeName, MaeXMLParser[] annotations, int textOffset, UnitizingAnnotationStudy study) {
+    static String getUnitizingStudyKey(String target) {
+        return "units" + TAG_ATT_DELIM + target;
+    }
+
+    /**
+     * Returns units of a single document, with offsets relative to the document,
+     * for a tag type and each of the given attributes in order, where SPAN_ATT
+     * stands for the tag type itself.
+     */
+    List<DocumentContribution> getUnitsOfDocument(String document, String tagTypeName, List<String> attTypeNames)
+            throws IOException, SAXException, MaeException {
+        List<String> studyKeys = new ArrayList<>();
+        for (String attTypeName : attTypeNames) {
+            studyKeys.add(getUnitizingStudyKey(tagTypeName + TAG_ATT_DELIM + attTypeName));
+        }
+        Map<String, DocumentContribution> contributions = getContributions(document, studyKeys, parses -> {
+            Map<String, DocumentContribution> built = new HashMap<>();
+            for (int i = 0; i < attTypeNames.size(); i++) {
+                DocumentContribution units = new DocumentContribution();
+                if (attTypeNames.get(i).equals(SPAN_ATT)) {
+                    addTagAsUnits(tagTypeName, parses, units);
+                } else {
+                    addAttAsUnits(tagTypeName, attTypeNames.get(i), parses, units);
+                }
+                built.put(studyKeys.get(i), units);
+            }
+            return built;
+        });
+        List<DocumentContribution> units = new ArrayList<>();
+        for (String studyKey : studyKeys) {
+            units.add(contributions.get(studyKey));
+        }
+        return units;
+    }
+
+    /**
+     * Bootstraps alpha-U of studies, keyed as the scores are, from units of each document
+     * kept in order. Like the whole data set, a resample is a continuum of the documents
+     * drawn, laid one after another.
+     */
+    void bootstrapUnitizing(Map<String, List<DocumentContribution>> unitsPerStudy) {
+        List<List<DocumentContribution>> studies = new ArrayList<>(unitsPerStudy.values());
+        bootstrap(new ArrayList<>(unitsPerStudy.keySet()), documentLength.length, sample -> {
+            int sampleLength = 0;
+            for (int document : sample) {
+                sampleLength += documentLength[document];
+            }
+            double[] scores = new double[studies.size()];
+            for (int i = 0; i < scores.length; i++) {
+                AlphaUnitizingStudy study = new AlphaUnitizingStudy(numAnnotators, sampleLength);
+                int offset = 0;
+                for (int document : sample) {
+                    addUnits(studies.get(i).get(document), offset, study);
+                    offset += documentLength[document];
+                }
+                scores[i] = study.calculateAgreement();
+            }
+            return scores;
+        });
+    }
 
-        int annotator = 0;
-        for (MaeXMLParser parse : annotations) {
+    /**
+     * Computes alpha-U of every pair of annotators in each study, sharing what is
+     * computed per annotator among pairs.
+     */
+    Map<String, AgreementMatrix> computePairwiseAlphaU(Map<String, AlphaUnitizingStudy> studies) {
+        List<AlphaUnitizingStudy> byKey = new ArrayList<>(studies.values());
+        return computePairwise(new ArrayList<>(studies.keySet()), (first, second) -> {
+            double[] scores = new double[byKey.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = byKey.get(i).calculatePairAgreement(first, second);
+            }
+            return scores;
+        });
+    }
+
+    static void addUnits(DocumentContribution units, int textOffset, AlphaUnitizingStudy study) {
+        for (int i = 0; i < units.getUnitCount(); i++) {
+            study.addUnit(units.getUnitOffset(i) + textOffset, units.getUnitLength(i),
+                    units.getUnitAnnotator(i), units.getUnitCategory(i));
+        }
+    }
+
+    private static void addTagAsUnits(String tagTypeName, MaeXMLParser[] annotations, DocumentContribution units) {
+
+        for (int annotator = 0; annotator < annotations.length; annotator++) {
+            MaeXMLParser parse = annotations[annotator];
             if (parse == null) continue;
             for (ParsedTag tag : parse.getParsedTags()) {
                 if (tag.getTagTypeName().equals(tagTypeName) && tag.getSpans().length > 0) {
                     for (int[] pair : SpanHandler.convertArrayToPairs(tag.getSpans())) {
-                        study.addUnit(pair[0] + textOffset, pair[1] - pair[0], annotator, tagTypeName);
+                        units.addUnit(pair[0], pair[1] - pair[0], annotator, tagTypeName);
                     }
                 }
             }
-            annotator++;
         }
 
     }
 
-    void addAttAsUnits(String tagTypeName, String attTypeName, MaeXMLParser[] annotations, int textOffset, UnitizingAnnotationStudy study) {
-
-        int annotator = 0;
-        for (MaeXMLParser parse : annotations) {
-            if (parse != null) {
-                for (ParsedTag tag : parse.getParsedTags()) {
-                    if (tag.getTagTypeName().equalsIgnoreCase(tagTypeName) && tag.getSpans().length > 0) {
-                        for (ParsedAtt att : parse.getParsedAtts()) {
-                            if (att.getTagTypeName().equalsIgnoreCase(tag.getTagTypeName()) &&
-                                    att.getAttTypeName().equalsIgnoreCase(attTypeName)) {
-                                for (int[] pair : SpanHandler.convertArrayToPairs(tag.getSpans())) {
-                                    study.addUnit(pair[0] + textOffset, pair[1] - pair[0], annotator, att.getAttValue());
-                                }
+    private static void addAttAsUnits(String tagTypeName, String attTypeName, MaeXMLParser[] annotations, DocumentContribution units) {
+
+        for (int annotator = 0; annotator < annotations.length; annotator++) {
+            MaeXMLParser parse = annotations[annotator];
+            if (parse == null) continue;
+            for (ParsedTag tag : parse.getParsedTags()) {
+                if (tag.getTagTypeName().equalsIgnoreCase(tagTypeName) && tag.getSpans().length > 0) {
+                    for (ParsedAtt att : parse.getParsedAtts(tag.getTid())) {
+                        if (att.getAttTypeName().equalsIgnoreCase(attTypeName)) {
+                            for (int[] pair : SpanHandler.convertArrayToPairs(tag.getSpans())) {
+                                units.addUnit(pair[0], pair[1] - pair[0], annotator, att.getAttValue());
                             }
                         }
                     }
                 }
             }
-            annotator++;
         }
     }
-
-
-    @Override
-    abstract public Map<String, Double> calculateAgreement(
-            MappedSet<String, String> targetTagsAndAtts,
-            boolean allowMultiTagging)
-            throws IOException, SAXException, MaeDBException;
 }
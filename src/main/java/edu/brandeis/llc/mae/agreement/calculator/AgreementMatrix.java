@@ -0,0 +1,134 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement.calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Agreement of every pair of annotators, as a symmetric matrix indexed by
+ * annotators in order. Agreement of an annotator with itself is not computed
+ * and is NaN, as is agreement of a pair that is not defined.
+ */
+public class AgreementMatrix {
+
+    private final List<String> annotators;
+    private final double[][] agreements;
+
+    public AgreementMatrix(List<String> annotators) {
+        this.annotators = new ArrayList<>(annotators);
+        this.agreements = new double[annotators.size()][annotators.size()];
+        for (double[] row : agreements) {
+            Arrays.fill(row, Double.NaN);
+        }
+    }
+
+    void set(int first, int second, double agreement) {
+        agreements[first][second] = agreement;
+        agreements[second][first] = agreement;
+    }
+
+    public List<String> getAnnotators() {
+        return Collections.unmodifiableList(annotators);
+    }
+
+    public int size() {
+        return annotators.size();
+    }
+
+    public double get(int first, int second) {
+        return agreements[first][second];
+    }
+
+    public double get(String first, String second) {
+        return get(annotators.indexOf(first), annotators.indexOf(second));
+    }
+
+    /**
+     * Returns the mean agreement of an annotator with all others over defined pairs,
+     * so that an annotator far below the rest stands out.
+     */
+    public double getMeanAgreement(int annotator) {
+        double sum = 0.0;
+        int count = 0;
+        for (int other = 0; other < annotators.size(); other++) {
+            double agreement = agreements[annotator][other];
+            if (other != annotator && !Double.isNaN(agreement)) {
+                sum += agreement;
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns the annotator of the lowest mean agreement, or -1 when there is none.
+     */
+    public int getOutlier() {
+        int outlier = -1;
+        for (int annotator = 0; annotator < annotators.size(); annotator++) {
+            double mean = getMeanAgreement(annotator);
+            if (!Double.isNaN(mean) && (outlier == -1 || mean < getMeanAgreement(outlier))) {
+                outlier = annotator;
+            }
+        }
+        return outlier;
+    }
+
+    /**
+     * Formats the matrix as a table, with the mean agreement of each annotator in the last column.
+     */
+    @Override
+    public String toString() {
+        int width = 8;
+        for (String annotator : annotators) {
+            width = Math.max(width, annotator.length() + 1);
+        }
+        String cell = "%" + width + "s";
+        StringBuilder table = new StringBuilder(String.format(cell, ""));
+        for (String annotator : annotators) {
+            table.append(String.format(cell, annotator));
+        }
+        table.append(String.format(cell, "mean")).append('\n');
+        for (int row = 0; row < annotators.size(); row++) {
+            table.append(String.format(cell, annotators.get(row)));
+            for (int column = 0; column < annotators.size(); column++) {
+                table.append(String.format(cell, formatAgreement(agreements[row][column], row == column)));
+            }
+            table.append(String.format(cell, formatAgreement(getMeanAgreement(row), false))).append('\n');
+        }
+        return table.toString();
+    }
+
+    private static String formatAgreement(double agreement, boolean self) {
+        if (self) {
+            return "-";
+        }
+        return Double.isNaN(agreement) ? "n/a" : String.format("%.4f", agreement);
+    }
+}
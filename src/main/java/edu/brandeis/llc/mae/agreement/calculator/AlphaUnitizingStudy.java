@@ -0,0 +1,420 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.agreement.calculator;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Units of a unitizing study and Krippendorff's alpha-U over them, computed
+ * the same way as dkpro's KrippendorffAlphaUnitizingAgreement, which is kept
+ * as a reference in tests. Units are kept per category and annotator as
+ * sorted primitive arrays, so that observed disagreement is a single sweep
+ * over unit boundaries of each pair of annotators, and expected disagreement
+ * looks up gaps longer than a unit in a sorted array with prefix sums,
+ * instead of scanning all units and all gaps for every unit.
+ * <p>
+ * As in dkpro, units without a category are ignored, and a unit added twice
+ * counts twice.
+ * <p>
+ * Agreement of a pair of annotators is the same as of a study with only their
+ * units. Expected disagreement splits into terms of each annotator and terms
+ * across the two, so the former are computed once per annotator and shared by
+ * all pairs, and pairs can be computed from any number of threads.
+ */
+public class AlphaUnitizingStudy {
+
+    private final int annotatorCount;
+    private final long continuumBegin;
+    private final long continuumLength;
+    // category -> units of each annotator, packed as (offset << 32 | length)
+    private final Map<Object, PackedUnits[]> units = new LinkedHashMap<>();
+    // category -> terms of each annotator for pairwise agreement, computed on first use
+    private final Map<Object, AnnotatorTerms[]> pairTerms = new ConcurrentHashMap<>();
+
+    public AlphaUnitizingStudy(int annotatorCount, int continuumLength) {
+        this(annotatorCount, 0, continuumLength);
+    }
+
+    public AlphaUnitizingStudy(int annotatorCount, int continuumBegin, int continuumLength) {
+        this.annotatorCount = annotatorCount;
+        this.continuumBegin = continuumBegin;
+        this.continuumLength = continuumLength;
+    }
+
+    public void addUnit(int offset, int length, int annotator, Object category) {
+        if (annotator < 0 || annotator >= annotatorCount) {
+            throw new IllegalArgumentException("no such annotator: " + annotator);
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException(String.format("invalid unit: %d+%d", offset, length));
+        }
+        if (category == null) {
+            return;
+        }
+        PackedUnits[] byAnnotator = units.computeIfAbsent(category, k -> new PackedUnits[annotatorCount]);
+        if (byAnnotator[annotator] == null) {
+            byAnnotator[annotator] = new PackedUnits();
+        }
+        byAnnotator[annotator].add(offset, length);
+        pairTerms.clear();
+    }
+
+    public int getAnnotatorCount() {
+        return annotatorCount;
+    }
+
+    public Set<Object> getCategories() {
+        return Collections.unmodifiableSet(units.keySet());
+    }
+
+    public int getUnitCount() {
+        int count = 0;
+        for (PackedUnits[] byAnnotator : units.values()) {
+            for (PackedUnits annotatorUnits : byAnnotator) {
+                count += annotatorUnits == null ? 0 : annotatorUnits.sorted().size;
+            }
+        }
+        return count;
+    }
+
+    public double calculateAgreement() {
+        double observed = 0.0;
+        double expected = 0.0;
+        for (Object category : units.keySet()) {
+            observed += calculateObservedCategoryDisagreement(category);
+            expected += calculateExpectedCategoryDisagreement(category);
+        }
+        observed /= units.size();
+        expected /= units.size();
+        return observed == expected ? 0.0 : 1.0 - observed / expected;
+    }
+
+    /**
+     * Computes alpha-U of two annotators, as if the study had only their units.
+     */
+    public double calculatePairAgreement(int annotator1, int annotator2) {
+        if (annotator1 == annotator2 || annotator1 < 0 || annotator2 < 0
+                || annotator1 >= annotatorCount || annotator2 >= annotatorCount) {
+            throw new IllegalArgumentException(String.format("not a pair of annotators: %d, %d", annotator1, annotator2));
+        }
+        double observed = 0.0;
+        double expected = 0.0;
+        int categoryCount = 0;
+        for (Object category : units.keySet()) {
+            AnnotatorTerms[] terms = pairTerms.computeIfAbsent(category, this::computeAnnotatorTerms);
+            AnnotatorTerms first = terms[annotator1];
+            AnnotatorTerms second = terms[annotator2];
+            if (first.units.size + second.units.size == 0) {
+                // a pair-only study would not have the category at all
+                continue;
+            }
+            categoryCount++;
+            observed += sweepPair(first.units, second.units) / ((double) continuumLength * continuumLength);
+            expected += calculateExpectedPairDisagreement(first, second);
+        }
+        observed /= categoryCount;
+        expected /= categoryCount;
+        return observed == expected ? 0.0 : 1.0 - observed / expected;
+    }
+
+    private AnnotatorTerms[] computeAnnotatorTerms(Object category) {
+        PackedUnits[] byAnnotator = getSortedUnits(category);
+        AnnotatorTerms[] terms = new AnnotatorTerms[annotatorCount];
+        for (int i = 0; i < annotatorCount; i++) {
+            terms[i] = new AnnotatorTerms(byAnnotator[i]);
+            PackedUnits gaps = new PackedUnits();
+            collectGaps(byAnnotator[i], gaps);
+            terms[i].setGaps(gaps);
+        }
+        return terms;
+    }
+
+    /**
+     * The same sum as {@link #calculateExpectedCategoryDisagreement(Object)} over units
+     * and gaps of two annotators, where positions of units in gaps of the same annotator
+     * are taken from what is computed once per annotator.
+     */
+    private double calculateExpectedPairDisagreement(AnnotatorTerms first, AnnotatorTerms second) {
+        long unitCount = first.units.size + second.units.size;
+        double disagreement = (unitCount - 1.0) * (first.unitCubes + second.unitCubes)
+                + first.positionsInOwnGaps + second.positionsInOwnGaps
+                + first.positionsInGapsOf(second) + second.positionsInGapsOf(first);
+        disagreement *= 2.0 / continuumLength;
+        long allPairs = 2 * continuumLength;
+        return disagreement / (allPairs * (allPairs - 1.0) - first.unitPairs - second.unitPairs);
+    }
+
+    public double calculateCategoryAgreement(Object category) {
+        double observed = calculateObservedCategoryDisagreement(category);
+        double expected = calculateExpectedCategoryDisagreement(category);
+        return observed == expected ? 0.0 : 1.0 - observed / expected;
+    }
+
+    double calculateObservedCategoryDisagreement(Object category) {
+        PackedUnits[] byAnnotator = getSortedUnits(category);
+        double disagreement = 0.0;
+        for (int a1 = 0; a1 < annotatorCount; a1++) {
+            for (int a2 = a1 + 1; a2 < annotatorCount; a2++) {
+                disagreement += sweepPair(byAnnotator[a1], byAnnotator[a2]);
+            }
+        }
+        disagreement *= 2.0;
+        return disagreement / (double) ((long) (annotatorCount * (annotatorCount - 1)) * (continuumLength * continuumLength));
+    }
+
+    /**
+     * Walks the continuum from one segment boundary of either annotator to the next,
+     * where a segment is either a unit or a gap before a unit, and sums distances of
+     * the pair of segments current at each boundary.
+     */
+    private double sweepPair(PackedUnits first, PackedUnits second) {
+        long end = continuumBegin + continuumLength;
+        int n1 = first.size;
+        int n2 = second.size;
+        int i1 = 0;
+        int i2 = 0;
+        long begin1 = continuumBegin;
+        long length1 = 0;
+        boolean unit1 = false;
+        long begin2 = continuumBegin;
+        long length2 = 0;
+        boolean unit2 = false;
+        double disagreement = 0.0;
+        long pos = continuumBegin;
+        while (pos < end && (i1 < n1 || i2 < n2)) {
+            if (pos == begin1 + length1) {
+                if (i1 < n1 && pos == first.offset(i1)) {
+                    length1 = first.length(i1++);
+                    unit1 = true;
+                } else {
+                    length1 = (i1 < n1 ? first.offset(i1) : end) - pos;
+                    unit1 = false;
+                }
+                begin1 = pos;
+            }
+            if (pos == begin2 + length2) {
+                if (i2 < n2 && pos == second.offset(i2)) {
+                    length2 = second.length(i2++);
+                    unit2 = true;
+                } else {
+                    length2 = (i2 < n2 ? second.offset(i2) : end) - pos;
+                    unit2 = false;
+                }
+                begin2 = pos;
+            }
+            disagreement += measureDistance(begin1, length1, unit1, begin2, length2, unit2);
+            pos = Math.min(begin1 + length1, begin2 + length2);
+        }
+        return disagreement;
+    }
+
+    static double measureDistance(long begin1, long length1, boolean unit1,
+                                  long begin2, long length2, boolean unit2) {
+        long beginDiff = begin1 - begin2;
+        long lengthDiff = length1 - length2;
+        if (unit1 && unit2 && -length1 < beginDiff && beginDiff < length2) {
+            return beginDiff * beginDiff + (beginDiff + lengthDiff) * (beginDiff + lengthDiff);
+        } else if (unit1 && !unit2 && beginDiff <= -lengthDiff && beginDiff >= 0) {
+            // a unit within a gap
+            return length1 * length1;
+        } else if (!unit1 && unit2 && beginDiff >= -lengthDiff && beginDiff <= 0) {
+            return length2 * length2;
+        }
+        return 0.0;
+    }
+
+    double calculateExpectedCategoryDisagreement(Object category) {
+        PackedUnits[] byAnnotator = getSortedUnits(category);
+        long unitCount = 0;
+        double unitPairs = 0.0;
+        PackedUnits gaps = new PackedUnits();
+        for (PackedUnits annotatorUnits : byAnnotator) {
+            unitCount += annotatorUnits.size;
+            for (int i = 0; i < annotatorUnits.size; i++) {
+                long length = annotatorUnits.length(i);
+                unitPairs += length * (length - 1.0);
+            }
+            collectGaps(annotatorUnits, gaps);
+        }
+
+        // gaps in ascending order, with sums of all gaps from each index on
+        long[] gapLengths = Arrays.copyOf(gaps.packed, gaps.size);
+        Arrays.sort(gapLengths);
+        long[] suffixSums = new long[gapLengths.length + 1];
+        for (int i = gapLengths.length - 1; i >= 0; i--) {
+            suffixSums[i] = suffixSums[i + 1] + gapLengths[i];
+        }
+
+        double disagreement = 0.0;
+        for (PackedUnits annotatorUnits : byAnnotator) {
+            for (int i = 0; i < annotatorUnits.size; i++) {
+                long length = annotatorUnits.length(i);
+                double withUnits = (unitCount - 1.0) * (2.0 * length * length * length - 3.0 * length * length + length) / 3.0;
+                int from = lowerBound(gapLengths, length);
+                // positions the unit can take within each gap at least as long as the unit
+                long positions = suffixSums[from] - (gapLengths.length - from) * (length - 1);
+                disagreement += withUnits + (double) positions * length * length;
+            }
+        }
+        disagreement *= 2.0 / continuumLength;
+        long allPairs = annotatorCount * continuumLength;
+        return disagreement / (allPairs * (allPairs - 1.0) - unitPairs);
+    }
+
+    /**
+     * Adds lengths of gaps between units of an annotator, as dkpro's walk
+     * over the continuum does; units overlapping the previous one make negative gaps.
+     */
+    private void collectGaps(PackedUnits annotatorUnits, PackedUnits gaps) {
+        long end = continuumBegin + continuumLength;
+        int n = annotatorUnits.size;
+        int i = 0;
+        long begin = continuumBegin;
+        long length = 0;
+        long pos = continuumBegin;
+        while (pos < end) {
+            if (pos == begin + length) {
+                if (i < n && pos == annotatorUnits.offset(i)) {
+                    length = annotatorUnits.length(i++);
+                } else {
+                    length = (i < n ? annotatorUnits.offset(i) : end) - pos;
+                    gaps.addRaw(length);
+                }
+                begin = pos;
+            }
+            pos = begin + length;
+        }
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sums over units of an annotator that do not depend on other annotators.
+     */
+    private static class AnnotatorTerms {
+        private final PackedUnits units;
+        private double unitPairs;
+        // sum of (2l^3 - 3l^2 + l) / 3 over unit lengths l
+        private double unitCubes;
+        // gaps of the annotator in ascending order, with sums of all gaps from each index on
+        private long[] gapLengths;
+        private long[] suffixSums;
+        private double positionsInOwnGaps;
+
+        AnnotatorTerms(PackedUnits units) {
+            this.units = units;
+            for (int i = 0; i < units.size; i++) {
+                long length = units.length(i);
+                unitPairs += length * (length - 1.0);
+                unitCubes += (2.0 * length * length * length - 3.0 * length * length + length) / 3.0;
+            }
+        }
+
+        void setGaps(PackedUnits gaps) {
+            gapLengths = Arrays.copyOf(gaps.packed, gaps.size);
+            Arrays.sort(gapLengths);
+            suffixSums = new long[gapLengths.length + 1];
+            for (int i = gapLengths.length - 1; i >= 0; i--) {
+                suffixSums[i] = suffixSums[i + 1] + gapLengths[i];
+            }
+            positionsInOwnGaps = positionsInGapsOf(this);
+        }
+
+        /**
+         * Sums, over units of this annotator, positions each can take within gaps of
+         * the other annotator, weighted by squared length of the unit.
+         */
+        double positionsInGapsOf(AnnotatorTerms other) {
+            double sum = 0.0;
+            for (int i = 0; i < units.size; i++) {
+                long length = units.length(i);
+                int from = lowerBound(other.gapLengths, length);
+                long positions = other.suffixSums[from] - (other.gapLengths.length - from) * (length - 1);
+                sum += (double) positions * length * length;
+            }
+            return sum;
+        }
+    }
+
+    private PackedUnits[] getSortedUnits(Object category) {
+        PackedUnits[] byAnnotator = units.get(category);
+        PackedUnits[] sorted = new PackedUnits[annotatorCount];
+        for (int i = 0; i < annotatorCount; i++) {
+            sorted[i] = byAnnotator == null || byAnnotator[i] == null ? new PackedUnits() : byAnnotator[i].sorted();
+        }
+        return sorted;
+    }
+
+    /**
+     * A growable array of units, each packed into a long so that sorting the
+     * array orders units by offset, then by length.
+     */
+    private static class PackedUnits {
+        private long[] packed = new long[16];
+        private int size = 0;
+        private boolean sorted = true;
+
+        void add(int offset, int length) {
+            addRaw(((long) offset << 32) | length);
+            sorted = false;
+        }
+
+        void addRaw(long value) {
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, size * 2);
+            }
+            packed[size++] = value;
+        }
+
+        synchronized PackedUnits sorted() {
+            if (!sorted) {
+                Arrays.sort(packed, 0, size);
+                sorted = true;
+            }
+            return this;
+        }
+
+        long offset(int i) {
+            return packed[i] >>> 32;
+        }
+
+        long length(int i) {
+            return packed[i] & 0xffffffffL;
+        }
+    }
+}
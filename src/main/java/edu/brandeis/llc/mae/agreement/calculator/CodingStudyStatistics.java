@@ -0,0 +1,236 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement.calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sufficient statistics of a coding study, kept per document, from which
+ * multi-pi and multi-kappa of any multiset of documents are summed up without
+ * going over items again. Scores are computed the same way as dkpro's
+ * FleissKappaAgreement and HubertKappaAgreement, which are kept as a reference
+ * in tests, but where dkpro throws on insufficient data, the score is NaN.
+ * <p>
+ * Null labels are missing values. Documents are to be added before scores are
+ * computed, which can then be done from any number of threads.
+ */
+public class CodingStudyStatistics {
+
+    private final int raterCount;
+    private final Map<Object, Integer> categories = new HashMap<>();
+    private final List<DocumentStatistics> documents = new ArrayList<>();
+
+    public CodingStudyStatistics(int raterCount) {
+        this.raterCount = raterCount;
+    }
+
+    /**
+     * Adds a document of items, each an array of labels indexed by rater,
+     * and returns the index of the document.
+     */
+    public int addDocument(Iterable<? extends Object[]> items) {
+        DocumentStatistics document = new DocumentStatistics();
+        int[] labelCounts = new int[0];
+        List<Integer> labelled = new ArrayList<>();
+        for (Object[] item : items) {
+            if (item.length != raterCount) {
+                throw new IllegalArgumentException(String.format("expected %d labels, got %d", raterCount, item.length));
+            }
+            document.itemCount++;
+            labelled.clear();
+            for (int rater = 0; rater < raterCount; rater++) {
+                if (item[rater] == null) {
+                    continue;
+                }
+                int category = categories.computeIfAbsent(item[rater], k -> categories.size());
+                document.ensureCategories(categories.size(), raterCount);
+                if (labelCounts.length < categories.size()) {
+                    labelCounts = Arrays.copyOf(labelCounts, categories.size());
+                }
+                if (labelCounts[category]++ == 0) {
+                    labelled.add(category);
+                }
+                document.raterCounts[category * raterCount + rater]++;
+            }
+            int labels = 0;
+            for (int category : labelled) {
+                labels += labelCounts[category];
+            }
+            for (int category : labelled) {
+                int count = labelCounts[category];
+                document.proportions[category] += (double) count / labels;
+                if (labels > 1) {
+                    document.observedNumerator += (double) count * (count - 1) / (labels - 1);
+                }
+                labelCounts[category] = 0;
+            }
+            if (labels > 1) {
+                document.observedDenominator += labels;
+            }
+        }
+        documents.add(document);
+        return documents.size() - 1;
+    }
+
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    public int getRaterCount() {
+        return raterCount;
+    }
+
+    public double calculateMultiPi() {
+        return calculateMultiPi(allDocuments());
+    }
+
+    public double calculateMultiKappa() {
+        return calculateMultiKappa(allDocuments());
+    }
+
+    /**
+     * Computes Fleiss' multi-pi over documents of the given indices, where an index
+     * given twice counts the document twice.
+     */
+    public double calculateMultiPi(int[] sample) {
+        Sums sums = sum(sample);
+        if (sums.categoryCount() < 2) {
+            return Double.NaN;
+        }
+        double expected = 0;
+        for (double proportion : sums.proportions) {
+            expected += proportion * proportion;
+        }
+        expected /= (double) sums.itemCount * sums.itemCount;
+        return chanceCorrected(sums.observed(), expected);
+    }
+
+    /**
+     * Computes Hubert's multi-kappa over documents of the given indices, where an index
+     * given twice counts the document twice.
+     */
+    public double calculateMultiKappa(int[] sample) {
+        Sums sums = sum(sample);
+        if (sums.categoryCount() < 2) {
+            return Double.NaN;
+        }
+        double expected = 0;
+        for (int category = 0; category < sums.proportions.length; category++) {
+            int base = category * raterCount;
+            for (int m = 0; m < raterCount; m++) {
+                for (int n = m + 1; n < raterCount; n++) {
+                    expected += (double) sums.raterCounts[base + m] * sums.raterCounts[base + n];
+                }
+            }
+        }
+        expected = expected * 2 / ((double) raterCount * (raterCount - 1) * sums.itemCount * sums.itemCount);
+        return chanceCorrected(sums.observed(), expected);
+    }
+
+    private static double chanceCorrected(double observed, double expected) {
+        if (expected == 0) {
+            return observed;
+        }
+        if (observed == 1 && expected == 1) {
+            return Double.NaN;
+        }
+        return (observed - expected) / (1 - expected);
+    }
+
+    private int[] allDocuments() {
+        int[] all = new int[documents.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    private Sums sum(int[] sample) {
+        Sums sums = new Sums(categories.size(), raterCount);
+        for (int index : sample) {
+            DocumentStatistics document = documents.get(index);
+            sums.itemCount += document.itemCount;
+            sums.observedNumerator += document.observedNumerator;
+            sums.observedDenominator += document.observedDenominator;
+            for (int i = 0; i < document.proportions.length; i++) {
+                sums.proportions[i] += document.proportions[i];
+            }
+            for (int i = 0; i < document.raterCounts.length; i++) {
+                sums.raterCounts[i] += document.raterCounts[i];
+            }
+        }
+        return sums;
+    }
+
+    private static class DocumentStatistics {
+        private int itemCount;
+        // sums over items with more than one label, of agreeing pairs and of labels
+        private double observedNumerator;
+        private long observedDenominator;
+        // category -> sum over items of the share of labels in the category
+        private double[] proportions = new double[0];
+        // (category * raterCount + rater) -> number of labels
+        private int[] raterCounts = new int[0];
+
+        private void ensureCategories(int categoryCount, int raterCount) {
+            if (proportions.length < categoryCount) {
+                proportions = Arrays.copyOf(proportions, categoryCount);
+                raterCounts = Arrays.copyOf(raterCounts, categoryCount * raterCount);
+            }
+        }
+    }
+
+    private static class Sums {
+        private long itemCount;
+        private double observedNumerator;
+        private long observedDenominator;
+        private final double[] proportions;
+        private final long[] raterCounts;
+
+        private Sums(int categoryCount, int raterCount) {
+            proportions = new double[categoryCount];
+            raterCounts = new long[categoryCount * raterCount];
+        }
+
+        private int categoryCount() {
+            int count = 0;
+            for (double proportion : proportions) {
+                if (proportion > 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private double observed() {
+            return observedNumerator / observedDenominator;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement.calculator;
+
+import java.util.Arrays;
+
+/**
+ * A percentile bootstrap confidence interval of an agreement score. Resamples
+ * where the score is not defined (e.g. only one category left in the sample)
+ * are left out of the percentiles, and counted separately.
+ */
+public class ConfidenceInterval {
+
+    private final double lower;
+    private final double upper;
+    private final double confidenceLevel;
+    private final int resamples;
+    private final int undefinedResamples;
+
+    public ConfidenceInterval(double lower, double upper, double confidenceLevel, int resamples, int undefinedResamples) {
+        this.lower = lower;
+        this.upper = upper;
+        this.confidenceLevel = confidenceLevel;
+        this.resamples = resamples;
+        this.undefinedResamples = undefinedResamples;
+    }
+
+    /**
+     * Computes an interval from scores of all resamples, sorting them in place.
+     * Bounds are NaN when no resample has a defined score.
+     */
+    public static ConfidenceInterval ofResampledScores(double[] scores, double confidenceLevel) {
+        // NaN sorts last
+        Arrays.sort(scores);
+        int defined = 0;
+        while (defined < scores.length && !Double.isNaN(scores[defined])) {
+            defined++;
+        }
+        double tail = (1 - confidenceLevel) / 2;
+        return new ConfidenceInterval(percentile(scores, defined, tail), percentile(scores, defined, 1 - tail),
+                confidenceLevel, scores.length, scores.length - defined);
+    }
+
+    /**
+     * Linear interpolation between closest ranks, over the first count of sorted scores.
+     */
+    private static double percentile(double[] sorted, int count, double fraction) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = fraction * (count - 1);
+        int below = (int) Math.floor(rank);
+        int above = Math.min(below + 1, count - 1);
+        return sorted[below] + (rank - below) * (sorted[above] - sorted[below]);
+    }
+
+    public double getLower() {
+        return lower;
+    }
+
+    public double getUpper() {
+        return upper;
+    }
+
+    public double getConfidenceLevel() {
+        return confidenceLevel;
+    }
+
+    public int getResamples() {
+        return resamples;
+    }
+
+    public int getUndefinedResamples() {
+        return undefinedResamples;
+    }
+
+    public boolean isDefined() {
+        return !Double.isNaN(lower) && !Double.isNaN(upper);
+    }
+
+    public boolean contains(double score) {
+        return score >= lower && score <= upper;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%.4f, %.4f] (%.0f%%, %d resamples)", lower, upper, confidenceLevel * 100, resamples);
+    }
+}
@@ -24,20 +24,22 @@
 
 package edu.brandeis.llc.mae.agreement.calculator;
 
+import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.DocumentContribution;
 import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
-import edu.brandeis.llc.mae.database.MaeDBException;
-import edu.brandeis.llc.mae.io.MaeXMLParser;
 import edu.brandeis.llc.mae.util.MappedSet;
-import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
-import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import static edu.brandeis.llc.mae.agreement.MaeAgreementStrings.SPAN_ATT;
+
 /**
  * Created by krim on 4/23/2016.
  */
@@ -49,24 +51,48 @@ public class GlobalAlphaUCalc extends AbstractUnitizationAgreementCalc {
     }
 
     @Override
-    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeDBException {
+    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
         Map<String, Double> globalAlphaU = new TreeMap<>();
+        // units of all tag types in each document, only kept when bootstrapping
+        List<DocumentContribution> unitsPerDocument = new ArrayList<>();
+        AlphaUnitizingStudy study = prepareStudy(targetTagsAndAtts, unitsPerDocument);
+        double agree = study.calculateAgreement();
+        globalAlphaU.put("cross-tag_alpha_u", agree);
+        bootstrapUnitizing(Collections.singletonMap("cross-tag_alpha_u", unitsPerDocument));
+        return globalAlphaU;
+
+    }
+
+    @Override
+    public Map<String, AgreementMatrix> calculatePairwiseAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
+        return computePairwiseAlphaU(Collections.singletonMap("cross-tag_alpha_u", prepareStudy(targetTagsAndAtts, null)));
+    }
 
-        UnitizingAnnotationStudy study = new UnitizingAnnotationStudy(numAnnotators, totalDocumentsLength);
+    private AlphaUnitizingStudy prepareStudy(MappedSet<String, String> targetTagsAndAtts,
+                                             List<DocumentContribution> unitsPerDocument)
+            throws IOException, SAXException, MaeException {
+        AlphaUnitizingStudy study = new AlphaUnitizingStudy(numAnnotators, totalDocumentsLength);
         int curDocLength = 0;
         List<String> documents = fileIdx.getDocumentNames();
         for (int i = 0; i < documents.size(); i++) {
             String document = documents.get(i);
-            MaeXMLParser[] parses = parseCache.getParses(document);
+            DocumentContribution documentUnits = new DocumentContribution();
             for (String tagTypeName : targetTagsAndAtts.keyList()) {
-                addTagAsUnits(tagTypeName, parses, curDocLength, study);
+                DocumentContribution units = getUnitsOfDocument(document, tagTypeName, Collections.singletonList(SPAN_ATT)).get(0);
+                addUnits(units, curDocLength, study);
+                if (unitsPerDocument != null && isBootstrapping()) {
+                    for (int unit = 0; unit < units.getUnitCount(); unit++) {
+                        documentUnits.addUnit(units.getUnitOffset(unit), units.getUnitLength(unit),
+                                units.getUnitAnnotator(unit), units.getUnitCategory(unit));
+                    }
+                }
+            }
+            if (unitsPerDocument != null) {
+                unitsPerDocument.add(documentUnits);
             }
             curDocLength += documentLength[i];
         }
-        double agree = (new KrippendorffAlphaUnitizingAgreement(study)).calculateAgreement();
-        globalAlphaU.put("cross-tag_alpha_u", agree);
-        return globalAlphaU;
-
+        return study;
     }
 
 }
@@ -33,6 +33,7 @@ import org.dkpro.statistics.agreement.coding.HubertKappaAgreement;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -51,8 +52,14 @@ public class GlobalMultiKappaCalc extends AbstractCodingAgreementCalc {
         CodingAnnotationStudy study = prepareGlobalCodingStudy(targetTagsAndAtts, allowMultiTagging);
         double agreement = (new HubertKappaAgreement(study)).calculateAgreement();
         globalMultiKappa.put("cross-tag_multi_kappa", agreement);
+        if (globalStatistics != null) {
+            bootstrapCoding(Collections.singletonMap("cross-tag_multi_kappa", globalStatistics), CodingStudyStatistics::calculateMultiKappa);
+        }
         return globalMultiKappa;
     }
-}
-
 
+    @Override
+    public Map<String, AgreementMatrix> calculatePairwiseAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
+        return calculateGlobalPairwiseAgreement(targetTagsAndAtts, allowMultiTagging, "cross-tag_multi_kappa", CodingStudyStatistics::calculateMultiKappa);
+    }
+}
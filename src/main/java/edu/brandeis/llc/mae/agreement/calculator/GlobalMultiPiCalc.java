@@ -33,6 +33,7 @@ import org.dkpro.statistics.agreement.coding.FleissKappaAgreement;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -51,8 +52,14 @@ public class GlobalMultiPiCalc extends AbstractCodingAgreementCalc {
         CodingAnnotationStudy study = prepareGlobalCodingStudy(targetTagsAndAtts, allowMultiTagging);
         double agreement = (new FleissKappaAgreement(study)).calculateAgreement();
         globalMultiPi.put("cross-tag_multi_pi", agreement);
+        if (globalStatistics != null) {
+            bootstrapCoding(Collections.singletonMap("cross-tag_multi_pi", globalStatistics), CodingStudyStatistics::calculateMultiPi);
+        }
         return globalMultiPi;
     }
-}
-
 
+    @Override
+    public Map<String, AgreementMatrix> calculatePairwiseAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
+        return calculateGlobalPairwiseAgreement(targetTagsAndAtts, allowMultiTagging, "cross-tag_multi_pi", CodingStudyStatistics::calculateMultiPi);
+    }
+}
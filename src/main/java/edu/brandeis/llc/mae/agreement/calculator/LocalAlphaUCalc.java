@@ -24,13 +24,11 @@
 
 package edu.brandeis.llc.mae.agreement.calculator;
 
+import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.DocumentContribution;
 import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
-import edu.brandeis.llc.mae.database.MaeDBException;
-import edu.brandeis.llc.mae.io.MaeXMLParser;
 import edu.brandeis.llc.mae.util.MappedSet;
-import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
-import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
@@ -50,38 +48,52 @@ public class LocalAlphaUCalc extends AbstractUnitizationAgreementCalc {
     }
 
     @Override
-    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeDBException {
+    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
         Map<String, Double> alphaUs = new TreeMap<>();
+        // units of each study in each document, only kept when bootstrapping
+        Map<String, List<DocumentContribution>> unitsPerStudy = new LinkedHashMap<>();
+        Map<String, AlphaUnitizingStudy> studies = prepareStudies(targetTagsAndAtts, unitsPerStudy);
+        for (String attFullName : studies.keySet()) {
+            alphaUs.put(attFullName, studies.get(attFullName).calculateAgreement());
+        }
+        bootstrapUnitizing(unitsPerStudy);
+        return alphaUs;
+    }
+
+    @Override
+    public Map<String, AgreementMatrix> calculatePairwiseAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
+        return computePairwiseAlphaU(prepareStudies(targetTagsAndAtts, null));
+    }
 
-        Map<String, String> attFullNameMap = new HashMap<>();
+    private Map<String, AlphaUnitizingStudy> prepareStudies(MappedSet<String, String> targetTagsAndAtts,
+                                                            Map<String, List<DocumentContribution>> unitsPerStudy)
+            throws IOException, SAXException, MaeException {
+        Map<String, AlphaUnitizingStudy> studies = new LinkedHashMap<>();
         for (String tagTypeName : targetTagsAndAtts.keyList()) {
-            Map<String, UnitizingAnnotationStudy> studyPerAtt = new LinkedHashMap<>();
             List<String> attTypeNames = targetTagsAndAtts.getAsList(tagTypeName);
             attTypeNames.add(0, SPAN_ATT);
+            List<String> attFullNames = new ArrayList<>();
             for (String attTypeName : attTypeNames) {
                 String attFullName = tagTypeName + TAG_ATT_DELIM + attTypeName;
-                studyPerAtt.put(attFullName, new UnitizingAnnotationStudy(numAnnotators, totalDocumentsLength));
-                attFullNameMap.put(attTypeName, attFullName);
+                studies.put(attFullName, new AlphaUnitizingStudy(numAnnotators, totalDocumentsLength));
+                attFullNames.add(attFullName);
             }
             int curDocLength = 0;
             List<String> documents = fileIdx.getDocumentNames();
             for (int i = 0; i < documents.size(); i++) {
                 String document = documents.get(i);
-                MaeXMLParser[] parses = parseCache.getParses(document);
-
-                addTagAsUnits(tagTypeName, parses, curDocLength, studyPerAtt.get(attFullNameMap.get(SPAN_ATT)));
-                for (int j = 1; j < attTypeNames.size(); j++) {
-                    String attTypeName = attTypeNames.get(j);
-                    addAttAsUnits(tagTypeName, attTypeName, parses, curDocLength, studyPerAtt.get(attFullNameMap.get(attTypeName)));
+                List<DocumentContribution> units = getUnitsOfDocument(document, tagTypeName, attTypeNames);
+                for (int j = 0; j < attTypeNames.size(); j++) {
+                    String attFullName = attFullNames.get(j);
+                    addUnits(units.get(j), curDocLength, studies.get(attFullName));
+                    if (unitsPerStudy != null && isBootstrapping()) {
+                        unitsPerStudy.computeIfAbsent(attFullName, k -> new ArrayList<>()).add(units.get(j));
+                    }
                 }
                 curDocLength += documentLength[i];
             }
-            for (String attTypeName : attTypeNames) {
-                double agree = (new KrippendorffAlphaUnitizingAgreement(studyPerAtt.get(attFullNameMap.get(attTypeName)))).calculateAgreement();
-                alphaUs.put(attFullNameMap.get(attTypeName), agree);
-            }
         }
-        return alphaUs;
+        return studies;
     }
 
 }
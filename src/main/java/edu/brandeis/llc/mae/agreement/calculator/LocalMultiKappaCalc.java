@@ -52,6 +52,12 @@ public class LocalMultiKappaCalc extends AbstractCodingAgreementCalc {
         for (String attFullName : studies.keySet()) {
             localMultiKappa.put(attFullName, (new HubertKappaAgreement(studies.get(attFullName))).calculateAgreement());
         }
+        bootstrapCoding(localStatistics, CodingStudyStatistics::calculateMultiKappa);
         return localMultiKappa;
     }
+
+    @Override
+    public Map<String, AgreementMatrix> calculatePairwiseAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
+        return calculateLocalPairwiseAgreement(targetTagsAndAtts, allowMultiTagging, CodingStudyStatistics::calculateMultiKappa);
+    }
 }
@@ -52,6 +52,12 @@ public class LocalMultiPiCalc extends AbstractCodingAgreementCalc {
         for (String attFullName : studies.keySet()) {
             localMultiPi.put(attFullName, (new FleissKappaAgreement(studies.get(attFullName))).calculateAgreement());
         }
+        bootstrapCoding(localStatistics, CodingStudyStatistics::calculateMultiPi);
         return localMultiPi;
     }
+
+    @Override
+    public Map<String, AgreementMatrix> calculatePairwiseAgreement(MappedSet<String, String> targetTagsAndAtts, boolean allowMultiTagging) throws IOException, SAXException, MaeException {
+        return calculateLocalPairwiseAgreement(targetTagsAndAtts, allowMultiTagging, CodingStudyStatistics::calculateMultiPi);
+    }
 }
@@ -0,0 +1,217 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement.io;
+
+import edu.brandeis.llc.mae.io.MaeIOException;
+import edu.brandeis.llc.mae.util.FileHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * On-disk cache of what each document contributes to agreement studies, so that
+ * re-running IAA after a few files are changed only reads those files again.
+ * A document is cached under a key made of the task definition, its name, and
+ * the annotators and contents of its files, so any change to them is a miss.
+ * A record of a document is written only after its files are validated, and
+ * holds the length of its primary text and its contributions by study.
+ * Use one directory per dataset, as records are looked up by document names.
+ */
+public class AgreementContributionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgreementContributionCache.class.getName());
+
+    static final byte[] MAGIC = "MAEC".getBytes(StandardCharsets.US_ASCII);
+    // bump when what calculators put in a contribution changes
+    static final int VERSION = 1;
+    static final String RECORD_EXT = ".iaa";
+
+    private final File directory;
+    private final Map<String, String> documentKeys = new HashMap<>();
+    private final Map<String, Record> records = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+
+    public AgreementContributionCache(File directory) throws MaeIOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new MaeIOException("Cannot create a cache directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Hashes files of every document and reads records of documents that are not changed
+     * since they are cached.
+     */
+    public synchronized void index(AbstractAnnotationIndexer fileIdx, String schemaFingerprint) throws MaeIOException {
+        long start = System.currentTimeMillis();
+        documentKeys.clear();
+        records.clear();
+        dirty.clear();
+        List<String> annotators = fileIdx.getApprovedAnnotators();
+        for (String docName : fileIdx.getDocumentNames()) {
+            MessageDigest digest = FileHandler.newDigest();
+            update(digest, Integer.toString(VERSION));
+            update(digest, schemaFingerprint);
+            update(digest, docName);
+            String[] fileNames = fileIdx.getAnnotationsOfDocument(docName);
+            for (int i = 0; i < fileNames.length; i++) {
+                update(digest, annotators.get(i));
+                update(digest, fileNames[i] == null ? "" : FileHandler.hashFile(new File(fileNames[i])));
+            }
+            String key = FileHandler.toHex(digest.digest());
+            documentKeys.put(docName, key);
+            File recordFile = getRecordFile(docName, key);
+            if (recordFile.exists()) {
+                try {
+                    records.put(docName, Record.read(recordFile));
+                } catch (IOException e) {
+                    logger.warn(String.format("ignoring a broken record of %s: %s", docName, e.getMessage()));
+                }
+            }
+        }
+        logger.info(String.format("%d of %d documents are cached, hashed in %d ms",
+                records.size(), documentKeys.size(), System.currentTimeMillis() - start));
+    }
+
+    public synchronized boolean isCached(String docName) {
+        return records.containsKey(docName);
+    }
+
+    public synchronized int getDocumentLength(String docName) {
+        return records.get(docName).documentLength;
+    }
+
+    /**
+     * Starts a record of a validated document, dropping what it had.
+     */
+    public synchronized void putDocument(String docName, int documentLength) {
+        Record record = new Record();
+        record.documentLength = documentLength;
+        records.put(docName, record);
+        dirty.add(docName);
+    }
+
+    /**
+     * Returns a cached contribution of a document to a study, or null.
+     */
+    public synchronized DocumentContribution get(String docName, String studyKey) {
+        Record record = records.get(docName);
+        return record == null ? null : record.contributions.get(studyKey);
+    }
+
+    /**
+     * Caches a contribution of a document, only when the document is validated.
+     */
+    public synchronized void put(String docName, String studyKey, DocumentContribution contribution) {
+        Record record = records.get(docName);
+        if (record != null) {
+            record.contributions.put(studyKey, contribution);
+            dirty.add(docName);
+        }
+    }
+
+    /**
+     * Writes records changed since the last save, replacing older records of the same documents.
+     */
+    public synchronized void save() throws MaeIOException {
+        for (String docName : dirty) {
+            String key = documentKeys.get(docName);
+            File recordFile = getRecordFile(docName, key);
+            try {
+                File temp = File.createTempFile(recordFile.getName(), ".tmp", directory);
+                records.get(docName).write(temp);
+                Files.move(temp.toPath(), recordFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new MaeIOException("Cannot write a cache record: " + recordFile, e);
+            }
+            String prefix = getRecordPrefix(docName);
+            File[] stale = directory.listFiles((dir, name) -> name.startsWith(prefix) && !name.equals(recordFile.getName()));
+            if (stale != null) {
+                for (File file : stale) {
+                    file.delete();
+                }
+            }
+        }
+        logger.info(String.format("saved %d cache records", dirty.size()));
+        dirty.clear();
+    }
+
+    private File getRecordFile(String docName, String key) {
+        return new File(directory, getRecordPrefix(docName) + key + RECORD_EXT);
+    }
+
+    private static String getRecordPrefix(String docName) {
+        MessageDigest digest = FileHandler.newDigest();
+        update(digest, docName);
+        return FileHandler.toHex(digest.digest()).substring(0, 16) + "-";
+    }
+
+    private static void update(MessageDigest digest, String string) {
+        digest.update(string.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static class Record {
+        private int documentLength;
+        private final Map<String, DocumentContribution> contributions = new HashMap<>();
+
+        void write(File file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(documentLength);
+                out.writeInt(contributions.size());
+                for (Map.Entry<String, DocumentContribution> contribution : contributions.entrySet()) {
+                    out.writeUTF(contribution.getKey());
+                    contribution.getValue().write(out);
+                }
+            }
+        }
+
+        static Record read(File file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                byte[] magic = new byte[MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION) {
+                    throw new IOException("not a cache record of this version");
+                }
+                Record record = new Record();
+                record.documentLength = in.readInt();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    record.contributions.put(in.readUTF(), DocumentContribution.read(in));
+                }
+                return record;
+            }
+        }
+    }
+}
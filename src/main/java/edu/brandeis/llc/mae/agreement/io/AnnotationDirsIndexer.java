@@ -35,7 +35,7 @@ import static edu.brandeis.llc.mae.util.FileHandler.*;
  * Index annotation files from annotated dataset. The code expects the dataset is
  * passed as an array of directories, each of which has data from each annotator
  * and only them. All annotation files must be XML and their names formatted as
- * `docId_annotatorID.xml`. All non-xml files as well as xml files that does not
+ * `docId_annotatorID.xml` (or gzipped `docId_annotatorID.xml.gz`). All non-xml files as well as xml files that does not
  * match the naming rule are ignored. That is, all annotation files must contains
  * the annotator ID, and they must be stored in a directory named after the annotator
  */
@@ -51,9 +51,9 @@ public class AnnotationDirsIndexer extends AbstractAnnotationIndexer {
             String annotatorID = annotatorDir.getName();
             annotatorMap.add(annotatorID);
 
-            // filter only files that have annotator ID as suffix and the "xml" extension
+            // filter only files that have annotator ID as suffix and the "xml" (or "xml.gz") extension
             File[] annotationFiles = annotatorDir.listFiles(
-                    file -> file.getName().matches(".+_" + annotatorID + "\\.[Xx][Mm][Ll]$"));
+                    file -> file.getName().matches(".+_" + annotatorID + "\\.[Xx][Mm][Ll](\\.[Gg][Zz])?$"));
             if (annotationFiles == null || annotationFiles.length == 0) {
                  throw new MaeIOException("Found an empty subset: " + annotatorDir.getName());
             }
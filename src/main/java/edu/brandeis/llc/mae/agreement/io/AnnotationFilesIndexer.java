@@ -49,7 +49,7 @@ public class AnnotationFilesIndexer extends AbstractAnnotationIndexer {
         if (annotatorMap.size() == 0) {
             for (File annotationFile : annotationFiles) {
                 String annotationBaseName = getFileBaseName(annotationFile).trim();
-                if (!annotationFile.getName().endsWith(XML_EXT)) {
+                if (!isXmlFileName(annotationFile.getName())) {
                     throw new MaeIOException("An annotation should be an XML file: " + annotationFile.getName());
                 }
 
@@ -93,7 +93,8 @@ public class AnnotationFilesIndexer extends AbstractAnnotationIndexer {
                 int i = 0;
                 while (i < annotationFiles.size()) {
                     File rest = annotationFiles.get(i);
-                    if (rest.getName().endsWith(secondaryAnnotationBaseName)) {
+                    if (rest.getName().endsWith(secondaryAnnotationBaseName)
+                            || rest.getName().endsWith(secondaryAnnotationBaseName + GZ_EXT)) {
                         indexedFileNames[annotatorMap.indexOf(symbol)] = rest.getAbsolutePath();
                         annotationFiles.remove(i);
                         break;
@@ -0,0 +1,143 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What a single document adds to an agreement study: coding items, each with
+ * a label (or null) per annotator, and unitizing units, with offsets relative
+ * to the start of the document. Studies over a dataset are built by adding
+ * contributions of all documents, so a contribution of an unchanged document
+ * can be reused without parsing it again.
+ */
+public class DocumentContribution {
+
+    private final List<String[]> items = new ArrayList<>();
+    private int[] units = new int[0];
+    private String[] categories = new String[0];
+    private int unitCount = 0;
+
+    public void addItem(String[] labels) {
+        items.add(labels);
+    }
+
+    public List<String[]> getItems() {
+        return items;
+    }
+
+    public void addUnit(int offset, int length, int annotator, String category) {
+        if (unitCount == categories.length) {
+            int capacity = Math.max(8, unitCount * 2);
+            units = Arrays.copyOf(units, capacity * 3);
+            categories = Arrays.copyOf(categories, capacity);
+        }
+        units[unitCount * 3] = offset;
+        units[unitCount * 3 + 1] = length;
+        units[unitCount * 3 + 2] = annotator;
+        categories[unitCount++] = category;
+    }
+
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    public int getUnitOffset(int unit) {
+        return units[unit * 3];
+    }
+
+    public int getUnitLength(int unit) {
+        return units[unit * 3 + 1];
+    }
+
+    public int getUnitAnnotator(int unit) {
+        return units[unit * 3 + 2];
+    }
+
+    public String getUnitCategory(int unit) {
+        return categories[unit];
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(items.size());
+        for (String[] labels : items) {
+            out.writeInt(labels.length);
+            for (String label : labels) {
+                writeNullableString(out, label);
+            }
+        }
+        out.writeInt(unitCount);
+        for (int i = 0; i < unitCount; i++) {
+            out.writeInt(getUnitOffset(i));
+            out.writeInt(getUnitLength(i));
+            out.writeInt(getUnitAnnotator(i));
+            writeNullableString(out, categories[i]);
+        }
+    }
+
+    static DocumentContribution read(DataInputStream in) throws IOException {
+        DocumentContribution contribution = new DocumentContribution();
+        int itemCount = in.readInt();
+        for (int i = 0; i < itemCount; i++) {
+            String[] labels = new String[in.readInt()];
+            for (int j = 0; j < labels.length; j++) {
+                labels[j] = readNullableString(in);
+            }
+            contribution.addItem(labels);
+        }
+        int unitCount = in.readInt();
+        for (int i = 0; i < unitCount; i++) {
+            contribution.addUnit(in.readInt(), in.readInt(), in.readInt(), readNullableString(in));
+        }
+        return contribution;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
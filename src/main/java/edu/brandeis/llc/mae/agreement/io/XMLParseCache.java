@@ -26,60 +26,451 @@ package edu.brandeis.llc.mae.agreement.io;
 
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.io.AnnotationSnapshot;
+import edu.brandeis.llc.mae.io.MaeIOException;
 import edu.brandeis.llc.mae.io.MaeXMLParser;
+import edu.brandeis.llc.mae.io.ParseWarnings;
+import edu.brandeis.llc.mae.io.TaskSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Parses of annotation files, one array per document indexed by annotator.
+ * Files are parsed on a bounded fork-join pool, each as its own task, and a
+ * document is available as soon as all of its files are parsed. Calling
+ * {@link #parseAll()} submits the whole approved corpus up front, so calculators
+ * going through documents one by one mostly find parses already done.
+ * <p>
+ * Parsed documents are kept in an LRU map bounded by their estimated weight in
+ * bytes. All annotators of a document share a single copy of the primary text.
+ * With a spill directory set, evicted documents are written there as
+ * {@link AnnotationSnapshot}s and restored from them, instead of parsing the XML
+ * again, when asked for next time. Snapshot files are written and read outside
+ * the lock of the cache, so that other documents stay available meanwhile.
  * Created by krim on 4/23/2016.
  */
 public class XMLParseCache {
-    private Map<String, MaeXMLParser[]> parseCache;
-    private MaeDriverI driver;
-    private AbstractAnnotationIndexer fileIdx;
-    private Map<String, String> parseWarnings;
 
-    public XMLParseCache(MaeDriverI driver, AbstractAnnotationIndexer fileIdx) {
+    private static final Logger logger = LoggerFactory.getLogger(XMLParseCache.class.getName());
+
+    // rough heap footprint of parsed objects, including their strings
+    static final int TAG_WEIGHT = 160;
+    static final int ATT_WEIGHT = 96;
+    static final int ARG_WEIGHT = 96;
+
+    // all of the maps below are guarded by this cache
+    private final Map<String, CompletableFuture<MaeXMLParser[]>> inFlight = new HashMap<>();
+    private final LinkedHashMap<String, MaeXMLParser[]> parseCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> weights = new HashMap<>();
+    // evicted documents being written to the spill directory, still usable until written
+    private final Map<String, MaeXMLParser[]> spilling = new HashMap<>();
+    private final Map<String, SpilledDocument> spilled = new HashMap<>();
+    private long totalWeight = 0;
+    private long maxWeight;
+    private volatile File spillDir;
+    private final AtomicInteger spillCount = new AtomicInteger();
+
+    private final MaeDriverI driver;
+    private final TaskSchema schema;
+    private final AbstractAnnotationIndexer fileIdx;
+    // sorted by file name, so that warnings are reported in the same order every time
+    private final Map<String, ParseWarnings> parseWarnings = new ConcurrentSkipListMap<>();
+    private final ForkJoinPool pool;
+    // documents parsed at least once, re-parses of evicted ones are not progress
+    private final Set<String> parsedDocs = ConcurrentHashMap.newKeySet();
+    private volatile ProgressListener progressListener;
+
+    public interface ProgressListener {
+        /**
+         * Called from a parsing thread when all files of a document are parsed
+         * for the first time.
+         */
+        void documentParsed(String docName, int parsedCount, int documentCount);
+    }
+
+    public XMLParseCache(MaeDriverI driver, AbstractAnnotationIndexer fileIdx) throws MaeDBException {
+        this(driver, fileIdx, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a cache parsing at most the given number of files at a time.
+     * The task definition is compiled once here; parsers never touch the driver
+     * afterwards, so they can safely run in parallel.
+     */
+    public XMLParseCache(MaeDriverI driver, AbstractAnnotationIndexer fileIdx, int parallelism) throws MaeDBException {
         this.driver = driver;
         this.fileIdx = fileIdx;
-        this.parseCache = new HashMap<>();
-        this.parseWarnings = new HashMap<>();
+        this.schema = TaskSchema.compile(driver);
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.maxWeight = Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Sets the estimated weight in bytes of parses to keep in memory. The most
+     * recently used document is always kept, however heavy it is.
+     */
+    public void setMaxWeight(long maxWeight) {
+        Map<String, MaeXMLParser[]> victims;
+        synchronized (this) {
+            this.maxWeight = maxWeight;
+            victims = evict();
+        }
+        spill(victims);
+    }
+
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Sets a directory to write evicted documents to, or null to drop them and
+     * parse again when needed.
+     */
+    public void setSpillDirectory(File spillDir) {
+        this.spillDir = spillDir;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public synchronized boolean isSpilled(String docName) {
+        return spilled.containsKey(docName);
+    }
+
+    public synchronized boolean isResident(String docName) {
+        return parseCache.containsKey(docName);
+    }
+
+    /**
+     * Submits all documents of approved annotators for parsing and returns immediately.
+     */
+    public void parseAll() {
+        parse(fileIdx.getDocumentNames());
+    }
+
+    /**
+     * Submits the given documents for parsing and returns immediately; others are
+     * parsed only when asked for.
+     */
+    public void parse(Collection<String> docNames) {
+        for (String docName : docNames) {
+            synchronized (this) {
+                if (!parseCache.containsKey(docName) && !spilling.containsKey(docName)
+                        && !spilled.containsKey(docName)) {
+                    getFuture(docName);
+                }
+            }
+        }
+        logger.info(String.format("parsing %d documents with %d threads", docNames.size(), pool.getParallelism()));
     }
 
     public MaeXMLParser[] getParses(String docName) throws IOException, SAXException, MaeDBException {
-        return getOrCacheXMLParse(docName);
+        CompletableFuture<MaeXMLParser[]> future = null;
+        MaeXMLParser[] parses;
+        SpilledDocument spilledDoc = null;
+        synchronized (this) {
+            parses = parseCache.get(docName);
+            if (parses != null) {
+                return parses;
+            }
+            // still in memory while being spilled
+            parses = spilling.get(docName);
+            if (parses == null) {
+                spilledDoc = spilled.get(docName);
+                if (spilledDoc == null) {
+                    future = getFuture(docName);
+                }
+            }
+        }
+        if (spilledDoc != null) {
+            parses = restore(docName, spilledDoc);
+            if (parses == null) {
+                synchronized (this) {
+                    future = getFuture(docName);
+                }
+            }
+        }
+        if (parses != null) {
+            Map<String, MaeXMLParser[]> victims;
+            synchronized (this) {
+                victims = admit(docName, parses);
+            }
+            spill(victims);
+            return parses;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof MaeDBException) {
+                throw (MaeDBException) cause;
+            }
+            throw e;
+        }
     }
 
-    private MaeXMLParser[] getOrCacheXMLParse(String docName) throws MaeDBException, IOException, SAXException {
-        if (!this.parseCache.containsKey(docName)) {
-            parseCache.put(docName, cacheXMLParse(docName));
+    private CompletableFuture<MaeXMLParser[]> getFuture(String docName) {
+        CompletableFuture<MaeXMLParser[]> future = inFlight.get(docName);
+        if (future == null) {
+            CompletableFuture<MaeXMLParser[]> submitted = submitXMLParse(docName);
+            inFlight.put(docName, submitted);
+            // a failed parse is not kept, so that it is tried again when asked next time
+            submitted.whenComplete((parses, error) -> {
+                if (error != null) {
+                    synchronized (this) {
+                        inFlight.remove(docName, submitted);
+                    }
+                }
+            });
+            future = submitted;
         }
-        return parseCache.get(docName);
+        return future;
     }
 
-    private MaeXMLParser[] cacheXMLParse(String docName) throws MaeDBException, IOException, SAXException {
+    private CompletableFuture<MaeXMLParser[]> submitXMLParse(String docName) {
         // this var would only hold xml files of approved annotators, and so would the cache
         String[] xmlFilesToCache = fileIdx.getAnnotationsOfDocument(docName);
         MaeXMLParser[] parses = new MaeXMLParser[xmlFilesToCache.length];
+        CompletableFuture<?>[] fileParses = new CompletableFuture<?>[xmlFilesToCache.length];
         for (int i = 0; i < xmlFilesToCache.length; i++) {
             String fileName = xmlFilesToCache[i];
-            if (fileName != null) {
-                MaeXMLParser parser = new MaeXMLParser(driver);
-                parser.readAnnotationFile(new File(fileName));
-                parses[i] = parser;
-                if (parser.getParseWarnings().length() > 0) {
-                    this.parseWarnings.put(fileName, parser.getParseWarnings());
+            int annotator = i;
+            fileParses[i] = fileName == null ? CompletableFuture.completedFuture(null) :
+                    CompletableFuture.runAsync(() -> parses[annotator] = parseFile(fileName), pool);
+        }
+        // always async, so that it finds the future in the in-flight map when done
+        return CompletableFuture.allOf(fileParses).thenApplyAsync(done -> {
+            sharePrimaryText(docName, parses);
+            Map<String, MaeXMLParser[]> victims;
+            synchronized (this) {
+                victims = admit(docName, parses);
+                inFlight.remove(docName);
+            }
+            spill(victims);
+            ProgressListener listener = progressListener;
+            if (parsedDocs.add(docName) && listener != null) {
+                listener.documentParsed(docName, parsedDocs.size(), fileIdx.getDocumentNames().size());
+            }
+            return parses;
+        }, pool);
+    }
+
+    private MaeXMLParser parseFile(String fileName) {
+        MaeXMLParser parser = new MaeXMLParser(driver, schema);
+        try {
+            parser.readAnnotationFile(new File(fileName));
+        } catch (IOException | SAXException | MaeDBException e) {
+            throw new CompletionException(e);
+        }
+        if (parser.hasParWarnings()) {
+            this.parseWarnings.put(fileName, parser.getWarnings());
+        }
+        return parser;
+    }
+
+    private static void sharePrimaryText(String docName, MaeXMLParser[] parses) {
+        CharSequence shared = null;
+        for (MaeXMLParser parse : parses) {
+            if (parse == null) {
+                continue;
+            }
+            if (shared == null) {
+                shared = parse.getParsedPrimaryText();
+            } else if (!parse.sharePrimaryText(shared)) {
+                logger.warn(String.format("annotations of \"%s\" have different primary texts", docName));
+            }
+        }
+    }
+
+    /**
+     * Puts parses in the cache and evicts least recently used documents over the
+     * weight limit. Returns evicted documents to spill, once the lock is released.
+     */
+    private Map<String, MaeXMLParser[]> admit(String docName, MaeXMLParser[] parses) {
+        long weight = estimateWeight(parses);
+        parseCache.put(docName, parses);
+        Long old = weights.put(docName, weight);
+        totalWeight += weight - (old == null ? 0 : old);
+        return evict();
+    }
+
+    private Map<String, MaeXMLParser[]> evict() {
+        Map<String, MaeXMLParser[]> victims = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, MaeXMLParser[]>> lru = parseCache.entrySet().iterator();
+        while (totalWeight > maxWeight && parseCache.size() > 1) {
+            Map.Entry<String, MaeXMLParser[]> eldest = lru.next();
+            String docName = eldest.getKey();
+            if (spillDir != null && !spilled.containsKey(docName) && !spilling.containsKey(docName)) {
+                spilling.put(docName, eldest.getValue());
+                victims.put(docName, eldest.getValue());
+            }
+            lru.remove();
+            totalWeight -= weights.remove(docName);
+            logger.debug(String.format("evicted \"%s\" from the parse cache", docName));
+        }
+        return victims;
+    }
+
+    private void spill(Map<String, MaeXMLParser[]> victims) {
+        for (Map.Entry<String, MaeXMLParser[]> victim : victims.entrySet()) {
+            spill(victim.getKey(), victim.getValue());
+        }
+    }
+
+    /**
+     * Writes a document to the spill directory, called without holding the lock.
+     * A primary text held as a string is stored only with the first annotator,
+     * while any other text (e.g. a memory-mapped one) is mostly off the heap and
+     * is kept by reference rather than copied into the snapshot.
+     */
+    private void spill(String docName, MaeXMLParser[] parses) {
+        File dir = spillDir;
+        File[] files = new File[parses.length];
+        CharSequence keptText = null;
+        boolean written = false;
+        if (dir != null) {
+            int spillId = spillCount.getAndIncrement();
+            boolean textStored = false;
+            try {
+                for (int i = 0; i < parses.length; i++) {
+                    if (parses[i] == null) {
+                        continue;
+                    }
+                    MaeXMLParser parse = parses[i];
+                    String primaryText = "";
+                    if (!textStored && parse.getParsedPrimaryText() instanceof String) {
+                        primaryText = (String) parse.getParsedPrimaryText();
+                    } else if (!textStored) {
+                        keptText = parse.getParsedPrimaryText();
+                    }
+                    textStored = true;
+                    AnnotationSnapshot snapshot = new AnnotationSnapshot(parse.getParsed().getTaskName(),
+                            primaryText, "", parse.getParsedTags(), parse.getParsedAtts(), parse.getParsedArgs());
+                    files[i] = new File(dir, String.format("parse-%d-%d%s", spillId, i, AnnotationSnapshot.SNAPSHOT_EXT));
+                    files[i].deleteOnExit();
+                    snapshot.write(files[i]);
+                }
+                written = true;
+            } catch (MaeIOException e) {
+                // then the document will be parsed again
+                logger.warn(String.format("cannot spill \"%s\": %s", docName, e.getMessage()));
+            }
+        }
+        synchronized (this) {
+            spilling.remove(docName);
+            if (written && !pool.isShutdown()) {
+                spilled.put(docName, new SpilledDocument(files, keptText));
+                return;
+            }
+        }
+        deleteFiles(files);
+    }
+
+    /**
+     * Reads a spilled document back, called without holding the lock.
+     */
+    private MaeXMLParser[] restore(String docName, SpilledDocument spilledDoc) {
+        File[] files = spilledDoc.files;
+        MaeXMLParser[] parses = new MaeXMLParser[files.length];
+        CharSequence primaryText = spilledDoc.keptText;
+        try {
+            for (int i = 0; i < files.length; i++) {
+                if (files[i] != null) {
+                    AnnotationSnapshot snapshot = AnnotationSnapshot.read(files[i]);
+                    if (primaryText == null) {
+                        primaryText = snapshot.getPrimaryText();
+                    }
+                    parses[i] = MaeXMLParser.restore(snapshot, primaryText);
                 }
             }
+            return parses;
+        } catch (MaeIOException e) {
+            logger.warn(String.format("cannot restore \"%s\": %s", docName, e.getMessage()));
+            boolean removed;
+            synchronized (this) {
+                removed = spilled.remove(docName, spilledDoc);
+            }
+            if (removed) {
+                deleteFiles(files);
+            }
+            return null;
+        }
+    }
+
+    private static void deleteFiles(File[] files) {
+        for (File file : files) {
+            if (file != null && file.exists() && !file.delete()) {
+                logger.warn("cannot delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Estimates heap bytes held by parses of a document.
+     */
+    public static long estimateWeight(MaeXMLParser[] parses) {
+        long weight = 0;
+        boolean textCounted = false;
+        for (MaeXMLParser parse : parses) {
+            if (parse == null) {
+                continue;
+            }
+            if (!textCounted && parse.getParsedPrimaryText() != null) {
+                // primary text is shared, and a mapped text is mostly off the heap anyway
+                weight += 2L * parse.getParsedPrimaryText().length();
+                textCounted = true;
+            }
+            weight += (long) TAG_WEIGHT * parse.getParsedTags().size()
+                    + (long) ATT_WEIGHT * parse.getParsedAtts().size()
+                    + (long) ARG_WEIGHT * parse.getParsedArgs().size();
         }
-        return parses;
+        return weight;
     }
 
-    public Map<String, String> getParseWarnings() {
+    /**
+     * Returns warnings of files parsed so far; call after all parses are consumed
+     * to see every warning.
+     */
+    public Map<String, ParseWarnings> getParseWarnings() {
         return this.parseWarnings;
     }
+
+    /**
+     * Stops parsing threads and deletes spilled files; parses in memory stay available.
+     */
+    public synchronized void shutdown() {
+        pool.shutdownNow();
+        for (SpilledDocument spilledDoc : spilled.values()) {
+            deleteFiles(spilledDoc.files);
+        }
+        spilled.clear();
+    }
+
+    private static class SpilledDocument {
+        private final File[] files;
+        // primary text not written to the files, null when the first file has it
+        private final CharSequence keptText;
+
+        SpilledDocument(File[] files, CharSequence keptText) {
+            this.files = files;
+            this.keptText = keptText;
+        }
+    }
 }
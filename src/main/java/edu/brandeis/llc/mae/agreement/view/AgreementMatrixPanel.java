@@ -0,0 +1,131 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement.view;
+
+import edu.brandeis.llc.mae.agreement.calculator.AgreementMatrix;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.util.Map;
+
+/**
+ * Agreement matrices of pairs of annotators as heat maps, one table per study
+ * under its title, with the mean agreement of each annotator in the last column
+ * so that an outlier annotator stands out.
+ */
+class AgreementMatrixPanel extends JScrollPane {
+
+    AgreementMatrixPanel(Map<String, Map<String, AgreementMatrix>> matrices) {
+        super();
+        JPanel tables = new JPanel();
+        tables.setLayout(new BoxLayout(tables, BoxLayout.Y_AXIS));
+        for (String agreementTitle : matrices.keySet()) {
+            for (Map.Entry<String, AgreementMatrix> matrix : matrices.get(agreementTitle).entrySet()) {
+                JLabel title = new JLabel(String.format("%s %s", agreementTitle, matrix.getKey()));
+                title.setAlignmentX(Component.LEFT_ALIGNMENT);
+                tables.add(title);
+                JTable table = new JTable(new MatrixTableModel(matrix.getValue()));
+                table.setDefaultRenderer(Double.class, new HeatCellRenderer());
+                table.setRowSelectionAllowed(false);
+                table.getTableHeader().setReorderingAllowed(false);
+                JPanel tablePanel = new JPanel(new BorderLayout());
+                tablePanel.add(table.getTableHeader(), BorderLayout.NORTH);
+                tablePanel.add(table, BorderLayout.CENTER);
+                tablePanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+                tables.add(tablePanel);
+                tables.add(Box.createVerticalStrut(12));
+            }
+        }
+        setViewportView(tables);
+        setBorder(BorderFactory.createEmptyBorder());
+    }
+
+    private static class MatrixTableModel extends AbstractTableModel {
+        private final AgreementMatrix matrix;
+
+        MatrixTableModel(AgreementMatrix matrix) {
+            this.matrix = matrix;
+        }
+
+        @Override
+        public int getRowCount() {
+            return matrix.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return matrix.size() + 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            if (column == 0) {
+                return "";
+            }
+            return column > matrix.size() ? "mean" : matrix.getAnnotators().get(column - 1);
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Double.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                return matrix.getAnnotators().get(row);
+            }
+            return column > matrix.size() ? matrix.getMeanAgreement(row) : matrix.get(row, column - 1);
+        }
+    }
+
+    /**
+     * Colors a cell from red at or below 0 to green at 1, and leaves undefined ones blank.
+     */
+    private static class HeatCellRenderer extends DefaultTableCellRenderer {
+
+        HeatCellRenderer() {
+            setHorizontalAlignment(JLabel.CENTER);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            double agreement = (Double) value;
+            super.getTableCellRendererComponent(table,
+                    Double.isNaN(agreement) ? "" : String.format("%.4f", agreement), isSelected, hasFocus, row, column);
+            if (Double.isNaN(agreement)) {
+                setBackground(table.getBackground());
+            } else {
+                float scale = (float) Math.max(0.0, Math.min(1.0, agreement));
+                setBackground(Color.getHSBColor(scale / 3, 0.45f, 1.0f));
+            }
+            return this;
+        }
+    }
+}
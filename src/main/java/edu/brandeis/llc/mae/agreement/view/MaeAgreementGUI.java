@@ -28,10 +28,12 @@ import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.MaeStrings;
 import edu.brandeis.llc.mae.agreement.MaeAgreementMain;
 import edu.brandeis.llc.mae.agreement.MaeAgreementStrings;
+import edu.brandeis.llc.mae.agreement.calculator.AgreementMatrix;
 import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
 import edu.brandeis.llc.mae.io.MaeIOException;
+import edu.brandeis.llc.mae.io.ParseWarnings;
 import edu.brandeis.llc.mae.util.MappedSet;
 import org.xml.sax.SAXException;
 
@@ -67,6 +69,7 @@ public class MaeAgreementGUI extends JFrame {
     private List<AgreementTypeSelectPanel> agrTypeSelectPanels;
     private AttTypeSelectPanel attTypeSelectionPanel;
     private JCheckBox allowMultiTaggingBox;
+    private JCheckBox pairwiseBox;
 
     private File datasetDir;
     private File taskScheme;
@@ -332,7 +335,11 @@ public class MaeAgreementGUI extends JFrame {
                 BorderLayout.NORTH);
 
         allowMultiTaggingBox = new JCheckBox("Allow using the same tag again on the same text span?");
-        tagsPanel.add(allowMultiTaggingBox, BorderLayout.SOUTH);
+        pairwiseBox = new JCheckBox("Also compute agreement of every pair of annotators");
+        JPanel optionsPanel = new JPanel(new GridLayout(2, 1));
+        optionsPanel.add(allowMultiTaggingBox);
+        optionsPanel.add(pairwiseBox);
+        tagsPanel.add(optionsPanel, BorderLayout.SOUTH);
 
         tagsPanel.add(prepareAgrTypePanels(), BorderLayout.CENTER);
         return tagsPanel;
@@ -465,12 +472,20 @@ public class MaeAgreementGUI extends JFrame {
             String result = "Please make sure you understand differences between metrices before you use these numbers. See the MAE wiki for more details.\n\n";
             result += calc.calcGlobalAgreementToString(global, allowMultiTaggingBox.isSelected());
             result += calc.calcLocalAgreementToString(local, allowMultiTaggingBox.isSelected());
+            Map<String, Map<String, AgreementMatrix>> matrices = new LinkedHashMap<>();
+            if (pairwiseBox.isSelected()) {
+                matrices.putAll(calc.calcGlobalPairwiseAgreement(global, allowMultiTaggingBox.isSelected()));
+                matrices.putAll(calc.calcLocalPairwiseAgreement(local, allowMultiTaggingBox.isSelected()));
+                result += matricesToString(matrices);
+            }
 
-            Map<String, String> parseWarnings = calc.getParseWarnings();
+            Map<String, ParseWarnings> parseWarnings = calc.getParseWarnings();
             if (parseWarnings.size() > 0) {
                 StringBuilder warnings = new StringBuilder();
                 for (String fileName : parseWarnings.keySet()) {
-                    warnings.append(String.format("%s: \n %s\n  ===\n\n", fileName, parseWarnings.get(fileName)));
+                    ParseWarnings fileWarnings = parseWarnings.get(fileName);
+                    warnings.append(String.format("%s (%d warnings): \n %s\n  ===\n\n",
+                            fileName, fileWarnings.getTotalCount(), fileWarnings));
                 }
                 JOptionPane.showMessageDialog(null, new JTextArea(warnings.toString()), "Some problems found in the dataset", JOptionPane.PLAIN_MESSAGE);
 
@@ -485,7 +500,15 @@ public class MaeAgreementGUI extends JFrame {
             resultPanel.add(new VerboseTextArea("Please make sure you understand differences between metrices before you use these numbers. See the MAE wiki for more details."), BorderLayout.NORTH);
             JScrollPane scrollableText = new JScrollPane(new JTextArea(result));
             scrollableText.setPreferredSize(new Dimension(400, 600));
-            resultPanel.add(scrollableText);
+            if (matrices.isEmpty()) {
+                resultPanel.add(scrollableText);
+            } else {
+                JTabbedPane resultTabs = new JTabbedPane();
+                resultTabs.addTab("Agreements", scrollableText);
+                resultTabs.addTab("Pairs of annotators", new AgreementMatrixPanel(matrices));
+                resultTabs.setPreferredSize(new Dimension(700, 600));
+                resultPanel.add(resultTabs);
+            }
             int export = JOptionPane.showOptionDialog(null,
                     resultPanel, "Inter-Annotator Agreements",
                     JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE,
@@ -498,6 +521,17 @@ public class MaeAgreementGUI extends JFrame {
         }
     }
 
+    private static String matricesToString(Map<String, Map<String, AgreementMatrix>> matrices) {
+        StringBuilder result = new StringBuilder();
+        for (String agreementTitle : matrices.keySet()) {
+            result.append(String.format("== %s, pairs of annotators ==\n\n", agreementTitle));
+            for (Map.Entry<String, AgreementMatrix> matrix : matrices.get(agreementTitle).entrySet()) {
+                result.append(matrix.getKey()).append('\n').append(matrix.getValue()).append('\n');
+            }
+        }
+        return result.toString();
+    }
+
     private void exportResult(String result) throws MaeDBException, IOException {
         String timestamp = (new SimpleDateFormat("yyMMdd-HHmmss")).format(new Date());
         String filename = String.format("iaa-%s-%s.txt", driver.getTaskName(), timestamp);
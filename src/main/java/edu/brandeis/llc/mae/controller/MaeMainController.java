@@ -33,7 +33,13 @@ import edu.brandeis.llc.mae.controller.textpanel.TextPanelController;
 import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.io.AnnotationDiff;
+import edu.brandeis.llc.mae.io.AnnotationFileWatcher;
+import edu.brandeis.llc.mae.io.AnnotationJournal;
+import edu.brandeis.llc.mae.io.AnnotationLoader;
 import edu.brandeis.llc.mae.io.MaeIOException;
+import edu.brandeis.llc.mae.io.ParsedTag;
+import edu.brandeis.llc.mae.io.StandoffImporter;
 import edu.brandeis.llc.mae.model.*;
 import edu.brandeis.llc.mae.preferences.MaeBooleanOption;
 import edu.brandeis.llc.mae.preferences.MaePreferences;
@@ -42,6 +48,7 @@ import edu.brandeis.llc.mae.util.MappedSet;
 import edu.brandeis.llc.mae.util.SpanHandler;
 import edu.brandeis.llc.mae.view.MaeMainView;
 import edu.brandeis.llc.mae.view.TablePanelView;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +84,11 @@ public class MaeMainController extends JPanel {
     private JFrame mainFrame;
     private MaeMainView view;
     private Timer temporaryNotificationTimer;
+    private Timer journalCompactionTimer;
+    private static final int JOURNAL_COMPACTION_INTERVAL = 60 * 1000;
+    private AnnotationFileWatcher fileWatcher;
+    // annotation file each driver is watched on, accessed from background workers
+    private final Map<MaeDriverI, File> watchedFiles = Collections.synchronizedMap(new HashMap<>());
 
     private StatusBarController statusBar;
     private TextPanelController textPanel;
@@ -140,6 +152,16 @@ public class MaeMainController extends JPanel {
         } catch (MaeException e) {
             showError(e);
         }
+
+        journalCompactionTimer = new Timer(JOURNAL_COMPACTION_INTERVAL, e -> compactChangeJournals());
+        journalCompactionTimer.start();
+
+        try {
+            fileWatcher = new AnnotationFileWatcher(
+                    file -> SwingUtilities.invokeLater(() -> reloadModifiedFile(file)));
+        } catch (IOException e) {
+            logger.warn("cannot watch annotation files for changes outside MAE", e);
+        }
     }
 
     private void writeUserPrefs() throws MaeIOException {
@@ -509,6 +531,7 @@ public class MaeMainController extends JPanel {
         }
         try {
             if (getDrivers().size() > 1) {
+                unwatchAnnotationFile(getDriverAt(i));
                 getDriverAt(i).destroy();
                 drivers.remove(i);
                 getTextPanel().closeDocumentTab(i);
@@ -653,6 +676,7 @@ public class MaeMainController extends JPanel {
         // files are open.
         // Since an instance of MAE requires all works share the same DB schema
         sendWaitMessage();
+        unwatchAllAnnotationFiles();
         new WipeDriversWorker(drivers).execute(); // destroy existing drivers in BG
         drivers = new ArrayList<>();
         new SetUpTaskWorker(taskFile).execute();
@@ -736,7 +760,7 @@ public class MaeMainController extends JPanel {
         try {
             // setting up the scheme will switch driver to the new one
 
-            xmlParseWarnings = getDriver().readAnnotation(annotationFile);
+            xmlParseWarnings = readAnnotationWithJournal(annotationFile);
             logger.info(String.format("document \"%s\" is loaded into DB.",
                     getDriver().getAnnotationFileBaseName()));
 
@@ -756,6 +780,197 @@ public class MaeMainController extends JPanel {
         showXMLParsingWarnings(xmlParseWarnings);
     }
 
+    /**
+     * Reads an annotation file into the current driver and starts journaling changes on it.
+     * If a journal is left from a session that did not end properly, unsaved changes
+     * in it are restored first.
+     */
+    private String readAnnotationWithJournal(File annotationFile) throws MaeException {
+        MaeDriverI driver = getDriver();
+        String xmlParseWarnings;
+        boolean recovered = false;
+        if (AnnotationJournal.hasLeftover(annotationFile.getAbsolutePath())) {
+            xmlParseWarnings = AnnotationJournal.recover(driver, annotationFile);
+            recovered = true;
+        } else {
+            xmlParseWarnings = driver.readAnnotation(annotationFile);
+        }
+        startChangeJournal(driver);
+        if (recovered && driver.getJournal() != null) {
+            // the freshly started journal has none of recovered changes
+            driver.getJournal().compact(driver);
+            popupMessage(String.format(MaeStrings.JOURNAL_RECOVERED, annotationFile.getName()));
+        }
+        watchAnnotationFile(driver);
+        return xmlParseWarnings;
+    }
+
+    /**
+     * Throws away the journal of a driver and starts a new one, named after the
+     * current annotation file name of the driver. Called when all changes are saved.
+     */
+    public void resetChangeJournal(MaeDriverI driver) throws MaeException {
+        if (driver.getJournal() != null) {
+            driver.getJournal().discard();
+        }
+        startChangeJournal(driver);
+        // the file might be saved under a new name, and saving is not a change outside MAE
+        watchAnnotationFile(driver);
+    }
+
+    /**
+     * Starts a journal next to the annotation file of a driver. When it cannot be
+     * written, e.g. in a read-only directory, the driver goes on without autosave.
+     */
+    private void startChangeJournal(MaeDriverI driver) throws MaeDBException {
+        try {
+            driver.setJournal(AnnotationJournal.start(driver.getAnnotationFileName()));
+        } catch (MaeIOException e) {
+            driver.setJournal(null);
+            logger.warn("cannot start a change journal, changes will not be autosaved: " + e.getMessage());
+        }
+    }
+
+    private void watchAnnotationFile(MaeDriverI driver) throws MaeDBException {
+        if (fileWatcher == null || driver.getAnnotationFileName() == null) {
+            return;
+        }
+        File file = new File(driver.getAnnotationFileName());
+        File previous = watchedFiles.put(driver, file);
+        if (file.equals(previous) && fileWatcher.isWatching(file)) {
+            // saved over the watched file
+            fileWatcher.acknowledge(file);
+            return;
+        }
+        if (previous != null) {
+            fileWatcher.unwatch(previous);
+        }
+        try {
+            fileWatcher.watch(file);
+        } catch (IOException e) {
+            watchedFiles.remove(driver);
+            logger.warn(String.format("cannot watch \"%s\" for changes outside MAE", file), e);
+        }
+    }
+
+    private void unwatchAnnotationFile(MaeDriverI driver) {
+        File file = watchedFiles.remove(driver);
+        if (fileWatcher != null && file != null) {
+            fileWatcher.unwatch(file);
+        }
+    }
+
+    private void unwatchAllAnnotationFiles() {
+        watchedFiles.clear();
+        if (fileWatcher != null) {
+            fileWatcher.unwatchAll();
+        }
+    }
+
+    private MaeDriverI getDriverWatchingOn(File file) {
+        synchronized (watchedFiles) {
+            for (Map.Entry<MaeDriverI, File> watched : watchedFiles.entrySet()) {
+                if (watched.getValue().getAbsoluteFile().toPath().normalize().equals(file.toPath())) {
+                    return watched.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies changes made outside MAE to an open annotation file, tag by tag,
+     * and repaints only rows and text spans of changed tags. Unsaved changes in
+     * MAE are overwritten only when the user agrees to.
+     */
+    void reloadModifiedFile(final File file) {
+        final MaeDriverI driver = getDriverWatchingOn(file);
+        if (driver == null || !getDrivers().contains(driver)) {
+            return;
+        }
+        final boolean hadUnsavedChanges = driver.isAnnotationChanged();
+        if (hadUnsavedChanges && !showWarning(String.format(MaeStrings.FILE_MODIFIED_OUTSIDE, file.getName()))) {
+            return;
+        }
+        new SwingWorker<AnnotationDiff, Void>() {
+            @Override
+            protected AnnotationDiff doInBackground() throws Exception {
+                AnnotationDiff diff = new AnnotationLoader(driver).diffWithFile(file);
+                if (diff != null) {
+                    diff.apply(driver);
+                    if (!hadUnsavedChanges) {
+                        // the DB is again the same as the file
+                        driver.setAnnotationChanged(false);
+                        resetChangeJournal(driver);
+                    }
+                }
+                return diff;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    AnnotationDiff diff = get();
+                    if (diff == null) {
+                        popupMessage(String.format(MaeStrings.FILE_TEXT_MODIFIED_OUTSIDE, file.getName()));
+                        return;
+                    }
+                    // other documents are put into tables when their tabs are selected
+                    if (driver == getDriver() && !isAdjudicating()) {
+                        refreshTableRows(driver, diff);
+                        assignTextColorsOver(diff.getAffectedLocations());
+                    }
+                    updateSavedStatusInTextPanel();
+                    sendTemporaryNotification(String.format(MaeStrings.SB_FILE_RELOADED, file.getName(), diff), 3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    showError(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                } catch (MaeException e) {
+                    showError(e);
+                }
+            }
+        }.execute();
+    }
+
+    private void refreshTableRows(MaeDriverI driver, AnnotationDiff diff) throws MaeException {
+        for (Tag deleted : diff.getDeleted()) {
+            getTablePanel().removeTagRows(deleted);
+        }
+        Set<String> changedTids = new LinkedHashSet<>();
+        for (ParsedTag inserted : diff.getInserted()) {
+            changedTids.add(inserted.getTid());
+        }
+        for (ParsedTag updated : diff.getUpdated()) {
+            changedTids.add(updated.getTid());
+        }
+        Set<Tag> toRefresh = new LinkedHashSet<>();
+        for (String tid : changedTids) {
+            Tag tag = driver.getTagByTid(tid);
+            toRefresh.add(tag);
+            if (tag.getTagtype().isExtent()) {
+                // links show text of their arguments
+                toRefresh.addAll(driver.getLinksHasArgumentTag((ExtentTag) tag));
+            }
+        }
+        for (Tag tag : toRefresh) {
+            getTablePanel().refreshTagRows(tag);
+        }
+    }
+
+    private void compactChangeJournals() {
+        for (MaeDriverI driver : getDrivers()) {
+            AnnotationJournal journal = driver.getJournal();
+            if (journal != null && journal.needsCompaction()) {
+                try {
+                    journal.compact(driver);
+                } catch (MaeException e) {
+                    logger.error("failed to compact a change journal", e);
+                }
+            }
+        }
+    }
+
     private void showXMLParsingWarnings(String xmlParseWarnings) {
         if (xmlParseWarnings.length() > 0) {
             if (xmlParseWarnings.startsWith(MaeStrings.FILE_NOT_XML_ERR)) {
@@ -775,7 +990,7 @@ public class MaeMainController extends JPanel {
             try {
                 addAndSwitchDriver(setUpDriver(new File(getDriver().getTaskFileName()))); // will set up a new dirver for GS
                 getDrivers().add(adjudDriverIndex, getDrivers().remove(getDrivers().size() - 1)); // move gold driver to the front
-                String xmlParseWarnings = getDriver().readAnnotation(goldstandard);
+                String xmlParseWarnings = readAnnotationWithJournal(goldstandard);
                 getTextPanel().addAdjudicationTab(goldstandard.getName(), getDriver().getPrimaryText());
                 getTablePanel().prepareAllTables();
                 switchAdjudicationTag();
@@ -835,9 +1050,9 @@ public class MaeMainController extends JPanel {
     Set<String> checkTextSharing() {
         Set<String> differs = new HashSet<>();
         try {
-            String workingText = getDriver().getPrimaryText();
+            CharSequence workingText = getDriver().getPrimaryText();
             for (MaeDriverI driver : getDrivers()) {
-                if (!driver.getPrimaryText().equals(workingText)) {
+                if (!StringUtils.equals(driver.getPrimaryText(), workingText)) {
                     differs.add(driver.getAnnotationFileBaseName());
                 }
             }
@@ -925,6 +1140,50 @@ public class MaeMainController extends JPanel {
                 SpanHandler.range(0, getDriver().getPrimaryText().length()), type, goldAnchors);
     }
 
+    /**
+     * Imports pre-annotations from a standoff file into the current document,
+     * then redraws all tables and text colors, as many tags may be added at once.
+     */
+    public void importStandoffAnnotation(final File file) {
+        final MaeDriverI driver = getDriver();
+        sendWaitMessage();
+        new SwingWorker<StandoffImporter, Void>() {
+            @Override
+            protected StandoffImporter doInBackground() throws Exception {
+                StandoffImporter importer = new StandoffImporter(driver);
+                importer.importFile(file);
+                // batch inserts are not journaled one by one
+                if (driver.getJournal() != null) {
+                    driver.getJournal().compact(driver);
+                }
+                return importer;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    StandoffImporter importer = get();
+                    if (driver == getDriver() && !isAdjudicating()) {
+                        getTablePanel().wipeAllTables();
+                        getTablePanel().insertAllTags();
+                        assignTextColorsOver(getAnchorsToRepaint());
+                    }
+                    updateSavedStatusInTextPanel();
+                    if (!importer.getWarnings().isEmpty()) {
+                        popupMessage(importer.getWarnings().toString());
+                    }
+                    sendTemporaryNotification(String.format(MaeStrings.SB_STANDOFF_IMPORTED, file.getName()), 3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    showError(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                } catch (MaeException e) {
+                    showError(e);
+                }
+            }
+        }.execute();
+    }
+
     public void switchAnnotationDocument(int tabId) {
         if (!isAdjudicating()) {
             try {
@@ -1393,9 +1652,9 @@ public class MaeMainController extends JPanel {
                 // creating a link from text popup will always end up in an empty link,
                 // no need to populate or repaint its arguments
             } else if (nc) {
-                tag = getDriver().createExtentTag(tid, tagType, null, null);
+                tag = getDriver().createExtentTag(tid, tagType, null);
             } else {
-                tag = getDriver().createExtentTag(tid, tagType, getSelectedText(), getSelectedTextSpans());
+                tag = getDriver().createExtentTag(tid, tagType, getSelectedTextSpans());
             }
             getTablePanel().insertNewTagIntoTable(tag, tagType);
             if (isAdjudicating() && tag.getTagtype().isExtent()) {
@@ -1462,7 +1721,7 @@ public class MaeMainController extends JPanel {
 
     ExtentTag copyExtentTag(ExtentTag original) throws MaeDBException {
         TagType type = original.getTagtype();
-        ExtentTag newTag = getDriver().createExtentTag(type, original.getText(), original.getSpansAsArray());
+        ExtentTag newTag = getDriver().createExtentTag(type, original.getSpansAsArray());
         Map<String, String> attMap = original.getAttributesWithNames();
         for (String attTypeName : attMap.keySet()) {
             AttributeType attType = getDriver().getAttributeTypeOfTagTypeByName(type, attTypeName);
@@ -1550,7 +1809,8 @@ public class MaeMainController extends JPanel {
             if (tag.getTagtype().isExtent() && colName.equals(MaeStrings.SPANS_COL_NAME)) {
                 succeed = getDriver().updateTagSpans((ExtentTag) tag, SpanHandler.convertStringToArray(value));
             } else if (tag.getTagtype().isExtent() && colName.equals(MaeStrings.TEXT_COL_NAME)) {
-                succeed = getDriver().updateTagText((ExtentTag) tag, value);
+                // do nothing, text is derived from spans and refreshed when spans are updated
+                return true;
             } else if (tag.getTagtype().isLink() && colName.endsWith(MaeStrings.ARG_IDCOL_SUF)) {
                 String argTypeName = colName.substring(0, colName.length() - MaeStrings.ARG_IDCOL_SUF.length());
                 ArgumentType argType = getDriver().getArgumentTypeOfTagTypeByName(tag.getTagtype(), argTypeName);
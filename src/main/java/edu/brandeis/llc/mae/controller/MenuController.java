@@ -173,6 +173,8 @@ class MenuController extends MaeControllerI {
                 MENUITEM_ADDFILE : MENUITEM_OPENFILE;
         MaeActionI openFileAction = new OpenFile(openFileLabel, null, ksOPENFILE, null, getMainController());
         MaeActionI saveXMLAction = new SaveXML(MENUITEM_SAVEXML, null, ksSAVEXML, null, getMainController());
+        MaeActionI exportJsonlAction = new ExportJsonLines(MENUITEM_EXPORTJSONL, null, null, null, getMainController());
+        MaeActionI importStandoffAction = new ImportStandoff(MENUITEM_IMPORT_STANDOFF, null, null, null, getMainController());
         String closeFileLabel = getMainController().isAdjudicating() ?
                 MENUITEM_END_ADJUD : MENUITEM_CLOSEFILE;
         MaeActionI closeFileAction = new CloseFile(closeFileLabel, null, ksCLOSEFILE, null, getMainController());
@@ -184,6 +186,8 @@ class MenuController extends MaeControllerI {
         JMenuItem loadTask = new JMenuItem(loadTaskAction);
         JMenuItem openFile = new JMenuItem(openFileAction);
         JMenuItem saveXML = new JMenuItem(saveXMLAction);
+        JMenuItem exportJsonl = new JMenuItem(exportJsonlAction);
+        JMenuItem importStandoff = new JMenuItem(importStandoffAction);
         JMenuItem closeFile = new JMenuItem(closeFileAction);
         JMenuItem adjudMode = new JMenuItem(adjudModeAction);
         adjudMode.setActionCommand(Integer.toString(MODE_ADJUD));
@@ -191,12 +195,16 @@ class MenuController extends MaeControllerI {
         boolean fileLoaded = getMainController().isDocumentOpen();
         openFile.setEnabled(taskLoaded);
         saveXML.setEnabled(fileLoaded);
+        exportJsonl.setEnabled(fileLoaded);
+        importStandoff.setEnabled(fileLoaded && !getMainController().isAdjudicating());
         closeFile.setEnabled(fileLoaded);
 
         menu.add(loadTask);
         menu.add(openFile);
         menu.addSeparator();
         menu.add(saveXML);
+        menu.add(exportJsonl);
+        menu.add(importStandoff);
         menu.addSeparator();
         menu.add(closeFile);
         menu.addSeparator();
@@ -0,0 +1,74 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.controller.menuaction;
+
+import edu.brandeis.llc.mae.controller.MaeMainController;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.io.MaeFileWriter;
+import edu.brandeis.llc.mae.io.MaeJsonLinesParser;
+import edu.brandeis.llc.mae.util.FileHandler;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.io.File;
+
+/**
+ * Exports current annotation as a JSON Lines file, one record per tag. Unlike
+ * {@link SaveXML}, this does not change the saved status of the document.
+ */
+public class ExportJsonLines extends MaeActionI {
+
+    public ExportJsonLines(String text, ImageIcon icon, KeyStroke hotkey, Integer mnemonic, MaeMainController controller) {
+        super(text, icon, hotkey, mnemonic, controller);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent event) {
+        try {
+            File file = getMainController().selectSingleFile(getJsonLinesFileName(), true);
+            if (file != null) {
+                MaeFileWriter.writeAnnotationToJsonLines(getMainController().getDriver(), file);
+            }
+        } catch (Exception e) {
+            catchException(e);
+        }
+    }
+
+    String getJsonLinesFileName() throws MaeDBException {
+        String annotationFileName = getMainController().getDriver().getAnnotationFileName();
+        if (annotationFileName.endsWith(MaeJsonLinesParser.JSONL_EXT)) {
+            return annotationFileName;
+        }
+        if (annotationFileName.endsWith(FileHandler.XML_GZ_EXT)) {
+            return annotationFileName.substring(0, annotationFileName.length() - FileHandler.XML_GZ_EXT.length())
+                    + MaeJsonLinesParser.JSONL_EXT + FileHandler.GZ_EXT;
+        }
+        if (annotationFileName.endsWith(FileHandler.XML_EXT)) {
+            annotationFileName = annotationFileName.substring(0, annotationFileName.length() - FileHandler.XML_EXT.length());
+        }
+        return annotationFileName + MaeJsonLinesParser.JSONL_EXT;
+    }
+}
@@ -24,35 +24,24 @@
 
 package edu.brandeis.llc.mae.controller.menuaction;
 
+import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.controller.MaeMainController;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
-import edu.brandeis.llc.mae.model.ExtentTag;
-import edu.brandeis.llc.mae.model.LinkTag;
-import edu.brandeis.llc.mae.model.TagType;
+import edu.brandeis.llc.mae.io.MaeFileWriter;
+import edu.brandeis.llc.mae.util.FileHandler;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
 
 /**
  * Writes all of current annotation into an XML file. Will set unsaved status of the
  * current document to 'false'. XML formatted string of each tag is generated by Tag
- * classes, but concatenating them into a single file happens in this class.
+ * classes, and they are streamed into a file by {@link MaeFileWriter}.
  */
 public class SaveXML extends MaeActionI {
 
-    private static String xmlHeader = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<%s>\n";
-    // tried embed dtd source in the xml, but that fails XML parser to successfully parse
-    // <!DOCTYPE root_element SYSTEM "DTD_filename">\
-    // <!DOCTYPE root_element PUBLIC "DTD_name" "DTD_location">
-    // see https://xmlwriter.net/xml_guide/doctype_declaration.shtml
-    private static String xmlText = "<TEXT><![CDATA[%s]]></TEXT>\n<TAGS>\n";
-    private static String xmlTail = "</TAGS>\n</%s>";
-
     public SaveXML(String text, ImageIcon icon, KeyStroke hotkey, Integer mnemonic, MaeMainController controller) {
         super(text, icon, hotkey, mnemonic, controller);
     }
@@ -75,45 +64,30 @@ public class SaveXML extends MaeActionI {
 
     }
 
-    void exportXML(File file) throws MaeDBException, IOException {
-        getMainController().getDriver().setAnnotationChanged(false);
-        getMainController().getDriver().setAnnotationFileName(file.getAbsolutePath());
-        OutputStreamWriter fw = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
-        fw.write(generateXMLString());
-        fw.close();
-    }
-
-    String generateXMLString() throws MaeDBException {
+    void exportXML(File file) throws MaeException {
         MaeDriverI driver = getMainController().getDriver();
-        String head = String.format(xmlHeader, driver.getTaskName());
-        String text = String.format(xmlText, driver.getPrimaryText());
-        String tail = String.format(xmlTail, driver.getTaskName());
-        StringBuilder tags = new StringBuilder();
-        for (TagType eType : driver.getExtentTagTypes()) {
-            for (ExtentTag tag : driver.getAllExtentTagsOfType(eType)) {
-                tags.append(tag.toXmlString()).append("\n");
-            }
-        }
-        for (TagType lType : driver.getLinkTagTypes()) {
-            for (LinkTag tag : driver.getAllLinkTagsOfType(lType)) {
-                tags.append(tag.toXmlString()).append("\n");
-            }
-        }
-        return head + text + tags + tail;
+        driver.setAnnotationChanged(false);
+        driver.setAnnotationFileName(file.getAbsolutePath());
+        MaeFileWriter.writeAnnotationToXML(driver, file);
+        // everything in the journal is now in the saved file
+        getMainController().resetChangeJournal(driver);
     }
 
     String getXMLFileName() throws MaeDBException {
         String suffix = getMainController().getSaveSuffix();
         String annotatorSuffix = suffix != null && suffix.length() > 0 ? "_" + suffix : "";
         String annotationFileName = getMainController().getDriver().getAnnotationFileName();
-        if (!annotationFileName.endsWith(".xml")) {
-            return annotationFileName + annotatorSuffix + ".xml";
+        // keep compressed documents compressed
+        String extension = annotationFileName.endsWith(FileHandler.XML_GZ_EXT) ?
+                FileHandler.XML_GZ_EXT : FileHandler.XML_EXT;
+        if (!annotationFileName.endsWith(extension)) {
+            return annotationFileName + annotatorSuffix + extension;
         }
-        String baseName = annotationFileName.substring(0, annotationFileName.length() - 4);
+        String baseName = annotationFileName.substring(0, annotationFileName.length() - extension.length());
         if (annotatorSuffix.length() == 0 || baseName.endsWith(annotatorSuffix)) {
             return annotationFileName;
         } else {
-            return baseName + annotatorSuffix + ".xml";
+            return baseName + annotatorSuffix + extension;
         }
     }
 }
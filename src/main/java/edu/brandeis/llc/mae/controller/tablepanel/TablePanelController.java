@@ -390,6 +390,36 @@ public class TablePanelController extends MaeControllerI {
 
     }
 
+    /**
+     * Removes rows of a tag from the tables without touching the DB,
+     * for a tag that is already deleted or changed in the DB.
+     */
+    public void removeTagRows(Tag tag) {
+        JTable table = tableMap.get(tag.getTagTypeName());
+        if (table != null) {
+            TagTableModel tableModel = (TagTableModel) table.getModel();
+            int row = tableModel.searchForRowByTid(tag.getId());
+            if (row < tableModel.getRowCount()) {
+                tableModel.removeRow(row);
+            }
+        }
+        if (tag.getTagtype().isExtent() && !getMainController().isAdjudicating()) {
+            TagTableModel tableModel = (TagTableModel) tableMap.get(MaeStrings.ALL_TABLE_TAB_BACK_NAME).getModel();
+            int row = tableModel.searchForRowByTid(tag.getId());
+            if (row < tableModel.getRowCount()) {
+                tableModel.removeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Replaces rows of a tag with its current state in the DB.
+     */
+    public void refreshTagRows(Tag tag) throws MaeDBException, MaeControlException {
+        removeTagRows(tag);
+        insertTagIntoTable(tag, tag.getTagtype());
+    }
+
     private void removeTagFromAllTagsTable(String tid) {
         UneditableTableModel tableModel = (UneditableTableModel) tableMap.get(MaeStrings.ALL_TABLE_TAB_BACK_NAME).getModel();
         tableModel.removeRow(tableModel.searchForRowByTid(tid));
@@ -62,7 +62,7 @@ class TextPanelCaretListener implements CaretListener {
                     textPanelController.clearSelection(); // single click will clear out prev selection
                 }
                 if (acceptingSingleClick()) {
-                    textPanelController.addSelection(new int[]{e.getDot(), e.getDot() + 1});
+                    textPanelController.addSelection(textPanelController.snapToCharacters(e.getDot(), e.getDot()));
                 }
             }
         } catch (MaeDBException ex) {
@@ -79,6 +79,6 @@ class TextPanelCaretListener implements CaretListener {
             // in normal mode, clear selection before adding a new selection
             textPanelController.clearSelection();
         }
-        textPanelController.addSelection(new int[]{start, end});
+        textPanelController.addSelection(textPanelController.snapToCharacters(start, end));
     }
 }
@@ -34,6 +34,7 @@ import edu.brandeis.llc.mae.model.ExtentTag;
 import edu.brandeis.llc.mae.model.LinkTag;
 import edu.brandeis.llc.mae.model.Tag;
 import edu.brandeis.llc.mae.model.TagType;
+import edu.brandeis.llc.mae.util.CodePointIndex;
 import edu.brandeis.llc.mae.util.ColorHandler;
 import edu.brandeis.llc.mae.util.FontHandler;
 import edu.brandeis.llc.mae.util.MappedSet;
@@ -164,6 +165,16 @@ public class TextPanelController extends MaeControllerI {
         return false;
     }
 
+    /**
+     * Widens a selected span so that it never splits a surrogate pair.
+     */
+    int[] snapToCharacters(int start, int end) {
+        CodePointIndex offsets = getDriver().getCodePointIndex();
+        start = offsets.snapToCharStart(start);
+        end = start == end ? start + offsets.charCountAt(start) : offsets.snapToCharEnd(end);
+        return new int[]{start, end};
+    }
+
     void addSelection(int[] newSpanPair) throws MaeDBException {
         if (validateNewSpanPair(newSpanPair)) {
             selectionHistory.add(0, newSpanPair);
@@ -200,7 +211,7 @@ public class TextPanelController extends MaeControllerI {
         }
     }
 
-    public void addDocumentTab(String documentTitle, String documentText) throws MaeDBException {
+    public void addDocumentTab(String documentTitle, CharSequence documentText) throws MaeDBException {
         if (!getView().isAnyDocumentOpen()) {
             getView().initTabs();
         }
@@ -222,7 +233,7 @@ public class TextPanelController extends MaeControllerI {
 
     }
 
-    public void addAdjudicationTab(String goldTitle, String goldText) throws MaeDBException {
+    public void addAdjudicationTab(String goldTitle, CharSequence goldText) throws MaeDBException {
         JTabbedPane tabs = getView().getTabs();
         DocumentTabTitle title = new DocumentTabTitle(goldTitle, tabs);
         title.addCloseListener(new DocumentCloseListener(this.getMainController()));
@@ -444,18 +455,18 @@ public class TextPanelController extends MaeControllerI {
     }
 
     private int setFGColorAtLocation(Color color, int location, boolean fullOverlap, boolean partialOverlap) {
-        try {
-            DefaultStyledDocument styleDoc = getDocument();
-            SimpleAttributeSet attributeSet = new SimpleAttributeSet();
-            StyleConstants.setForeground(attributeSet, color);
-            StyleConstants.setUnderline(attributeSet, fullOverlap);
-            StyleConstants.setItalic(attributeSet, partialOverlap);
-            int length = Character.isHighSurrogate(styleDoc.getText(location, 1).charAt(0)) ? 2 : 1;
-            styleDoc.setCharacterAttributes(location, length, attributeSet, false);
-            return length;
-        } catch (BadLocationException ignored) {
+        DefaultStyledDocument styleDoc = getDocument();
+        if (location < 0 || location >= styleDoc.getLength()) {
+            // nothing to paint, but callers still need to move on
+            return 1;
         }
-        return 0;
+        SimpleAttributeSet attributeSet = new SimpleAttributeSet();
+        StyleConstants.setForeground(attributeSet, color);
+        StyleConstants.setUnderline(attributeSet, fullOverlap);
+        StyleConstants.setItalic(attributeSet, partialOverlap);
+        int length = getDriver().getCodePointIndex().charCountAt(location);
+        styleDoc.setCharacterAttributes(location, length, attributeSet, false);
+        return length;
     }
 
     void assignOverlappingColorOver(List<Integer> locations, Color srcColor, boolean fullOverlap) {
@@ -466,12 +477,8 @@ public class TextPanelController extends MaeControllerI {
     }
 
     public void assignOverlappingColorAt(Integer location, Color srcColor, boolean fullOverlap) {
-        DefaultStyledDocument styleDoc = getDocument();
-        try {
-            if (location == 0 || !Character.isHighSurrogate(styleDoc.getText(location - 1, 1).charAt(0))) {
-                setFGColorAtLocation(srcColor, location, fullOverlap, false);
-            }
-        } catch (BadLocationException ignored) {
+        if (!getDriver().getCodePointIndex().isPairEnd(location)) {
+            setFGColorAtLocation(srcColor, location, fullOverlap, false);
         }
     }
 
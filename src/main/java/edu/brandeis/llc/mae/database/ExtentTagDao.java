@@ -29,6 +29,7 @@ import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.DatabaseTableConfig;
+import com.j256.ormlite.table.ObjectFactory;
 import edu.brandeis.llc.mae.model.Attribute;
 import edu.brandeis.llc.mae.model.CharIndex;
 import edu.brandeis.llc.mae.model.ExtentTag;
@@ -46,6 +47,12 @@ public class ExtentTagDao extends BaseDaoImpl<ExtentTag, String> {
 
     Dao<Attribute, Integer> attDao;
     Dao<CharIndex, Integer> charIndexDao;
+    private CharSequence primaryText;
+    private final ObjectFactory<ExtentTag> tagFactory = (constructor, dataClass) -> {
+        ExtentTag tag = new ExtentTag();
+        tag.setPrimaryText(primaryText);
+        return tag;
+    };
 
     public ExtentTagDao(Class dataClass) throws SQLException {
         super(dataClass);
@@ -70,6 +77,33 @@ public class ExtentTagDao extends BaseDaoImpl<ExtentTag, String> {
 
     }
 
+    /**
+     * Every tag read from DB shares the primary text to derive its own text from spans.
+     */
+    @Override
+    public ObjectFactory<ExtentTag> getObjectFactory() {
+        return tagFactory;
+    }
+
+    public CharSequence getPrimaryText() {
+        return primaryText;
+    }
+
+    /**
+     * Sets the primary text that extent tags created by this DAO refer to.
+     */
+    public void setPrimaryText(CharSequence primaryText) {
+        this.primaryText = primaryText;
+    }
+
+    @Override
+    public int create(ExtentTag tag) throws SQLException {
+        if (tag.getPrimaryText() == null) {
+            tag.setPrimaryText(primaryText);
+        }
+        return super.create(tag);
+    }
+
     private void consumeForeignCollection(Collection<ModelI> collection,
                                           Consumer<ModelI> consumer) throws Exception {
         if (collection != null) {
@@ -29,15 +29,16 @@ import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
 import com.j256.ormlite.stmt.QueryBuilder;
-import com.j256.ormlite.stmt.UpdateBuilder;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 import edu.brandeis.llc.mae.MaeException;
 import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.io.AnnotationJournal;
 import edu.brandeis.llc.mae.io.AnnotationLoader;
 import edu.brandeis.llc.mae.io.DTDLoader;
 import edu.brandeis.llc.mae.io.MaeIODTDException;
 import edu.brandeis.llc.mae.model.*;
+import edu.brandeis.llc.mae.util.CodePointIndex;
 import edu.brandeis.llc.mae.util.FileHandler;
 import edu.brandeis.llc.mae.util.MappedSet;
 import edu.brandeis.llc.mae.util.SpanHandler;
@@ -65,11 +66,13 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
     // this should be distinguishable over diff tasks and diff versions
     private Task workingTask;
     private boolean workChanged;
+    private AnnotationJournal journal;
 
     private Dao<Task, Integer> taskDao;
     private Dao<CharIndex, Integer> charIndexDao;
     private Dao<TagType, Integer> tagTypeDao;
     private Dao<ExtentTag, String> eTagDao;
+    private CodePointIndex codePointIndex;
     private Dao<LinkTag, String> lTagDao;
     private Dao<AttributeType, Integer> attTypeDao;
     private Dao<Attribute, Integer> attDao;
@@ -114,6 +117,7 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
             charIndexDao = DaoManager.createDao(source, CharIndex.class);
             tagTypeDao = DaoManager.createDao(source, TagType.class);
             eTagDao = DaoManager.createDao(source, ExtentTag.class);
+            ((ExtentTagDao) eTagDao).setPrimaryText(workingTask == null ? null : workingTask.getPrimaryText());
             lTagDao = DaoManager.createDao(source, LinkTag.class);
             attTypeDao = DaoManager.createDao(source, AttributeType.class);
             attDao = DaoManager.createDao(source, Attribute.class);
@@ -182,6 +186,19 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
 
     }
 
+    @Override
+    public void setJournal(AnnotationJournal journal) {
+        if (this.journal != null && this.journal != journal) {
+            this.journal.close();
+        }
+        this.journal = journal;
+    }
+
+    @Override
+    public AnnotationJournal getJournal() {
+        return journal;
+    }
+
     private void resetQueryBuilders() {
         for (QueryBuilder qb : allQueryBuilders) {
             qb.reset();
@@ -214,20 +231,30 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
     }
 
     @Override
-    public String getPrimaryText() throws MaeDBException {
+    public CharSequence getPrimaryText() throws MaeDBException {
         return workingTask.getPrimaryText();
     }
 
     @Override
-    public void setPrimaryText(String text) throws MaeDBException {
+    public void setPrimaryText(CharSequence text) throws MaeDBException {
         try {
             this.workingTask.setPrimaryText(text);
             taskDao.update(workingTask);
+            ((ExtentTagDao) eTagDao).setPrimaryText(text);
+            codePointIndex = CodePointIndex.of(text);
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
     }
 
+    @Override
+    public CodePointIndex getCodePointIndex() {
+        if (codePointIndex == null) {
+            codePointIndex = CodePointIndex.of(workingTask.getPrimaryText());
+        }
+        return codePointIndex;
+    }
+
     @Override
     public String getTaskName() {
         return workingTask.getName();
@@ -474,6 +501,7 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
             }
             logger.debug("a tag is deleted: " + tag.getId());
             setAnnotationChanged(true);
+            if (journal != null) journal.tagDeleted(tag);
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
@@ -812,10 +840,9 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
     }
 
     @Override
-    public ExtentTag createExtentTag(String tid, TagType tagType, String text, int... spans) throws MaeDBException {
+    public ExtentTag createExtentTag(String tid, TagType tagType, int... spans) throws MaeDBException {
         try {
             ExtentTag tag = new ExtentTag(tid, tagType, getAnnotationFileName());
-            tag.setText(text);
 
             // store anchors
             Collection<CharIndex> anchors = tag.setSpans(spans);
@@ -837,6 +864,7 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
             }
             logger.debug("a new extent tag is created: " + tid);
             setAnnotationChanged(true);
+            if (journal != null) journal.extentTagCreated(tag);
             return tag;
         } catch (SQLException e) {
             throw catchSQLException(e);
@@ -860,9 +888,9 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
     }
 
     @Override
-    public ExtentTag createExtentTag(TagType tagType, String text, int...spans) throws MaeDBException {
+    public ExtentTag createExtentTag(TagType tagType, int...spans) throws MaeDBException {
         String tid = idHandler.getNextID(tagType);
-        return createExtentTag(tid, tagType, text, spans);
+        return createExtentTag(tid, tagType, spans);
     }
 
     public LinkTag createLinkTag(String tid, TagType tagType) throws MaeDBException {
@@ -876,6 +904,7 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
             }
             logger.debug("a new link tag is created: " + tid);
             setAnnotationChanged(true);
+            if (journal != null) journal.linkTagCreated(link);
             return link;
         } catch (SQLException e) {
             throw catchSQLException(e);
@@ -915,13 +944,15 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
                 attDao.delete(oldAtt);
                 setAnnotationChanged(true);
             }
+            Attribute att = null;
             if (attValue != null && attValue.length() > 0) {
-                return addAttribute(tag, attType, attValue);
+                att = insertAttribute(tag, attType, attValue);
             } else {
                 logger.debug("no new value is provided. leaving the attribute deleted");
                 setAnnotationChanged(true);
-                return null;
             }
+            if (journal != null) journal.attributeSet(tag, attType, attValue);
+            return att;
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
@@ -930,6 +961,12 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
 
     @Override
     public Attribute addAttribute(Tag tag, AttributeType attType, String attValue) throws MaeDBException {
+        Attribute att = insertAttribute(tag, attType, attValue);
+        if (journal != null) journal.attributeSet(tag, attType, attValue);
+        return att;
+    }
+
+    private Attribute insertAttribute(Tag tag, AttributeType attType, String attValue) throws MaeDBException {
         try {
             Attribute att = new Attribute(tag, attType, attValue);
             attDao.create(att);
@@ -1101,6 +1138,12 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
 
     @Override
     public Argument addArgument(LinkTag linker, ArgumentType argType, ExtentTag argument) throws MaeDBException {
+        Argument arg = insertArgument(linker, argType, argument);
+        if (journal != null) journal.argumentSet(linker, argType, argument);
+        return arg;
+    }
+
+    private Argument insertArgument(LinkTag linker, ArgumentType argType, ExtentTag argument) throws MaeDBException {
         try {
             logger.debug(String.format("adding an argument '%s: %s' to tag %s (%s)", argType.getName(), argument == null ? "null" : argument.getId(), linker.getId(), linker.getTagTypeName()));
             try {
@@ -1131,12 +1174,14 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
                     setAnnotationChanged(true);
                 }
                 resetQueryBuilders();
+                Argument arg = null;
                 if (argument != null) {
-                    return addArgument(linker, argType, argument);
+                    arg = insertArgument(linker, argType, argument);
                 } else {
                     logger.debug("no new argument is provided. leaving the argument deleted");
-                    return null;
                 }
+                if (journal != null) journal.argumentSet(linker, argType, argument);
+                return arg;
 
             } catch (SQLException e) {
                 throw catchSQLException(e);
@@ -1158,6 +1203,7 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
             if (eTagDao.update(tag) == 1) {
                 setAnnotationChanged(true);
                 resetQueryBuilders();
+                if (journal != null) journal.spansUpdated(tag, spans);
                 return true;
             }
         } catch (SQLException e) {
@@ -1167,33 +1213,15 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
 
     }
 
-    @Override
-    public boolean updateTagText(ExtentTag tag, String text) throws MaeDBException {
-        try {
-            UpdateBuilder<ExtentTag, String> updateBuilder = eTagDao.updateBuilder();
-            updateBuilder.where().eq(TAB_TAG_COL_TID, tag.getId());
-            updateBuilder.updateColumnValue(TAB_ETAG_COL_TEXT,  text);
-            if (updateBuilder.update() == 1) {
-                setAnnotationChanged(true);
-                eTagDao.refresh(tag);
-                return true;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
-
-    }
-
     @Override
     public void emptyAnnotations() throws MaeDBException {
         try {
-            for (ExtentTag tag : eTagDao.queryForAll()) {
-                eTagDao.delete(tag);
-            }
-            for (LinkTag tag : lTagDao.queryForAll()) {
-                lTagDao.delete(tag);
-            }
+            // whole tables at once, rather than cascading deletions tag by tag
+            argDao.deleteBuilder().delete();
+            attDao.deleteBuilder().delete();
+            charIndexDao.deleteBuilder().delete();
+            lTagDao.deleteBuilder().delete();
+            eTagDao.deleteBuilder().delete();
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
@@ -1206,6 +1234,10 @@ public class LocalSqliteDriverImpl implements MaeDriverI {
      */
     @Override
     public void destroy() throws MaeDBException {
+        if (journal != null) {
+            journal.discard();
+            journal = null;
+        }
         if (cs != null){
             dropAllTables(cs);
             try {
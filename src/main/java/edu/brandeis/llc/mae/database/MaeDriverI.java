@@ -26,8 +26,10 @@ package edu.brandeis.llc.mae.database;
 
 import com.j256.ormlite.support.ConnectionSource;
 import edu.brandeis.llc.mae.MaeException;
+import edu.brandeis.llc.mae.io.AnnotationJournal;
 import edu.brandeis.llc.mae.io.MaeIODTDException;
 import edu.brandeis.llc.mae.model.*;
+import edu.brandeis.llc.mae.util.CodePointIndex;
 import edu.brandeis.llc.mae.util.MappedSet;
 
 import java.io.File;
@@ -69,9 +71,18 @@ public interface MaeDriverI {
 
     void setAnnotationFileName(String fileName) throws MaeDBException;
 
-    String getPrimaryText() throws MaeDBException;
+    /**
+     * Returns the primary text without copying it, which matters for large
+     * documents whose text is not kept as a single string.
+     */
+    CharSequence getPrimaryText() throws MaeDBException;
 
-    void setPrimaryText(String text) throws MaeDBException;
+    void setPrimaryText(CharSequence text) throws MaeDBException;
+
+    /**
+     * Returns the offset index of surrogate pairs in the primary text, built when the text is set.
+     */
+    CodePointIndex getCodePointIndex();
 
     boolean isTaskLoaded();
 
@@ -83,6 +94,11 @@ public interface MaeDriverI {
 
     boolean isPrimaryTextLoaded();
 
+    // change journal for autosave, null when not journaling
+    void setJournal(AnnotationJournal journal);
+
+    AnnotationJournal getJournal();
+
     // character index (anchor)
     void batchCreateAnchors(Collection<CharIndex> anchors) throws MaeDBException;
 
@@ -123,18 +139,16 @@ public interface MaeDriverI {
     String getNextId(TagType type); // auto generation of proper ID of a given tag type
 
     // extent tags
-    ExtentTag createExtentTag(String tid, TagType tagType, String text, int[] spans) throws MaeDBException;
+    ExtentTag createExtentTag(String tid, TagType tagType, int[] spans) throws MaeDBException;
     // create one using existing tid (e.g. reading from annotation xml)
 
-    ExtentTag createExtentTag(TagType tagType, String text, int[] spans) throws MaeDBException;
+    ExtentTag createExtentTag(TagType tagType, int[] spans) throws MaeDBException;
     // create one with autogenerated tid (need auto generation inside driver impl)
 
     void batchCreateExtentTags(Collection<ExtentTag> tags) throws MaeDBException;
 
     boolean updateTagSpans(ExtentTag tag, int[] spans) throws MaeDBException;
 
-    boolean updateTagText(ExtentTag tag, String text) throws MaeDBException;
-
     List<ExtentTag> getTagsAt(int location) throws MaeDBException;
 
     List<ExtentTag> getTagsIn(int[] locations) throws MaeDBException;
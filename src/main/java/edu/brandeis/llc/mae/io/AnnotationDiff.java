@@ -0,0 +1,276 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Tag-level differences between annotations in a driver and annotations parsed
+ * from a file over the same primary text. Tags are matched by tid, then compared
+ * by tag type, spans, attributes and arguments, so that an externally modified
+ * file can be brought into the driver by applying only what has changed.
+ */
+public class AnnotationDiff {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationDiff.class.getName());
+
+    private final List<ParsedTag> inserted = new ArrayList<>();
+    private final List<ParsedTag> updated = new ArrayList<>();
+    private final List<Tag> deleted = new ArrayList<>();
+    private final Map<String, Map<String, String>> parsedAtts = new HashMap<>();
+    private final Map<String, Map<String, String>> parsedArgs = new HashMap<>();
+    private final Set<Integer> affectedLocations = new TreeSet<>();
+
+    private AnnotationDiff() {
+    }
+
+    /**
+     * Compares annotations in a driver with parsed ones. The parse must be of the same
+     * task and primary text as the driver; that is for the caller to check.
+     */
+    public static AnnotationDiff compute(MaeDriverI driver, Collection<ParsedTag> tags,
+                                         Collection<ParsedAtt> atts, Collection<ParsedArg> args) throws MaeDBException {
+        AnnotationDiff diff = new AnnotationDiff();
+        for (ParsedAtt att : atts) {
+            if (att.getAttValue() != null && att.getAttValue().length() > 0) {
+                diff.parsedAtts.computeIfAbsent(att.getTid(), k -> new HashMap<>())
+                        .put(att.getAttTypeName(), att.getAttValue());
+            }
+        }
+        for (ParsedArg arg : args) {
+            diff.parsedArgs.computeIfAbsent(arg.getTid(), k -> new HashMap<>())
+                    .put(arg.getArgTypeName(), arg.getArgTid());
+        }
+
+        Map<String, Tag> current = new HashMap<>();
+        for (ExtentTag tag : driver.getAllExtentTagsOfAllTypes(false)) {
+            current.put(tag.getTid(), tag);
+        }
+        for (LinkTag tag : driver.getAllLinkTagsOfAllTypes()) {
+            current.put(tag.getTid(), tag);
+        }
+
+        for (ParsedTag parsed : tags) {
+            Tag old = current.remove(parsed.getTid());
+            if (old == null) {
+                diff.inserted.add(parsed);
+                diff.addAffectedLocations(parsed.getSpans());
+            } else if (!old.getTagTypeName().equals(parsed.getTagTypeName())) {
+                // a tid taken over by another tag type, easier done as a deletion and an insertion
+                diff.deleted.add(old);
+                diff.addAffectedLocations(old);
+                diff.inserted.add(parsed);
+                diff.addAffectedLocations(parsed.getSpans());
+            } else if (diff.isChanged(old, parsed)) {
+                diff.updated.add(parsed);
+                diff.addAffectedLocations(old);
+                diff.addAffectedLocations(parsed.getSpans());
+            }
+        }
+        for (Tag gone : current.values()) {
+            diff.deleted.add(gone);
+            diff.addAffectedLocations(gone);
+        }
+        return diff;
+    }
+
+    private boolean isChanged(Tag old, ParsedTag parsed) {
+        if (!parsed.isLink() && !Arrays.equals(sorted(((ExtentTag) old).getSpansAsArray()), sorted(parsed.getSpans()))) {
+            return true;
+        }
+        Map<String, String> atts = parsedAtts.getOrDefault(parsed.getTid(), Collections.<String, String>emptyMap());
+        Map<String, String> oldAtts = old.getAttributesWithNamesWithoutChecking();
+        oldAtts.values().removeIf(value -> value == null || value.length() == 0);
+        if (!oldAtts.equals(atts)) {
+            return true;
+        }
+        if (old instanceof LinkTag) {
+            Map<String, String> args = parsedArgs.getOrDefault(parsed.getTid(), Collections.<String, String>emptyMap());
+            return !((LinkTag) old).getArgumentTidsWithNames().equals(args);
+        }
+        return false;
+    }
+
+    private static int[] sorted(int[] spans) {
+        int[] copy = spans == null ? new int[0] : spans.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private void addAffectedLocations(int[] spans) {
+        if (spans != null) {
+            for (int location : spans) {
+                affectedLocations.add(location);
+            }
+        }
+    }
+
+    private void addAffectedLocations(Tag tag) {
+        if (tag instanceof ExtentTag) {
+            affectedLocations.addAll(((ExtentTag) tag).getSpansAsList());
+        } else {
+            for (ExtentTag argument : ((LinkTag) tag).getArgumentTags()) {
+                affectedLocations.addAll(argument.getSpansAsList());
+            }
+        }
+    }
+
+    /**
+     * Applies the differences to the driver: deletions first, then extent tags,
+     * then link tags, so that arguments always point to tags already in place.
+     */
+    public void apply(MaeDriverI driver) throws MaeDBException {
+        long start = System.currentTimeMillis();
+        for (Tag tag : deleted) {
+            if (tag instanceof LinkTag) {
+                driver.deleteTag(tag);
+            }
+        }
+        Set<String> deletedTids = new HashSet<>();
+        for (Tag tag : deleted) {
+            deletedTids.add(tag.getTid());
+        }
+        for (Tag tag : deleted) {
+            if (tag instanceof ExtentTag) {
+                detachFromLinks(driver, (ExtentTag) tag, deletedTids);
+                driver.deleteTag(tag);
+            }
+        }
+        List<ParsedTag> links = new ArrayList<>();
+        for (ParsedTag parsed : inserted) {
+            if (parsed.isLink()) {
+                links.add(parsed);
+            } else {
+                ExtentTag tag = driver.createExtentTag(parsed.getTid(),
+                        driver.getTagTypeByName(parsed.getTagTypeName()), parsed.getSpans());
+                applyAttributes(driver, tag);
+            }
+        }
+        for (ParsedTag parsed : updated) {
+            if (parsed.isLink()) {
+                links.add(parsed);
+            } else {
+                ExtentTag tag = (ExtentTag) driver.getTagByTid(parsed.getTid());
+                if (!Arrays.equals(sorted(tag.getSpansAsArray()), sorted(parsed.getSpans()))) {
+                    driver.updateTagSpans(tag, parsed.getSpans());
+                }
+                applyAttributes(driver, tag);
+            }
+        }
+        for (ParsedTag parsed : links) {
+            Tag found = driver.getTagByTid(parsed.getTid());
+            LinkTag tag = found == null ?
+                    driver.createLinkTag(parsed.getTid(), driver.getTagTypeByName(parsed.getTagTypeName())) : (LinkTag) found;
+            applyArguments(driver, tag);
+            applyAttributes(driver, tag);
+        }
+        logger.info(String.format("applied %d insertions, %d updates and %d deletions in %d ms",
+                inserted.size(), updated.size(), deleted.size(), System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Unsets arguments pointing to an extent tag to be deleted, on links that are kept;
+     * new arguments of those links are set after extent tags are in place.
+     */
+    private static void detachFromLinks(MaeDriverI driver, ExtentTag extent, Set<String> deletedTids)
+            throws MaeDBException {
+        for (LinkTag link : driver.getLinksHasArgumentTag(extent)) {
+            if (link.getTid() == null || deletedTids.contains(link.getTid())) {
+                continue;
+            }
+            for (Argument argument : new ArrayList<>(link.getArguments())) {
+                if (argument.getArgument() != null && extent.getTid().equals(argument.getArgumentId())) {
+                    driver.UpdateArgument(link, argument.getArgumentType(), null);
+                }
+            }
+        }
+    }
+
+    private void applyAttributes(MaeDriverI driver, Tag tag) throws MaeDBException {
+        Map<String, String> atts = parsedAtts.getOrDefault(tag.getTid(), Collections.<String, String>emptyMap());
+        Map<String, String> oldAtts = tag.getAttributesWithNamesWithoutChecking();
+        for (AttributeType attType : driver.getAttributeTypesOfTagType(tag.getTagtype())) {
+            String value = atts.get(attType.getName());
+            String oldValue = oldAtts.get(attType.getName());
+            if (oldValue != null && oldValue.length() == 0) {
+                oldValue = null;
+            }
+            if (!Objects.equals(value, oldValue)) {
+                driver.updateAttribute(tag, attType, value);
+            }
+        }
+    }
+
+    private void applyArguments(MaeDriverI driver, LinkTag tag) throws MaeDBException {
+        Map<String, String> args = parsedArgs.getOrDefault(tag.getTid(), Collections.<String, String>emptyMap());
+        Map<String, String> oldArgs = tag.getArgumentTidsWithNames();
+        for (ArgumentType argType : driver.getArgumentTypesOfLinkTagType(tag.getTagtype())) {
+            String argTid = args.get(argType.getName());
+            if (!Objects.equals(argTid, oldArgs.get(argType.getName()))) {
+                Tag argument = argTid == null ? null : driver.getTagByTid(argTid);
+                driver.UpdateArgument(tag, argType, argument instanceof ExtentTag ? (ExtentTag) argument : null);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+
+    public List<ParsedTag> getInserted() {
+        return inserted;
+    }
+
+    public List<ParsedTag> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Returns tags to be deleted, as they were in the driver when the diff was computed.
+     */
+    public List<Tag> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Returns character offsets anchoring any tag inserted, updated or deleted,
+     * both before and after the change; these are the only ones to repaint.
+     */
+    public List<Integer> getAffectedLocations() {
+        return new ArrayList<>(affectedLocations);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d insertions, %d updates, %d deletions", inserted.size(), updated.size(), deleted.size());
+    }
+}
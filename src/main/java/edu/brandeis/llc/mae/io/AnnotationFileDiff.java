@@ -0,0 +1,356 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import edu.brandeis.llc.mae.util.SpanHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Differences between annotations of two files of the same primary text, such as
+ * two annotators' files or a file before and after adjudication. Tags are matched
+ * by what they annotate, not by their IDs: an extent tag by its type and spans,
+ * a link tag by its type and the types and spans of its arguments. Tags of both
+ * files are sorted by these keys and merge-joined in one pass; a matched pair
+ * with different attribute values is reported as changed.
+ */
+public class AnnotationFileDiff {
+
+    public enum Kind {
+        /** only in the right (new) file */
+        ADDED,
+        /** only in the left (old) file */
+        REMOVED,
+        /** in both, with different attribute values */
+        CHANGED
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int matched = 0;
+
+    private AnnotationFileDiff() {
+    }
+
+    public static AnnotationFileDiff compare(MaeXMLParser left, MaeXMLParser right) {
+        return compare(left.getParsedTags(), left.getParsedAtts(), left.getParsedArgs(),
+                right.getParsedTags(), right.getParsedAtts(), right.getParsedArgs());
+    }
+
+    public static AnnotationFileDiff compare(Collection<ParsedTag> leftTags, Collection<ParsedAtt> leftAtts,
+                                             Collection<ParsedArg> leftArgs, Collection<ParsedTag> rightTags,
+                                             Collection<ParsedAtt> rightAtts, Collection<ParsedArg> rightArgs) {
+        List<Keyed> left = keyTags(leftTags, leftAtts, leftArgs);
+        List<Keyed> right = keyTags(rightTags, rightAtts, rightArgs);
+        left.sort(Keyed.ORDER);
+        right.sort(Keyed.ORDER);
+
+        AnnotationFileDiff diff = new AnnotationFileDiff();
+        int i = 0;
+        int j = 0;
+        while (i < left.size() || j < right.size()) {
+            int c = i == left.size() ? 1 : j == right.size() ? -1 : Keyed.ORDER.compare(left.get(i), right.get(j));
+            if (c < 0) {
+                diff.entries.add(new Entry(Kind.REMOVED, left.get(i++), null));
+            } else if (c > 0) {
+                diff.entries.add(new Entry(Kind.ADDED, null, right.get(j++)));
+            } else {
+                Keyed l = left.get(i++);
+                Keyed r = right.get(j++);
+                if (l.atts.equals(r.atts)) {
+                    diff.matched++;
+                } else {
+                    diff.entries.add(new Entry(Kind.CHANGED, l, r));
+                }
+            }
+        }
+        return diff;
+    }
+
+    private static List<Keyed> keyTags(Collection<ParsedTag> tags, Collection<ParsedAtt> atts,
+                                       Collection<ParsedArg> args) {
+        Map<String, Map<String, String>> attsByTid = new HashMap<>();
+        for (ParsedAtt att : atts) {
+            if (att.getAttValue() != null && att.getAttValue().length() > 0) {
+                attsByTid.computeIfAbsent(att.getTid(), k -> new TreeMap<>()).put(att.getAttTypeName(), att.getAttValue());
+            }
+        }
+        Map<String, SortedMap<String, String>> argsByTid = new HashMap<>();
+        for (ParsedArg arg : args) {
+            if (arg.getArgTid() != null && arg.getArgTid().length() > 0) {
+                argsByTid.computeIfAbsent(arg.getTid(), k -> new TreeMap<>()).put(arg.getArgTypeName(), arg.getArgTid());
+            }
+        }
+
+        List<Keyed> keyed = new ArrayList<>(tags.size());
+        Map<String, Keyed> extentsByTid = new HashMap<>();
+        List<ParsedTag> links = new ArrayList<>();
+        for (ParsedTag tag : tags) {
+            if (tag.isLink()) {
+                links.add(tag);
+                continue;
+            }
+            int[] spans = tag.getSpans() == null ? new int[0] : tag.getSpans().clone();
+            Arrays.sort(spans);
+            Keyed k = new Keyed(tag, spans, null, attsByTid.getOrDefault(tag.getTid(), Collections.emptyMap()));
+            keyed.add(k);
+            extentsByTid.put(tag.getTid(), k);
+        }
+        for (ParsedTag tag : links) {
+            StringBuilder argKey = new StringBuilder();
+            for (Map.Entry<String, String> arg : argsByTid.getOrDefault(tag.getTid(),
+                    Collections.<String, String>emptySortedMap()).entrySet()) {
+                Keyed argument = extentsByTid.get(arg.getValue());
+                argKey.append(arg.getKey()).append('=');
+                if (argument == null) {
+                    // dangling, keep the tid to tell it from other dangling arguments
+                    argKey.append('#').append(arg.getValue());
+                } else {
+                    argKey.append(argument.tag.getTagTypeName()).append(':')
+                            .append(SpanHandler.convertArrayToString(argument.spans));
+                }
+                argKey.append(' ');
+            }
+            keyed.add(new Keyed(tag, null, argKey.toString().trim(),
+                    attsByTid.getOrDefault(tag.getTid(), Collections.emptyMap())));
+        }
+        return keyed;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int count(Kind kind) {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.kind == kind) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of tags found in both files with the same attributes.
+     */
+    public int getMatchedCount() {
+        return matched;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d matched, %d added, %d removed, %d changed",
+                matched, count(Kind.ADDED), count(Kind.REMOVED), count(Kind.CHANGED));
+    }
+
+    /**
+     * Writes differences one per line, prefixed with +, - or ~ for added, removed
+     * and changed tags, as in a unified diff.
+     */
+    public void writeText(Writer writer) throws IOException {
+        for (Entry entry : entries) {
+            writer.write(entry.toString());
+            writer.write('\n');
+        }
+    }
+
+    public void writeJson(String leftName, String rightName, Writer writer) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+        generator.writeStringField("left", leftName);
+        generator.writeStringField("right", rightName);
+        generator.writeNumberField("matched", matched);
+        for (Kind kind : Kind.values()) {
+            generator.writeNumberField(kind.name().toLowerCase(), count(kind));
+        }
+        generator.writeArrayFieldStart("differences");
+        for (Entry entry : entries) {
+            generator.writeStartObject();
+            generator.writeStringField("kind", entry.kind.name().toLowerCase());
+            generator.writeStringField("type", entry.getTagTypeName());
+            if (entry.getLeftTid() != null) {
+                generator.writeStringField("leftId", entry.getLeftTid());
+            }
+            if (entry.getRightTid() != null) {
+                generator.writeStringField("rightId", entry.getRightTid());
+            }
+            if (entry.getSpans() != null) {
+                generator.writeStringField("spans", entry.getSpans());
+                generator.writeStringField("text", entry.getText());
+            } else {
+                generator.writeStringField("arguments", entry.getArguments());
+            }
+            generator.writeObjectFieldStart("attributes");
+            for (Map.Entry<String, String[]> change : entry.getAttributeChanges().entrySet()) {
+                generator.writeObjectFieldStart(change.getKey());
+                if (change.getValue()[0] != null) {
+                    generator.writeStringField("left", change.getValue()[0]);
+                }
+                if (change.getValue()[1] != null) {
+                    generator.writeStringField("right", change.getValue()[1]);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * A tag with its match key and (non-empty) attribute values.
+     */
+    private static class Keyed {
+        // extent tags first, then by type, then by spans or arguments
+        static final Comparator<Keyed> ORDER = (a, b) -> {
+            if (a.spans == null ^ b.spans == null) {
+                return a.spans == null ? 1 : -1;
+            }
+            int c = a.tag.getTagTypeName().compareTo(b.tag.getTagTypeName());
+            if (c != 0) {
+                return c;
+            }
+            if (a.spans == null) {
+                return a.argKey.compareTo(b.argKey);
+            }
+            int length = Math.min(a.spans.length, b.spans.length);
+            for (int i = 0; i < length; i++) {
+                if (a.spans[i] != b.spans[i]) {
+                    return Integer.compare(a.spans[i], b.spans[i]);
+                }
+            }
+            return Integer.compare(a.spans.length, b.spans.length);
+        };
+
+        final ParsedTag tag;
+        final int[] spans;
+        final String argKey;
+        final Map<String, String> atts;
+
+        Keyed(ParsedTag tag, int[] spans, String argKey, Map<String, String> atts) {
+            this.tag = tag;
+            this.spans = spans;
+            this.argKey = argKey;
+            this.atts = atts;
+        }
+    }
+
+    public static class Entry {
+        private final Kind kind;
+        private final Keyed left;
+        private final Keyed right;
+
+        private Entry(Kind kind, Keyed left, Keyed right) {
+            this.kind = kind;
+            this.left = left;
+            this.right = right;
+        }
+
+        private Keyed either() {
+            return left == null ? right : left;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getTagTypeName() {
+            return either().tag.getTagTypeName();
+        }
+
+        public String getLeftTid() {
+            return left == null ? null : left.tag.getTid();
+        }
+
+        public String getRightTid() {
+            return right == null ? null : right.tag.getTid();
+        }
+
+        /**
+         * Returns spans of an extent tag, or null for a link tag.
+         */
+        public String getSpans() {
+            return either().spans == null ? null : SpanHandler.convertArrayToString(either().spans);
+        }
+
+        public String getText() {
+            return either().tag.getText();
+        }
+
+        /**
+         * Returns arguments of a link tag, as argument names with types and spans
+         * of argument tags, or null for an extent tag.
+         */
+        public String getArguments() {
+            return either().argKey;
+        }
+
+        /**
+         * Returns attributes that differ, mapped to their left and right values;
+         * a missing value is null.
+         */
+        public SortedMap<String, String[]> getAttributeChanges() {
+            SortedMap<String, String[]> changes = new TreeMap<>();
+            Map<String, String> leftAtts = left == null ? Collections.<String, String>emptyMap() : left.atts;
+            Map<String, String> rightAtts = right == null ? Collections.<String, String>emptyMap() : right.atts;
+            Set<String> names = new TreeSet<>(leftAtts.keySet());
+            names.addAll(rightAtts.keySet());
+            for (String name : names) {
+                String l = leftAtts.get(name);
+                String r = rightAtts.get(name);
+                if (!Objects.equals(l, r)) {
+                    changes.put(name, new String[]{l, r});
+                }
+            }
+            return changes;
+        }
+
+        @Override
+        public String toString() {
+            String prefix = kind == Kind.ADDED ? "+" : kind == Kind.REMOVED ? "-" : "~";
+            String tids = kind == Kind.CHANGED ? getLeftTid() + "/" + getRightTid() :
+                    getLeftTid() == null ? getRightTid() : getLeftTid();
+            String what = getSpans() == null ? "(" + getArguments() + ")" :
+                    String.format("%s \"%s\"", getSpans(), getText());
+            StringBuilder line = new StringBuilder(String.format("%s %s %s %s", prefix, getTagTypeName(), tids, what));
+            for (Map.Entry<String, String[]> change : getAttributeChanges().entrySet()) {
+                line.append(String.format(" %s: %s -> %s", change.getKey(), change.getValue()[0], change.getValue()[1]));
+            }
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Watches open annotation files for modifications made outside MAE, e.g. by a
+ * pre-annotation script. Directories of watched files are registered to a
+ * {@link WatchService}; a background thread waits for events, lets a burst of
+ * them settle, and reports each file whose size or modification time changed
+ * since it was last seen by MAE.
+ */
+public class AnnotationFileWatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationFileWatcher.class.getName());
+
+    /**
+     * Milliseconds to wait after an event for more events, as a file is often
+     * written in several steps.
+     */
+    public static final int SETTLE_MILLIS = 200;
+
+    /**
+     * Receives modified files, on the watcher thread.
+     */
+    public interface Listener {
+        void annotationFileModified(File file);
+    }
+
+    private final WatchService watchService;
+    private final Listener listener;
+    private final Map<Path, WatchKey> dirKeys = new HashMap<>();
+    // last seen size and modification time of each watched file
+    private final Map<Path, FileStamp> stamps = new HashMap<>();
+    private final Thread watcherThread;
+    private int settleMillis = SETTLE_MILLIS;
+
+    public AnnotationFileWatcher(Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        this.watcherThread = new Thread(this::watchLoop, "mae-file-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    public void setSettleMillis(int settleMillis) {
+        this.settleMillis = settleMillis;
+    }
+
+    public synchronized void watch(File file) throws IOException {
+        Path path = toPath(file);
+        Path dir = path.getParent();
+        if (!dirKeys.containsKey(dir)) {
+            dirKeys.put(dir, dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        }
+        stamps.put(path, FileStamp.of(path));
+        logger.debug("watching " + path);
+    }
+
+    public synchronized void unwatch(File file) {
+        Path path = toPath(file);
+        if (stamps.remove(path) == null) {
+            return;
+        }
+        Path dir = path.getParent();
+        for (Path watched : stamps.keySet()) {
+            if (watched.getParent().equals(dir)) {
+                return;
+            }
+        }
+        WatchKey key = dirKeys.remove(dir);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    public synchronized void unwatchAll() {
+        for (WatchKey key : dirKeys.values()) {
+            key.cancel();
+        }
+        dirKeys.clear();
+        stamps.clear();
+    }
+
+    public synchronized boolean isWatching(File file) {
+        return stamps.containsKey(toPath(file));
+    }
+
+    /**
+     * Takes the current state of a file as already seen, so that writing a file
+     * from MAE itself is not reported as a modification.
+     */
+    public synchronized void acknowledge(File file) {
+        Path path = toPath(file);
+        if (stamps.containsKey(path)) {
+            stamps.put(path, FileStamp.of(path));
+        }
+    }
+
+    private static Path toPath(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+                Thread.sleep(settleMillis);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Set<Path> touched = new LinkedHashSet<>();
+            do {
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                        touched.add(dir.resolve((Path) event.context()).toAbsolutePath().normalize());
+                    }
+                }
+                key.reset();
+            } while ((key = watchService.poll()) != null);
+            for (Path path : touched) {
+                if (isModified(path)) {
+                    logger.info("annotation file modified outside MAE: " + path);
+                    try {
+                        listener.annotationFileModified(path.toFile());
+                    } catch (RuntimeException e) {
+                        logger.error("failed to handle a modified file: " + path, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized boolean isModified(Path path) {
+        FileStamp last = stamps.get(path);
+        if (last == null) {
+            return false;
+        }
+        FileStamp current = FileStamp.of(path);
+        if (current.equals(last) || !Files.exists(path)) {
+            return false;
+        }
+        stamps.put(path, current);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcherThread.interrupt();
+        watchService.close();
+    }
+
+    private static class FileStamp {
+        private final long size;
+        private final long lastModified;
+
+        private FileStamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static FileStamp of(Path path) {
+            File file = path.toFile();
+            return new FileStamp(file.length(), file.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) o;
+            return size == other.size && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified);
+        }
+    }
+}
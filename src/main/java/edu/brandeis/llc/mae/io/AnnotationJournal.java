@@ -0,0 +1,428 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeException;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.*;
+import edu.brandeis.llc.mae.util.SpanHandler;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of annotation changes made on a driver, used for crash-safe
+ * autosave. Every mutation is written as a single tab-separated line and flushed
+ * immediately, so a crash loses at most the change being made at that moment.
+ * Periodically, the journal is compacted into a checkpoint file (a full annotation
+ * XML next to the original file) and truncated.
+ * <p>
+ * The first line of a journal records the CRC32 of the checkpoint it is based on
+ * ("-" for the original annotation file). When a journal is recovered, records are
+ * replayed on top of that base. If the checkpoint on disk does not match the base
+ * (MAE died after writing a new checkpoint but before resetting the journal), the
+ * checkpoint already contains every record and is loaded as is.
+ */
+public class AnnotationJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationJournal.class.getName());
+
+    public static final String JOURNAL_EXT = ".journal";
+    public static final String CHECKPOINT_EXT = ".autosave";
+    public static final int COMPACTION_THRESHOLD = 500;
+
+    static final String HEADER = "#MAEJOURNAL";
+    static final String VERSION = "1";
+    static final String NO_BASE = "-";
+
+    static final String EXTENT_CREATED = "E";
+    static final String LINK_CREATED = "L";
+    static final String TAG_DELETED = "D";
+    static final String SPANS_UPDATED = "S";
+    static final String TEXT_UPDATED = "T"; // no longer written
+    static final String ATT_SET = "A";
+    static final String ARG_SET = "R";
+
+    private final File journalFile;
+    private final File checkpointFile;
+    private Writer writer;
+    private int recordCount;
+
+    private AnnotationJournal(String annotationFileName) {
+        this.journalFile = getJournalFile(annotationFileName);
+        this.checkpointFile = getCheckpointFile(annotationFileName);
+        this.recordCount = 0;
+    }
+
+    public static File getJournalFile(String annotationFileName) {
+        return new File(annotationFileName + JOURNAL_EXT);
+    }
+
+    public static File getCheckpointFile(String annotationFileName) {
+        return new File(annotationFileName + CHECKPOINT_EXT);
+    }
+
+    public static boolean hasLeftover(String annotationFileName) {
+        return getJournalFile(annotationFileName).exists();
+    }
+
+    /**
+     * Starts a fresh journal for an annotation file. Any journal or checkpoint
+     * left from an earlier session is overwritten, so call {@link #recover} first
+     * if those need to be restored.
+     */
+    public static AnnotationJournal start(String annotationFileName) throws MaeIOException {
+        AnnotationJournal journal = new AnnotationJournal(annotationFileName);
+        if (journal.checkpointFile.exists() && !journal.checkpointFile.delete()) {
+            logger.warn("cannot delete an old checkpoint: " + journal.checkpointFile.getAbsolutePath());
+        }
+        journal.reset(NO_BASE);
+        logger.info("journaling changes into: " + journal.journalFile.getAbsolutePath());
+        return journal;
+    }
+
+    private void reset(String base) throws MaeIOException {
+        closeWriter();
+        File temp = new File(journalFile.getAbsolutePath() + ".tmp");
+        try (Writer headerWriter = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            headerWriter.write(String.join("\t", HEADER, VERSION, base) + "\n");
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot write a journal file: " + temp.getAbsolutePath(), e);
+        }
+        moveReplacing(temp, journalFile);
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+        } catch (FileNotFoundException e) {
+            throw new MaeIOException("Cannot open a journal file: " + journalFile.getAbsolutePath(), e);
+        }
+        recordCount = 0;
+    }
+
+    private static void moveReplacing(File from, File to) throws MaeIOException {
+        try {
+            try {
+                Files.move(from.toPath(), to.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot replace a file: " + to.getAbsolutePath(), e);
+        }
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Number of records appended since the last checkpoint.
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    public boolean needsCompaction() {
+        return recordCount >= COMPACTION_THRESHOLD;
+    }
+
+    public void extentTagCreated(ExtentTag tag) {
+        append(EXTENT_CREATED, tag.getId(), tag.getTagTypeName(), tag.getSpansAsString());
+    }
+
+    public void linkTagCreated(LinkTag tag) {
+        append(LINK_CREATED, tag.getId(), tag.getTagTypeName());
+    }
+
+    public void tagDeleted(Tag tag) {
+        append(TAG_DELETED, tag.getId());
+    }
+
+    public void spansUpdated(ExtentTag tag, int[] spans) {
+        append(SPANS_UPDATED, tag.getId(), SpanHandler.convertArrayToString(spans));
+    }
+
+    /**
+     * Records a new value of an attribute. An empty or null value means the
+     * attribute is removed.
+     */
+    public void attributeSet(Tag tag, AttributeType attType, String value) {
+        append(ATT_SET, tag.getId(), attType.getName(), value);
+    }
+
+    /**
+     * Records a new argument of a link. A null argument means the argument is removed.
+     */
+    public void argumentSet(LinkTag linker, ArgumentType argType, ExtentTag argument) {
+        append(ARG_SET, linker.getId(), argType.getName(), argument == null ? null : argument.getId());
+    }
+
+    private synchronized void append(String... fields) {
+        if (writer == null) {
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            escape(fields[i], line);
+        }
+        line.append('\n');
+        try {
+            writer.write(line.toString());
+            writer.flush();
+            recordCount++;
+        } catch (IOException e) {
+            // journal is a safety net; a failure here should not break annotating
+            logger.error("failed to write a journal record: " + journalFile.getAbsolutePath(), e);
+        }
+    }
+
+    static void escape(String field, StringBuilder out) {
+        if (field == null) {
+            return;
+        }
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    static String[] splitRecord(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 't': field.append('\t'); break;
+                    case 'n': field.append('\n'); break;
+                    case 'r': field.append('\r'); break;
+                    default: field.append(next);
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Writes the current state of the driver into the checkpoint file and truncates
+     * the journal. The checkpoint is written into a temporary file first and then
+     * moved over the old one, so a crash in the middle leaves the previous checkpoint intact.
+     */
+    public synchronized void compact(MaeDriverI driver) throws MaeDBException, MaeIOException {
+        long start = System.currentTimeMillis();
+        File temp = new File(checkpointFile.getAbsolutePath() + ".tmp");
+        MaeFileWriter.writeAnnotationToXML(driver, temp);
+        moveReplacing(temp, checkpointFile);
+        reset(checksumOf(checkpointFile));
+        logger.info(String.format("journal is compacted into \"%s\" in %d ms",
+                checkpointFile.getName(), System.currentTimeMillis() - start));
+    }
+
+    private static String checksumOf(File file) throws MaeIOException {
+        try {
+            return Long.toHexString(FileUtils.checksumCRC32(file));
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot read a checkpoint file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Restores unsaved changes of an annotation file from its leftover journal (and
+     * checkpoint) into an empty driver. The driver will keep the original file name
+     * and be marked as changed.
+     *
+     * @return parse warnings from loading the base document
+     */
+    public static String recover(MaeDriverI driver, File annotationFile) throws MaeException {
+        String annotationFileName = annotationFile.getAbsolutePath();
+        File journalFile = getJournalFile(annotationFileName);
+        File checkpointFile = getCheckpointFile(annotationFileName);
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot read a journal file: " + journalFile.getAbsolutePath(), e);
+        }
+        String[] header = lines.size() > 0 ? splitRecord(lines.get(0)) : new String[0];
+        boolean validHeader = header.length == 3 && header[0].equals(HEADER) && header[1].equals(VERSION);
+        String base = validHeader ? header[2] : null;
+
+        File baseFile;
+        boolean replay;
+        if (checkpointFile.exists()) {
+            baseFile = checkpointFile;
+            replay = checksumOf(checkpointFile).equals(base);
+        } else if (NO_BASE.equals(base)) {
+            baseFile = annotationFile;
+            replay = true;
+        } else if (validHeader) {
+            throw new MaeIOException("Checkpoint for a journal is missing: " + checkpointFile.getAbsolutePath());
+        } else {
+            // journal got corrupted before any checkpoint: nothing to recover
+            baseFile = annotationFile;
+            replay = false;
+        }
+
+        logger.info(String.format("recovering \"%s\" from %s", annotationFile.getName(), baseFile.getName()));
+        AnnotationLoader loader = new AnnotationLoader(driver, annotationFileName);
+        // checkpoints are rewritten all the time, not worth caching
+        loader.setSnapshotCaching(false);
+        String warnings = loader.loadFile(baseFile);
+        int replayed = 0;
+        if (replay) {
+            for (int i = 1; i < lines.size(); i++) {
+                if (lines.get(i).length() == 0) {
+                    continue;
+                }
+                try {
+                    applyRecord(driver, splitRecord(lines.get(i)));
+                    replayed++;
+                } catch (MaeException | RuntimeException e) {
+                    // most likely the last record, half-written at a crash
+                    logger.warn(String.format("skipping a broken journal record at line %d: %s", i + 1, e.getMessage()));
+                }
+            }
+        }
+        driver.setAnnotationChanged(true);
+        logger.info(String.format("%d journal records are replayed", replayed));
+        return warnings;
+    }
+
+    static void applyRecord(MaeDriverI driver, String[] record) throws MaeException {
+        String op = record[0];
+        Tag tag = driver.getTagByTid(record[1]);
+        switch (op) {
+            case EXTENT_CREATED:
+                TagType eType = getTagType(driver, record[2]);
+                driver.createExtentTag(record[1], eType, SpanHandler.convertStringToArray(record[3]));
+                break;
+            case LINK_CREATED:
+                driver.createLinkTag(record[1], getTagType(driver, record[2]));
+                break;
+            case TAG_DELETED:
+                driver.deleteTag(requireTag(tag, record[1]));
+                break;
+            case SPANS_UPDATED:
+                driver.updateTagSpans((ExtentTag) requireTag(tag, record[1]),
+                        SpanHandler.convertStringToArray(record[2]));
+                break;
+            case TEXT_UPDATED:
+                // tag text is derived from spans, nothing to replay for records from older journals
+                break;
+            case ATT_SET:
+                tag = requireTag(tag, record[1]);
+                AttributeType attType = driver.getAttributeTypeOfTagTypeByName(tag.getTagtype(), record[2]);
+                String value = record.length > 3 ? record[3] : "";
+                driver.updateAttribute(tag, attType, value.length() > 0 ? value : null);
+                break;
+            case ARG_SET:
+                LinkTag linker = (LinkTag) requireTag(tag, record[1]);
+                ArgumentType argType = driver.getArgumentTypeOfTagTypeByName(linker.getTagtype(), record[2]);
+                String argTid = record.length > 3 ? record[3] : "";
+                ExtentTag argument = argTid.length() > 0 ? (ExtentTag) requireTag(driver.getTagByTid(argTid), argTid) : null;
+                driver.UpdateArgument(linker, argType, argument);
+                break;
+            default:
+                throw new MaeIOException("Unknown journal record: " + op);
+        }
+    }
+
+    private static TagType getTagType(MaeDriverI driver, String name) throws MaeException {
+        TagType type = driver.getTagTypeByName(name);
+        if (type == null) {
+            throw new MaeIOException("Unknown tag type in journal: " + name);
+        }
+        return type;
+    }
+
+    private static Tag requireTag(Tag tag, String tid) throws MaeIOException {
+        if (tag == null) {
+            throw new MaeIOException("Unknown tag in journal: " + tid);
+        }
+        return tag;
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.error("failed to close a journal file: " + journalFile.getAbsolutePath(), e);
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    /**
+     * Closes the journal and deletes it along with its checkpoint. Used when all
+     * changes are safely saved or intentionally thrown away.
+     */
+    public synchronized void discard() {
+        closeWriter();
+        for (File file : new File[]{journalFile, checkpointFile}) {
+            if (file.exists() && !file.delete()) {
+                logger.warn("cannot delete: " + file.getAbsolutePath());
+            }
+        }
+        recordCount = 0;
+    }
+}
@@ -29,6 +29,9 @@ import edu.brandeis.llc.mae.MaeStrings;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
 import edu.brandeis.llc.mae.model.*;
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.MappedText;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -49,53 +52,43 @@ public class AnnotationLoader {
     private MaeDriverI driver;
     private String taskName;
     private String fileName;
-    private Map<String, TagType> tagTypeMap = new HashMap<>();
-    private Map<String, AttributeType> attTypeMap = new HashMap<>();
-    private Map<String, ArgumentType> argTypeMap = new HashMap<>();
+    private TaskSchema schema;
     private Map<String, ExtentTag> extTagMap = new HashMap<>();
     private Map<String, LinkTag> linkTagMap = new HashMap<>();
+    private boolean snapshotCaching = true;
+    private int largeDocumentThreshold = MaeXMLParser.LARGE_DOCUMENT_THRESHOLD;
 
     public AnnotationLoader(MaeDriverI driver) throws MaeDBException {
         this.driver = driver;
         this.taskName = driver.getTaskName();
-
-        cacheTagTypeMap();
-        cacheAttTypeMap();
-        cacheArgTypeMap();
+        this.schema = TaskSchema.compile(driver);
 
     }
 
-    private void cacheTagTypeMap() throws MaeDBException {
-        List<TagType> types = driver.getAllTagTypes();
-        for (TagType type : types) {
-            tagTypeMap.put(type.getName(), type);
-        }
+    /**
+     * Creates a loader that records a given file name as the annotation file name,
+     * regardless of the file actually being read (e.g. when restoring from an autosave).
+     */
+    public AnnotationLoader(MaeDriverI driver, String annotationFileName) throws MaeDBException {
+        this(driver);
+        this.fileName = annotationFileName;
     }
 
-    private void cacheArgTypeMap() throws MaeDBException {
-        for (TagType tagType : tagTypeMap.values()) {
-            if (tagType.isLink()) {
-                for (ArgumentType argType : driver.getArgumentTypesOfLinkTagType(tagType)) {
-                    argTypeMap.put(String.format("%s-%s", tagType.getName(), argType.getName()), argType);
-                }
-            }
-        }
-    }
-
-    private void cacheAttTypeMap() throws MaeDBException {
-        for (TagType tagType : tagTypeMap.values()) {
-            for (AttributeType attType : driver.getAttributeTypesOfTagType(tagType)) {
-                attTypeMap.put(String.format("%s-%s", tagType.getName(), attType.getName()), attType);
-            }
-
-        }
+    /**
+     * Creates a loader with a task definition already compiled from the driver,
+     * for loading many files into the same DB one after another.
+     */
+    public AnnotationLoader(MaeDriverI driver, TaskSchema schema, String annotationFileName) {
+        this.driver = driver;
+        this.taskName = schema.getTaskName();
+        this.schema = schema;
+        this.fileName = annotationFileName;
     }
 
-
     public static boolean isXml(File file) throws MaeIOException {
         Scanner scanner = null;
         try {
-            scanner = new Scanner(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            scanner = new Scanner(FileHandler.openUTF8Reader(file));
             while (scanner.hasNext()) {
                 String nextLine = scanner.nextLine().trim();
                 if (nextLine.length() > 1) {
@@ -105,11 +98,12 @@ public class AnnotationLoader {
         } catch (FileNotFoundException e) {
             throw new MaeIOException("file not found", e);
             // checked if file exists at the beginning
-        } catch (UnsupportedEncodingException e) {
-            throw new MaeIOException(e.getMessage());
+        } catch (IOException e) {
+            throw new MaeIOException(e.getMessage(), e);
         } finally {
-            assert scanner != null;
-            scanner.close();
+            if (scanner != null) {
+                scanner.close();
+            }
         }
         return false;
     }
@@ -131,7 +125,7 @@ public class AnnotationLoader {
 
     }
 
-    public static boolean isPrimaryTextMatching(File file, String primaryText) throws MaeIOException {
+    public static boolean isPrimaryTextMatching(File file, CharSequence primaryText) throws MaeIOException {
 
         try {
             MaeXMLParser loader = new MaeXMLParser();
@@ -152,7 +146,7 @@ public class AnnotationLoader {
         try {
             MaeXMLParser loader = new MaeXMLParser();
             String currentTaskName = driver.getTaskName();
-            String currentPrimaryText = driver.getPrimaryText();
+            CharSequence currentPrimaryText = driver.getPrimaryText();
             return loader.isTaskNameMatching(file, currentTaskName) &&
                     loader.isPrimaryTextMatching(file, currentPrimaryText);
 
@@ -172,7 +166,10 @@ public class AnnotationLoader {
     public String loadFile(File file) throws MaeException {
         String fileParseWarning = "";
         if (fileName == null) fileName = file.getAbsolutePath();
-        if (isXml(file)) {
+        if (MaeJsonLinesParser.isJsonLines(file)) {
+            logger.info("reading annotations from JSON Lines: " + file.getAbsolutePath());
+            fileParseWarning = readAsJsonLines(file);
+        } else if (isXml(file)) {
             if (isTaskNameMatching(file, taskName)) {
                 logger.info("reading annotations from file: " + file.getAbsolutePath());
                 fileParseWarning = readAsXml(file);
@@ -194,23 +191,108 @@ public class AnnotationLoader {
 
     public MaeXMLParser parseAsXml(File file) throws MaeDBException, SAXException, IOException {
         if (fileName == null) fileName = file.getAbsolutePath();
-        MaeXMLParser parser = new MaeXMLParser(driver);
+        MaeXMLParser parser = new MaeXMLParser(driver, schema);
+        parser.setLargeDocumentThreshold(largeDocumentThreshold);
         parser.readAnnotationFile(file);
         return parser;
 
     }
 
     public void writeParseToDB(MaeXMLParser parser) throws MaeDBException {
-        driver.setPrimaryText(parser.getParsedPrimaryText());
-        insertTagsToDB(parser.getParsedTags());
-        insertAttsToDB(parser.getParsedAtts());
-        insertArgsToDB(parser.getParsedArgs());
+        writeParseToDB(parser.getParsedPrimaryText(),
+                parser.getParsedTags(), parser.getParsedAtts(), parser.getParsedArgs());
+    }
+
+    public void writeParseToDB(AnnotationSnapshot snapshot) throws MaeDBException {
+        writeParseToDB(snapshot.getPrimaryText(),
+                snapshot.getParsedTags(), snapshot.getParsedAtts(), snapshot.getParsedArgs());
+    }
+
+    public void writeParseToDB(CharSequence primaryText, Collection<ParsedTag> tags,
+                               Collection<ParsedAtt> atts, Collection<ParsedArg> args) throws MaeDBException {
+        driver.setPrimaryText(primaryText);
+        insertTagsToDB(tags);
+        insertAttsToDB(atts);
+        insertArgsToDB(args);
+    }
+
+    /**
+     * Sets the number of characters above which the primary text of an XML file
+     * is memory-mapped instead of being held on heap.
+     */
+    public void setLargeDocumentThreshold(int largeDocumentThreshold) {
+        this.largeDocumentThreshold = largeDocumentThreshold;
+    }
+
+    /**
+     * Sets whether to keep a binary snapshot next to each XML file read, and to read
+     * from it instead of the XML when it is up to date. On by default.
+     */
+    public void setSnapshotCaching(boolean snapshotCaching) {
+        this.snapshotCaching = snapshotCaching;
+    }
+
+    /**
+     * A checksum of the task definition that affects how an XML is parsed and validated.
+     * A cached snapshot is only valid under the same task definition.
+     */
+    String getSchemaFingerprint() {
+        return schema.getFingerprint();
+    }
+
+    private AnnotationSnapshot readCachedSnapshot(File xmlFile, String schemaFingerprint) {
+        File snapshotFile = AnnotationSnapshot.getSnapshotFile(xmlFile);
+        if (!snapshotCaching || !snapshotFile.exists()) {
+            return null;
+        }
+        try {
+            AnnotationSnapshot snapshot = AnnotationSnapshot.read(snapshotFile);
+            if (snapshot.isUpToDate(xmlFile, schemaFingerprint) && snapshot.getTaskName().equals(taskName)) {
+                return snapshot;
+            }
+            logger.info("snapshot is outdated, reading XML: " + snapshotFile.getName());
+        } catch (MaeIOException e) {
+            logger.warn("cannot use a snapshot, reading XML: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private void cacheSnapshot(MaeXMLParser parser, File xmlFile, String schemaFingerprint) {
+        if (!snapshotCaching) {
+            return;
+        }
+        if (parser.getParsedPrimaryText() instanceof MappedText) {
+            // snapshots hold the primary text on heap, which a large document avoids
+            logger.info("not caching a snapshot of a large document: " + xmlFile.getName());
+            return;
+        }
+        File snapshotFile = AnnotationSnapshot.getSnapshotFile(xmlFile);
+        try {
+            AnnotationSnapshot snapshot = AnnotationSnapshot.of(parser);
+            snapshot.setSource(xmlFile, schemaFingerprint);
+            snapshot.write(snapshotFile);
+        } catch (MaeIOException e) {
+            // snapshot is only a cache, most likely the directory is not writable
+            logger.warn("cannot cache a snapshot: " + e.getMessage());
+        }
     }
 
     public String readAsXml(File file) throws MaeDBException, MaeIOException {
         try {
+            long start = System.currentTimeMillis();
+            String schemaFingerprint = getSchemaFingerprint();
+            AnnotationSnapshot snapshot = readCachedSnapshot(file, schemaFingerprint);
+            if (snapshot != null) {
+                writeParseToDB(snapshot);
+                logger.info(String.format("loaded \"%s\" from a snapshot in %d ms",
+                        file.getName(), System.currentTimeMillis() - start));
+                return snapshot.getParseWarnings();
+            }
             MaeXMLParser parser = parseAsXml(file);
             writeParseToDB(parser);
+            logger.info(String.format("loaded \"%s\" from XML in %d ms",
+                    file.getName(), System.currentTimeMillis() - start));
+            cacheSnapshot(parser, file, schemaFingerprint);
             return parser.getParseWarnings();
         } catch (MaeDBException e) {
             throw e;
@@ -224,44 +306,101 @@ public class AnnotationLoader {
         return "";
     }
 
+    public String readAsJsonLines(File file) throws MaeException {
+        MaeJsonLinesParser parser = new MaeJsonLinesParser(driver, schema);
+        parser.readAnnotationFile(file);
+        if (!taskName.equals(parser.getParsedTaskName())) {
+            String error = MaeStrings.getXmlNotMatchErr(fileName, taskName);
+            logger.info(error);
+            throw new MaeIOException(error);
+        }
+        writeParseToDB(parser.getParsedPrimaryText(),
+                parser.getParsedTags(), parser.getParsedAtts(), parser.getParsedArgs());
+        return parser.getParseWarnings();
+    }
+
+    /**
+     * Parses an annotation file again, typically after it is modified outside MAE,
+     * and compares it with what is in the driver. Nothing is written to the driver.
+     *
+     * @return tag-level differences, or null if the file has a different primary text
+     * and thus must be read from scratch
+     */
+    public AnnotationDiff diffWithFile(File file) throws MaeException {
+        CharSequence primaryText;
+        AnnotationDiff diff;
+        try {
+            if (MaeJsonLinesParser.isJsonLines(file)) {
+                MaeJsonLinesParser parser = new MaeJsonLinesParser(driver, schema);
+                parser.readAnnotationFile(file);
+                if (!taskName.equals(parser.getParsedTaskName())) {
+                    throw new MaeIOException(MaeStrings.getXmlNotMatchErr(file.getName(), taskName));
+                }
+                primaryText = parser.getParsedPrimaryText();
+                if (!StringUtils.equals(primaryText, driver.getPrimaryText())) {
+                    return null;
+                }
+                diff = AnnotationDiff.compute(driver, parser.getParsedTags(), parser.getParsedAtts(), parser.getParsedArgs());
+            } else {
+                MaeXMLParser parser = parseAsXml(file);
+                if (!taskName.equals(parser.getParsed().getTaskName())) {
+                    throw new MaeIOXMLException(MaeStrings.getXmlNotMatchErr(file.getName(), taskName));
+                }
+                primaryText = parser.getParsedPrimaryText();
+                if (!StringUtils.equals(primaryText, driver.getPrimaryText())) {
+                    return null;
+                }
+                diff = AnnotationDiff.compute(driver, parser.getParsedTags(), parser.getParsedAtts(), parser.getParsedArgs());
+            }
+        } catch (IOException e) {
+            catchIOError(file, e);
+            return null;
+        } catch (SAXParseException e) {
+            catchSAXParseError(e);
+            return null;
+        } catch (SAXException e) {
+            catchSAXError(file, e);
+            return null;
+        }
+        logger.info(String.format("\"%s\" differs from the DB by %s", file.getName(), diff));
+        return diff;
+    }
+
     private File getNextAvailableXMLName(File file) {
-        int suffix = 1;
         String filePath = file.getAbsolutePath();
         String fileExt = filePath.substring(filePath.length() - 4);
         String xmlizeBaseName = fileExt.equalsIgnoreCase(".xml") ?
                 filePath.substring(0, filePath.length() - 4) : filePath;
-
-        File xmlized = new File(xmlizeBaseName + ".xml");
-        while (xmlized.exists()) {
-            String xmlizeName = String.format("%s_%d.xml", xmlizeBaseName, suffix);
-            suffix++;
-            xmlized = new File(xmlizeName);
-        }
-        return xmlized;
+        return FileHandler.getNextAvailableXMLFile(new File(xmlizeBaseName + ".xml"), File::exists);
     }
 
+    /**
+     * Reads a plain text file as the primary text of a new document, and writes it
+     * into an XML file next to it, that becomes the annotation file of the document.
+     * The text goes to the DB as it is read, the new XML is not parsed again.
+     */
     private void readAsTxt(File file) throws MaeException {
         File xmlized = getNextAvailableXMLName(file);
-
+        fileName = xmlized.getAbsolutePath();
+        CharSequence primaryText;
         try {
-            fileName = xmlized.getAbsolutePath();
-            MaeFileWriter.writeTextToEmptyXML(file, driver.getTaskName(), xmlized);
-            try {
-                readAsXml(xmlized);
-            } catch (MaeIOException e) {
-                xmlized.delete();
-                throw new MaeIOXMLException(
-                        MaeStrings.FILE_NOT_XML_AND_DELETE_ERR + e.getMessage());
-            }
-        } catch (NoSuchElementException ex) {
+            long start = System.currentTimeMillis();
+            primaryText = new PlainTextReader(largeDocumentThreshold).read(file);
+            logger.info(String.format("read %d characters from \"%s\" in %d ms",
+                    primaryText.length(), file.getName(), System.currentTimeMillis() - start));
+        } catch (IOException e) {
             String message = "failed to read the file, maybe a binary file? " + file.getAbsolutePath();
             logger.error(message);
-            throw new MaeIOTXTException(message);
-        } catch (MaeException e) {
-            throw e;
+            throw new MaeIOTXTException(message, e);
         }
-
-
+        try {
+            MaeFileWriter.writeTextToEmptyXML(primaryText, taskName, xmlized);
+        } catch (MaeIOException e) {
+            xmlized.delete();
+            throw new MaeIOXMLException(MaeStrings.FILE_NOT_XML_AND_DELETE_ERR + e.getMessage());
+        }
+        writeParseToDB(primaryText, Collections.<ParsedTag>emptyList(),
+                Collections.<ParsedAtt>emptyList(), Collections.<ParsedArg>emptyList());
     }
 
 
@@ -281,8 +420,7 @@ public class AnnotationLoader {
         List<LinkTag> linkTagsOrderOfAppearance = new LinkedList<>();
         for (ParsedTag parsedTag : parsedTags) {
             if (!parsedTag.isLink()) {
-                ExtentTag tag = new ExtentTag(parsedTag.getTid(), tagTypeMap.get(parsedTag.getTagTypeName()), fileName);
-                tag.setText(parsedTag.getText());
+                ExtentTag tag = new ExtentTag(parsedTag.getTid(), schema.getTagType(parsedTag.getTagTypeName()).getTagType(), fileName);
                 for (CharIndex ci : tag.setSpans(parsedTag.getSpans())) {
                     anchors.add(ci);
                 }
@@ -290,7 +428,7 @@ public class AnnotationLoader {
                 extTagsOrderOfAppearance.add(tag);
                 extTagMap.put(tid, tag);
             } else {
-                LinkTag tag = new LinkTag(parsedTag.getTid(), tagTypeMap.get(parsedTag.getTagTypeName()), fileName);
+                LinkTag tag = new LinkTag(parsedTag.getTid(), schema.getTagType(parsedTag.getTagTypeName()).getTagType(), fileName);
                 linkTagsOrderOfAppearance.add(tag);
                 linkTagMap.put(parsedTag.getTid(), tag);
             }
@@ -308,9 +446,9 @@ public class AnnotationLoader {
             if (tag == null || att.getAttValue() == null || att.getAttValue().length() == 0) {
                 continue;
             }
-            String attTypeKey = String.format("%s-%s", att.getTagTypeName(), att.getAttTypeName());
+            TaskSchema.AttSchema attSchema = schema.getAttribute(att.getTagTypeName(), att.getAttTypeName());
             try {
-                attributes.add(new Attribute(tag, attTypeMap.get(attTypeKey), att.getAttValue()));
+                attributes.add(new Attribute(tag, attSchema.getAttributeType(), att.getAttValue()));
             } catch (MaeModelException ignored) {
                 // model exception is thrown when att value is invalid, which is already checked during XML parsing
                 // thus here, model exception is ignored.
@@ -324,8 +462,8 @@ public class AnnotationLoader {
         List<Argument> arguments = new ArrayList<>();
         for (ParsedArg arg : parsedArgs) {
             LinkTag tag = linkTagMap.get(arg.getTid());
-            String argTypeKey = String.format("%s-%s", arg.getTagTypeName(), arg.getArgTypeName());
-            arguments.add(new Argument(tag, argTypeMap.get(argTypeKey), extTagMap.get(arg.getArgTid())));
+            ArgumentType argType = schema.getArgument(arg.getTagTypeName(), arg.getArgTypeName());
+            arguments.add(new Argument(tag, argType, extTagMap.get(arg.getArgTid())));
         }
         driver.batchCreateArguments(arguments);
     }
@@ -0,0 +1,153 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.util.FileHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Task name, primary text length and a digest of the primary text of an
+ * annotation file, read in a single pass that stops at the end of the TEXT
+ * element, so that files can be checked for sharing a primary text without
+ * reading their tags, or holding their texts, at all.
+ */
+public class AnnotationPreamble {
+
+    private final String taskName;
+    private final int textLength;
+    // null when the file has no TEXT element
+    private final String textDigest;
+
+    private AnnotationPreamble(String taskName, int textLength, String textDigest) {
+        this.taskName = taskName;
+        this.textLength = textLength;
+        this.textDigest = textDigest;
+    }
+
+    public static AnnotationPreamble read(File file) throws IOException, SAXException {
+        PreambleHandler handler = new PreambleHandler();
+        try (Reader r = FileHandler.openUTF8Reader(file)) {
+            InputSource source = new InputSource(r);
+            source.setEncoding(StandardCharsets.UTF_8.name());
+            SAXParserFactory.newInstance().newSAXParser().parse(source, handler);
+        } catch (EndOfPreamble e) {
+            // stopped at the end of TEXT, the rest of the file is tags
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        return new AnnotationPreamble(handler.taskName, handler.textLength,
+                handler.digest == null ? null : FileHandler.toHex(handler.digest.digest()));
+    }
+
+    /**
+     * Digests a primary text in memory the same way as it is digested from a file.
+     */
+    public static String digest(CharSequence primaryText) {
+        MessageDigest digest = FileHandler.newDigest();
+        for (int i = 0; i < primaryText.length(); i++) {
+            char c = primaryText.charAt(i);
+            digest.update((byte) (c >>> 8));
+            digest.update((byte) c);
+        }
+        return FileHandler.toHex(digest.digest());
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public String getTextDigest() {
+        return textDigest;
+    }
+
+    public boolean isTextMatching(AnnotationPreamble other) {
+        return textLength == other.textLength
+                && (textDigest == null ? other.textDigest == null : textDigest.equals(other.textDigest));
+    }
+
+    private static class EndOfPreamble extends SAXException {
+    }
+
+    private static class PreambleHandler extends DefaultHandler {
+        private String taskName;
+        private MessageDigest digest;
+        private int textLength = 0;
+        private boolean inText = false;
+        // chunks of TEXT are digested as UTF-16, so a surrogate pair split between chunks is not an issue
+        private byte[] bytes = new byte[0];
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if (taskName == null) {
+                if (qName.equalsIgnoreCase("text") || attributes.getLength() > 0) {
+                    throw new SAXException("Root node should be the task name");
+                }
+                taskName = qName;
+            } else if (qName.equalsIgnoreCase("text")) {
+                inText = true;
+                digest = FileHandler.newDigest();
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (!inText) {
+                return;
+            }
+            if (bytes.length < length * 2) {
+                bytes = new byte[length * 2];
+            }
+            for (int i = 0; i < length; i++) {
+                bytes[i * 2] = (byte) (ch[start + i] >>> 8);
+                bytes[i * 2 + 1] = (byte) ch[start + i];
+            }
+            digest.update(bytes, 0, length * 2);
+            textLength += length;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (inText && qName.equalsIgnoreCase("text")) {
+                throw new EndOfPreamble();
+            }
+        }
+    }
+}
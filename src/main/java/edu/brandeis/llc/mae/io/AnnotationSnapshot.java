@@ -0,0 +1,393 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeException;
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.SpanHandler;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compact binary snapshot of a parsed annotation document, used to re-open
+ * an annotation without parsing and validating the XML again. A snapshot holds
+ * the same information that {@link MaeXMLParser} produces: task name, primary
+ * text, parsed tags, attributes and arguments, and parse warnings.
+ * <p>
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ * magic "MAES" (4 bytes), version
+ * source length (long), SHA-1 digest of the source (string), schema fingerprint (string)
+ * string table: count, then UTF-8 strings (index 0 is reserved for null)
+ * task name, parse warnings (string indices)
+ * primary text (UTF-8 string)
+ * tags: count, then for each: link flag (byte), tid, tag type (string indices),
+ *       and for extent tags, number of span ranges followed by each range as
+ *       zigzag delta of start from the previous end and its length
+ * atts: count, then tid, tag type, att type, value (string indices)
+ * args: count, then tid, tag type, arg type, argument tid (string indices)
+ * </pre>
+ * Attribute values go through the string table as well, so repeated values
+ * (most of values from finite value sets) are stored only once. Text of extent
+ * tags is not stored, as it is always sliced from the primary text.
+ */
+public class AnnotationSnapshot {
+
+    public static final String SNAPSHOT_EXT = ".maesnap";
+    static final byte[] MAGIC = "MAES".getBytes(StandardCharsets.US_ASCII);
+    // version 2 identifies the source by a digest of its content, not its modification time
+    static final int VERSION = 2;
+
+    private String taskName;
+    private String primaryText;
+    private String parseWarnings;
+    private List<ParsedTag> tags;
+    private List<ParsedAtt> atts;
+    private List<ParsedArg> args;
+
+    private long sourceLength;
+    private String sourceDigest = "";
+    private String schemaFingerprint;
+
+    public AnnotationSnapshot(String taskName, String primaryText, String parseWarnings,
+                              List<ParsedTag> tags, List<ParsedAtt> atts, List<ParsedArg> args) {
+        this.taskName = taskName;
+        this.primaryText = primaryText;
+        this.parseWarnings = parseWarnings == null ? "" : parseWarnings;
+        this.tags = tags;
+        this.atts = atts;
+        this.args = args;
+        this.schemaFingerprint = "";
+    }
+
+    public static AnnotationSnapshot of(MaeXMLParser parser) {
+        return new AnnotationSnapshot(parser.getParsed().getTaskName(), parser.getParsedPrimaryText().toString(),
+                parser.getParseWarnings(), parser.getParsedTags(), parser.getParsedAtts(), parser.getParsedArgs());
+    }
+
+    public static File getSnapshotFile(File sourceFile) {
+        return new File(sourceFile.getAbsolutePath() + SNAPSHOT_EXT);
+    }
+
+    /**
+     * Marks the snapshot with the XML file and the task schema it is made from,
+     * so that it can be checked for staleness later.
+     */
+    public void setSource(File sourceFile, String schemaFingerprint) throws MaeIOException {
+        this.sourceLength = sourceFile.length();
+        this.sourceDigest = FileHandler.hashFile(sourceFile);
+        this.schemaFingerprint = schemaFingerprint;
+    }
+
+    /**
+     * Checks the snapshot is made from the current content of the XML file. Content
+     * is compared by digest, as a rewrite of the same size can keep the timestamp.
+     */
+    public boolean isUpToDate(File sourceFile, String schemaFingerprint) throws MaeIOException {
+        return sourceFile.length() == sourceLength
+                && this.schemaFingerprint.equals(schemaFingerprint)
+                && sourceDigest.equals(FileHandler.hashFile(sourceFile));
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public String getPrimaryText() {
+        return primaryText;
+    }
+
+    public String getParseWarnings() {
+        return parseWarnings;
+    }
+
+    public List<ParsedTag> getParsedTags() {
+        return tags;
+    }
+
+    public List<ParsedAtt> getParsedAtts() {
+        return atts;
+    }
+
+    public List<ParsedArg> getParsedArgs() {
+        return args;
+    }
+
+    public void write(File file) throws MaeIOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot write a snapshot: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        StringTable table = new StringTable();
+        table.index(taskName);
+        table.index(parseWarnings);
+        for (ParsedTag tag : tags) {
+            table.index(tag.getTid());
+            table.index(tag.getTagTypeName());
+        }
+        for (ParsedAtt att : atts) {
+            table.index(att.getTid());
+            table.index(att.getTagTypeName());
+            table.index(att.getAttTypeName());
+            table.index(att.getAttValue());
+        }
+        for (ParsedArg arg : args) {
+            table.index(arg.getTid());
+            table.index(arg.getTagTypeName());
+            table.index(arg.getArgTypeName());
+            table.index(arg.getArgTid());
+        }
+
+        out.write(MAGIC);
+        writeVarInt(out, VERSION);
+        out.writeLong(sourceLength);
+        writeString(out, sourceDigest);
+        writeString(out, schemaFingerprint);
+
+        writeVarInt(out, table.strings.size() - 1);
+        for (int i = 1; i < table.strings.size(); i++) {
+            writeString(out, table.strings.get(i));
+        }
+        writeVarInt(out, table.index(taskName));
+        writeVarInt(out, table.index(parseWarnings));
+        writeString(out, primaryText);
+
+        writeVarInt(out, tags.size());
+        for (ParsedTag tag : tags) {
+            out.writeByte(tag.isLink() ? 1 : 0);
+            writeVarInt(out, table.index(tag.getTid()));
+            writeVarInt(out, table.index(tag.getTagTypeName()));
+            if (!tag.isLink()) {
+                writeSpans(out, tag.getSpans());
+            }
+        }
+        writeVarInt(out, atts.size());
+        for (ParsedAtt att : atts) {
+            writeVarInt(out, table.index(att.getTid()));
+            writeVarInt(out, table.index(att.getTagTypeName()));
+            writeVarInt(out, table.index(att.getAttTypeName()));
+            writeVarInt(out, table.index(att.getAttValue()));
+        }
+        writeVarInt(out, args.size());
+        for (ParsedArg arg : args) {
+            writeVarInt(out, table.index(arg.getTid()));
+            writeVarInt(out, table.index(arg.getTagTypeName()));
+            writeVarInt(out, table.index(arg.getArgTypeName()));
+            writeVarInt(out, table.index(arg.getArgTid()));
+        }
+        out.flush();
+    }
+
+    public static AnnotationSnapshot read(File file) throws MaeIOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot read a snapshot: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public static AnnotationSnapshot read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a MAE snapshot");
+        }
+        int version = readVarInt(in);
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+        long sourceLength = in.readLong();
+        String sourceDigest = readString(in);
+        String schemaFingerprint = readString(in);
+
+        String[] table = new String[readVarInt(in) + 1];
+        for (int i = 1; i < table.length; i++) {
+            table[i] = readString(in);
+        }
+        String taskName = table[readVarInt(in)];
+        String parseWarnings = table[readVarInt(in)];
+        String primaryText = readString(in);
+
+        int tagCount = readVarInt(in);
+        List<ParsedTag> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            ParsedTag tag = new ParsedTag();
+            tag.setLink(in.readByte() == 1);
+            tag.setTid(table[readVarInt(in)]);
+            tag.setTagTypeName(table[readVarInt(in)]);
+            if (!tag.isLink()) {
+                int[] spans = readSpans(in);
+                tag.setSpans(spans);
+                tag.setText(MaeXMLParser.getSpannedText(primaryText, spans));
+            }
+            tags.add(tag);
+        }
+        int attCount = readVarInt(in);
+        List<ParsedAtt> atts = new ArrayList<>(attCount);
+        for (int i = 0; i < attCount; i++) {
+            ParsedAtt att = new ParsedAtt();
+            att.setTid(table[readVarInt(in)]);
+            att.setTagTypeName(table[readVarInt(in)]);
+            att.setAttTypeName(table[readVarInt(in)]);
+            att.setAttValue(table[readVarInt(in)]);
+            atts.add(att);
+        }
+        int argCount = readVarInt(in);
+        List<ParsedArg> args = new ArrayList<>(argCount);
+        for (int i = 0; i < argCount; i++) {
+            ParsedArg arg = new ParsedArg();
+            arg.setTid(table[readVarInt(in)]);
+            arg.setTagTypeName(table[readVarInt(in)]);
+            arg.setArgTypeName(table[readVarInt(in)]);
+            arg.setArgTid(table[readVarInt(in)]);
+            args.add(arg);
+        }
+
+        AnnotationSnapshot snapshot = new AnnotationSnapshot(taskName, primaryText, parseWarnings, tags, atts, args);
+        snapshot.sourceLength = sourceLength;
+        snapshot.sourceDigest = sourceDigest;
+        snapshot.schemaFingerprint = schemaFingerprint;
+        return snapshot;
+    }
+
+    /**
+     * Converts the snapshot back to a MAE XML annotation file.
+     */
+    public void writeToXML(File xmlOutFile) throws MaeIOException {
+        MaeFileWriter.writeParsedAnnotationToXML(taskName, primaryText, tags, atts, args, xmlOutFile);
+    }
+
+    /**
+     * Converts a MAE XML annotation file into a snapshot. The parser should be
+     * bound to a driver that has the task definition loaded.
+     */
+    public static AnnotationSnapshot fromXML(MaeXMLParser parser, File xmlFile) throws MaeException {
+        try {
+            parser.readAnnotationFile(xmlFile);
+        } catch (IOException | SAXException e) {
+            throw new MaeIOXMLException("failed to parse XML: " + xmlFile.getName() + ", " + e.getMessage(), e);
+        }
+        return of(parser);
+    }
+
+    private static void writeSpans(DataOutputStream out, int[] spans) throws IOException {
+        List<int[]> ranges = spans == null ? Collections.<int[]>emptyList() : SpanHandler.convertArrayToPairs(spans);
+        writeVarInt(out, ranges.size());
+        int prevEnd = 0;
+        for (int[] range : ranges) {
+            writeVarInt(out, zigzag(range[0] - prevEnd));
+            writeVarInt(out, range[1] - range[0]);
+            prevEnd = range[1];
+        }
+    }
+
+    private static int[] readSpans(DataInputStream in) throws IOException {
+        int rangeCount = readVarInt(in);
+        List<int[]> ranges = new ArrayList<>(rangeCount);
+        int prevEnd = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            int start = prevEnd + unzigzag(readVarInt(in));
+            int end = start + readVarInt(in);
+            ranges.add(SpanHandler.range(start, end));
+            prevEnd = end;
+        }
+        return SpanHandler.concatenateArrays(ranges);
+    }
+
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in snapshot");
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Assigns an index to every distinct string, 0 being null.
+     */
+    private static class StringTable {
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        StringTable() {
+            strings.add(null);
+        }
+
+        int index(String string) {
+            if (string == null) {
+                return 0;
+            }
+            Integer index = indices.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.add(string);
+                indices.put(string, index);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import edu.brandeis.llc.mae.MaeException;
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates, converts, normalizes or exports many annotation files of a task without GUI.
+ * Files are processed on a pool of worker threads; each worker reads the task
+ * definition into its own DB once, and reuses it for all files it takes.
+ */
+public class BatchProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchProcessor.class.getName());
+
+    public enum Mode {
+        /** checks XML files against the task definition */
+        VALIDATE,
+        /** turns plain text files into empty MAE XML files */
+        CONVERT,
+        /** reads XML files into a DB and writes them again, in the form MAE saves them */
+        NORMALIZE,
+        /** writes tokens of XML files with labels of extent tags, see {@link ConllExporter} */
+        CONLL
+    }
+
+    public enum Status { OK, WARNINGS, SKIPPED, FAILED }
+
+    private final File taskFile;
+    private final Mode mode;
+    private final int threads;
+    private File outputDirectory;
+    private Tokenizer tokenizer = Tokenizer.PUNCTUATION;
+    private ConllExporter.Scheme labelScheme = ConllExporter.Scheme.BIO;
+    private final List<Worker> workers = Collections.synchronizedList(new ArrayList<>());
+    // directory or glob base each collected file was found under, kept under the output directory
+    private final Map<File, Path> inputRoots = new HashMap<>();
+    // outputs written by files of the current batch, so that no two files write the same output
+    private final Set<File> claimedOutputs = new HashSet<>();
+    private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(this::newWorker);
+
+    public BatchProcessor(File taskFile, Mode mode, int threads) {
+        this.taskFile = taskFile;
+        this.mode = mode;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets where to write converted or normalized files. When not set, converted files
+     * are written next to the text files and normalized files replace the originals.
+     * Files found under an input directory or glob keep their relative paths under it.
+     */
+    public void setOutputDirectory(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public void setTokenizer(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    public void setLabelScheme(ConllExporter.Scheme labelScheme) {
+        this.labelScheme = labelScheme;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Expands input arguments into files to process: a directory gives all files in it
+     * and its subdirectories that the mode takes, a path with wildcards is matched as a
+     * glob, anything else is taken as a file.
+     */
+    public List<File> collectFiles(Collection<String> inputs) throws MaeIOException {
+        Set<File> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            try {
+                if (input.contains("*") || input.contains("?") || input.contains("{")) {
+                    Path base = getGlobBase(input);
+                    addFilesUnder(files, base, matchGlob(base, input));
+                } else if (new File(input).isDirectory()) {
+                    try (Stream<Path> paths = Files.walk(Paths.get(input))) {
+                        addFilesUnder(files, Paths.get(input), paths.filter(Files::isRegularFile).map(Path::toFile)
+                                .filter(this::isTakenByMode).sorted().collect(Collectors.toList()));
+                    }
+                } else {
+                    files.add(new File(input));
+                }
+            } catch (IOException e) {
+                throw new MaeIOException("Cannot list input files: " + input, e);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private void addFilesUnder(Set<File> files, Path root, List<File> found) {
+        for (File file : found) {
+            if (files.add(file)) {
+                inputRoots.put(file, root);
+            }
+        }
+    }
+
+    private static int getGlobBaseEnd(String normalized) {
+        int wildcard = normalized.length();
+        for (char c : new char[]{'*', '?', '{', '['}) {
+            int found = normalized.indexOf(c);
+            if (found >= 0) {
+                wildcard = Math.min(wildcard, found);
+            }
+        }
+        return normalized.lastIndexOf('/', wildcard);
+    }
+
+    private static Path getGlobBase(String glob) {
+        String normalized = glob.replace('\\', '/');
+        int baseEnd = getGlobBaseEnd(normalized);
+        return Paths.get(baseEnd < 0 ? "." : normalized.substring(0, baseEnd + 1));
+    }
+
+    private static List<File> matchGlob(Path base, String glob) throws IOException {
+        String normalized = glob.replace('\\', '/');
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+                "glob:" + normalized.substring(getGlobBaseEnd(normalized) + 1));
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(base.relativize(path)))
+                    .map(Path::toFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private boolean isTakenByMode(File file) {
+        String name = file.getName().toLowerCase();
+        if (mode == Mode.CONVERT) {
+            return name.endsWith(".txt");
+        }
+        return FileHandler.isXmlFileName(name);
+    }
+
+    /**
+     * Processes files on the worker pool and returns results in the order of the files.
+     */
+    public Summary process(List<File> files) throws MaeException {
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<FileResult>> futures = new ArrayList<>();
+        synchronized (claimedOutputs) {
+            claimedOutputs.clear();
+        }
+        try {
+            for (final File file : files) {
+                futures.add(pool.submit(() -> processFile(file)));
+            }
+            List<FileResult> results = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(FileResult.failed(files.get(i), e.getCause(), 0));
+                }
+            }
+            return new Summary(mode, threads, results, System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MaeException("batch processing is interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            destroyWorkers();
+        }
+    }
+
+    private FileResult processFile(File file) {
+        long start = System.currentTimeMillis();
+        try {
+            Worker w = worker.get();
+            if (w.error != null) {
+                throw w.error;
+            }
+            FileResult result;
+            switch (mode) {
+                case CONVERT:
+                    result = w.convert(file);
+                    break;
+                case NORMALIZE:
+                    result = w.normalize(file);
+                    break;
+                case CONLL:
+                    result = w.exportConll(file);
+                    break;
+                default:
+                    result = w.validate(file);
+            }
+            result.millis = System.currentTimeMillis() - start;
+            logger.info(String.format("%s \"%s\": %s in %d ms", mode, file.getName(), result.status, result.millis));
+            return result;
+        } catch (Exception e) {
+            logger.warn(String.format("%s \"%s\" failed: %s", mode, file.getName(), e.getMessage()));
+            return FileResult.failed(file, e, System.currentTimeMillis() - start);
+        }
+    }
+
+    private Worker newWorker() {
+        Worker w = new Worker();
+        try {
+            File dbFile = File.createTempFile("mae-batch", ".sqlite");
+            dbFile.deleteOnExit();
+            w.driver = new LocalSqliteDriverImpl(dbFile.getAbsolutePath());
+            w.driver.readTask(taskFile);
+            w.schema = TaskSchema.compile(w.driver);
+            w.conllExporter = new ConllExporter(w.driver);
+            w.conllExporter.setTokenizer(tokenizer);
+            w.conllExporter.setScheme(labelScheme);
+        } catch (IOException e) {
+            w.error = new MaeIOException("Cannot set up a DB for a batch worker", e);
+        } catch (MaeException e) {
+            w.error = e;
+        }
+        workers.add(w);
+        return w;
+    }
+
+    private void destroyWorkers() {
+        synchronized (workers) {
+            for (Worker w : workers) {
+                if (w.driver != null) {
+                    try {
+                        w.driver.destroy();
+                    } catch (MaeDBException e) {
+                        logger.warn("failed to destroy a batch worker DB", e);
+                    }
+                }
+            }
+            workers.clear();
+        }
+    }
+
+    private File getOutputFile(File input, String name) throws MaeIOException {
+        File directory = input.getAbsoluteFile().getParentFile();
+        if (outputDirectory != null) {
+            directory = outputDirectory;
+            Path root = inputRoots.get(input);
+            if (root != null) {
+                Path relative = root.toAbsolutePath().normalize().relativize(getParentPath(input));
+                directory = new File(outputDirectory, relative.toString());
+            }
+            try {
+                Files.createDirectories(directory.toPath());
+            } catch (IOException e) {
+                throw new MaeIOException("Cannot create an output directory: " + directory.getAbsolutePath(), e);
+            }
+        }
+        return new File(directory, name);
+    }
+
+    private static Path getParentPath(File file) {
+        return file.getAbsoluteFile().toPath().normalize().getParent();
+    }
+
+    /**
+     * Takes an output for a file, failing when another file of the batch already took it.
+     */
+    private File claimOutputFile(File input, File output) throws MaeIOException {
+        synchronized (claimedOutputs) {
+            if (!claimedOutputs.add(output.getAbsoluteFile())) {
+                throw new MaeIOException(String.format("Another input file is already written to %s, not overwriting it with %s",
+                        output.getAbsolutePath(), input.getPath()));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Takes the first name for an XML output that neither exists nor is taken by another
+     * file of the batch, as MAE does when it opens a text file.
+     */
+    private File claimNextAvailableXMLFile(File output) {
+        synchronized (claimedOutputs) {
+            File available = FileHandler.getNextAvailableXMLFile(output.getAbsoluteFile(),
+                    file -> file.exists() || claimedOutputs.contains(file));
+            claimedOutputs.add(available);
+            return available;
+        }
+    }
+
+    private class Worker {
+        private MaeDriverI driver;
+        private TaskSchema schema;
+        private ConllExporter conllExporter;
+        private Exception error;
+
+        private MaeXMLParser parse(File file) throws MaeException {
+            if (!AnnotationLoader.isXml(file)) {
+                throw new MaeIOXMLException(MaeStrings.getFileNotXmlErr(file.getName()));
+            }
+            MaeXMLParser parser = new MaeXMLParser(driver, schema);
+            try {
+                parser.readAnnotationFile(file);
+            } catch (IOException e) {
+                throw new MaeIOException("Cannot read a file: " + file.getAbsolutePath(), e);
+            } catch (SAXException e) {
+                throw new MaeIOXMLException("Not a well-formed XML: " + e.getMessage(), e);
+            }
+            if (!schema.getTaskName().equals(parser.getParsed().getTaskName())) {
+                throw new MaeIOXMLException(MaeStrings.getXmlNotMatchErr(file.getName(), schema.getTaskName()));
+            }
+            return parser;
+        }
+
+        FileResult validate(File file) throws MaeException {
+            return FileResult.parsed(file, null, parse(file).getWarnings());
+        }
+
+        FileResult convert(File file) throws MaeException {
+            if (AnnotationLoader.isXml(file)) {
+                return FileResult.skipped(file, "already an XML file");
+            }
+            File output = claimNextAvailableXMLFile(
+                    getOutputFile(file, FileHandler.getFileNameWithoutExtension(file.getName()) + FileHandler.XML_EXT));
+            CharSequence primaryText;
+            try {
+                primaryText = new PlainTextReader(MaeXMLParser.LARGE_DOCUMENT_THRESHOLD).read(file);
+            } catch (IOException e) {
+                throw new MaeIOTXTException("failed to read the file, maybe a binary file? " + file.getAbsolutePath(), e);
+            }
+            MaeFileWriter.writeTextToEmptyXML(primaryText, schema.getTaskName(), output);
+            return FileResult.parsed(file, output, new ParseWarnings());
+        }
+
+        FileResult normalize(File file) throws MaeException {
+            MaeXMLParser parser = parse(file);
+            File output = claimOutputFile(file, getOutputFile(file, file.getName()));
+            driver.emptyAnnotations();
+            new AnnotationLoader(driver, schema, output.getAbsolutePath()).writeParseToDB(parser);
+            driver.setAnnotationFileName(output.getAbsolutePath());
+            MaeFileWriter.writeAnnotationToXML(driver, output);
+            return FileResult.parsed(file, output, parser.getWarnings());
+        }
+
+        FileResult exportConll(File file) throws MaeException {
+            MaeXMLParser parser = parse(file);
+            File output = claimOutputFile(file, getOutputFile(file,
+                    FileHandler.getFileNameWithoutExtension(file.getName()) + ConllExporter.CONLL_EXT));
+            try (Writer writer = FileHandler.openUTF8Writer(output)) {
+                conllExporter.write(file.getName(), parser.getParsedPrimaryText(), parser.getParsedTags(), writer);
+            } catch (IOException e) {
+                throw new MaeIOException("Cannot write to a file: " + output.getAbsolutePath(), e);
+            }
+            return FileResult.parsed(file, output, parser.getWarnings());
+        }
+    }
+
+    public static class FileResult {
+        private final File file;
+        private final File output;
+        private final Status status;
+        private final int warningCount;
+        private final String message;
+        private long millis;
+
+        private FileResult(File file, File output, Status status, int warningCount, String message, long millis) {
+            this.file = file;
+            this.output = output;
+            this.status = status;
+            this.warningCount = warningCount;
+            this.message = message;
+            this.millis = millis;
+        }
+
+        static FileResult parsed(File file, File output, ParseWarnings warnings) {
+            return new FileResult(file, output, warnings.isEmpty() ? Status.OK : Status.WARNINGS,
+                    warnings.getTotalCount(), warnings.isEmpty() ? null : warnings.toString(), 0);
+        }
+
+        static FileResult skipped(File file, String reason) {
+            return new FileResult(file, null, Status.SKIPPED, 0, reason, 0);
+        }
+
+        static FileResult failed(File file, Throwable cause, long millis) {
+            return new FileResult(file, null, Status.FAILED, 0, String.valueOf(cause.getMessage()), millis);
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public File getOutput() {
+            return output;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getWarningCount() {
+            return warningCount;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    public static class Summary {
+        private final Mode mode;
+        private final int threads;
+        private final List<FileResult> results;
+        private final long millis;
+
+        Summary(Mode mode, int threads, List<FileResult> results, long millis) {
+            this.mode = mode;
+            this.threads = threads;
+            this.results = results;
+            this.millis = millis;
+        }
+
+        public List<FileResult> getResults() {
+            return results;
+        }
+
+        public int count(Status status) {
+            int count = 0;
+            for (FileResult result : results) {
+                if (result.getStatus() == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Writes the summary as a JSON object, with a record of each file.
+         */
+        public void write(Writer writer) throws IOException {
+            JsonGenerator generator = new JsonFactory().createGenerator(writer);
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("mode", mode.name().toLowerCase());
+            generator.writeNumberField("threads", threads);
+            generator.writeNumberField("millis", millis);
+            generator.writeNumberField("total", results.size());
+            for (Status status : Status.values()) {
+                generator.writeNumberField(status.name().toLowerCase(), count(status));
+            }
+            generator.writeArrayFieldStart("files");
+            for (FileResult result : results) {
+                generator.writeStartObject();
+                generator.writeStringField("file", result.getFile().getPath());
+                if (result.getOutput() != null) {
+                    generator.writeStringField("output", result.getOutput().getPath());
+                }
+                generator.writeStringField("status", result.getStatus().name().toLowerCase());
+                generator.writeNumberField("millis", result.getMillis());
+                generator.writeNumberField("warnings", result.getWarningCount());
+                if (result.getMessage() != null) {
+                    generator.writeStringField("message", result.getMessage());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.TagType;
+import edu.brandeis.llc.mae.util.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Writes parsed annotations as token-level training data in CoNLL format: one
+ * token per line, followed by a label column for each extent tag type, so that
+ * tags of different types can overlap. Labels are projected from tag spans onto
+ * tokens by sweeping sorted spans and tokens together, once per tag type.
+ * Within a tag type, a tag overlapping an earlier one cannot be put in BIO
+ * labels and is dropped. Tags sharing a token without overlapping are kept,
+ * and the shared token goes to the earlier one.
+ */
+public class ConllExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConllExporter.class.getName());
+
+    public static final String OUTSIDE = "O";
+    public static final String CONLL_EXT = ".conll";
+
+    public enum Scheme { BIO, BILOU }
+
+    private final List<String> tagTypeNames = new ArrayList<>();
+    private Tokenizer tokenizer = Tokenizer.PUNCTUATION;
+    private Scheme scheme = Scheme.BIO;
+    private boolean breakOnNewline = true;
+
+    public ConllExporter(MaeDriverI driver) throws MaeDBException {
+        for (TagType tagType : driver.getExtentTagTypes()) {
+            tagTypeNames.add(tagType.getName());
+        }
+    }
+
+    public void setTokenizer(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    public void setScheme(Scheme scheme) {
+        this.scheme = scheme;
+    }
+
+    /**
+     * Sets extent tag types to make label columns of, in the order of columns.
+     * All extent tag types of the task by default.
+     */
+    public void setTagTypes(List<String> tagTypeNames) {
+        this.tagTypeNames.clear();
+        this.tagTypeNames.addAll(tagTypeNames);
+    }
+
+    /**
+     * Sets whether to put an empty line, the CoNLL sentence break, between tokens
+     * that have a line break in between. On by default.
+     */
+    public void setBreakOnNewline(boolean breakOnNewline) {
+        this.breakOnNewline = breakOnNewline;
+    }
+
+    public List<String> getTagTypes() {
+        return Collections.unmodifiableList(tagTypeNames);
+    }
+
+    /**
+     * Writes a document, headed by a comment line with its name. Returns the number
+     * of tag spans dropped for overlapping another of the same type.
+     */
+    public int write(String documentName, CharSequence primaryText, Collection<ParsedTag> tags, Writer writer)
+            throws IOException {
+        List<int[]> tokens = tokenizer.tokenize(primaryText);
+        int[] starts = new int[tokens.size()];
+        int[] ends = new int[tokens.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = tokens.get(i)[0];
+            ends[i] = tokens.get(i)[1];
+        }
+
+        Map<String, List<int[]>> segmentsByType = new HashMap<>();
+        for (String tagTypeName : tagTypeNames) {
+            segmentsByType.put(tagTypeName, new ArrayList<>());
+        }
+        for (ParsedTag tag : tags) {
+            List<int[]> segments = segmentsByType.get(tag.getTagTypeName());
+            if (segments != null && !tag.isLink()) {
+                addSegments(tag.getSpans(), segments);
+            }
+        }
+        String[][] labels = new String[tagTypeNames.size()][];
+        int dropped = 0;
+        for (int col = 0; col < labels.length; col++) {
+            labels[col] = new String[starts.length];
+            dropped += project(segmentsByType.get(tagTypeNames.get(col)), starts, ends, tagTypeNames.get(col), labels[col]);
+        }
+
+        writer.write("# ");
+        writer.write(documentName);
+        writer.write('\n');
+        for (int i = 0; i < starts.length; i++) {
+            if (breakOnNewline && i > 0 && containsNewline(primaryText, ends[i - 1], starts[i])) {
+                writer.write('\n');
+            }
+            writer.append(primaryText, starts[i], ends[i]);
+            for (String[] column : labels) {
+                writer.write('\t');
+                writer.write(column[i] == null ? OUTSIDE : column[i]);
+            }
+            writer.write('\n');
+        }
+        writer.write('\n');
+        if (dropped > 0) {
+            logger.info(String.format("%d overlapping tags are not exported from \"%s\"", dropped, documentName));
+        }
+        return dropped;
+    }
+
+    /**
+     * Splits character locations of a tag into contiguous [start, end) segments.
+     */
+    private static void addSegments(int[] locations, List<int[]> segments) {
+        if (locations == null || locations.length == 0) {
+            return;
+        }
+        int[] sorted = locations.clone();
+        Arrays.sort(sorted);
+        int start = sorted[0];
+        for (int i = 1; i <= sorted.length; i++) {
+            if (i == sorted.length || sorted[i] > sorted[i - 1] + 1) {
+                segments.add(new int[]{start, sorted[i - 1] + 1});
+                if (i < sorted.length) {
+                    start = sorted[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Labels tokens covered by segments, walking sorted segments and tokens in
+     * one pass. A segment starting in the last token of the previous one leaves
+     * that token to the previous one. Returns the number of segments dropped for
+     * overlapping, or for having no token left of its own.
+     */
+    private int project(List<int[]> segments, int[] starts, int[] ends, String label, String[] labels) {
+        // earlier first, longer first among the ones starting together
+        segments.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        int dropped = 0;
+        int lastEnd = Integer.MIN_VALUE;
+        int lastTokenEnd = Integer.MIN_VALUE;
+        int token = 0;
+        for (int[] segment : segments) {
+            if (segment[0] < lastEnd) {
+                dropped++;
+                continue;
+            }
+            boolean sharesToken = segment[0] < lastTokenEnd;
+            while (token < starts.length && ends[token] <= segment[0]) {
+                token++;
+            }
+            int first = token;
+            int last = token;
+            while (last < starts.length && starts[last] < segment[1]) {
+                last++;
+            }
+            if (last == first) {
+                if (sharesToken) {
+                    dropped++;
+                }
+                // otherwise, falls in between tokens
+                continue;
+            }
+            lastEnd = segment[1];
+            lastTokenEnd = ends[last - 1];
+            for (int i = first; i < last; i++) {
+                labels[i] = labelOf(i - first, last - first, label);
+            }
+            token = last;
+        }
+        return dropped;
+    }
+
+    private String labelOf(int position, int length, String label) {
+        if (scheme == Scheme.BILOU) {
+            if (length == 1) {
+                return "U-" + label;
+            } else if (position == length - 1) {
+                return "L-" + label;
+            }
+        }
+        return (position == 0 ? "B-" : "I-") + label;
+    }
+
+    private static boolean containsNewline(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -24,45 +24,269 @@
 
 package edu.brandeis.llc.mae.io;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.ExtentTag;
+import edu.brandeis.llc.mae.model.LinkTag;
+import edu.brandeis.llc.mae.model.Tag;
+import edu.brandeis.llc.mae.model.TagType;
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.SpanHandler;
+import org.apache.commons.io.input.CharSequenceReader;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 /**
  * Contains helper functions to create or modify files.
  */
 public class MaeFileWriter {
 
+    private static String xmlHeader = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<%s>\n";
+    // tried embed dtd source in the xml, but that fails XML parser to successfully parse
+    // <!DOCTYPE root_element SYSTEM "DTD_filename">\
+    // <!DOCTYPE root_element PUBLIC "DTD_name" "DTD_location">
+    // see https://xmlwriter.net/xml_guide/doctype_declaration.shtml
+    private static String xmlText = "<TEXT><![CDATA[%s]]></TEXT>\n<TAGS>\n";
+    private static String xmlTail = "</TAGS>\n</%s>";
+
+    /**
+     * Writes all annotations in a driver into an XML file. Tags are written
+     * one by one to the file, so the whole document is never held as a single string.
+     */
+    public static void writeAnnotationToXML(MaeDriverI driver, File xmlOutFile)
+            throws MaeDBException, MaeIOException {
+        try (Writer writer = FileHandler.openUTF8Writer(xmlOutFile)) {
+            writeAnnotationXML(driver, writer);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot write annotation to a file: " + xmlOutFile.getAbsolutePath(), e);
+        }
+    }
+
+    public static void writeAnnotationXML(MaeDriverI driver, Writer writer) throws MaeDBException, IOException {
+        writer.write(String.format(xmlHeader, driver.getTaskName()));
+        writeXmlText(writer, driver.getPrimaryText());
+        for (TagType eType : driver.getExtentTagTypes()) {
+            for (ExtentTag tag : driver.getAllExtentTagsOfType(eType)) {
+                writer.write(tag.toXmlString());
+                writer.write("\n");
+            }
+        }
+        for (TagType lType : driver.getLinkTagTypes()) {
+            for (LinkTag tag : driver.getAllLinkTagsOfType(lType)) {
+                writer.write(tag.toXmlString());
+                writer.write("\n");
+            }
+        }
+        writer.write(String.format(xmlTail, driver.getTaskName()));
+    }
+
+    private static final int TEXT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Writes the TEXT element. A primary text that is not a string (i.e. a large
+     * document) is copied to the writer in chunks.
+     */
+    private static void writeXmlText(Writer writer, CharSequence primaryText) throws IOException {
+        int textAt = xmlText.indexOf("%s");
+        writer.write(xmlText, 0, textAt);
+        writeCData(writer, primaryText);
+        writer.write(xmlText, textAt + 2, xmlText.length() - textAt - 2);
+    }
+
+    private static void writeCData(Writer writer, CharSequence text) throws IOException {
+        CDataEscaper escaper = new CDataEscaper(writer);
+        if (text instanceof String) {
+            escaper.write((String) text);
+        } else if (text != null) {
+            for (int start = 0; start < text.length(); start += TEXT_CHUNK_SIZE) {
+                int end = Math.min(start + TEXT_CHUNK_SIZE, text.length());
+                escaper.write(text.subSequence(start, end).toString());
+            }
+        }
+    }
+
+    /**
+     * Splits the CDATA section wherever the text contains "]]>", which would
+     * otherwise end the section early. Keeps track of brackets across chunks.
+     */
+    private static class CDataEscaper {
+        private static final String CDATA_SPLIT = "]]><![CDATA[";
+
+        private final Writer writer;
+        private int brackets = 0;
+
+        CDataEscaper(Writer writer) {
+            this.writer = writer;
+        }
+
+        void write(String chunk) throws IOException {
+            int from = 0;
+            for (int i = 0; i < chunk.length(); i++) {
+                char c = chunk.charAt(i);
+                if (c == '>' && brackets >= 2) {
+                    writer.write(chunk, from, i - from);
+                    writer.write(CDATA_SPLIT);
+                    from = i;
+                }
+                brackets = c == ']' ? brackets + 1 : 0;
+            }
+            writer.write(chunk, from, chunk.length() - from);
+        }
+    }
+
+    public static final String JSON_DOCUMENT_RECORD = "document";
+    public static final String JSON_TASK = "task";
+
+    /**
+     * Writes all annotations in a driver as JSON Lines: a document record with
+     * the task name and the primary text, followed by one record per tag.
+     */
+    public static void writeAnnotationToJsonLines(MaeDriverI driver, File jsonlOutFile)
+            throws MaeDBException, MaeIOException {
+        try (Writer writer = FileHandler.openUTF8Writer(jsonlOutFile)) {
+            writeAnnotationJsonLines(driver, writer);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot write annotation to a file: " + jsonlOutFile.getAbsolutePath(), e);
+        }
+    }
+
+    public static void writeAnnotationJsonLines(MaeDriverI driver, Writer writer) throws MaeDBException, IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(writer);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        generator.writeStartObject();
+        generator.writeStringField(Tag.JSON_RECORD, JSON_DOCUMENT_RECORD);
+        generator.writeStringField(JSON_TASK, driver.getTaskName());
+        CharSequence primaryText = driver.getPrimaryText();
+        generator.writeFieldName(Tag.JSON_TEXT);
+        if (primaryText == null || primaryText instanceof String) {
+            generator.writeString((String) primaryText);
+        } else {
+            generator.writeString(new CharSequenceReader(primaryText), primaryText.length());
+        }
+        generator.writeEndObject();
+        for (TagType eType : driver.getExtentTagTypes()) {
+            for (ExtentTag tag : driver.getAllExtentTagsOfType(eType)) {
+                tag.writeJson(generator);
+            }
+        }
+        for (TagType lType : driver.getLinkTagTypes()) {
+            for (LinkTag tag : driver.getAllLinkTagsOfType(lType)) {
+                tag.writeJson(generator);
+            }
+        }
+        generator.writeRaw("\n");
+        generator.flush();
+    }
+
+    /**
+     * Writes parsed annotations (that are not in any driver) into an XML file,
+     * in the same format as {@link #writeAnnotationToXML(MaeDriverI, File)}.
+     */
+    public static void writeParsedAnnotationToXML(String taskName, String primaryText, List<ParsedTag> tags,
+                                                  List<ParsedAtt> atts, List<ParsedArg> args, File xmlOutFile)
+            throws MaeIOException {
+        Map<String, ParsedTag> tagsByTid = new HashMap<>();
+        for (ParsedTag tag : tags) {
+            tagsByTid.put(tag.getTid(), tag);
+        }
+        Map<String, List<String>> xmlAttsByTid = new HashMap<>();
+        for (ParsedArg arg : args) {
+            ParsedTag argument = tagsByTid.get(arg.getArgTid());
+            List<String> xmlAtts = xmlAttsByTid.computeIfAbsent(arg.getTid(), k -> new ArrayList<>());
+            xmlAtts.add(xmlAttribute(arg.getArgTypeName() + MaeStrings.ARG_IDCOL_SUF, arg.getArgTid()));
+            xmlAtts.add(xmlAttribute(arg.getArgTypeName() + MaeStrings.ARG_TEXTCOL_SUF,
+                    argument == null ? "" : argument.getText()));
+        }
+        for (ParsedAtt att : atts) {
+            if (att.getAttValue() != null && att.getAttValue().length() > 0) {
+                xmlAttsByTid.computeIfAbsent(att.getTid(), k -> new ArrayList<>())
+                        .add(xmlAttribute(att.getAttTypeName(), att.getAttValue()));
+            }
+        }
+
+        try (Writer writer = FileHandler.openUTF8Writer(xmlOutFile)) {
+            writer.write(String.format(xmlHeader, taskName));
+            writeXmlText(writer, primaryText);
+            for (ParsedTag tag : tags) {
+                List<String> xmlAtts = new ArrayList<>();
+                xmlAtts.add(tag.getTagTypeName());
+                xmlAtts.add(xmlAttribute("id", tag.getTid()));
+                if (!tag.isLink()) {
+                    xmlAtts.add(xmlAttribute("spans", SpanHandler.convertArrayToString(tag.getSpans())));
+                    xmlAtts.add(xmlAttribute("text", tag.getText()));
+                }
+                xmlAtts.addAll(xmlAttsByTid.getOrDefault(tag.getTid(), Collections.<String>emptyList()));
+                writer.write(String.format("<%s />\n", String.join(" ", xmlAtts)));
+            }
+            writer.write(String.format(xmlTail, taskName));
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot write annotation to a file: " + xmlOutFile.getAbsolutePath(), e);
+        }
+    }
+
+    private static String xmlAttribute(String name, String value) {
+        if (value == null) {
+            value = "";
+        }
+        // same escaping as in model.Tag
+        value = value.replace("\n", " ")
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&apos;");
+        return String.format("%s=\"%s\"", name, value);
+    }
+
     public static void writeTextToEmptyXML(File utf8file, String task, File xmlOutFile)
             throws MaeIOException {
         try {
-            writeTextToEmptyXML(new BufferedReader(new InputStreamReader(
-                    new FileInputStream(utf8file), StandardCharsets.UTF_8)), task, xmlOutFile);
-        } catch (FileNotFoundException e) {
+            writeTextToEmptyXML(new BufferedReader(FileHandler.openUTF8Reader(utf8file)), task, xmlOutFile);
+        } catch (IOException e) {
             throw new MaeIOException(e.getMessage());
         }
     }
 
     public static void writeTextToEmptyXML(String utf8Text, String task, File xmlOutFile)
             throws MaeIOException {
-        writeTextToEmptyXML(new BufferedReader(new StringReader(utf8Text)), task, xmlOutFile);
+        writeTextToEmptyXML((CharSequence) utf8Text, task, xmlOutFile);
     }
 
-    public static void writeTextToEmptyXML(BufferedReader utf8BufReader, String task, File xmlOutFile)
+    /**
+     * Writes a primary text, that is already free of characters not allowed in XML
+     * (see {@link PlainTextReader}), into a new annotation file without any tag.
+     */
+    public static void writeTextToEmptyXML(CharSequence primaryText, String task, File xmlOutFile)
             throws MaeIOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(xmlOutFile), StandardCharsets.UTF_8), TEXT_CHUNK_SIZE)) {
+            writer.write(String.format(MaeStrings.maeXMLHeader, task));
+            writeCData(writer, primaryText);
+            writer.write(String.format(MaeStrings.maeXMLFooter, task));
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot create a new file!", e);
+        }
+    }
 
-        try (PrintWriter outputWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(xmlOutFile), StandardCharsets.UTF_8)))) {
-            if (!xmlOutFile.exists()) xmlOutFile.createNewFile();
-            outputWriter.print(String.format(
-                    MaeStrings.maeXMLHeader, task));
+    public static void writeTextToEmptyXML(BufferedReader utf8BufReader, String task, File xmlOutFile)
+            throws MaeIOException {
 
-            int c;
-            while ((c = utf8BufReader.read()) > -1) {
-                outputWriter.print((char) c);
+        try (Writer outputWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(xmlOutFile), StandardCharsets.UTF_8), TEXT_CHUNK_SIZE)) {
+            outputWriter.write(String.format(MaeStrings.maeXMLHeader, task));
+            CDataEscaper escaper = new CDataEscaper(outputWriter);
+            char[] buffer = new char[TEXT_CHUNK_SIZE];
+            int read;
+            while ((read = utf8BufReader.read(buffer)) > -1) {
+                escaper.write(new String(buffer, 0, read));
             }
-            outputWriter.print(String.format(MaeStrings.maeXMLFooter, task));
+            outputWriter.write(String.format(MaeStrings.maeXMLFooter, task));
             utf8BufReader.close();
         } catch (IOException e) {
             throw new MaeIOException("Cannot create a new file!", e);
@@ -0,0 +1,243 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import edu.brandeis.llc.mae.MaeException;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.*;
+import edu.brandeis.llc.mae.util.FileHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads an annotation document in JSON Lines, as written by
+ * {@link MaeFileWriter#writeAnnotationJsonLines}. Records are read one at a time
+ * with a streaming parser and turned into the same parsed tags, attributes and
+ * arguments as {@link MaeXMLParser} produces, so that they can be inserted into
+ * a driver through {@link AnnotationLoader#writeParseToDB}.
+ */
+public class MaeJsonLinesParser {
+    private static final Logger logger = LoggerFactory.getLogger(MaeJsonLinesParser.class.getName());
+
+    public static final String JSONL_EXT = ".jsonl";
+
+    private final MaeDriverI driver;
+    private String taskName;
+    private String primaryText;
+    private List<ParsedTag> tags = new ArrayList<>();
+    private List<ParsedAtt> atts = new ArrayList<>();
+    private List<ParsedArg> args = new ArrayList<>();
+    private ParseWarnings parseWarnings = new ParseWarnings();
+    private int recordLine = -1;
+    private TaskSchema schema;
+
+    public MaeJsonLinesParser(MaeDriverI driver) {
+        this.driver = driver;
+    }
+
+    public MaeJsonLinesParser(MaeDriverI driver, TaskSchema schema) {
+        this.driver = driver;
+        this.schema = schema;
+    }
+
+    public static boolean isJsonLines(File file) {
+        String fileName = file.getName().toLowerCase();
+        return fileName.endsWith(JSONL_EXT) || fileName.endsWith(JSONL_EXT + FileHandler.GZ_EXT);
+    }
+
+    public void readAnnotationFile(File file) throws MaeException {
+        try (Reader reader = FileHandler.openUTF8Reader(file)) {
+            readAnnotation(reader);
+        } catch (JsonParseException e) {
+            throw new MaeIOException(String.format("error in JSON: %s, line: %d, column: %d",
+                    e.getOriginalMessage(), e.getLocation().getLineNr(), e.getLocation().getColumnNr()), e);
+        } catch (IOException e) {
+            throw new MaeIOException("IO error while reading the file: " + file.getName(), e);
+        }
+    }
+
+    public void readAnnotation(Reader reader) throws IOException, MaeException {
+        if (schema == null) {
+            schema = TaskSchema.compile(driver);
+        }
+        JsonParser parser = new JsonFactory().createParser(reader);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            readRecord(parser);
+        }
+        if (primaryText == null) {
+            throw new MaeIOException("JSON annotation has no document record");
+        }
+    }
+
+    private void readRecord(JsonParser parser) throws IOException, MaeException {
+        recordLine = parser.getCurrentLocation().getLineNr();
+        String record = null;
+        String tid = null;
+        String tagTypeName = null;
+        String spans = null;
+        String text = null;
+        Map<String, String> arguments = new LinkedHashMap<>();
+        Map<String, String> attributes = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case Tag.JSON_RECORD: record = parser.getText(); break;
+                case MaeFileWriter.JSON_TASK: taskName = parser.getText(); break;
+                case Tag.JSON_ID: tid = parser.getText(); break;
+                case Tag.JSON_TAGTYPE: tagTypeName = parser.getText(); break;
+                case Tag.JSON_SPANS: spans = parser.getText(); break;
+                case Tag.JSON_TEXT: text = parser.getText(); break;
+                case Tag.JSON_ARGUMENTS: readStringMap(parser, arguments); break;
+                case Tag.JSON_ATTRIBUTES: readStringMap(parser, attributes); break;
+                default:
+                    if (value.isStructStart()) {
+                        parser.skipChildren();
+                    }
+            }
+        }
+        if (MaeFileWriter.JSON_DOCUMENT_RECORD.equals(record)) {
+            primaryText = text == null ? "" : text;
+            return;
+        }
+        if (primaryText == null) {
+            throw new MaeIOException("document record should come before any tag: " + tid);
+        }
+        TaskSchema.TagSchema tagSchema = tagTypeName == null ? null : schema.getTagType(tagTypeName);
+        if (tagSchema == null || tid == null) {
+            addWarning(ParseWarnings.Code.UNEXPECTED_TAG_TYPE, tid, tagTypeName, null, null, null);
+            return;
+        }
+        TagType tagType = tagSchema.getTagType();
+        ParsedTag tag = new ParsedTag();
+        tag.setTid(tid);
+        tag.setTagTypeName(tagTypeName);
+        tag.setLink(tagType.isLink());
+        if (tagType.isExtent()) {
+            tag.setSpans(spans);
+            // same as XML, text is sliced from the primary text, not taken from the record
+            tag.setText(MaeXMLParser.getSpannedText(primaryText, tag.getSpans()));
+        } else {
+            for (Map.Entry<String, String> argument : arguments.entrySet()) {
+                addArgument(tagSchema, tid, argument.getKey(), argument.getValue());
+            }
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            addAttribute(tagSchema, tid, attribute.getKey(), attribute.getValue());
+        }
+        tags.add(tag);
+    }
+
+    private void readStringMap(JsonParser parser, Map<String, String> map) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+            map.put(key, parser.getValueAsString(""));
+        }
+    }
+
+    private void addArgument(TaskSchema.TagSchema linkType, String tid, String argTypeName, String argTid) {
+        if (linkType.getArgument(argTypeName) == null) {
+            addWarning(ParseWarnings.Code.UNEXPECTED_ARGUMENT, tid, linkType.getTagType().getName(), argTypeName, argTid, null);
+            return;
+        }
+        if (argTid.length() > 0) {
+            ParsedArg arg = new ParsedArg();
+            arg.setTid(tid);
+            arg.setTagTypeName(linkType.getTagType().getName());
+            arg.setArgTypeName(argTypeName);
+            arg.setArgTid(argTid);
+            args.add(arg);
+        }
+    }
+
+    private void addAttribute(TaskSchema.TagSchema tagSchema, String tid, String attTypeName, String value) {
+        TaskSchema.AttSchema attType = tagSchema.getAttribute(attTypeName);
+        String tagTypeName = tagSchema.getTagType().getName();
+        if (attType == null) {
+            addWarning(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE, tid, tagTypeName, attTypeName, value, null);
+            return;
+        }
+        if (!attType.isValid(value)) {
+            addWarning(ParseWarnings.Code.INVALID_VALUE, tid, tagTypeName, attTypeName, value, attType.getValues());
+            value = attType.getDefaultValue();
+        }
+        ParsedAtt att = new ParsedAtt();
+        att.setTid(tid);
+        att.setTagTypeName(tagTypeName);
+        att.setAttTypeName(attTypeName);
+        att.setAttValue(value);
+        atts.add(att);
+    }
+
+    private void addWarning(ParseWarnings.Code code, String tid, String tagTypeName, String attName, String value,
+                            List<String> validValues) {
+        if (parseWarnings.add(code, tid, tagTypeName, attName, value, validValues, recordLine)) {
+            List<ParseWarnings.Warning> recorded = parseWarnings.getWarnings();
+            logger.warn(recorded.get(recorded.size() - 1).toString());
+        }
+    }
+
+    public String getParseWarnings() {
+        return parseWarnings.toString();
+    }
+
+    public ParseWarnings getWarnings() {
+        return parseWarnings;
+    }
+
+    public String getParsedTaskName() {
+        return taskName;
+    }
+
+    public String getParsedPrimaryText() {
+        return primaryText;
+    }
+
+    public List<ParsedTag> getParsedTags() {
+        return tags;
+    }
+
+    public List<ParsedAtt> getParsedAtts() {
+        return atts;
+    }
+
+    public List<ParsedArg> getParsedArgs() {
+        return args;
+    }
+}
@@ -29,14 +29,16 @@ import edu.brandeis.llc.mae.MaeStrings;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.database.MaeDriverI;
 import edu.brandeis.llc.mae.model.ArgumentType;
-import edu.brandeis.llc.mae.model.AttributeType;
-import edu.brandeis.llc.mae.model.TagType;
-import edu.brandeis.llc.mae.util.MappedSet;
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.MappedText;
 import edu.brandeis.llc.mae.util.SpanHandler;
+import edu.brandeis.llc.mae.util.SpannedText;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
@@ -54,43 +56,95 @@ public class MaeXMLParser {
     private static final Logger logger = LoggerFactory.getLogger(MaeXMLParser.class.getName());
 
     private MaeDriverI driver;
+    private TaskSchema schema;
     private MaeSAXHandler xmlHandler;
-    private String parseWarnings = "";
+    // lazily built over parsed tags and atts, dropped at every new parse
+    private volatile Map<String, Map<SpanKey, List<ParsedTag>>> tagIndex;
+    private volatile Map<String, List<ParsedAtt>> attIndex;
+    private ParseWarnings parseWarnings = new ParseWarnings();
+
+    /**
+     * Number of characters of primary text above which it is moved off the heap
+     * into a {@link MappedText}.
+     */
+    public static final int LARGE_DOCUMENT_THRESHOLD = 1 << 22;
+    private int largeDocumentThreshold = LARGE_DOCUMENT_THRESHOLD;
 
     public MaeXMLParser() {
 
     }
 
     public MaeXMLParser(MaeDriverI driver) throws MaeDBException {
+        this(driver, TaskSchema.compile(driver));
+    }
+
+    /**
+     * Creates a parser that validates against an already compiled task definition,
+     * so that loading many files does not query the DB for each of them.
+     */
+    public MaeXMLParser(MaeDriverI driver, TaskSchema schema) {
         this.driver = driver;
+        this.schema = schema;
     }
 
     public void readAnnotationFile(File file) throws SAXException, IOException, MaeDBException {
-        try {
-            List<String> extTagTypeNames = new ArrayList<>();
-            for (TagType type : driver.getExtentTagTypes()) {
-                extTagTypeNames.add(type.getName());
-            }
-            List<String> linkTagTypeNames = new ArrayList<>();
-            for (TagType type : driver.getLinkTagTypes()) {
-                linkTagTypeNames.add(type.getName());
-            }
+        this.parseWarnings = new ParseWarnings();
+        this.xmlHandler = new MaeSAXHandler(schema);
+        parse(file);
+    }
 
-            this.xmlHandler = new MaeSAXHandler(extTagTypeNames, linkTagTypeNames);
-            parse(file);
-        } catch (MaeDBException e) {
-            throw e;
+    /**
+     * Creates a parser holding the result of an earlier parse restored from a snapshot,
+     * with texts of extent tags sliced from the given primary text. Parse warnings
+     * are not restored.
+     */
+    public static MaeXMLParser restore(AnnotationSnapshot snapshot, CharSequence primaryText) {
+        MaeXMLParser parser = new MaeXMLParser();
+        parser.xmlHandler = parser.new MaeSAXHandler();
+        parser.xmlHandler.setTaskName(snapshot.getTaskName());
+        parser.xmlHandler.tags.addAll(snapshot.getParsedTags());
+        parser.xmlHandler.atts.addAll(snapshot.getParsedAtts());
+        parser.xmlHandler.args.addAll(snapshot.getParsedArgs());
+        parser.resliceTags(primaryText);
+        return parser;
+    }
+
+    /**
+     * Replaces the parsed primary text with an identical one held elsewhere, typically
+     * parsed from another annotator's file of the same document, so that only one copy
+     * stays in memory.
+     *
+     * @return false, and nothing is replaced, if the texts differ
+     */
+    public boolean sharePrimaryText(CharSequence primaryText) {
+        CharSequence parsed = getParsedPrimaryText();
+        if (parsed == primaryText) {
+            return true;
+        } else if (!StringUtils.equals(parsed, primaryText)) {
+            return false;
+        }
+        resliceTags(primaryText);
+        return true;
+    }
+
+    private void resliceTags(CharSequence primaryText) {
+        xmlHandler.setPrimaryText(primaryText);
+        for (ParsedTag tag : xmlHandler.getParsedTags()) {
+            if (!tag.isLink()) {
+                tag.setText(getSpannedText(primaryText, tag.getSpans()));
+            }
         }
     }
 
     public boolean hasParWarnings() {
-        return parseWarnings.length() > 0;
+        return !parseWarnings.isEmpty();
     }
 
     public String getParseWarnings() {
-        if (parseWarnings.length() > 0) {
-            return parseWarnings.substring(0, parseWarnings.length() - 2);
-        }
+        return parseWarnings.toString();
+    }
+
+    public ParseWarnings getWarnings() {
         return parseWarnings;
     }
 
@@ -100,13 +154,16 @@ public class MaeXMLParser {
     }
 
     private void parse(File utf8file) throws IOException, SAXException  {
+        tagIndex = null;
+        attIndex = null;
         try {
             SAXParserFactory factory = SAXParserFactory.newInstance();
             SAXParser saxParser = factory.newSAXParser();
-            Reader r = new InputStreamReader(new FileInputStream(utf8file), StandardCharsets.UTF_8);
-            InputSource source = new InputSource(r);
-            source.setEncoding(StandardCharsets.UTF_8.name());
-            saxParser.parse(source, xmlHandler);
+            try (Reader r = FileHandler.openUTF8Reader(utf8file)) {
+                InputSource source = new InputSource(r);
+                source.setEncoding(StandardCharsets.UTF_8.name());
+                saxParser.parse(source, xmlHandler);
+            }
         } catch (ParserConfigurationException e) {
             e.printStackTrace();
         }
@@ -118,10 +175,18 @@ public class MaeXMLParser {
         return xmlHandler.getTaskName().equals(taskName);
     }
 
-    public boolean isPrimaryTextMatching(File file, String primaryText) throws SAXException, IOException {
+    public boolean isPrimaryTextMatching(File file, CharSequence primaryText) throws SAXException, IOException {
         this.xmlHandler = new MaeSAXSimpleHandler();
         parse(file);
-        return xmlHandler.getPrimaryText().equals(primaryText);
+        return StringUtils.equals(xmlHandler.getPrimaryText(), primaryText);
+    }
+
+    public int getLargeDocumentThreshold() {
+        return largeDocumentThreshold;
+    }
+
+    public void setLargeDocumentThreshold(int largeDocumentThreshold) {
+        this.largeDocumentThreshold = largeDocumentThreshold;
     }
 
     public List<ParsedTag> getParsedTags() {
@@ -136,10 +201,101 @@ public class MaeXMLParser {
         return xmlHandler.getParsedArgs();
     }
 
-    public String getParsedPrimaryText() {
+    /**
+     * Returns parsed tags of a type anchored exactly on the given spans, looked up
+     * in an index built at the first call.
+     */
+    public List<ParsedTag> getParsedTags(String tagTypeName, int[] spans) {
+        Map<SpanKey, List<ParsedTag>> bySpans = getTagIndex().get(tagTypeName);
+        List<ParsedTag> tags = bySpans == null ? null : bySpans.get(new SpanKey(spans));
+        return tags == null ? Collections.<ParsedTag>emptyList() : tags;
+    }
+
+    /**
+     * Returns distinct spans of parsed tags of a type, in the order they are first found.
+     */
+    public List<int[]> getParsedSpans(String tagTypeName) {
+        Map<SpanKey, List<ParsedTag>> bySpans = getTagIndex().get(tagTypeName);
+        List<int[]> spans = new ArrayList<>();
+        if (bySpans != null) {
+            for (SpanKey key : bySpans.keySet()) {
+                spans.add(key.spans);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Returns parsed attributes of a tag, looked up in an index built at the first call.
+     */
+    public List<ParsedAtt> getParsedAtts(String tid) {
+        Map<String, List<ParsedAtt>> index = attIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (attIndex == null) {
+                    Map<String, List<ParsedAtt>> built = new HashMap<>();
+                    for (ParsedAtt att : getParsedAtts()) {
+                        built.computeIfAbsent(att.getTid(), k -> new ArrayList<>(4)).add(att);
+                    }
+                    attIndex = built;
+                }
+                index = attIndex;
+            }
+        }
+        List<ParsedAtt> atts = index.get(tid);
+        return atts == null ? Collections.<ParsedAtt>emptyList() : atts;
+    }
+
+    private Map<String, Map<SpanKey, List<ParsedTag>>> getTagIndex() {
+        Map<String, Map<SpanKey, List<ParsedTag>>> index = tagIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (tagIndex == null) {
+                    Map<String, Map<SpanKey, List<ParsedTag>>> built = new HashMap<>();
+                    for (ParsedTag tag : getParsedTags()) {
+                        built.computeIfAbsent(tag.getTagTypeName(), k -> new LinkedHashMap<>())
+                                .computeIfAbsent(new SpanKey(tag.getSpans()), k -> new ArrayList<>(1)).add(tag);
+                    }
+                    tagIndex = built;
+                }
+                index = tagIndex;
+            }
+        }
+        return index;
+    }
+
+    private static final class SpanKey {
+        private final int[] spans;
+        private final int hash;
+
+        SpanKey(int[] spans) {
+            this.spans = spans;
+            this.hash = Arrays.hashCode(spans);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SpanKey && Arrays.equals(spans, ((SpanKey) o).spans);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public CharSequence getParsedPrimaryText() {
         return xmlHandler.getPrimaryText();
     }
 
+    /**
+     * Returns a lazy view of the text of an extent tag over the primary text.
+     * Discontiguous spans are joined with {@link MaeStrings#SPANTEXTTRUNC}.
+     */
+    public static CharSequence getSpannedText(CharSequence primaryText, int[] spans) {
+        return new SpannedText(primaryText, spans);
+    }
+
     public MaeSAXHandler getParsed() {
         return this.xmlHandler;
     }
@@ -150,57 +306,20 @@ public class MaeXMLParser {
         private List<ParsedArg> args;
         private boolean hasTextElem = false;
         private boolean hasRootElem = false;
-        private String primaryText;
+        private CharSequence primaryText;
+        private StringBuilder textBuffer;
+        private MappedText.Builder mappedTextBuffer;
         private String taskName;
-        private List<String> extTagTypeNames;
-        private List<String> linkTagTypeNames;
-        private MappedSet<String, String> attTypeMap;
-        private Map<String, List<String>> attValueMap;
-        private Map<String, String> attDefValueMap;
-        private MappedSet<String, String> argTypeMap;
+        private TaskSchema schema;
+        private Locator locator;
 
         public MaeSAXHandler() {
             initParsedLists();
         }
 
-        public MaeSAXHandler(List<String> extTagTypeNames, List<String> linkTagTypeNames) throws MaeDBException {
-            this.extTagTypeNames = extTagTypeNames;
-            this.linkTagTypeNames = linkTagTypeNames;
-            cacheAttMaps();
-            cacheArgMap();
+        public MaeSAXHandler(TaskSchema schema) {
+            this.schema = schema;
             initParsedLists();
-
-        }
-
-        private void cacheArgMap() throws MaeDBException {
-            this.argTypeMap = new MappedSet<>();
-            for (String linkTypeName : linkTagTypeNames) {
-                for (ArgumentType argType : driver.getArgumentTypesOfLinkTagType(driver.getTagTypeByName(linkTypeName))) {
-                    argTypeMap.putItem(linkTypeName, argType.getName());
-                }
-            }
-        }
-
-        private void cacheAttMaps() throws MaeDBException {
-            this.attTypeMap = new MappedSet<>();
-            this.attValueMap = new HashMap<>();
-            this.attDefValueMap = new HashMap<>();
-            cacheAttMapsFromTagTypes(extTagTypeNames);
-            cacheAttMapsFromTagTypes(linkTagTypeNames);
-        }
-
-        private void cacheAttMapsFromTagTypes(List<String> tagTypeNames) throws MaeDBException {
-            for (String tagTypeName : tagTypeNames) {
-                for (AttributeType attType : driver.getAttributeTypesOfTagType(driver.getTagTypeByName(tagTypeName))) {
-                    String attTypeName = attType.getName();
-                    attTypeMap.putItem(tagTypeName, attTypeName);
-                    if (attType.isFiniteValueset()) {
-                        String attValuesKey = String.format("%s-%s", tagTypeName, attTypeName);
-                        attValueMap.put(attValuesKey, attType.getValuesetAsList());
-                        attDefValueMap.put(attValuesKey, attType.getDefaultValue());
-                    }
-                }
-            }
         }
 
         private void initParsedLists() {
@@ -209,6 +328,15 @@ public class MaeXMLParser {
             this.args = new ArrayList<>();
         }
 
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+        }
+
+        private int getLine() {
+            return locator == null ? -1 : locator.getLineNumber();
+        }
+
         @Override
         public void startElement(String nsURI, String localName, String qName,
                                  Attributes attributes) throws SAXException {
@@ -223,7 +351,7 @@ public class MaeXMLParser {
                 }
             } else if (qName.equalsIgnoreCase("text")) {
                 logger.debug("found text node: " + qName);
-                hasTextElem = true;
+                startPrimaryText();
             } else if (qName.equalsIgnoreCase("tags")) {
             } else {
                 parseTag(qName, attributes);
@@ -232,20 +360,22 @@ public class MaeXMLParser {
 
         private void parseTag(String tagTypeName, Attributes attributes) throws SAXException {
             ParsedTag tag = new ParsedTag();
-            if (extTagTypeNames.contains(tagTypeName)) {
-                logger.debug(String.format("found extent tag: %s(%s)", attributes.getValue("id"), tagTypeName));
-                parseExtentTag(tagTypeName, tag, attributes);
-            } else if (linkTagTypeNames.contains(tagTypeName)) {
-                logger.debug(String.format("found link tag: %s(%s)", attributes.getValue("id"), tagTypeName));
-                parseLinkTag(tagTypeName, tag, attributes);
+            TaskSchema.TagSchema tagSchema = schema.getTagType(tagTypeName);
+            if (tagSchema != null && !tagSchema.isLink()) {
+                logger.debug("found extent tag: {}({})", attributes.getValue("id"), tagTypeName);
+                parseExtentTag(tagSchema, tag, attributes);
+            } else if (tagSchema != null) {
+                logger.debug("found link tag: {}({})", attributes.getValue("id"), tagTypeName);
+                parseLinkTag(tagSchema, tag, attributes);
             } else {
-                parseWarnings += String.format("unexpected tag type found: \"%s\"\nIgnored. \n\n", tagTypeName);
+                parseWarnings.add(ParseWarnings.Code.UNEXPECTED_TAG_TYPE,
+                        attributes.getValue("id"), tagTypeName, null, null, getLine());
             }
         }
 
-        private void parseExtentTag(String tagTypeName, ParsedTag tag, Attributes attributes) throws SAXException {
+        private void parseExtentTag(TaskSchema.TagSchema tagSchema, ParsedTag tag, Attributes attributes) throws SAXException {
 
-            tag.setTagTypeName(tagTypeName);
+            tag.setTagTypeName(tagSchema.getTagType().getName());
             tag.setLink(false);
             String tempStart = null;
             String tempEnd = null;
@@ -253,67 +383,46 @@ public class MaeXMLParser {
             for(int i = 0; i < attributes.getLength(); i++){
                 String attName = attributes.getQName(i);
                 String attValue = attributes.getValue(i);
-                switch (attName.toLowerCase()) {
-                    case "id":
-                        tag.setTid(attValue);
-                        tid = attValue;
-                        break;
-                    case "spans":
-                        try {
-                            int[] spans = SpanHandler.convertStringToArray(attValue);
-                            tag.setSpans(spans);
-                            tag.setText(getSubstringFromPrimaryText(spans));
-                        } catch (MaeException e) {
-                            throw new SAXException(tid + ": " + e.getMessage());
-                        }
-                        break;
-                    case "start":
-                        if (tempEnd != null) {
-                            int[] spans = convertStartEndToSpansArray(attValue, tempEnd);
-                            tag.setSpans(spans);
-                            tag.setText(getSubstringFromPrimaryText(spans));
-                        } else {
-                            tempStart = attValue;
-                        }
-                        break;
-                    case "end":
-                        if (tempStart != null) {
-                            int[] spans = convertStartEndToSpansArray(tempStart, attValue);
-                            tag.setSpans(spans);
-                            tag.setText(getSubstringFromPrimaryText(spans));
-                        } else {
-                            tempEnd = attValue;
-                        }
-                        break;
-                    case "text":
-//                        tag.setText(value);
-                        // to avoid the bug in reading unicode high surrogates,
-                        // text fields are directly sliced from primary text that is on memory
-                        break;
-                    default:
-                        parseAttribute(tagTypeName, tid, attName, attValue);
-
+                // reserved names are matched in any case, without a lowercased copy of every name
+                if (attName.equalsIgnoreCase("id")) {
+                    tag.setTid(attValue);
+                    tid = attValue;
+                } else if (attName.equalsIgnoreCase("spans")) {
+                    try {
+                        int[] spans = SpanHandler.convertStringToArray(attValue);
+                        tag.setSpans(spans);
+                        tag.setText(getSubstringFromPrimaryText(spans));
+                    } catch (MaeException e) {
+                        throw new SAXException(tid + ": " + e.getMessage());
+                    }
+                } else if (attName.equalsIgnoreCase("start")) {
+                    if (tempEnd != null) {
+                        int[] spans = convertStartEndToSpansArray(attValue, tempEnd);
+                        tag.setSpans(spans);
+                        tag.setText(getSubstringFromPrimaryText(spans));
+                    } else {
+                        tempStart = attValue;
+                    }
+                } else if (attName.equalsIgnoreCase("end")) {
+                    if (tempStart != null) {
+                        int[] spans = convertStartEndToSpansArray(tempStart, attValue);
+                        tag.setSpans(spans);
+                        tag.setText(getSubstringFromPrimaryText(spans));
+                    } else {
+                        tempEnd = attValue;
+                    }
+                } else if (!attName.equalsIgnoreCase("text")) {
+                    // text fields are skipped: to avoid the bug in reading unicode high surrogates,
+                    // text is directly sliced from primary text that is on memory
+                    parseAttribute(tagSchema, tid, attName, attValue);
                 }
             }
             tags.add(tag);
 
         }
 
-        private String getSubstringFromPrimaryText(int[] spans) {
-            String text = "";
-            if (spans.length > 0) {
-                List<int[]> spanPairs = SpanHandler.convertArrayToPairs(spans);
-                Iterator<int[]> iter = spanPairs.iterator();
-
-                while (iter.hasNext()) {
-                    int[] pair = iter.next();
-                    text += primaryText.substring(pair[0], pair[1]);
-                    if (iter.hasNext()) {
-                        text += MaeStrings.SPANTEXTTRUNC;
-                    }
-                }
-            }
-            return text;
+        private CharSequence getSubstringFromPrimaryText(int[] spans) {
+            return getSpannedText(primaryText, spans);
         }
 
         private int[] convertStartEndToSpansArray(String start, String end) {
@@ -326,54 +435,52 @@ public class MaeXMLParser {
             }
         }
 
-        private void parseLinkTag(String tagTypeName, ParsedTag tag, Attributes attributes) throws SAXException {
+        private void parseLinkTag(TaskSchema.TagSchema tagSchema, ParsedTag tag, Attributes attributes) throws SAXException {
 
+            String tagTypeName = tagSchema.getTagType().getName();
             tag.setTagTypeName(tagTypeName);
             tag.setLink(true);
             String tid = null;
             for(int i = 0; i < attributes.getLength(); i++){
                 String name = attributes.getQName(i);
                 String value = attributes.getValue(i);
+                ArgumentType argType;
                 if (name.equalsIgnoreCase("id")) {
                     tag.setTid(value);
                     tid = value;
-                } else if (name.endsWith(MaeStrings.ARG_IDCOL_SUF) && value.length() > 0
-                        && argTypeMap.get(tagTypeName).contains(name.substring(0, name.length() - MaeStrings.ARG_IDCOL_SUF.length()))) {
+                } else if (value.length() > 0 && (argType = tagSchema.getArgumentByIdAttribute(name)) != null) {
 
                     ParsedArg arg = new ParsedArg();
                     arg.setTid(tid);
                     arg.setTagTypeName(tagTypeName);
-                    arg.setArgTypeName(name.substring(0, name.length() - MaeStrings.ARG_IDCOL_SUF.length()));
+                    arg.setArgTypeName(argType.getName());
                     arg.setArgTid(value);
                     args.add(arg);
                 } else if (name.endsWith(MaeStrings.ARG_TEXTCOL_SUF) || value.length() < 1) {
                 } else {
-                    parseAttribute(tagTypeName, tid, name, value);
+                    parseAttribute(tagSchema, tid, name, value);
                 }
             }
             tags.add(tag);
 
         }
 
-        private void parseAttribute(String tagTypeName, String tid, String name, String value) throws SAXException {
+        private void parseAttribute(TaskSchema.TagSchema tagSchema, String tid, String name, String value) throws SAXException {
             // used to filter null valued atts for DB insertion
             // however this caused errors at computing IAA, so now keep null atts as well
-            if (!attTypeMap.get(tagTypeName).contains(name)) {
-                parseWarnings += String.format("unexpected attribute type found: \"%s\" of %s\nIgnored. \n\n", name, tid);
+            TaskSchema.AttSchema attSchema = tagSchema.getAttribute(name);
+            if (attSchema == null) {
+                parseWarnings.add(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE,
+                        tid, tagSchema.getTagType().getName(), name, value, getLine());
                 return;
             }
             ParsedAtt att = new ParsedAtt();
 
-            String attValuesKey = String.format("%s-%s", tagTypeName, name);
-            if (attValueMap.containsKey(attValuesKey)) {
-                if (!attValueMap.get(attValuesKey).contains(value) && value.length() > 0) {
-                    parseWarnings += String.format(
-                            "\"%s\" is not a valid value for \"%s\", valid values are %s\nSet to its default value. \n\n",
-                            value,
-                            attValuesKey,
-                            attValueMap.get(attValuesKey));
-                    value = attDefValueMap.get(attValuesKey);
-                }
+            String tagTypeName = tagSchema.getTagType().getName();
+            if (!attSchema.isValid(value)) {
+                parseWarnings.add(ParseWarnings.Code.INVALID_VALUE,
+                        tid, tagTypeName, name, value, attSchema.getValues(), getLine());
+                value = attSchema.getDefaultValue();
             }
             att.setTid(tid);
             att.setTagTypeName(tagTypeName);
@@ -383,12 +490,67 @@ public class MaeXMLParser {
         }
 
 
+        void startPrimaryText() {
+            hasTextElem = true;
+            textBuffer = new StringBuilder();
+            mappedTextBuffer = null;
+        }
+
+        /**
+         * SAX parsers may deliver the content of TEXT in any number of chunks,
+         * so chunks are accumulated until the element ends. Once the text grows
+         * beyond the large document threshold, it goes to a memory-mapped side file.
+         */
         @Override
-        public void characters(char[] ch, int start, int length) {
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (!hasTextElem) {
+                return;
+            }
+            // TODO: 5/7/18 strip non-xml characters
+            try {
+                if (mappedTextBuffer != null) {
+                    mappedTextBuffer.append(ch, start, length);
+                } else {
+                    textBuffer.append(ch, start, length);
+                    if (textBuffer.length() > largeDocumentThreshold) {
+                        logger.info(String.format("primary text exceeds %d characters, mapping it to a side file", largeDocumentThreshold));
+                        mappedTextBuffer = MappedText.builder();
+                        mappedTextBuffer.append(textBuffer);
+                        textBuffer = null;
+                    }
+                }
+            } catch (IOException e) {
+                throw new SAXException("cannot buffer primary text: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (hasTextElem && qName.equalsIgnoreCase("text")) {
+                endPrimaryText();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
             if (hasTextElem) {
-                // TODO: 5/7/18 strip non-xml characters
-                setPrimaryText(new String(ch, start, length));
-                hasTextElem = false;
+                endPrimaryText();
+            }
+        }
+
+        private void endPrimaryText() throws SAXException {
+            hasTextElem = false;
+            try {
+                if (mappedTextBuffer != null) {
+                    setPrimaryText(mappedTextBuffer.build());
+                } else {
+                    setPrimaryText(textBuffer.toString());
+                }
+            } catch (IOException e) {
+                throw new SAXException("cannot map primary text: " + e.getMessage(), e);
+            } finally {
+                textBuffer = null;
+                mappedTextBuffer = null;
             }
         }
 
@@ -412,11 +574,11 @@ public class MaeXMLParser {
             this.taskName = taskName;
         }
 
-        public String getPrimaryText(){
+        public CharSequence getPrimaryText(){
             return primaryText;
         }
 
-        public void setPrimaryText(String primaryText) {
+        public void setPrimaryText(CharSequence primaryText) {
             this.primaryText = primaryText;
         }
 
@@ -441,15 +603,7 @@ public class MaeXMLParser {
             }
 
             if (qName.equalsIgnoreCase("text")) {
-                super.hasTextElem = true;
-            }
-        }
-
-        @Override
-        public void characters(char[] ch, int start, int length) {
-            if (super.hasTextElem) {
-                setPrimaryText(new String(ch, start, length));
-                super.hasTextElem = false;
+                startPrimaryText();
             }
         }
 
@@ -0,0 +1,193 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Problems found while reading an annotation file that did not stop the file
+ * from being loaded. Warnings are kept as records, up to a cap per category,
+ * and beyond that only counted, so that a file badly mismatching its task
+ * definition does not pile up an unbounded report.
+ */
+public class ParseWarnings {
+
+    public static final int DEFAULT_CAP_PER_CODE = 100;
+
+    public enum Code {
+        UNEXPECTED_TAG_TYPE("unexpected tag type found: \"%2$s\"\nIgnored."),
+        UNEXPECTED_ATTRIBUTE("unexpected attribute type found: \"%3$s\" of %1$s\nIgnored."),
+        UNEXPECTED_ARGUMENT("unexpected argument type found: \"%3$s\" of %1$s\nIgnored."),
+        INVALID_VALUE("\"%4$s\" is not a valid value for \"%2$s-%3$s\", valid values are %5$s\nSet to its default value."),
+        INVALID_SPANS("\"%4$s\" is not a valid span of a %2$s tag in the primary text\nIgnored.");
+
+        // arguments: tid, tag type, attribute (or argument), value, valid values
+        private final String format;
+
+        Code(String format) {
+            this.format = format;
+        }
+    }
+
+    /**
+     * A single warning. Fields that do not apply to its code are null,
+     * and line is -1 when the location is unknown.
+     */
+    public static class Warning {
+        private final Code code;
+        private final String tid;
+        private final String tagTypeName;
+        private final String attName;
+        private final String value;
+        private final String validValues;
+        private final int line;
+
+        Warning(Code code, String tid, String tagTypeName, String attName, String value, String validValues, int line) {
+            this.code = code;
+            this.tid = tid;
+            this.tagTypeName = tagTypeName;
+            this.attName = attName;
+            this.value = value;
+            this.validValues = validValues;
+            this.line = line;
+        }
+
+        public Code getCode() {
+            return code;
+        }
+
+        public String getTid() {
+            return tid;
+        }
+
+        public String getTagTypeName() {
+            return tagTypeName;
+        }
+
+        public String getAttName() {
+            return attName;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            String message = String.format(code.format, tid, tagTypeName, attName, value, validValues);
+            return line < 0 ? message : String.format("line %d: %s", line, message);
+        }
+    }
+
+    private final int capPerCode;
+    private final int[] counts = new int[Code.values().length];
+    private final List<Warning> warnings = new ArrayList<>();
+
+    public ParseWarnings() {
+        this(DEFAULT_CAP_PER_CODE);
+    }
+
+    public ParseWarnings(int capPerCode) {
+        this.capPerCode = capPerCode;
+    }
+
+    /**
+     * Records a warning, or only counts it when its category is already full.
+     *
+     * @return true if the warning was kept as a record
+     */
+    public boolean add(Code code, String tid, String tagTypeName, String attName, String value, int line) {
+        return add(code, tid, tagTypeName, attName, value, null, line);
+    }
+
+    public boolean add(Code code, String tid, String tagTypeName, String attName, String value,
+                       List<String> validValues, int line) {
+        if (counts[code.ordinal()]++ >= capPerCode) {
+            return false;
+        }
+        warnings.add(new Warning(code, tid, tagTypeName, attName, value,
+                validValues == null ? null : validValues.toString(), line));
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return warnings.isEmpty();
+    }
+
+    /**
+     * Returns recorded warnings in the order found, at most the cap of each category.
+     */
+    public List<Warning> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    public int getCount(Code code) {
+        return counts[code.ordinal()];
+    }
+
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of warnings only counted, not recorded.
+     */
+    public int getDroppedCount() {
+        return getTotalCount() - warnings.size();
+    }
+
+    /**
+     * Renders recorded warnings, separated by blank lines, followed by
+     * the number of warnings dropped from each full category.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        for (Warning warning : warnings) {
+            if (report.length() > 0) {
+                report.append("\n\n");
+            }
+            report.append(warning);
+        }
+        for (Code code : Code.values()) {
+            int dropped = counts[code.ordinal()] - capPerCode;
+            if (dropped > 0) {
+                report.append(String.format("\n\n... and %d more %s warnings", dropped, code));
+            }
+        }
+        return report.toString();
+    }
+}
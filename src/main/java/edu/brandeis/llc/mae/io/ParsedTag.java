@@ -34,7 +34,7 @@ public class ParsedTag {
     private boolean isLink;
     private String tid;
     private String tagTypeName;
-    private String text;
+    private CharSequence text;
     private int[] spans;
 
     public boolean isLink() {
@@ -62,10 +62,10 @@ public class ParsedTag {
     }
 
     public String getText() {
-        return text;
+        return text == null ? null : text.toString();
     }
 
-    public void setText(String text) {
+    public void setText(CharSequence text) {
         this.text = text;
     }
 
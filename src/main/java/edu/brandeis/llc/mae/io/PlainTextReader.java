@@ -0,0 +1,202 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.MappedText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a plain text file as a primary text, in a single pass over large
+ * buffers. Characters that cannot appear in an XML document are dropped and
+ * line breaks are normalized the way an XML parser would, so the text is the
+ * same as what is read back from the annotation file it is saved to.
+ */
+public class PlainTextReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlainTextReader.class.getName());
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final char BOM = '\uFEFF';
+
+    private final int largeDocumentThreshold;
+    private StringBuilder textBuffer;
+    private MappedText.Builder mappedTextBuffer;
+    // a high surrogate carried over from the previous range can add one character
+    private final char[] filtered = new char[BUFFER_SIZE + 1];
+    private boolean lastWasCR = false;
+    private char pendingHighSurrogate = 0;
+    private boolean atStart = true;
+    private int droppedCount = 0;
+
+    /**
+     * @param largeDocumentThreshold number of characters above which the text
+     *                               is memory-mapped instead of held on heap
+     */
+    public PlainTextReader(int largeDocumentThreshold) {
+        this.largeDocumentThreshold = largeDocumentThreshold;
+    }
+
+    public CharSequence read(File file) throws IOException {
+        textBuffer = new StringBuilder();
+        mappedTextBuffer = null;
+        lastWasCR = false;
+        pendingHighSurrogate = 0;
+        atStart = true;
+        droppedCount = 0;
+        try (ReadableByteChannel channel = openChannel(file)) {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+            CoderResult result;
+            boolean endOfInput;
+            do {
+                endOfInput = channel.read(bytes) < 0;
+                // through Buffer, as the covariant overloads of ByteBuffer do not exist on Java 8
+                ((Buffer) bytes).flip();
+                result = decoder.decode(bytes, chars, endOfInput);
+                bytes.compact();
+                drain(chars);
+            } while (!endOfInput || result.isOverflow());
+            do {
+                result = decoder.flush(chars);
+                drain(chars);
+            } while (result.isOverflow());
+            if (pendingHighSurrogate != 0) {
+                droppedCount++;
+            }
+            if (droppedCount > 0) {
+                logger.warn(String.format("dropped %d characters not allowed in XML from %s", droppedCount, file.getName()));
+            }
+            return mappedTextBuffer != null ? mappedTextBuffer.build() : textBuffer.toString();
+        } finally {
+            if (mappedTextBuffer != null) {
+                mappedTextBuffer.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of characters dropped from the last file read.
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    private static ReadableByteChannel openChannel(File file) throws IOException {
+        if (FileHandler.isGzipFile(file)) {
+            return Channels.newChannel(FileHandler.openInputStream(file));
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    private void drain(CharBuffer chars) throws IOException {
+        ((Buffer) chars).flip();
+        int length = filter(chars.array(), chars.position(), chars.limit());
+        ((Buffer) chars).clear();
+        if (mappedTextBuffer != null) {
+            mappedTextBuffer.append(filtered, 0, length);
+        } else {
+            textBuffer.append(filtered, 0, length);
+            if (textBuffer.length() > largeDocumentThreshold) {
+                logger.info(String.format("primary text exceeds %d characters, mapping it to a side file", largeDocumentThreshold));
+                mappedTextBuffer = MappedText.builder();
+                mappedTextBuffer.append(textBuffer);
+                textBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * Copies legal characters in the range into the filtered buffer,
+     * carrying a trailing CR or high surrogate over to the next range.
+     */
+    private int filter(char[] chars, int start, int end) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (atStart) {
+                atStart = false;
+                if (c == BOM) {
+                    continue;
+                }
+            }
+            if (pendingHighSurrogate != 0) {
+                if (Character.isLowSurrogate(c)) {
+                    filtered[length++] = pendingHighSurrogate;
+                    filtered[length++] = c;
+                    pendingHighSurrogate = 0;
+                    continue;
+                }
+                pendingHighSurrogate = 0;
+                droppedCount++;
+            }
+            if (Character.isHighSurrogate(c)) {
+                pendingHighSurrogate = c;
+                lastWasCR = false;
+                continue;
+            }
+            if (c == '\n' && lastWasCR) {
+                lastWasCR = false;
+                continue;
+            }
+            lastWasCR = c == '\r';
+            if (lastWasCR) {
+                filtered[length++] = '\n';
+            } else if (isXmlChar(c)) {
+                filtered[length++] = c;
+            } else {
+                droppedCount++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks a BMP character against the Char production of XML 1.0,
+     * surrogates are handled in pairs by the caller.
+     */
+    static boolean isXmlChar(char c) {
+        return c >= 0x20 && c <= 0xD7FF || c == '\n' || c == '\t' || c == '\r' || c >= 0xE000 && c <= 0xFFFD;
+    }
+}
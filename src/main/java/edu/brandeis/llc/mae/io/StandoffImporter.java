@@ -0,0 +1,233 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.database.IdHandler;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.*;
+import edu.brandeis.llc.mae.util.CodePointIndex;
+import edu.brandeis.llc.mae.util.FileHandler;
+import edu.brandeis.llc.mae.util.SpanHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports pre-annotations from a standoff file into the document in a driver.
+ * Each line of the file is a tab-separated row of an extent tag,
+ * <pre>start	end	tagType	[attName=value]...</pre>
+ * where start and end are character offsets in the primary text (end exclusive).
+ * Empty lines and lines starting with # are skipped. Rows are read one by one and
+ * written to the DB in chunks with batch inserts; new tags get the next free IDs
+ * of their tag types. Rows that do not fit the task definition are reported as
+ * {@link ParseWarnings} and skipped, as an XML is read.
+ */
+public class StandoffImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandoffImporter.class.getName());
+
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+    public static final String COMMENT_PREFIX = "#";
+
+    private final MaeDriverI driver;
+    private final TaskSchema schema;
+    private final IdHandler idHandler = new IdHandler();
+    private ParseWarnings warnings = new ParseWarnings();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean codePointOffsets = false;
+
+    private final List<ExtentTag> tags = new ArrayList<>();
+    private final List<CharIndex> anchors = new ArrayList<>();
+    private final List<Attribute> attributes = new ArrayList<>();
+
+    public StandoffImporter(MaeDriverI driver) throws MaeDBException {
+        this.driver = driver;
+        this.schema = TaskSchema.compile(driver);
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets whether offsets count code points (as in Python strings) rather than
+     * UTF-16 units as in MAE. Off by default.
+     */
+    public void setCodePointOffsets(boolean codePointOffsets) {
+        this.codePointOffsets = codePointOffsets;
+    }
+
+    public ParseWarnings getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Imports all rows in a file and returns the number of tags created.
+     */
+    public int importFile(File file) throws MaeIOException, MaeDBException {
+        try (Reader reader = FileHandler.openUTF8Reader(file)) {
+            return importRows(reader);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot read a standoff file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public int importRows(Reader reader) throws IOException, MaeDBException {
+        long start = System.currentTimeMillis();
+        warnings = new ParseWarnings();
+        seedIds();
+        String fileName = driver.getAnnotationFileName();
+        int textLength = driver.getPrimaryText().length();
+        CodePointIndex codePointIndex = driver.getCodePointIndex();
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        int imported = 0;
+        int lineNum = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNum++;
+            if (line.trim().length() == 0 || line.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            String tagTypeName = columns.length > 2 ? columns[2].trim() : "";
+            TaskSchema.TagSchema tagSchema = schema.getTagType(tagTypeName);
+            if (tagSchema == null || tagSchema.isLink()) {
+                warnings.add(ParseWarnings.Code.UNEXPECTED_TAG_TYPE, null, tagTypeName, null, null, lineNum);
+                continue;
+            }
+            int[] span = parseSpan(columns, codePointIndex, textLength);
+            if (span == null) {
+                warnings.add(ParseWarnings.Code.INVALID_SPANS, null, tagTypeName, null,
+                        columns[0] + "~" + columns[1], lineNum);
+                continue;
+            }
+            TagType tagType = tagSchema.getTagType();
+            String tid = idHandler.getNextID(tagType);
+            idHandler.addId(tagType, tid);
+            ExtentTag tag = new ExtentTag(tid, tagType, fileName);
+            anchors.addAll(tag.setSpans(span));
+            tags.add(tag);
+            for (int i = 3; i < columns.length; i++) {
+                addAttribute(tag, tagSchema, columns[i], lineNum);
+            }
+            imported++;
+            if (tags.size() >= chunkSize) {
+                flush();
+            }
+        }
+        flush();
+        if (imported > 0) {
+            driver.setAnnotationChanged(true);
+        }
+        logger.info(String.format("imported %d tags in %d ms, %d rows skipped",
+                imported, System.currentTimeMillis() - start, warnings.getCount(ParseWarnings.Code.UNEXPECTED_TAG_TYPE)
+                        + warnings.getCount(ParseWarnings.Code.INVALID_SPANS)));
+        return imported;
+    }
+
+    private void seedIds() throws MaeDBException {
+        for (ExtentTag tag : driver.getAllExtentTagsOfAllTypes(false)) {
+            idHandler.addId(tag.getTagtype(), tag.getTid());
+        }
+        for (LinkTag tag : driver.getAllLinkTagsOfAllTypes()) {
+            idHandler.addId(tag.getTagtype(), tag.getTid());
+        }
+    }
+
+    /**
+     * Returns every character location of a span, or null when the span is not
+     * a valid one in the primary text.
+     */
+    private int[] parseSpan(String[] columns, CodePointIndex codePointIndex, int textLength) {
+        if (columns.length < 3) {
+            return null;
+        }
+        int start;
+        int end;
+        try {
+            start = Integer.parseInt(columns[0].trim());
+            end = Integer.parseInt(columns[1].trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (codePointOffsets) {
+            start = codePointIndex.toCharOffset(start);
+            end = codePointIndex.toCharOffset(end);
+        } else {
+            // never split a surrogate pair in half
+            start = codePointIndex.snapToCharStart(start);
+            end = codePointIndex.snapToCharEnd(end);
+        }
+        if (start < 0 || end <= start || end > textLength) {
+            return null;
+        }
+        return SpanHandler.range(start, end);
+    }
+
+    private void addAttribute(ExtentTag tag, TaskSchema.TagSchema tagSchema, String column, int lineNum) {
+        int delimiter = column.indexOf('=');
+        String attName = delimiter < 0 ? column.trim() : column.substring(0, delimiter).trim();
+        String value = delimiter < 0 ? "" : column.substring(delimiter + 1);
+        TaskSchema.AttSchema attSchema = tagSchema.getAttribute(attName);
+        if (attSchema == null) {
+            warnings.add(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE, tag.getTid(), tag.getTagTypeName(), attName, value, lineNum);
+            return;
+        }
+        if (!attSchema.isValid(value)) {
+            warnings.add(ParseWarnings.Code.INVALID_VALUE, tag.getTid(), tag.getTagTypeName(), attName, value,
+                    attSchema.getValues(), lineNum);
+            value = attSchema.getDefaultValue();
+        }
+        if (value == null || value.length() == 0) {
+            return;
+        }
+        try {
+            attributes.add(new Attribute(tag, attSchema.getAttributeType(), value));
+        } catch (MaeModelException ignored) {
+            // the value is already checked against the value set
+        }
+    }
+
+    private void flush() throws MaeDBException {
+        if (tags.isEmpty()) {
+            return;
+        }
+        driver.batchCreateExtentTags(tags);
+        driver.batchCreateAnchors(anchors);
+        driver.batchCreateAttributes(attributes);
+        logger.debug(String.format("wrote a chunk of %d tags", tags.size()));
+        tags.clear();
+        anchors.clear();
+        attributes.clear();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.ArgumentType;
+import edu.brandeis.llc.mae.model.AttributeType;
+import edu.brandeis.llc.mae.model.TagType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Task definition compiled into lookup tables for reading annotation files.
+ * Tag types are looked up by name once per tag, and attribute and argument
+ * types by name within their tag type, so validating an attribute needs no
+ * composite key and no scan over value lists. Built once per loader and
+ * shared with the parsers it creates.
+ */
+public class TaskSchema {
+
+    private final String taskName;
+    private final Map<String, TagSchema> tagTypes = new HashMap<>();
+
+    private TaskSchema(String taskName) {
+        this.taskName = taskName;
+    }
+
+    public static TaskSchema compile(MaeDriverI driver) throws MaeDBException {
+        TaskSchema schema = new TaskSchema(driver.getTaskName());
+        for (TagType tagType : driver.getAllTagTypes()) {
+            TagSchema tagSchema = new TagSchema(tagType);
+            for (AttributeType attType : driver.getAttributeTypesOfTagType(tagType)) {
+                tagSchema.attributes.put(attType.getName(), new AttSchema(attType));
+            }
+            if (tagType.isLink()) {
+                for (ArgumentType argType : driver.getArgumentTypesOfLinkTagType(tagType)) {
+                    tagSchema.argumentsByIdAttribute.put(argType.getName() + MaeStrings.ARG_IDCOL_SUF, argType);
+                    tagSchema.arguments.put(argType.getName(), argType);
+                }
+            }
+            schema.tagTypes.put(tagType.getName(), tagSchema);
+        }
+        return schema;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public TagSchema getTagType(String tagTypeName) {
+        return tagTypes.get(tagTypeName);
+    }
+
+    public AttSchema getAttribute(String tagTypeName, String attTypeName) {
+        TagSchema tagSchema = tagTypes.get(tagTypeName);
+        return tagSchema == null ? null : tagSchema.getAttribute(attTypeName);
+    }
+
+    public ArgumentType getArgument(String tagTypeName, String argTypeName) {
+        TagSchema tagSchema = tagTypes.get(tagTypeName);
+        return tagSchema == null ? null : tagSchema.getArgument(argTypeName);
+    }
+
+    /**
+     * A checksum of the task definition that affects how an annotation file is
+     * parsed and validated.
+     */
+    public String getFingerprint() {
+        StringBuilder schema = new StringBuilder(taskName);
+        for (String tagTypeName : new TreeSet<>(tagTypes.keySet())) {
+            schema.append('\n').append(tagTypeName).append(tagTypes.get(tagTypeName).isLink());
+        }
+        SortedMap<String, AttributeType> attTypes = new TreeMap<>();
+        SortedSet<String> argTypes = new TreeSet<>();
+        for (TagSchema tagSchema : tagTypes.values()) {
+            String prefix = tagSchema.getTagType().getName() + "-";
+            for (AttSchema att : tagSchema.attributes.values()) {
+                attTypes.put(prefix + att.getAttributeType().getName(), att.getAttributeType());
+            }
+            for (String argTypeName : tagSchema.arguments.keySet()) {
+                argTypes.add(prefix + argTypeName);
+            }
+        }
+        for (Map.Entry<String, AttributeType> attType : attTypes.entrySet()) {
+            schema.append('\n').append(attType.getKey())
+                    .append(attType.getValue().getValuesetAsList()).append(attType.getValue().getDefaultValue());
+        }
+        for (String argTypeKey : argTypes) {
+            schema.append('\n').append(argTypeKey);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(schema.toString().getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    public static class TagSchema {
+        private final TagType tagType;
+        private final Map<String, AttSchema> attributes = new HashMap<>();
+        private final Map<String, ArgumentType> arguments = new HashMap<>();
+        // keyed by the XML attribute holding the argument tid, e.g. "fromID"
+        private final Map<String, ArgumentType> argumentsByIdAttribute = new HashMap<>();
+
+        TagSchema(TagType tagType) {
+            this.tagType = tagType;
+        }
+
+        public TagType getTagType() {
+            return tagType;
+        }
+
+        public boolean isLink() {
+            return tagType.isLink();
+        }
+
+        public AttSchema getAttribute(String attTypeName) {
+            return attributes.get(attTypeName);
+        }
+
+        public ArgumentType getArgument(String argTypeName) {
+            return arguments.get(argTypeName);
+        }
+
+        public ArgumentType getArgumentByIdAttribute(String xmlAttributeName) {
+            return argumentsByIdAttribute.get(xmlAttributeName);
+        }
+    }
+
+    public static class AttSchema {
+        private final AttributeType attributeType;
+        private final List<String> values;
+        // null when the attribute takes free text
+        private final Set<String> valueSet;
+
+        AttSchema(AttributeType attributeType) {
+            this.attributeType = attributeType;
+            this.values = Collections.unmodifiableList(attributeType.getValuesetAsList());
+            this.valueSet = attributeType.isFiniteValueset() ? new HashSet<>(values) : null;
+        }
+
+        public AttributeType getAttributeType() {
+            return attributeType;
+        }
+
+        public String getDefaultValue() {
+            return attributeType.getDefaultValue();
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        /**
+         * An empty value is always valid, it means the attribute is not set.
+         */
+        public boolean isValid(String value) {
+            return valueSet == null || value.length() == 0 || valueSet.contains(value);
+        }
+    }
+}
@@ -50,7 +50,6 @@ public class DBSchema {
     public final static String TAB_TAG_FCOL_TT = "tag_type_fid";
 
     public final static String TAB_ETAG = "extent_tag";
-    public final static String TAB_ETAG_COL_TEXT = "text";
 
     public final static String TAB_LTAG = "link_tag";
 
@@ -24,15 +24,17 @@
 
 package edu.brandeis.llc.mae.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.j256.ormlite.dao.ForeignCollection;
-import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
 import com.j256.ormlite.table.DatabaseTable;
 import edu.brandeis.llc.mae.MaeStrings;
 import edu.brandeis.llc.mae.database.ExtentTagDao;
 import edu.brandeis.llc.mae.util.SpanHandler;
+import edu.brandeis.llc.mae.util.SpannedText;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -45,8 +47,9 @@ import java.util.Set;
 @DatabaseTable(tableName = DBSchema.TAB_ETAG, daoClass = ExtentTagDao.class)
 public class ExtentTag extends Tag implements ModelI {
 
-    @DatabaseField(columnName = DBSchema.TAB_ETAG_COL_TEXT)
-    private String text;
+    // text is not stored, but derived from spans over the primary text of the document
+    private CharSequence primaryText;
+    private SpannedText text;
 
     @ForeignCollectionField(eager = true)
     private ForeignCollection<CharIndex> spans;
@@ -58,7 +61,6 @@ public class ExtentTag extends Tag implements ModelI {
     public ExtentTag(String tid, TagType tagType, String filename) {
         super(tid, tagType, filename);
         this.spans = null;
-        this.text = null;
 
     }
 
@@ -119,19 +121,55 @@ public class ExtentTag extends Tag implements ModelI {
 
     public String getText() {
         if (isConsuming()) {
-            return text;
+            return getStoredText();
         } else {
             return MaeStrings.NC_TEXT;
         }
     }
 
-    public void setText(String text) {
-        this.text = text;
+    /**
+     * Returns text of this tag as a view over the primary text, without
+     * copying characters. The view is rebuilt only when spans have changed.
+     * Returns null when the tag has no spans or no primary text is attached.
+     */
+    public CharSequence getTextView() {
+        if (primaryText == null || !isConsuming()) {
+            return null;
+        }
+        int[] locations = getSpansAsArray();
+        if (text == null || !text.isViewOf(primaryText, locations)) {
+            text = new SpannedText(primaryText, locations);
+        }
+        return text;
+    }
+
+    // text to write out in files, null for non-consuming tags
+    private String getStoredText() {
+        CharSequence view = getTextView();
+        return view == null ? null : view.toString();
     }
 
+    public CharSequence getPrimaryText() {
+        return primaryText;
+    }
+
+    public void setPrimaryText(CharSequence primaryText) {
+        this.primaryText = primaryText;
+        this.text = null;
+    }
+
+    public static final String JSON_RECORD_TYPE = "extent";
+
     @Override
-    public String toJsonString() {
-        throw new UnsupportedOperationException("not implemented yet");
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(JSON_RECORD, JSON_RECORD_TYPE);
+        generator.writeStringField(JSON_ID, tid);
+        generator.writeStringField(JSON_TAGTYPE, getTagTypeName());
+        generator.writeStringField(JSON_SPANS, getSpansAsString());
+        generator.writeStringField(JSON_TEXT, getStoredText());
+        writeJsonAttributes(generator);
+        generator.writeEndObject();
     }
 
     @Override
@@ -139,7 +177,7 @@ public class ExtentTag extends Tag implements ModelI {
         String tagTypeName = getTagTypeName();
         String idAtt = String.format("id=\"%s\"", tid);
         String spansAtt = String.format("spans=\"%s\"", getSpansAsString());
-        String textAtt = String.format("text=\"%s\"", escapeXmlString(text));
+        String textAtt = String.format("text=\"%s\"", escapeXmlString(getStoredText()));
         String attributes = getAttributesXmlString();
         return String.format("<%s />", StringUtils.join(new String[]{tagTypeName, idAtt, spansAtt, textAtt, attributes}, " "));
     }
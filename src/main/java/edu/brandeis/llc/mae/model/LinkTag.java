@@ -24,6 +24,7 @@
 
 package edu.brandeis.llc.mae.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.j256.ormlite.dao.ForeignCollection;
 import com.j256.ormlite.field.ForeignCollectionField;
 import com.j256.ormlite.table.DatabaseTable;
@@ -31,6 +32,7 @@ import edu.brandeis.llc.mae.MaeStrings;
 import edu.brandeis.llc.mae.database.LinkTagDao;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -128,9 +130,21 @@ public class LinkTag extends Tag implements ModelI {
         return map;
     }
 
+    public static final String JSON_RECORD_TYPE = "link";
+
     @Override
-    public String toJsonString() {
-        throw new UnsupportedOperationException("not implemented yet");
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(JSON_RECORD, JSON_RECORD_TYPE);
+        generator.writeStringField(JSON_ID, tid);
+        generator.writeStringField(JSON_TAGTYPE, getTagTypeName());
+        generator.writeObjectFieldStart(JSON_ARGUMENTS);
+        for (Map.Entry<String, String> argument : getArgumentTidsWithNames().entrySet()) {
+            generator.writeStringField(argument.getKey(), argument.getValue());
+        }
+        generator.writeEndObject();
+        writeJsonAttributes(generator);
+        generator.writeEndObject();
     }
 
     @Override
@@ -24,11 +24,16 @@
 
 package edu.brandeis.llc.mae.model;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.j256.ormlite.dao.ForeignCollection;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -37,6 +42,17 @@ import java.util.*;
 
 public abstract class Tag implements ModelI, Comparable<Tag> {
 
+    // field names in JSON representation
+    public static final String JSON_RECORD = "record";
+    public static final String JSON_ID = "id";
+    public static final String JSON_TAGTYPE = "tagType";
+    public static final String JSON_SPANS = "spans";
+    public static final String JSON_TEXT = "text";
+    public static final String JSON_ARGUMENTS = "arguments";
+    public static final String JSON_ATTRIBUTES = "attributes";
+
+    protected static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     @DatabaseField(id = true, columnName = DBSchema.TAB_TAG_COL_TID)
     protected String tid;
 
@@ -168,7 +184,34 @@ public abstract class Tag implements ModelI, Comparable<Tag> {
         return getId().compareTo(tag.getId());
     }
 
-    public abstract String toJsonString();
+    /**
+     * Writes this tag as a single JSON object, to be used as a record in a
+     * JSON Lines annotation file.
+     */
+    public abstract void writeJson(JsonGenerator generator) throws IOException;
+
+    protected void writeJsonAttributes(JsonGenerator generator) throws IOException {
+        generator.writeObjectFieldStart(JSON_ATTRIBUTES);
+        if (getAttributes() != null) {
+            for (Attribute attribute : getAttributes()) {
+                String value = attribute.getValue();
+                if (value != null && value.length() > 0) {
+                    generator.writeStringField(attribute.getName(), value);
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    public String toJsonString() {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            writeJson(generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
 
     public abstract String toXmlString();
 
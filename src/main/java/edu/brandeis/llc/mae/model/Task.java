@@ -40,6 +40,9 @@ public class Task implements ModelI {
     @DatabaseField(columnName = DBSchema.TAB_TASK_COL_TEXT)
     private String primaryText;
 
+    // not stored in DB when the text is too large to be kept as a single string
+    private CharSequence primaryTextView;
+
     @DatabaseField(columnName = DBSchema.TAB_TASK_COL_TASKFILE)
     private String taskFileName;
 
@@ -61,12 +64,26 @@ public class Task implements ModelI {
         this.name = name;
     }
 
-    public String getPrimaryText() {
-        return primaryText;
+    /**
+     * Returns the primary text without copying it, which matters for large
+     * documents whose text is not kept as a single string.
+     */
+    public CharSequence getPrimaryText() {
+        return primaryTextView != null ? primaryTextView : primaryText;
     }
 
-    public void setPrimaryText(String primaryText) {
-        this.primaryText = primaryText;
+    /**
+     * Sets the primary text. A {@link String} is stored in the DB as is, while any
+     * other sequence (e.g. a memory-mapped large document) is only referred to.
+     */
+    public void setPrimaryText(CharSequence primaryText) {
+        if (primaryText == null || primaryText instanceof String) {
+            this.primaryText = (String) primaryText;
+            this.primaryTextView = null;
+        } else {
+            this.primaryText = null;
+            this.primaryTextView = primaryText;
+        }
     }
 
     public String getTaskFileName() {
@@ -0,0 +1,132 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.util;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only document content that reads characters from a {@link CharSequence}
+ * (e.g. a {@link MappedText}) instead of copying them into a gap buffer.
+ * The document still has to see every character inserted to build its
+ * paragraph elements, so the sequence is revealed by appending it in order;
+ * an insertion only moves the end of the revealed part and stores nothing.
+ */
+public class CharSequenceContent implements AbstractDocument.Content {
+
+    private final CharSequence text;
+    private int revealed = 0;
+    // positions only move while the text is being revealed
+    private List<Mark> marks = new ArrayList<>();
+
+    public CharSequenceContent(CharSequence text) {
+        this.text = text;
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        if (offset < 0 || offset > length()) {
+            throw new BadLocationException("invalid position", offset);
+        }
+        Mark mark = new Mark(offset);
+        if (marks != null) {
+            marks.add(mark);
+        }
+        return mark;
+    }
+
+    @Override
+    public int length() {
+        // plus the implied break at the end of every document
+        return revealed + 1;
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if (where != revealed || revealed + str.length() > text.length()) {
+            throw new BadLocationException("content is read-only", where);
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) != text.charAt(revealed + i)) {
+                throw new BadLocationException("content is read-only", where + i);
+            }
+        }
+        // as in a gap buffer, positions at the insertion point move along, except the one at 0
+        for (Mark mark : marks) {
+            if (mark.offset >= where && mark.offset > 0) {
+                mark.offset += str.length();
+            }
+        }
+        revealed += str.length();
+        if (revealed == text.length()) {
+            marks = null;
+        }
+        return null;
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        throw new BadLocationException("content is read-only", where);
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        Segment segment = new Segment();
+        getChars(where, len, segment);
+        return segment.toString();
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length()) {
+            throw new BadLocationException("invalid range", where + len);
+        }
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = where + i < revealed ? text.charAt(where + i) : '\n';
+        }
+        txt.array = chars;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    private static class Mark implements Position {
+        private int offset;
+
+        Mark(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
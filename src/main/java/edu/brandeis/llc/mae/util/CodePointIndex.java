@@ -0,0 +1,162 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Offset index of a primary text, built once when a document is loaded.
+ * MAE spans are UTF-16 offsets; this index tells where surrogate pairs are,
+ * so that a character is never split in half, and converts between UTF-16
+ * offsets and code point offsets without scanning the text again.
+ */
+public class CodePointIndex {
+
+    public static final CodePointIndex EMPTY = new CodePointIndex(0, new BitSet(), new int[0]);
+
+    private final int length;
+    // UTF-16 offsets of high surrogates that start a valid pair
+    private final BitSet pairStarts;
+    private final int[] sortedPairStarts;
+
+    private CodePointIndex(int length, BitSet pairStarts, int[] sortedPairStarts) {
+        this.length = length;
+        this.pairStarts = pairStarts;
+        this.sortedPairStarts = sortedPairStarts;
+    }
+
+    public static CodePointIndex of(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return EMPTY;
+        }
+        BitSet pairStarts = new BitSet();
+        int length = text.length();
+        for (int i = 0; i < length - 1; i++) {
+            if (Character.isHighSurrogate(text.charAt(i)) && Character.isLowSurrogate(text.charAt(i + 1))) {
+                pairStarts.set(i);
+                i++;
+            }
+        }
+        return new CodePointIndex(length, pairStarts, pairStarts.stream().toArray());
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int codePointCount() {
+        return length - sortedPairStarts.length;
+    }
+
+    public boolean hasSurrogatePairs() {
+        return sortedPairStarts.length > 0;
+    }
+
+    public boolean isPairStart(int offset) {
+        return offset >= 0 && pairStarts.get(offset);
+    }
+
+    /**
+     * Checks whether the offset points to the second half (low surrogate) of a pair.
+     */
+    public boolean isPairEnd(int offset) {
+        return offset > 0 && pairStarts.get(offset - 1);
+    }
+
+    /**
+     * Returns the number of UTF-16 units of the character starting at the offset.
+     */
+    public int charCountAt(int offset) {
+        return isPairStart(offset) ? 2 : 1;
+    }
+
+    /**
+     * Returns the next offset, at or after the given one, where a surrogate pair starts,
+     * or -1 if there is none.
+     */
+    public int nextPairStart(int offset) {
+        return pairStarts.nextSetBit(offset);
+    }
+
+    /**
+     * Moves an offset back to the start of a character, if it falls in the middle of a pair.
+     */
+    public int snapToCharStart(int offset) {
+        return isPairEnd(offset) ? offset - 1 : offset;
+    }
+
+    /**
+     * Moves an (exclusive) end offset forward, if it falls in the middle of a pair.
+     */
+    public int snapToCharEnd(int offset) {
+        return isPairEnd(offset) ? offset + 1 : offset;
+    }
+
+    public int toCodePointOffset(int charOffset) {
+        if (sortedPairStarts.length == 0) {
+            return charOffset;
+        }
+        // every pair that starts before the offset takes one extra unit,
+        // an offset in the middle of a pair thus falls on the code point of the pair
+        int pairsBefore = Arrays.binarySearch(sortedPairStarts, charOffset);
+        pairsBefore = pairsBefore < 0 ? -pairsBefore - 1 : pairsBefore;
+        return charOffset - pairsBefore;
+    }
+
+    public int toCharOffset(int codePointOffset) {
+        if (sortedPairStarts.length == 0) {
+            return codePointOffset;
+        }
+        // the i-th pair starts at code point (sortedPairStarts[i] - i)
+        int low = 0;
+        int high = sortedPairStarts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPairStarts[mid] - mid < codePointOffset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return codePointOffset + low;
+    }
+
+    public int[] toCodePointOffsets(int[] charOffsets) {
+        int[] converted = new int[charOffsets.length];
+        for (int i = 0; i < charOffsets.length; i++) {
+            converted[i] = toCodePointOffset(charOffsets[i]);
+        }
+        return converted;
+    }
+
+    public int[] toCharOffsets(int[] codePointOffsets) {
+        int[] converted = new int[codePointOffsets.length];
+        for (int i = 0; i < codePointOffsets.length; i++) {
+            converted[i] = toCharOffset(codePointOffsets[i]);
+        }
+        return converted;
+    }
+}
@@ -26,11 +26,16 @@ package edu.brandeis.llc.mae.util;
 
 import edu.brandeis.llc.mae.io.MaeIOException;
 
-import java.io.File;
-import java.io.FileFilter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by krim on 4/12/16.
@@ -39,8 +44,67 @@ public class FileHandler {
 
     public static String ANNOTATOR_SUFFIX_DELIM = "_";
     public static String XML_EXT = ".xml";
+    public static String GZ_EXT = ".gz";
+    public static String XML_GZ_EXT = XML_EXT + GZ_EXT;
     public static FileFilter XML_FILTER  = pathname
-            -> pathname.getName().toLowerCase().endsWith(".xml");
+            -> isXmlFileName(pathname.getName());
+
+    private static final int GZIP_MAGIC_LENGTH = 2;
+
+    /**
+     * Checks if a file name has an XML extension, either plain or gzip-compressed.
+     */
+    public static boolean isXmlFileName(String fileName) {
+        String lowered = fileName.toLowerCase();
+        return lowered.endsWith(XML_EXT) || lowered.endsWith(XML_GZ_EXT);
+    }
+
+    public static boolean isGzipFileName(String fileName) {
+        return fileName.toLowerCase().endsWith(GZ_EXT);
+    }
+
+    /**
+     * Opens a file for reading. Gzip-compressed files (detected by their magic
+     * number, not by the extension) are decompressed on the fly.
+     */
+    public static InputStream openInputStream(File file) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
+        in.mark(GZIP_MAGIC_LENGTH);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            return new GZIPInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Checks the magic number of a file to see if it is gzip-compressed.
+     */
+    public static boolean isGzipFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return (in.read() | (in.read() << 8)) == GZIPInputStream.GZIP_MAGIC;
+        }
+    }
+
+    public static Reader openUTF8Reader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(openInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens a file for writing, compressing with gzip when the file name ends with ".gz".
+     */
+    public static OutputStream openOutputStream(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (isGzipFileName(file.getName())) {
+            return new GZIPOutputStream(out);
+        }
+        return new BufferedOutputStream(out);
+    }
+
+    public static Writer openUTF8Writer(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(openOutputStream(file), StandardCharsets.UTF_8));
+    }
 
     public static String getFileBaseName(File file) {
         return getFileBaseName(file.getAbsolutePath());
@@ -96,6 +160,9 @@ public class FileHandler {
     }
 
     public static String getFileNameWithoutExtension(String fileBaseName) {
+        if (isGzipFileName(fileBaseName)) {
+            fileBaseName = fileBaseName.substring(0, fileBaseName.length() - GZ_EXT.length());
+        }
         return splitSuffix(fileBaseName, ".")[0];
 
     }
@@ -114,5 +181,57 @@ public class FileHandler {
         return false;
     }
 
+    /**
+     * Returns the given XML file, or the first of <tt>name_1.xml</tt>, <tt>name_2.xml</tt>, ...
+     * next to it that is not taken yet.
+     */
+    public static File getNextAvailableXMLFile(File xmlFile, Predicate<File> isTaken) {
+        String filePath = xmlFile.getAbsolutePath();
+        String baseName = filePath.substring(0, filePath.length() - XML_EXT.length());
+        int suffix = 1;
+        File available = xmlFile;
+        while (isTaken.test(available)) {
+            available = new File(String.format("%s_%d%s", baseName, suffix, XML_EXT));
+            suffix++;
+        }
+        return available;
+    }
+
+    /**
+     * Creates a SHA-1 digest, used to fingerprint file contents.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM implements SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the hex SHA-1 digest of the content of a file.
+     */
+    public static String hashFile(File file) throws MaeIOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot read " + file.getPath(), e);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
 
 }
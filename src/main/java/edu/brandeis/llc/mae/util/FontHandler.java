@@ -97,18 +97,32 @@ public class FontHandler {
         return fontCache[0] != null;
     }
 
-    public static StyledDocument stringToSimpleStyledDocument(String plainText, String defaultFontName, int fontSize, Color fontColor) {
+    // large texts are inserted piece by piece, never materialized as a whole string
+    private static final int INSERT_CHUNK_SIZE = 1 << 16;
+
+    public static StyledDocument stringToSimpleStyledDocument(CharSequence plainText, String defaultFontName, int fontSize, Color fontColor) {
         return stringToSimpleStyledDocumentConcurrently(plainText, defaultFontName, fontSize, fontColor);
     }
 
 
-    private static StyledDocument stringToSimpleStyledDocumentConcurrently(String plainText, String defaultFontName, int fontSize, Color fontColor) {
-        StyledDocument document = new DefaultStyledDocument();
+    private static StyledDocument stringToSimpleStyledDocumentConcurrently(CharSequence plainText, String defaultFontName, int fontSize, Color fontColor) {
+        // a large text is read from its own sequence, not copied into the document
+        StyledDocument document = plainText == null || plainText instanceof String
+                ? new DefaultStyledDocument()
+                : new DefaultStyledDocument(new CharSequenceContent(plainText), new StyleContext());
         ExecutorService unicodeRenderService = Executors.newCachedThreadPool();
 
         try {
             if (plainText != null && plainText.length() > 0) {
-                document.insertString(0, plainText, StyleContext.getDefaultStyleContext().getStyle(StyleContext.DEFAULT_STYLE));
+                Style defaultStyle = StyleContext.getDefaultStyleContext().getStyle(StyleContext.DEFAULT_STYLE);
+                if (plainText instanceof String) {
+                    document.insertString(0, (String) plainText, defaultStyle);
+                } else {
+                    for (int start = 0; start < plainText.length(); start += INSERT_CHUNK_SIZE) {
+                        int end = Math.min(start + INSERT_CHUNK_SIZE, plainText.length());
+                        document.insertString(start, plainText.subSequence(start, end).toString(), defaultStyle);
+                    }
+                }
 
                 SimpleAttributeSet aSet = new SimpleAttributeSet();
                 StyleConstants.setFontFamily(aSet, defaultFontName);
@@ -128,7 +142,7 @@ public class FontHandler {
                         Thread thread = new Thread(() -> {
                             SimpleAttributeSet unicodeASet = new SimpleAttributeSet();
                             StyleConstants.setFontFamily(unicodeASet,
-                                    getFontToRenderSurrogateCode(plainText.codePointAt(finalOffset)).getFontName());
+                                    getFontToRenderSurrogateCode(Character.codePointAt(plainText, finalOffset)).getFontName());
                             document.setCharacterAttributes(finalOffset, finalLength, unicodeASet, false);
 
                         });
@@ -0,0 +1,166 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Primary text of a large document, kept off the heap in a memory-mapped side
+ * file of raw UTF-16 code units. Characters are read straight from the mapping,
+ * and sub-sequences share it, so only {@link #toString()} copies the text.
+ */
+public class MappedText implements CharSequence {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedText.class.getName());
+
+    public static final String MAPPED_TEXT_EXT = ".maetext";
+
+    private final CharBuffer chars;
+
+    private MappedText(CharBuffer chars) {
+        this.chars = chars;
+    }
+
+    /**
+     * Starts writing a new side file in the temp directory.
+     */
+    public static Builder builder() throws IOException {
+        File sideFile = File.createTempFile("mae", MAPPED_TEXT_EXT);
+        return new Builder(sideFile);
+    }
+
+    @Override
+    public int length() {
+        return chars.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars.get(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return chars.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return chars.toString();
+    }
+
+    /**
+     * Appends characters into a side file, then maps it as a {@link MappedText}.
+     */
+    public static class Builder implements Closeable {
+
+        private static final int BUFFER_CHARS = 1 << 15;
+
+        private final File sideFile;
+        private final FileChannel channel;
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_CHARS * 2);
+        private final CharBuffer buffer = bytes.asCharBuffer();
+        private long written = 0;
+
+        Builder(File sideFile) throws IOException {
+            this.sideFile = sideFile;
+            this.channel = FileChannel.open(sideFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        public Builder append(char[] ch, int start, int length) throws IOException {
+            while (length > 0) {
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(ch, start, chunk);
+                start += chunk;
+                length -= chunk;
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+            return this;
+        }
+
+        public Builder append(CharSequence text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put(text.charAt(i));
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+            return this;
+        }
+
+        private void flush() throws IOException {
+            // through Buffer, as the covariant overloads of ByteBuffer do not exist on Java 8
+            ((Buffer) bytes).position(0).limit(buffer.position() * 2);
+            while (bytes.hasRemaining()) {
+                written += channel.write(bytes);
+            }
+            ((Buffer) bytes).clear();
+            ((Buffer) buffer).clear();
+        }
+
+        public MappedText build() throws IOException {
+            flush();
+            channel.close();
+            if (written / 2 > Integer.MAX_VALUE) {
+                throw new IOException("primary text is too long to map: " + written / 2 + " characters");
+            }
+            CharBuffer mapped;
+            try (RandomAccessFile file = new RandomAccessFile(sideFile, "r")) {
+                mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, written).asCharBuffer();
+            }
+            // a mapping outlives its file on most platforms, otherwise clean up when MAE exits
+            try {
+                Files.delete(sideFile.toPath());
+            } catch (IOException e) {
+                sideFile.deleteOnExit();
+            }
+            logger.debug(String.format("mapped %d characters of primary text from %s", mapped.limit(), sideFile));
+            return new MappedText(mapped);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+                Files.deleteIfExists(sideFile.toPath());
+            }
+        }
+    }
+}
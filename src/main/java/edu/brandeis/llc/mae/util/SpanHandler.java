@@ -118,13 +118,24 @@ public class SpanHandler {
             return singletonSpan;
         }
 
-        Arrays.sort(spans);
+        // parsed spans are often shared between threads, so never sort them in place
+        for (int i = 1; i < spans.length; i++) {
+            if (spans[i - 1] > spans[i]) {
+                spans = spans.clone();
+                Arrays.sort(spans);
+                break;
+            }
+        }
 
         ArrayList<int[]> spansList = new ArrayList<>();
         int start = spans[0];
         int prev = spans[0];
         for (int i = 1; i < spans.length; i++) {
             if (i == spans.length - 1) {
+                if (prev + 1 < spans[i]) {
+                    spansList.add(new int[]{start, prev + 1});
+                    start = spans[i];
+                }
                 spansList.add(new int[]{start, spans[i] + 1});
             } else if (prev + 1 < spans[i]) {
                 spansList.add(new int[]{start, prev + 1});
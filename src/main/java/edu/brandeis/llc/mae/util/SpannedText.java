@@ -0,0 +1,155 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.util;
+
+import edu.brandeis.llc.mae.MaeStrings;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of the characters an extent tag anchors on, backed by the
+ * shared primary text. Discontinuous spans are joined with
+ * {@link MaeStrings#SPANTEXTTRUNC}; nothing is copied until {@link #toString()}
+ * is called, and the materialized string is kept afterwards.
+ */
+public class SpannedText implements CharSequence {
+
+    private static final String JOINER = MaeStrings.SPANTEXTTRUNC;
+
+    private final CharSequence source;
+    private final int[] locations;
+    // start (inclusive) and end (exclusive) offsets of each continuous span in the source
+    private final int[] starts;
+    private final int[] ends;
+    // offset in this view where each span begins, joiners included
+    private final int[] viewOffsets;
+    private final int length;
+    private String materialized;
+
+    /**
+     * @param source primary text
+     * @param locations character offsets of the spans, as stored in the DB
+     */
+    public SpannedText(CharSequence source, int... locations) {
+        this.source = source;
+        int[] sorted = locations == null ? new int[0] : locations.clone();
+        if (!isSorted(sorted)) {
+            Arrays.sort(sorted);
+        }
+        this.locations = sorted;
+
+        int spanCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] > sorted[i - 1] + 1) {
+                spanCount++;
+            }
+        }
+        starts = new int[spanCount];
+        ends = new int[spanCount];
+        viewOffsets = new int[spanCount];
+        int span = -1;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] > sorted[i - 1] + 1) {
+                starts[++span] = sorted[i];
+            }
+            ends[span] = sorted[i] + 1;
+        }
+        int offset = 0;
+        for (int i = 0; i < spanCount; i++) {
+            viewOffsets[i] = offset;
+            offset += ends[i] - starts[i];
+            if (i < spanCount - 1) {
+                offset += JOINER.length();
+            }
+        }
+        length = offset;
+    }
+
+    private static boolean isSorted(int[] array) {
+        for (int i = 1; i < array.length; i++) {
+            if (array[i] < array[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether this view was built over the given character offsets,
+     * so that a cached view can be reused as long as the spans stay unchanged.
+     */
+    public boolean isViewOf(CharSequence source, int[] locations) {
+        return this.source == source && Arrays.equals(this.locations, locations);
+    }
+
+    public int getSpanCount() {
+        return starts.length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (materialized != null) {
+            return materialized.charAt(index);
+        }
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        int span = Arrays.binarySearch(viewOffsets, index);
+        if (span < 0) {
+            span = -span - 2;
+        }
+        int inSpan = index - viewOffsets[span];
+        int spanLength = ends[span] - starts[span];
+        if (inSpan < spanLength) {
+            return source.charAt(starts[span] + inSpan);
+        }
+        return JOINER.charAt(inSpan - spanLength);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (materialized == null) {
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < starts.length; i++) {
+                if (i > 0) {
+                    builder.append(JOINER);
+                }
+                builder.append(source, starts[i], ends[i]);
+            }
+            materialized = builder.toString();
+        }
+        return materialized;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a primary text into tokens, given as [start, end) character offsets
+ * in the order they appear in the text. Implementations must be stateless, as a
+ * tokenizer is shared by threads working on different documents.
+ */
+public interface Tokenizer {
+
+    /** tokens are runs of non-whitespace characters */
+    Tokenizer WHITESPACE = regex("\\S+");
+
+    /** tokens are runs of letters and digits, and each punctuation mark on its own */
+    Tokenizer PUNCTUATION = regex("[\\p{L}\\p{M}\\p{N}_]+|[^\\p{L}\\p{M}\\p{N}_\\s]");
+
+    List<int[]> tokenize(CharSequence text);
+
+    static Tokenizer regex(String tokenPattern) {
+        final Pattern pattern = Pattern.compile(tokenPattern);
+        return text -> {
+            List<int[]> tokens = new ArrayList<>();
+            Matcher matcher = pattern.matcher(text);
+            while (matcher.find()) {
+                if (matcher.end() > matcher.start()) {
+                    tokens.add(new int[]{matcher.start(), matcher.end()});
+                }
+            }
+            return tokens;
+        };
+    }
+
+    /**
+     * Finds a tokenizer by name, "whitespace" or "punctuation", or else by the
+     * name of a class implementing this interface with a no-argument constructor.
+     */
+    static Tokenizer forName(String name) throws ReflectiveOperationException {
+        switch (name.toLowerCase()) {
+            case "whitespace":
+                return WHITESPACE;
+            case "punctuation":
+                return PUNCTUATION;
+            default:
+                return (Tokenizer) Class.forName(name).getDeclaredConstructor().newInstance();
+        }
+    }
+}
@@ -77,14 +77,14 @@ public class TextPanelView extends JPanel {
         setDocumentOpen(false);
     }
 
-    public void addAdjudicationTab(DocumentTabTitle title, String text, int fontSize) {
+    public void addAdjudicationTab(DocumentTabTitle title, CharSequence text, int fontSize) {
         getTabs().insertTab(title.getLabel(), null, createDocumentArea(
                 FontHandler.stringToSimpleStyledDocument(text, TextPanelController.DEFAULT_FONT_FAMILY, fontSize, Color.BLACK)), null, 0);
         getTabs().setTabComponentAt(0, title);
         selectTab(0);
     }
 
-    public void addTextTab(DocumentTabTitle title, String text, int fontSize, boolean switchToNewTab) {
+    public void addTextTab(DocumentTabTitle title, CharSequence text, int fontSize, boolean switchToNewTab) {
         // always open a new tab at the end, and switch to the new tab
         getTabs().addTab(title.getLabel(), null, createDocumentArea(
                 FontHandler.stringToSimpleStyledDocument(text, TextPanelController.DEFAULT_FONT_FAMILY, fontSize, Color.BLACK)));
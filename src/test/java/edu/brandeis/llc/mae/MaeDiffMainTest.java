@@ -0,0 +1,82 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class MaeDiffMainTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private String taskPath;
+    private File sampleFile;
+
+    @Before
+    public void setUp() throws Exception {
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        taskPath = new File(dtdUrl.getPath()).getPath();
+        sampleFile = new File(xmlUrl.getPath());
+    }
+
+    private File writeVariant(String name, String from, String to) throws Exception {
+        String xml = FileUtils.readFileToString(sampleFile, StandardCharsets.UTF_8);
+        File variant = tempDir.newFile(name);
+        FileUtils.writeStringToFile(variant, xml.replace(from, to), StandardCharsets.UTF_8);
+        return variant;
+    }
+
+    private int diff(File left, File right) throws Exception {
+        File out = new File(tempDir.getRoot(), "diff.txt");
+        return MaeDiffMain.run(new String[]{"--diff", "--task", taskPath, "--out", out.getPath(),
+                left.getPath(), right.getPath()});
+    }
+
+    @Test
+    public void canTellSameFromDifferent() throws Exception {
+        File changed = writeVariant("changed.xml", "type=\"other\" comment", "type=\"person\" comment");
+        assertEquals(0, diff(sampleFile, sampleFile));
+        assertEquals(1, diff(sampleFile, changed));
+    }
+
+    @Test
+    public void canExitWithErrorOnMalformedOffsets() throws Exception {
+        File malformed = writeVariant("malformed.xml", "spans=\"1~11\"", "start=\"1\" end=\"eleven\"");
+        assertEquals(2, diff(sampleFile, malformed));
+        assertEquals(2, diff(malformed, sampleFile));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.io.DTDLoader;
+import edu.brandeis.llc.mae.util.MappedSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AgreementContributionCacheTest {
+
+    private MaeDriverI driver;
+    private File datasetDir;
+    private File cacheDir;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        datasetDir = tempDir.newFolder("dataset");
+        for (File file : new File(exampleUrl.getPath()).listFiles((dir, name) -> name.endsWith(".xml"))) {
+            FileUtils.copyFileToDirectory(file, datasetDir);
+        }
+        cacheDir = tempDir.newFolder("cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    private Map<String, Map<String, Double>> calcAgreement(File cacheDir, Set<String> parsed) throws Exception {
+        MaeAgreementMain calc = new MaeAgreementMain(driver);
+        calc.setContributionCacheDirectory(cacheDir);
+        calc.setProgressListener((docName, parsedCount, documentCount) -> parsed.add(docName));
+        calc.indexDataset(datasetDir);
+        calc.loadXmlFiles();
+
+        MappedSet<String, String> unitizing = new MappedSet<>();
+        unitizing.putCollection("NOUN", new LinkedList<String>() {{add("type"); add("comment");}});
+        unitizing.putCollection("VERB", new LinkedList<String>() {{add("tense"); add("aspect");}});
+        MappedSet<String, String> coding = new MappedSet<>();
+        coding.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        MappedSet<String, String> moods = new MappedSet<>();
+        moods.putCollection("MOOD_DECL", new LinkedList<>());
+        moods.putCollection("MOOD_IMPE", new LinkedList<>());
+        moods.putCollection("MOOD_SUBJ", new LinkedList<>());
+        Map<String, MappedSet<String, String>> local = new LinkedHashMap<>();
+        local.put(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing);
+        local.put(MaeAgreementStrings.MULTIPI_CALC_STRING, coding);
+        Map<String, MappedSet<String, String>> global = new LinkedHashMap<>();
+        global.put(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing);
+        global.put(MaeAgreementStrings.MULTIPI_CALC_STRING, moods);
+
+        Map<String, Map<String, Double>> agreements = new LinkedHashMap<>(calc.calcGlobalAgreement(global, false));
+        agreements.putAll(calc.calcLocalAgreement(local, false));
+        return agreements;
+    }
+
+    @Test
+    public void canRecomputeOnlyChangedDocuments() throws Exception {
+        Set<String> parsed = new ConcurrentSkipListSet<>();
+        Map<String, Map<String, Double>> first = calcAgreement(cacheDir, parsed);
+        assertEquals(4, parsed.size());
+        assertEquals(first, calcAgreement(null, new HashSet<>()));
+
+        parsed.clear();
+        assertEquals(first, calcAgreement(cacheDir, parsed));
+        assertEquals(0, parsed.size());
+
+        File edited = new File(datasetDir, "doc2_a3.xml");
+        String xml = FileUtils.readFileToString(edited, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(edited, xml.replace(
+                "<NOUN id=\"N1\" spans=\"29~34\" text=\"house\" type=\"other\"",
+                "<NOUN id=\"N1\" spans=\"29~34\" text=\"house\" type=\"person\""), StandardCharsets.UTF_8);
+        parsed.clear();
+        Map<String, Map<String, Double>> incremental = calcAgreement(cacheDir, parsed);
+        assertEquals(Collections.singleton("doc2"), parsed);
+        assertNotEquals(first, incremental);
+        assertEquals(calcAgreement(null, new HashSet<>()), incremental);
+        assertEquals(4, cacheDir.listFiles().length);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.agreement;
+
+import edu.brandeis.llc.mae.agreement.calculator.AlphaUnitizingStudy;
+import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
+import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlphaUnitizingStudyTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void canAgreeWithDkproOnRandomStudies() throws Exception {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            int annotators = 2 + random.nextInt(4);
+            int categories = 1 + random.nextInt(3);
+            int length = 50 + random.nextInt(500);
+            // mostly disjoint units, as annotators would mark them, with some overlaps and duplicates
+            boolean overlapping = trial % 4 == 0;
+            AlphaUnitizingStudy study = new AlphaUnitizingStudy(annotators, length);
+            UnitizingAnnotationStudy reference = new UnitizingAnnotationStudy(annotators, length);
+            for (int annotator = 0; annotator < annotators; annotator++) {
+                for (int category = 0; category < categories; category++) {
+                    int offset = random.nextInt(10);
+                    while (offset < length) {
+                        int unitLength = 1 + random.nextInt(Math.min(15, length - offset));
+                        if (random.nextInt(3) > 0) {
+                            study.addUnit(offset, unitLength, annotator, "C" + category);
+                            reference.addUnit(offset, unitLength, annotator, "C" + category);
+                        }
+                        offset += overlapping ? random.nextInt(unitLength + 1) + 1 : unitLength + random.nextInt(20);
+                    }
+                }
+            }
+            assertEquals(reference.getUnitCount(), study.getUnitCount());
+            KrippendorffAlphaUnitizingAgreement dkpro = new KrippendorffAlphaUnitizingAgreement(reference);
+            assertEquals("trial " + trial, dkpro.calculateAgreement(), study.calculateAgreement(), DELTA);
+            for (int category = 0; category < categories; category++) {
+                assertEquals("trial " + trial, dkpro.calculateCategoryAgreement("C" + category),
+                        study.calculateCategoryAgreement("C" + category), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void canAgreeWithDkproOnDuplicatesAndNullCategory() throws Exception {
+        AlphaUnitizingStudy study = new AlphaUnitizingStudy(2, 20);
+        UnitizingAnnotationStudy reference = new UnitizingAnnotationStudy(2, 20);
+        study.addUnit(0, 5, 0, "A");
+        reference.addUnit(0, 5, 0, "A");
+        study.addUnit(0, 5, 0, "A");
+        reference.addUnit(0, 5, 0, "A");
+        study.addUnit(15, 5, 1, "A");
+        reference.addUnit(15, 5, 1, "A");
+        study.addUnit(3, 2, 1, null);
+        reference.addUnit(3, 2, 1, null);
+        assertEquals(3, study.getUnitCount());
+        assertEquals(new KrippendorffAlphaUnitizingAgreement(reference).calculateAgreement(),
+                study.calculateAgreement(), DELTA);
+    }
+
+    @Test
+    public void canComputeStudiesOfManyUnits() throws Exception {
+        Random random = new Random(7);
+        int annotators = 4;
+        int perAnnotator = 2500;
+        int length = perAnnotator * 16;
+        AlphaUnitizingStudy identical = new AlphaUnitizingStudy(annotators, length);
+        AlphaUnitizingStudy independent = new AlphaUnitizingStudy(annotators, length);
+        int offset = 0;
+        for (int i = 0; i < perAnnotator; i++) {
+            int unitLength = 1 + random.nextInt(6);
+            String category = "C" + random.nextInt(3);
+            for (int annotator = 0; annotator < annotators; annotator++) {
+                identical.addUnit(offset, unitLength, annotator, category);
+            }
+            offset += unitLength + random.nextInt(10);
+        }
+        for (int annotator = 0; annotator < annotators; annotator++) {
+            offset = 0;
+            for (int i = 0; i < perAnnotator; i++) {
+                int unitLength = 1 + random.nextInt(6);
+                independent.addUnit(offset, unitLength, annotator, "C" + random.nextInt(3));
+                offset += unitLength + random.nextInt(10);
+            }
+        }
+        assertEquals(annotators * perAnnotator, identical.getUnitCount());
+        assertEquals(1.0, identical.calculateAgreement(), DELTA);
+        double alpha = independent.calculateAgreement();
+        assertFalse(Double.isNaN(alpha));
+        assertTrue(alpha < 0.5);
+    }
+
+    @Test
+    public void canComputePairsAsStudiesOfTwo() throws Exception {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 100; trial++) {
+            int annotators = 3 + random.nextInt(3);
+            int length = 50 + random.nextInt(300);
+            AlphaUnitizingStudy study = new AlphaUnitizingStudy(annotators, length);
+            List<int[]> units = new ArrayList<>();
+            for (int annotator = 0; annotator < annotators; annotator++) {
+                int offset = random.nextInt(10);
+                while (offset < length) {
+                    int unitLength = 1 + random.nextInt(Math.min(15, length - offset));
+                    // some annotators leave out a category altogether
+                    int category = random.nextInt(annotator == 0 ? 1 : 3);
+                    study.addUnit(offset, unitLength, annotator, "C" + category);
+                    units.add(new int[]{offset, unitLength, annotator, category});
+                    offset += unitLength + random.nextInt(20);
+                }
+            }
+            for (int first = 0; first < annotators; first++) {
+                for (int second = first + 1; second < annotators; second++) {
+                    AlphaUnitizingStudy pair = new AlphaUnitizingStudy(2, length);
+                    for (int[] unit : units) {
+                        if (unit[2] == first || unit[2] == second) {
+                            pair.addUnit(unit[0], unit[1], unit[2] == first ? 0 : 1, "C" + unit[3]);
+                        }
+                    }
+                    assertEquals("trial " + trial, pair.calculateAgreement(), study.calculatePairAgreement(first, second), DELTA);
+                    assertEquals(study.calculatePairAgreement(first, second), study.calculatePairAgreement(second, first), DELTA);
+                }
+            }
+        }
+    }
+}
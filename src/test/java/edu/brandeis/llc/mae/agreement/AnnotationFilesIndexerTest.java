@@ -27,13 +27,22 @@ package edu.brandeis.llc.mae.agreement;
 import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
 import edu.brandeis.llc.mae.agreement.io.AnnotationDirsIndexer;
 import edu.brandeis.llc.mae.agreement.io.AnnotationFilesIndexer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 
@@ -43,6 +52,9 @@ import static org.junit.Assert.assertEquals;
 public class AnnotationFilesIndexerTest {
     AbstractAnnotationIndexer indexer;
 
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
     @Test
     public void testGetAnnotationMatrixFromDirs() throws Exception {
         indexer = new AnnotationDirsIndexer();
@@ -69,6 +81,31 @@ public class AnnotationFilesIndexerTest {
         testIndexer();
     }
 
+    @Test
+    public void testGetAnnotationMatrixFromGzippedFiles() throws Exception {
+        indexer = new AnnotationFilesIndexer();
+        URL exmapleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        File dataset = tempDir.newFolder("iaa_example");
+        FileUtils.copyDirectory(new File(exmapleFileUrl.getPath()), dataset);
+        // compress some of annotators' files, leaving the others plain
+        for (File annotation : dataset.listFiles((dir, name) -> name.matches(".+_a[24]\\.xml"))) {
+            gzip(annotation);
+        }
+        indexer.indexAnnotations(new File[]{dataset});
+        testIndexer();
+        assertEquals(new File(dataset, "doc1_a2.xml.gz").getAbsolutePath(),
+                indexer.getDocumentFileMap().get("doc1")[indexer.getAnnotatorIndex("a2")]);
+    }
+
+    private void gzip(File file) throws Exception {
+        File gzipped = new File(file.getAbsolutePath() + ".gz");
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipped))) {
+            IOUtils.copy(in, out);
+        }
+        file.delete();
+    }
+
     private void testIndexer() {
         assertEquals("Expected 5 annotators, found " + indexer.getAnnotators().size(),
                 5, indexer.getAnnotators().size());
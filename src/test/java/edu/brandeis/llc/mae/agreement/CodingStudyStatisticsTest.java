@@ -0,0 +1,116 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.agreement;
+
+import edu.brandeis.llc.mae.agreement.calculator.CodingStudyStatistics;
+import edu.brandeis.llc.mae.agreement.calculator.ConfidenceInterval;
+import org.dkpro.statistics.agreement.InsufficientDataException;
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.FleissKappaAgreement;
+import org.dkpro.statistics.agreement.coding.HubertKappaAgreement;
+import org.dkpro.statistics.agreement.coding.ICodingAgreementMeasure;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CodingStudyStatisticsTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static List<String[]> randomDocument(Random random, int raters, int categories) {
+        List<String[]> items = new ArrayList<>();
+        int itemCount = random.nextInt(12);
+        for (int i = 0; i < itemCount; i++) {
+            String[] item = new String[raters];
+            for (int rater = 0; rater < raters; rater++) {
+                // some missing labels, and a bias towards the first category
+                int label = random.nextInt(categories + 2);
+                item[rater] = label == categories + 1 ? null : "C" + Math.min(label, categories - 1);
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static double referenceAgreement(ICodingAgreementMeasure measure) {
+        try {
+            return measure.calculateAgreement();
+        } catch (InsufficientDataException e) {
+            return Double.NaN;
+        }
+    }
+
+    @Test
+    public void canAgreeWithDkproOnResamples() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            int raters = 2 + random.nextInt(4);
+            int categories = 1 + random.nextInt(4);
+            List<List<String[]>> documents = new ArrayList<>();
+            CodingStudyStatistics statistics = new CodingStudyStatistics(raters);
+            for (int d = 0; d < 1 + random.nextInt(6); d++) {
+                List<String[]> document = randomDocument(random, raters, categories);
+                documents.add(document);
+                statistics.addDocument(document);
+            }
+            int[] sample = new int[documents.size()];
+            for (int i = 0; i < sample.length; i++) {
+                sample[i] = trial % 2 == 0 ? i : random.nextInt(documents.size());
+            }
+            CodingAnnotationStudy reference = new CodingAnnotationStudy(raters);
+            for (int document : sample) {
+                for (String[] item : documents.get(document)) {
+                    reference.addItemAsArray(item);
+                }
+            }
+            if (reference.getItemCount() == 0) {
+                continue;
+            }
+            assertEquals(referenceAgreement(new FleissKappaAgreement(reference)), statistics.calculateMultiPi(sample), DELTA);
+            assertEquals(referenceAgreement(new HubertKappaAgreement(reference)), statistics.calculateMultiKappa(sample), DELTA);
+        }
+    }
+
+    @Test
+    public void canComputePercentileInterval() {
+        double[] scores = new double[101];
+        for (int i = 0; i < 100; i++) {
+            scores[i] = (99 - i) / 100.0;
+        }
+        scores[100] = Double.NaN;
+        ConfidenceInterval interval = ConfidenceInterval.ofResampledScores(scores, 0.9);
+        assertEquals(101, interval.getResamples());
+        assertEquals(1, interval.getUndefinedResamples());
+        assertEquals(0.0495, interval.getLower(), DELTA);
+        assertEquals(0.9405, interval.getUpper(), DELTA);
+        assertTrue(interval.contains(0.5));
+    }
+}
@@ -25,20 +25,29 @@
 package edu.brandeis.llc.mae.agreement;
 
 import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.agreement.calculator.AgreementMatrix;
+import edu.brandeis.llc.mae.agreement.calculator.ConfidenceInterval;
 import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.llc.mae.database.MaeDriverI;
 import edu.brandeis.llc.mae.io.DTDLoader;
 import edu.brandeis.llc.mae.util.MappedSet;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -125,4 +134,215 @@ public class MaeAgreementMainTest {
         System.out.println(calc.calcGlobalAgreementToString(toCalc, false));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void canComputeStudiesConcurrently() throws Exception {
+        MappedSet<String, String> unitizing = new MappedSet<>();
+        unitizing.putCollection("NOUN", new LinkedList<String>() {{add("type"); add("comment");}});
+        unitizing.putCollection("VERB", new LinkedList<String>() {{add("tense"); add("aspect");}});
+        unitizing.putCollection("ADJ_ADV", new LinkedList<String>() {{add("type");}});
+        MappedSet<String, String> coding = new MappedSet<>();
+        coding.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        Map<String, MappedSet<String, String>> toCalc = new LinkedHashMap<>();
+        toCalc.put(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing);
+        toCalc.put(MaeAgreementStrings.MULTIKAPPA_CALC_STRING, coding);
+
+        calc.setParallelism(1);
+        Map<String, Map<String, Double>> serial = calc.calcLocalAgreement(toCalc, false);
+        calc.setParallelism(4);
+        Map<String, Map<String, Double>> parallel = calc.calcLocalAgreement(toCalc, false);
+        assertEquals(serial, parallel);
+        assertEquals(new ArrayList<>(serial.keySet()), new ArrayList<>(parallel.keySet()));
+        assertEquals(8, parallel.get(calc.getAgreementTitle(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing, false)).size());
+        assertEquals(serial, calc.calcLocalAgreement(toCalc, false));
+    }
+
+    @Test
+    public void canReportAgreements() throws Exception {
+        MappedSet<String, String> unitizing = new MappedSet<>();
+        unitizing.putCollection("NOUN", new LinkedList<String>() {{add("type");}});
+        MappedSet<String, String> coding = new MappedSet<>();
+        coding.putCollection("MOOD_DECL", new LinkedList<>());
+        coding.putCollection("MOOD_IMPE", new LinkedList<>());
+        Map<String, MappedSet<String, String>> local = new LinkedHashMap<>();
+        local.put(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing);
+        Map<String, MappedSet<String, String>> global = new LinkedHashMap<>();
+        global.put(MaeAgreementStrings.MULTIPI_CALC_STRING, coding);
+
+        AgreementReport report = calc.calcAgreementReport(global, local, false);
+        Map<String, Double> expected = calc.calcLocalAgreement(local, false).values().iterator().next();
+        assertEquals(calc.getDocumentNames().size(), report.getDocumentCount());
+        assertEquals(1 + expected.size(), report.getEntries().size());
+        AgreementReport.Entry first = report.getEntries().get(0);
+        assertEquals(MaeAgreementStrings.SCOPE_CROSSTAG_STRING, first.getScope());
+        assertEquals(MaeAgreementStrings.MULTIPI_CALC_STRING, first.getMetric());
+        for (AgreementReport.Entry entry : report.getEntries().subList(1, report.getEntries().size())) {
+            assertEquals(MaeAgreementStrings.SCOPE_LOCAL_STRING, entry.getScope());
+            assertEquals(expected.get(entry.getTarget()), entry.getAgreement());
+        }
+
+        StringWriter json = new StringWriter();
+        report.writeJson(json);
+        JsonNode root = new ObjectMapper().readTree(json.toString());
+        assertEquals("NounVerbTask", root.get("task").asText());
+        assertEquals(report.getEntries().size(), root.get("agreements").size());
+        StringWriter csv = new StringWriter();
+        report.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals("scope,metric,target,agreement", lines[0]);
+        assertEquals(report.getEntries().size() + 1, lines.length);
+    }
+
+    @Test
+    public void canBootstrapConfidenceIntervals() throws Exception {
+        MappedSet<String, String> unitizing = new MappedSet<>();
+        unitizing.putCollection("NOUN", new LinkedList<String>() {{add("type");}});
+        MappedSet<String, String> coding = new MappedSet<>();
+        coding.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        Map<String, MappedSet<String, String>> toCalc = new LinkedHashMap<>();
+        toCalc.put(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing);
+        toCalc.put(MaeAgreementStrings.MULTIPI_CALC_STRING, coding);
+        toCalc.put(MaeAgreementStrings.MULTIKAPPA_CALC_STRING, coding);
+
+        calc.setBootstrap(500, 42, 0.9);
+        calc.setParallelism(1);
+        Map<String, Map<String, Double>> serial = calc.calcLocalAgreement(toCalc, false);
+        Map<String, Map<String, ConfidenceInterval>> serialIntervals = new HashMap<>();
+        for (String title : serial.keySet()) {
+            serialIntervals.put(title, calc.getConfidenceIntervals(title));
+        }
+        calc.setParallelism(4);
+        Map<String, Map<String, Double>> parallel = calc.calcLocalAgreement(toCalc, false);
+        assertEquals(serial, parallel);
+        for (String title : parallel.keySet()) {
+            Map<String, ConfidenceInterval> intervals = calc.getConfidenceIntervals(title);
+            assertEquals(parallel.get(title).keySet(), intervals.keySet());
+            for (String key : intervals.keySet()) {
+                ConfidenceInterval interval = intervals.get(key);
+                ConfidenceInterval serialInterval = serialIntervals.get(title).get(key);
+                assertEquals(500, interval.getResamples());
+                assertEquals(serialInterval.getLower(), interval.getLower(), 0);
+                assertEquals(serialInterval.getUpper(), interval.getUpper(), 0);
+                assertTrue(interval.isDefined());
+                assertTrue(interval.getLower() <= interval.getUpper());
+            }
+        }
+
+        AgreementReport report = calc.calcAgreementReport(new LinkedHashMap<>(), toCalc, false);
+        StringWriter csv = new StringWriter();
+        report.writeCsv(csv);
+        assertEquals("scope,metric,target,agreement,lower,upper", csv.toString().split("\n")[0]);
+        for (AgreementReport.Entry entry : report.getEntries()) {
+            assertTrue(entry.getInterval() != null);
+        }
+
+        calc.setBootstrap(0, 42, 0.9);
+        calc.calcLocalAgreement(toCalc, false);
+        assertTrue(calc.getConfidenceIntervals(serial.keySet().iterator().next()).isEmpty());
+    }
+
+    @Test
+    public void canReportPairwiseAgreements() throws Exception {
+        MappedSet<String, String> unitizing = new MappedSet<>();
+        unitizing.putCollection("NOUN", new LinkedList<String>() {{add("type");}});
+        Map<String, MappedSet<String, String>> local = new LinkedHashMap<>();
+        local.put(MaeAgreementStrings.ALPHAU_CALC_STRING, unitizing);
+
+        AgreementReport report = calc.calcAgreementReport(new LinkedHashMap<>(), local, false, true);
+        assertEquals(report.getEntries().size(), report.getMatrices().size());
+        int annotators = calc.getApprovedAnnotators().size();
+        AgreementMatrix matrix = report.getMatrices().get(0).getMatrix();
+        assertTrue(Double.isNaN(matrix.get(0, 0)));
+        assertTrue(matrix.getOutlier() >= 0);
+
+        StringWriter json = new StringWriter();
+        report.writeJson(json);
+        JsonNode pairwise = new ObjectMapper().readTree(json.toString()).get("pairwise");
+        assertEquals(report.getMatrices().size(), pairwise.size());
+        assertEquals(annotators, pairwise.get(0).get("matrix").size());
+        assertTrue(pairwise.get(0).get("matrix").get(0).get(0).isNull());
+        assertEquals(matrix.getAnnotators().get(matrix.getOutlier()), pairwise.get(0).get("outlier").asText());
+        StringWriter csv = new StringWriter();
+        report.writePairwiseCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals("scope,metric,target,first,second,agreement", lines[0]);
+        assertEquals(report.getMatrices().size() * annotators * (annotators - 1) / 2 + 1, lines.length);
+    }
+
+    private Map<String, Double> calcAgreementOrNull(Map<String, MappedSet<String, String>> toCalc, boolean global) {
+        try {
+            Map<String, Map<String, Double>> agreements = global ?
+                    calc.calcGlobalAgreement(toCalc, false) : calc.calcLocalAgreement(toCalc, false);
+            return agreements.values().iterator().next();
+        } catch (Exception e) {
+            // a study of the tag type has too few categories for the pair
+            return null;
+        }
+    }
+
+    @Test
+    public void canComputePairwiseAgreementsAsPairsAlone() throws Exception {
+        MappedSet<String, String> unitizing = new MappedSet<>();
+        unitizing.putCollection("NOUN", new LinkedList<String>() {{add("type");}});
+        MappedSet<String, String> coding = new MappedSet<>();
+        coding.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        MappedSet<String, String> labels = new MappedSet<>();
+        labels.putCollection("MOOD_DECL", new LinkedList<>());
+        labels.putCollection("MOOD_IMPE", new LinkedList<>());
+        List<Map<String, MappedSet<String, String>>> local = new ArrayList<>();
+        List<Map<String, MappedSet<String, String>>> global = new ArrayList<>();
+        for (String metric : new String[]{MaeAgreementStrings.ALPHAU_CALC_STRING,
+                MaeAgreementStrings.MULTIPI_CALC_STRING, MaeAgreementStrings.MULTIKAPPA_CALC_STRING}) {
+            Map<String, MappedSet<String, String>> toCalc = new LinkedHashMap<>();
+            toCalc.put(metric, metric.equals(MaeAgreementStrings.ALPHAU_CALC_STRING) ? unitizing : coding);
+            local.add(toCalc);
+            toCalc = new LinkedHashMap<>();
+            toCalc.put(metric, labels);
+            global.add(toCalc);
+        }
+
+        calc.setParallelism(4);
+        List<String> annotators = new ArrayList<>(calc.getApprovedAnnotators());
+        List<Map<String, AgreementMatrix>> matrices = new ArrayList<>();
+        for (Map<String, MappedSet<String, String>> toCalc : local) {
+            matrices.add(calc.calcLocalPairwiseAgreement(toCalc, false).values().iterator().next());
+        }
+        for (Map<String, MappedSet<String, String>> toCalc : global) {
+            matrices.add(calc.calcGlobalPairwiseAgreement(toCalc, false).values().iterator().next());
+        }
+        for (Map<String, AgreementMatrix> matrix : matrices) {
+            assertEquals(annotators, matrix.values().iterator().next().getAnnotators());
+        }
+
+        for (int first = 0; first < annotators.size(); first++) {
+            for (int second = first + 1; second < annotators.size(); second++) {
+                for (int other = 0; other < annotators.size(); other++) {
+                    if (other == first || other == second) {
+                        calc.approveAnnotator(annotators.get(other));
+                    } else {
+                        calc.ignoreAnnotator(annotators.get(other));
+                    }
+                }
+                calc.loadXmlFiles();
+                for (int study = 0; study < matrices.size(); study++) {
+                    boolean isGlobal = study >= local.size();
+                    Map<String, AgreementMatrix> pairwise = matrices.get(study);
+                    Map<String, Double> alone = calcAgreementOrNull(
+                            isGlobal ? global.get(study - local.size()) : local.get(study), isGlobal);
+                    if (alone == null) {
+                        int row = first;
+                        int column = second;
+                        assertTrue(pairwise.values().stream().anyMatch(matrix -> Double.isNaN(matrix.get(row, column))));
+                        continue;
+                    }
+                    assertEquals(pairwise.keySet(), alone.keySet());
+                    for (String key : alone.keySet()) {
+                        String message = String.format("%s %s-%s", key, annotators.get(first), annotators.get(second));
+                        assertEquals(message, alone.get(key), pairwise.get(key).get(first, second), 1e-9);
+                        assertEquals(message, alone.get(key), pairwise.get(key).get(second, first), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.agreement;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.llc.mae.agreement.io.AnnotationFilesIndexer;
+import edu.brandeis.llc.mae.agreement.io.XMLParseCache;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.io.DTDLoader;
+import edu.brandeis.llc.mae.io.MaeXMLParser;
+import edu.brandeis.llc.mae.io.ParsedAtt;
+import edu.brandeis.llc.mae.io.ParsedTag;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class XMLParseCacheTest {
+
+    private MaeDriverI driver;
+    private AbstractAnnotationIndexer fileIdx;
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        fileIdx = new AnnotationFilesIndexer();
+        fileIdx.indexAnnotations(new File[]{new File(exampleUrl.getPath())});
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void canParseCorpusInParallel() throws Exception {
+        XMLParseCache cache = new XMLParseCache(driver, fileIdx, 4);
+        cache.parseAll();
+        for (String docName : fileIdx.getDocumentNames()) {
+            MaeXMLParser[] parses = cache.getParses(docName);
+            assertSame(parses, cache.getParses(docName));
+            assertParsesEqual(docName, parses);
+        }
+        cache.shutdown();
+    }
+
+    @Test
+    public void canSpillAndRestoreParses() throws Exception {
+        XMLParseCache cache = new XMLParseCache(driver, fileIdx, 2);
+        cache.setMaxWeight(1);
+        cache.setSpillDirectory(tempDir.getRoot());
+        for (String docName : fileIdx.getDocumentNames()) {
+            assertParsesEqual(docName, cache.getParses(docName));
+            assertTrue(cache.isResident(docName));
+        }
+        List<String> docNames = new ArrayList<>(fileIdx.getDocumentNames());
+        String first = docNames.get(0);
+        assertFalse(cache.isResident(first));
+        assertTrue(cache.isSpilled(first));
+        assertFalse(cache.isSpilled(docNames.get(docNames.size() - 1)));
+
+        MaeXMLParser[] restored = cache.getParses(first);
+        assertParsesEqual(first, restored);
+        assertTrue(cache.isResident(first));
+        assertEquals(XMLParseCache.estimateWeight(restored), cache.getTotalWeight());
+        cache.shutdown();
+        assertEquals(0, tempDir.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void canParseAgainAfterFailure() throws Exception {
+        URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        File corpus = tempDir.newFolder("corpus");
+        for (String name : Arrays.asList("doc1_a1.xml", "doc1_a2.xml")) {
+            FileUtils.copyFile(new File(exampleUrl.getPath(), name), new File(corpus, name));
+        }
+        File broken = new File(corpus, "doc1_a1.xml");
+        String xml = FileUtils.readFileToString(broken, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(broken, xml.substring(0, xml.length() / 2), StandardCharsets.UTF_8);
+        AbstractAnnotationIndexer corpusIdx = new AnnotationFilesIndexer();
+        corpusIdx.indexAnnotations(new File[]{corpus});
+
+        XMLParseCache cache = new XMLParseCache(driver, corpusIdx, 2);
+        try {
+            cache.getParses("doc1");
+            fail("should not parse a truncated file");
+        } catch (SAXException ignored) {
+        }
+        FileUtils.writeStringToFile(broken, xml, StandardCharsets.UTF_8);
+        MaeXMLParser[] parses = cache.getParses("doc1");
+        assertEquals(2, parses.length);
+        assertNotNull(parses[0]);
+        assertTrue(cache.isResident("doc1"));
+        cache.shutdown();
+    }
+
+    @Test
+    public void canLookUpIndexedTagsAndAtts() throws Exception {
+        XMLParseCache cache = new XMLParseCache(driver, fileIdx, 2);
+        for (String docName : fileIdx.getDocumentNames()) {
+            for (MaeXMLParser parse : cache.getParses(docName)) {
+                if (parse == null) {
+                    continue;
+                }
+                for (ParsedTag tag : parse.getParsedTags()) {
+                    List<ParsedTag> expected = new ArrayList<>();
+                    for (ParsedTag other : parse.getParsedTags()) {
+                        if (other.getTagTypeName().equals(tag.getTagTypeName())
+                                && Arrays.equals(other.getSpans(), tag.getSpans())) {
+                            expected.add(other);
+                        }
+                    }
+                    assertEquals(expected, parse.getParsedTags(tag.getTagTypeName(),
+                            tag.getSpans() == null ? null : tag.getSpans().clone()));
+                    assertTrue(parse.getParsedSpans(tag.getTagTypeName()).stream()
+                            .anyMatch(spans -> Arrays.equals(spans, tag.getSpans())));
+
+                    List<ParsedAtt> expectedAtts = new ArrayList<>();
+                    for (ParsedAtt att : parse.getParsedAtts()) {
+                        if (att.getTid().equals(tag.getTid())) {
+                            expectedAtts.add(att);
+                        }
+                    }
+                    assertEquals(expectedAtts, parse.getParsedAtts(tag.getTid()));
+                }
+                assertTrue(parse.getParsedTags("NO_SUCH_TYPE", new int[0]).isEmpty());
+                assertTrue(parse.getParsedAtts("NO_SUCH_TID").isEmpty());
+            }
+        }
+        cache.shutdown();
+    }
+
+    private void assertParsesEqual(String docName, MaeXMLParser[] parses) throws Exception {
+        String[] fileNames = fileIdx.getAnnotationsOfDocument(docName);
+        assertEquals(fileNames.length, parses.length);
+        CharSequence sharedText = null;
+        for (int i = 0; i < fileNames.length; i++) {
+            if (fileNames[i] == null) {
+                assertNull(parses[i]);
+                continue;
+            }
+            if (sharedText == null) {
+                sharedText = parses[i].getParsedPrimaryText();
+            }
+            assertSame(sharedText, parses[i].getParsedPrimaryText());
+            MaeXMLParser sequential = new MaeXMLParser(driver);
+            sequential.readAnnotationFile(new File(fileNames[i]));
+            assertEquals(sequential.getParsedPrimaryText().toString(), parses[i].getParsedPrimaryText().toString());
+            List<ParsedTag> expectedTags = sequential.getParsedTags();
+            List<ParsedTag> tags = parses[i].getParsedTags();
+            assertEquals(expectedTags.size(), tags.size());
+            for (int t = 0; t < tags.size(); t++) {
+                assertEquals(expectedTags.get(t).getTid(), tags.get(t).getTid());
+                assertArrayEquals(expectedTags.get(t).getSpans(), tags.get(t).getSpans());
+                if (!tags.get(t).isLink()) {
+                    assertEquals(expectedTags.get(t).getText().toString(), tags.get(t).getText().toString());
+                }
+            }
+            List<ParsedAtt> expectedAtts = sequential.getParsedAtts();
+            List<ParsedAtt> atts = parses[i].getParsedAtts();
+            assertEquals(expectedAtts.size(), atts.size());
+            for (int a = 0; a < atts.size(); a++) {
+                assertEquals(expectedAtts.get(a).getAttValue(), atts.get(a).getAttValue());
+            }
+            assertEquals(sequential.getParsedArgs().size(), parses[i].getParsedArgs().size());
+        }
+    }
+}
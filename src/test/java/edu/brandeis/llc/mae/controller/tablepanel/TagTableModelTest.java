@@ -0,0 +1,168 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.controller.tablepanel;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.controller.MaeMainController;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import edu.brandeis.llc.mae.database.MaeDriverI;
+import edu.brandeis.llc.mae.model.AttributeType;
+import edu.brandeis.llc.mae.model.ExtentTag;
+import edu.brandeis.llc.mae.model.TagType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.text.Highlighter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests edits made through tag tables, without a visible window.
+ */
+public class TagTableModelTest {
+
+    private static final File PREF_FILE = new File("mae.pref");
+
+    private boolean hadPrefFile;
+    private LocalSqliteDriverImpl driver;
+    private HeadlessMainController main;
+    private TagType noun;
+    private AttributeType nounType;
+
+    @Before
+    public void setUp() throws Exception {
+        hadPrefFile = PREF_FILE.exists();
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        driver.setPrimaryText("John jenny loves jimmy and jim.");
+        noun = driver.createTagType("NOUN", "N", false);
+        nounType = driver.createAttributeType(noun, "type");
+        main = new HeadlessMainController(driver);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+        if (!hadPrefFile) {
+            PREF_FILE.delete();
+        }
+    }
+
+    @Test
+    public void canEditSpansThroughTable() throws Exception {
+        ExtentTag john = driver.createExtentTag("N0", noun, new int[]{0, 1, 2, 3});
+        driver.addAttribute(john, nounType, "person");
+
+        HeadlessTablePanelController tablePanel = new HeadlessTablePanelController(main);
+        TagTableModel model = new TagTableModel(tablePanel, noun);
+        model.addColumn(MaeStrings.SRC_COL_NAME);
+        model.addColumn(MaeStrings.ID_COL_NAME);
+        model.addColumn(MaeStrings.SPANS_COL_NAME);
+        model.addColumn(MaeStrings.TEXT_COL_NAME);
+        model.addColumn(nounType.getName());
+        model.addRow(new String[]{"TEST_SAMPLE", john.getId(), john.getSpansAsString(), john.getText(), "person"});
+        model.addTableModelListener(model);
+
+        model.setValueAt("5~10", 0, TablePanelController.SPANS_COL);
+
+        assertTrue(main.errors.toString(), main.errors.isEmpty());
+        ExtentTag updated = (ExtentTag) driver.getTagByTid("N0");
+        assertEquals("5~10", updated.getSpansAsString());
+        assertEquals("jenny", updated.getText());
+        assertEquals("jenny", model.getValueAt(0, TablePanelController.TEXT_COL));
+        assertEquals("person", updated.getAttributesWithNames().get(nounType.getName()));
+        assertEquals("jenny", tablePanel.allTagsText);
+    }
+
+    private static class HeadlessMainController extends MaeMainController {
+        private final MaeDriverI driver;
+        private final List<Exception> errors = new ArrayList<>();
+
+        HeadlessMainController(MaeDriverI driver) {
+            this.driver = driver;
+        }
+
+        @Override
+        public MaeDriverI getDriver() {
+            return driver;
+        }
+
+        @Override
+        public String getTextIn(int... locations) {
+            StringBuilder text = new StringBuilder();
+            try {
+                for (int location : locations) {
+                    text.append(driver.getPrimaryText().charAt(location));
+                }
+            } catch (MaeDBException e) {
+                showError(e);
+            }
+            return text.toString();
+        }
+
+        @Override
+        public void assignTextColorsOver(List<Integer> anchors) {
+        }
+
+        @Override
+        public void removeAllBGColors() {
+        }
+
+        @Override
+        public void addBGColorOver(List<Integer> spans, Highlighter.HighlightPainter painter) {
+        }
+
+        @Override
+        public void updateSavedStatusInTextPanel() {
+        }
+
+        @Override
+        public void showError(Exception e) {
+            errors.add(e);
+        }
+    }
+
+    private static class HeadlessTablePanelController extends TablePanelController {
+        private String allTagsText;
+
+        HeadlessTablePanelController(MaeMainController mainController) throws Exception {
+            super(mainController);
+        }
+
+        @Override
+        void updateAllTagsTableRow(String tid, String newSpans, String newText) {
+            allTagsText = newText;
+        }
+
+        @Override
+        void updateAssociatedLinkTagRows(String tid, String newText) {
+        }
+    }
+}
@@ -59,6 +59,7 @@ public class LocalSqliteDriverImplTest {
     public void setUp() throws Exception {
         driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
         driver.setAnnotationFileName("TEST_SAMPLE");
+        driver.setPrimaryText("John jenny loves jimmy and jim.");
 
         noun = driver.createTagType("NOUN", "N", false);
         verb = driver.createTagType("VERB", "V", false);
@@ -93,7 +94,7 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canCreateTag() throws Exception {
-        ExtentTag tag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag tag = driver.createExtentTag("N01", noun, 5,6,7,8,9);
         Collection<ExtentTag> retrievedTags = (Collection<ExtentTag>) driver.getAllTagsOfType(noun);
         ExtentTag retrievedTag = retrievedTags.iterator().next();
         assertEquals(
@@ -117,6 +118,10 @@ public class LocalSqliteDriverImplTest {
                 "Expected Obj and Rel share the same text, found: " + retrievedTag.getText(),
                 tag.getText(), retrievedTag.getText()
         );
+        assertEquals(
+                "Expected text is sliced from the primary text, found: " + retrievedTag.getText(),
+                "jenny", retrievedTag.getText()
+        );
         assertEquals(
                 "Expected Obj and Rel share the same span, found: " + retrievedTag.getSpansAsString(),
                 tag.getSpansAsString(), retrievedTag.getSpansAsString()
@@ -127,7 +132,7 @@ public class LocalSqliteDriverImplTest {
     @Test
     public void canUpdateTag() throws Exception {
         int[] span = new int[]{5,6,7,8,9};
-        ExtentTag tag = driver.createExtentTag("N01", noun, "jenny", span);
+        ExtentTag tag = driver.createExtentTag("N01", noun, span);
         Assert.assertEquals(
                 "Expected the span is set accurately, found: " + tag.getSpansAsString(),
                 SpanHandler.convertArrayToString(span), tag.getSpansAsString()
@@ -140,17 +145,16 @@ public class LocalSqliteDriverImplTest {
                 SpanHandler.convertArrayToString(newSpan), tag.getSpansAsString()
         );
 
-        driver.updateTagText(tag, "JANE");
         assertEquals(
-                "Expected the text is updated, found: " + tag.getText(),
-                "JANE", tag.getText()
+                "Expected the text follows the updated span, found: " + tag.getText(),
+                "jenny" + MaeStrings.SPANTEXTTRUNC + "ves ", tag.getText()
         );
 
     }
 
     @Test
     public void canDeleteTag() throws Exception {
-        ExtentTag tag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag tag = driver.createExtentTag("N01", noun, 5,6,7,8,9);
         Collection<ExtentTag> retrievedTags = (Collection<ExtentTag>) driver.getAllTagsOfType(noun);
         assertEquals(
                 "Expected 1 extent tag is retrieved by generic query, found: " + retrievedTags.size(),
@@ -165,7 +169,7 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canRetrieveExtentTagsByType() throws Exception {
-        driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        driver.createExtentTag("N01", noun, 5,6,7,8,9);
 
         Collection<ExtentTag> retrievedTags = (Collection<ExtentTag>) driver.getAllTagsOfType(noun);
         assertEquals(
@@ -181,8 +185,8 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canRetrieveAllExtentTagsByTypes() throws Exception {
-        driver.createExtentTag("N01", noun, "jenny", 5, 6, 7, 8, 9);
-        driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        driver.createExtentTag("N01", noun, 5, 6, 7, 8, 9);
+        driver.createExtentTag("V01", verb, 11, 12, 13, 14, 15);
 
         MappedSet<TagType, ExtentTag> retrievedTags = driver.getAllExtentTagsByTypes(false);
         assertEquals(
@@ -206,9 +210,9 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canRetrieveAllExtentTagsByTypesInSpan() throws Exception {
-        ExtentTag nTag3 = driver.createExtentTag("N03", noun, "jimmy", 16,17,18,19,20);
-        ExtentTag nTag4 = driver.createExtentTag("N04", noun, "jim", 16,17,18);
-        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15, 16);
+        ExtentTag nTag3 = driver.createExtentTag("N03", noun, 16,17,18,19,20);
+        ExtentTag nTag4 = driver.createExtentTag("N04", noun, 16,17,18);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, 11, 12, 13, 14, 15, 16);
 
         List<ExtentTag> retrievedTags = driver.getTagsOfTypeAt(noun, 16);
         assertEquals(
@@ -232,11 +236,11 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canRetrieveAllNCTagsByTypes() throws Exception {
-        ExtentTag nTag3 = driver.createExtentTag("N03", noun, "jimmy", 16,17,18,19,20);
-        ExtentTag nTag4 = driver.createExtentTag("N04", noun, "jim", 16,17,18);
-        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15, 16);
-        ExtentTag ncNoun = driver.createExtentTag("N01", noun, null, null);
-        ExtentTag ncVerb = driver.createExtentTag("V02", verb, null, null);
+        ExtentTag nTag3 = driver.createExtentTag("N03", noun, 16,17,18,19,20);
+        ExtentTag nTag4 = driver.createExtentTag("N04", noun, 16,17,18);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, 11, 12, 13, 14, 15, 16);
+        ExtentTag ncNoun = driver.createExtentTag("N01", noun, null);
+        ExtentTag ncVerb = driver.createExtentTag("V02", verb, null);
 
         List<ExtentTag> retrievedTags = driver.getAllNCTagsOfType(noun);
         assertEquals(
@@ -260,7 +264,7 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canUpdateAttribute() throws Exception {
-        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag nTag = driver.createExtentTag("N01", noun, 5,6,7,8,9);
         AttributeType proper = driver.createAttributeType(noun, "proper");
         driver.addAttribute(nTag, proper, "true");
 
@@ -284,8 +288,8 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canRetrieveLinkTagsByType() throws Exception {
-        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
-        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag nTag = driver.createExtentTag("N01", noun, 5,6,7,8,9);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, 11, 12, 13, 14, 15);
 
         LinkTag link = driver.createLinkTag("A01", semanticRole);
         driver.addArgument(link, agent, nTag);
@@ -317,8 +321,8 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canOnlyDropTagTables() throws Exception {
-        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
-        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag nTag = driver.createExtentTag("N01", noun, 5,6,7,8,9);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, 11, 12, 13, 14, 15);
 
         AttributeType proper = driver.createAttributeType(noun, "proper");
         driver.addAttribute(nTag, proper, "true");
@@ -353,7 +357,7 @@ public class LocalSqliteDriverImplTest {
 
     @Test
     public void canRetriveTagWithNullAttributes() throws Exception {
-        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, 11, 12, 13, 14, 15);
         assertTrue(vTag != null);
 
         assertTrue(
@@ -407,7 +411,7 @@ public class LocalSqliteDriverImplTest {
         AttributeType properNounx = driver.createAttributeType(noun, "isProperx");        
         AttributeType properNouny = driver.createAttributeType(noun, "isPropery");        
         AttributeType properNounz = driver.createAttributeType(noun, "isProperz");        
-        ExtentTag nTag = driver.createExtentTag("N01", noun, "John", new int[]{0,1,2,3,4});
+        ExtentTag nTag = driver.createExtentTag("N01", noun, new int[]{0,1,2,3,4});
         for (AttributeType type : new AttributeType[]{properNoun1,
                 properNoun2, properNoun3, properNoun4, properNoun5, properNoun6,
                 properNoun7, properNoun8, properNoun9}) {
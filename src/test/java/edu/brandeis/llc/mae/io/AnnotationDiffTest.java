@@ -0,0 +1,116 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.model.ExtentTag;
+import edu.brandeis.llc.mae.model.LinkTag;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class AnnotationDiffTest {
+    private LocalSqliteDriverImpl driver;
+    private File annotationFile;
+    private String original;
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        original = FileUtils.readFileToString(new File(xmlUrl.getPath()), StandardCharsets.UTF_8);
+        annotationFile = File.createTempFile("sampleTask", ".xml");
+        annotationFile.deleteOnExit();
+        FileUtils.writeStringToFile(annotationFile, original, StandardCharsets.UTF_8);
+        AnnotationLoader loader = new AnnotationLoader(driver);
+        loader.setSnapshotCaching(false);
+        loader.loadFile(annotationFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    @Test
+    public void canFindNoDifferenceInSameFile() throws Exception {
+        AnnotationDiff diff = new AnnotationLoader(driver).diffWithFile(annotationFile);
+        assertNotNull(diff);
+        assertTrue(diff.toString(), diff.isEmpty());
+    }
+
+    @Test
+    public void canApplyChangesTagByTag() throws Exception {
+        String modified = original
+                // updated spans and attribute
+                .replace("<NOUN id=\"N0\" spans=\"1~11\" text=\"Mrs Miller\" type=\"other\"",
+                        "<NOUN id=\"N0\" spans=\"5~11\" text=\"Miller\" type=\"person\"")
+                // deleted, along with the argument of a link pointing to it
+                .replace("<ADJ_ADV id=\"A1\" spans=\"22~28\" text=\"entire\" type=\"\" />", "")
+                .replace("arg1ID=\"A1\" arg1Text=\"entire\"", "arg1ID=\"\" arg1Text=\"\"")
+                .replace("<ACTION id=\"AC1\" fromID=\"N2\" fromText=\"\" toID=\"A0\" toText=\"repainted\" relationship=\"performs\" />", "")
+                // inserted
+                .replace("</TAGS>", "<NOUN id=\"N3\" spans=\"22~28\" text=\"entire\" type=\"\" />\n</TAGS>");
+        FileUtils.writeStringToFile(annotationFile, modified, StandardCharsets.UTF_8);
+
+        AnnotationDiff diff = new AnnotationLoader(driver).diffWithFile(annotationFile);
+        assertNotNull(diff);
+        assertEquals(1, diff.getInserted().size());
+        assertEquals(2, diff.getUpdated().size());
+        assertEquals(2, diff.getDeleted().size());
+        assertTrue(diff.getAffectedLocations().contains(1));
+        assertTrue(diff.getAffectedLocations().contains(22));
+        assertFalse(diff.getAffectedLocations().contains(12));
+
+        diff.apply(driver);
+        ExtentTag n0 = (ExtentTag) driver.getTagByTid("N0");
+        assertEquals("Miller", n0.getText());
+        assertEquals("person", n0.getAttributesWithNames().get("type"));
+        assertNull(driver.getTagByTid("A1"));
+        assertNull(driver.getTagByTid("AC1"));
+        assertEquals("entire", ((ExtentTag) driver.getTagByTid("N3")).getText());
+        LinkTag d1 = (LinkTag) driver.getTagByTid("D1");
+        assertFalse(d1.getArgumentTidsWithNames().containsKey("arg1"));
+        assertEquals("N1", d1.getArgumentTidsWithNames().get("arg0"));
+        assertTrue(new AnnotationLoader(driver).diffWithFile(annotationFile).isEmpty());
+    }
+
+    @Test
+    public void cannotDiffWithChangedPrimaryText() throws Exception {
+        FileUtils.writeStringToFile(annotationFile, original.replace("entire house", "entire flat"), StandardCharsets.UTF_8);
+        assertNull(new AnnotationLoader(driver).diffWithFile(annotationFile));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnnotationFileDiffTest {
+    private LocalSqliteDriverImpl driver;
+    private String original;
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        original = FileUtils.readFileToString(new File(xmlUrl.getPath()), StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    private MaeXMLParser parse(String xml) throws Exception {
+        File file = File.createTempFile("diff", ".xml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, xml, StandardCharsets.UTF_8);
+        MaeXMLParser parser = new MaeXMLParser(driver);
+        parser.readAnnotationFile(file);
+        return parser;
+    }
+
+    @Test
+    public void canMatchTagsRegardlessOfIds() throws Exception {
+        // the other annotator numbered tags differently, and changed one attribute
+        String other = original
+                .replace("id=\"N0\"", "id=\"N10\"").replace("agentID=\"N0\"", "agentID=\"N10\"")
+                .replace("<NOUN id=\"N1\" spans=\"29~34\" text=\"house\" type=\"other\"",
+                        "<NOUN id=\"N1\" spans=\"29~34\" text=\"house\" type=\"place\"")
+                .replace("<ADJ_ADV id=\"A1\" spans=\"22~28\" text=\"entire\" type=\"\" />",
+                        "<ADJ_ADV id=\"A1\" spans=\"22~27\" text=\"entir\" type=\"\" />");
+        AnnotationFileDiff diff = AnnotationFileDiff.compare(parse(original), parse(other));
+
+        assertEquals(1, diff.count(AnnotationFileDiff.Kind.CHANGED));
+        // A1 with new spans, and DESCRIPTION pointing to it
+        assertEquals(2, diff.count(AnnotationFileDiff.Kind.ADDED));
+        assertEquals(2, diff.count(AnnotationFileDiff.Kind.REMOVED));
+        assertEquals(6, diff.getMatchedCount());
+
+        AnnotationFileDiff.Entry changed = null;
+        for (AnnotationFileDiff.Entry entry : diff.getEntries()) {
+            if (entry.getKind() == AnnotationFileDiff.Kind.CHANGED) {
+                changed = entry;
+            }
+        }
+        assertEquals("N1", changed.getLeftTid());
+        assertArrayEquals(new String[]{"other", "place"}, changed.getAttributeChanges().get("type"));
+        assertEquals("~ NOUN N1/N1 29~34 \"house\" type: other -> place", changed.toString());
+
+        StringWriter json = new StringWriter();
+        diff.writeJson("a.xml", "b.xml", json);
+        assertTrue(json.toString().contains("\"changed\" : 1"));
+    }
+
+    @Test
+    public void canDiffManyTags() {
+        List<ParsedTag> left = new ArrayList<>();
+        List<ParsedTag> right = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            ParsedTag tag = new ParsedTag();
+            tag.setTid("N" + i);
+            tag.setTagTypeName("NOUN");
+            tag.setSpans(new int[]{i * 3, i * 3 + 1});
+            left.add(tag);
+            if (i % 1000 != 0) {
+                right.add(tag);
+            }
+        }
+        Collections.reverse(right);
+        AnnotationFileDiff diff = AnnotationFileDiff.compare(left, Collections.<ParsedAtt>emptyList(),
+                Collections.<ParsedArg>emptyList(), right, Collections.<ParsedAtt>emptyList(),
+                Collections.<ParsedArg>emptyList());
+        assertEquals(99900, diff.getMatchedCount());
+        assertEquals(100, diff.count(AnnotationFileDiff.Kind.REMOVED));
+        assertEquals(0, diff.count(AnnotationFileDiff.Kind.ADDED));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationFileWatcherTest {
+
+    @Test
+    public void canReportOnlyModifiedFiles() throws Exception {
+        File watched = File.createTempFile("watched", ".xml");
+        File other = File.createTempFile("other", ".xml");
+        watched.deleteOnExit();
+        other.deleteOnExit();
+        final List<File> modified = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try (AnnotationFileWatcher watcher = new AnnotationFileWatcher(file -> {
+            modified.add(file);
+            latch.countDown();
+        })) {
+            watcher.setSettleMillis(50);
+            watcher.watch(watched);
+            assertTrue(watcher.isWatching(watched));
+            assertFalse(watcher.isWatching(other));
+            FileUtils.writeStringToFile(other, "<NounVerbTask/>", StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(watched, "<NounVerbTask/>", StandardCharsets.UTF_8);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(1, modified.size());
+            assertEquals(watched.getCanonicalFile(), modified.get(0).getCanonicalFile());
+        }
+    }
+
+    @Test
+    public void canIgnoreAcknowledgedWrites() throws Exception {
+        File saved = File.createTempFile("saved", ".xml");
+        File edited = File.createTempFile("edited", ".xml");
+        saved.deleteOnExit();
+        edited.deleteOnExit();
+        final List<File> modified = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try (AnnotationFileWatcher watcher = new AnnotationFileWatcher(file -> {
+            modified.add(file);
+            latch.countDown();
+        })) {
+            watcher.setSettleMillis(200);
+            watcher.watch(saved);
+            watcher.watch(edited);
+            FileUtils.writeStringToFile(saved, "<NounVerbTask/>", StandardCharsets.UTF_8);
+            watcher.acknowledge(saved);
+            FileUtils.writeStringToFile(edited, "<NounVerbTask/>", StandardCharsets.UTF_8);
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(1, modified.size());
+            assertEquals(edited.getCanonicalFile(), modified.get(0).getCanonicalFile());
+        }
+    }
+}
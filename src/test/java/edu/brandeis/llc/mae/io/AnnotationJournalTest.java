@@ -0,0 +1,147 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.model.*;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class AnnotationJournalTest {
+
+    @Rule
+    public SampleTaskFolder tempDir = new SampleTaskFolder();
+
+    private File annotationFile;
+    private LocalSqliteDriverImpl driver;
+
+    @Before
+    public void setUp() throws Exception {
+        annotationFile = tempDir.getAnnotationFile();
+        driver = tempDir.newDriver();
+        driver.readAnnotation(annotationFile);
+        driver.setJournal(AnnotationJournal.start(driver.getAnnotationFileName()));
+    }
+
+    private void crash() {
+        // drop the journal without discarding the files, as if MAE was killed
+        driver.getJournal().close();
+        driver.setJournal(null);
+    }
+
+    private LocalSqliteDriverImpl recover() throws Exception {
+        assertTrue(AnnotationJournal.hasLeftover(annotationFile.getAbsolutePath()));
+        LocalSqliteDriverImpl recovered = tempDir.newDriver();
+        AnnotationJournal.recover(recovered, annotationFile);
+        return recovered;
+    }
+
+    @Test
+    public void canEscapeFields() {
+        StringBuilder escaped = new StringBuilder();
+        AnnotationJournal.escape("a\tb\\c\nd", escaped);
+        assertFalse(escaped.toString().contains("\t"));
+        assertFalse(escaped.toString().contains("\n"));
+        String[] fields = AnnotationJournal.splitRecord("A\t" + escaped + "\t");
+        assertArrayEquals(new String[]{"A", "a\tb\\c\nd", ""}, fields);
+    }
+
+    @Test
+    public void canReplayChangesAfterCrash() throws Exception {
+        TagType noun = driver.getTagTypeByName("NOUN");
+        TagType action = driver.getTagTypeByName("ACTION");
+        AttributeType nounType = driver.getAttributeTypeOfTagTypeByName(noun, "type");
+
+        ExtentTag newNoun = driver.createExtentTag("N3", noun, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33);
+        driver.updateAttribute(newNoun, nounType, "thing");
+        driver.updateTagSpans((ExtentTag) driver.getTagByTid("N0"), new int[]{5, 6, 7, 8, 9, 10});
+        driver.deleteTag(driver.getTagByTid("A1"));
+        LinkTag newAction = driver.createLinkTag("AC2", action);
+        driver.UpdateArgument(newAction, driver.getArgumentTypeOfTagTypeByName(action, "from"), newNoun);
+        assertEquals(6, driver.getJournal().size());
+        crash();
+
+        LocalSqliteDriverImpl restored = recover();
+        assertTrue(restored.isAnnotationChanged());
+        assertEquals(annotationFile.getAbsolutePath(), restored.getAnnotationFileName());
+        ExtentTag restoredNoun = (ExtentTag) restored.getTagByTid("N3");
+        assertNotNull(restoredNoun);
+        assertEquals("entire house", restoredNoun.getText());
+        assertEquals("thing", restored.getAttributeMapOfTag(restoredNoun).get("type"));
+        assertEquals("5~11", ((ExtentTag) restored.getTagByTid("N0")).getSpansAsString());
+        assertNull(restored.getTagByTid("A1"));
+        LinkTag restoredAction = (LinkTag) restored.getTagByTid("AC2");
+        assertEquals("N3", restoredAction.getArgumentByTypeName("from").getArgumentId());
+    }
+
+    @Test
+    public void canRecoverFromCheckpoint() throws Exception {
+        TagType verb = driver.getTagTypeByName("VERB");
+        driver.createExtentTag("V1", verb, 35, 36, 37, 38, 39, 40, 41, 42, 43);
+        driver.getJournal().compact(driver);
+        assertEquals(0, driver.getJournal().size());
+        assertTrue(driver.getJournal().getCheckpointFile().exists());
+        driver.deleteTag(driver.getTagByTid("V0"));
+        crash();
+
+        LocalSqliteDriverImpl restored = recover();
+        assertNotNull(restored.getTagByTid("V1"));
+        assertNull(restored.getTagByTid("V0"));
+    }
+
+    @Test
+    public void canIgnoreJournalOlderThanCheckpoint() throws Exception {
+        TagType verb = driver.getTagTypeByName("VERB");
+        File journalFile = driver.getJournal().getJournalFile();
+        driver.createExtentTag("V1", verb, 35, 36, 37, 38, 39, 40, 41, 42, 43);
+        File staleJournal = tempDir.newFile("stale.journal");
+        FileUtils.copyFile(journalFile, staleJournal);
+        driver.getJournal().compact(driver);
+        crash();
+        // as if MAE died right after the checkpoint was written
+        FileUtils.copyFile(staleJournal, journalFile);
+
+        LocalSqliteDriverImpl restored = recover();
+        assertNotNull(restored.getTagByTid("V1"));
+        assertEquals(2, restored.getAllExtentTagsOfType(restored.getTagTypeByName("VERB")).size());
+    }
+
+    @Test
+    public void canDiscardWhenDestroyed() throws Exception {
+        AnnotationJournal journal = driver.getJournal();
+        driver.deleteTag(driver.getTagByTid("AC1"));
+        journal.compact(driver);
+        tempDir.destroyDriver(driver);
+        assertFalse(journal.getJournalFile().exists());
+        assertFalse(journal.getCheckpointFile().exists());
+    }
+}
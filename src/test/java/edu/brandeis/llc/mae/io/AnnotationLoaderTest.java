@@ -28,16 +28,19 @@ import edu.brandeis.llc.mae.MaeStrings;
 import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.llc.mae.database.MaeDBException;
 import edu.brandeis.llc.mae.model.ExtentTag;
+import edu.brandeis.llc.mae.util.MappedText;
+import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.URL;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -87,6 +90,92 @@ public class AnnotationLoaderTest {
         assertFalse(AnnotationLoader.isXml(sampleFile));
     }
 
+    @Test
+    public void canReadGzippedXML() throws Exception {
+        readSimpleDTD();
+        URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        File gzipped = File.createTempFile("sampleTask", ".xml.gz");
+        gzipped.deleteOnExit();
+        try (InputStream in = new FileInputStream(sampleFileUrl.getPath());
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipped))) {
+            IOUtils.copy(in, out);
+        }
+        assertTrue(AnnotationLoader.isXml(gzipped));
+        assertTrue(AnnotationLoader.isTaskNameMatching(gzipped, "NounVerbTask"));
+        loader = new AnnotationLoader(driver);
+        loader.setSnapshotCaching(false);
+        loader.loadFile(gzipped);
+        assertEquals("Mrs Miller", ((ExtentTag) driver.getTagByTid("N0")).getText());
+
+        File saved = File.createTempFile("saved", ".xml.gz");
+        saved.deleteOnExit();
+        MaeFileWriter.writeAnnotationToXML(driver, saved);
+        try (InputStream in = new FileInputStream(saved)) {
+            assertEquals(0x1f, in.read());
+            assertEquals(0x8b, in.read());
+        }
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(saved, driver.getPrimaryText()));
+    }
+
+    @Test
+    public void canReadLargeDocumentFromMappedText() throws Exception {
+        readSimpleDTD();
+        URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        File sampleFile = new File(sampleFileUrl.getPath());
+        loader = new AnnotationLoader(driver);
+        loader.setSnapshotCaching(false);
+        loader.setLargeDocumentThreshold(8);
+        loader.loadFile(sampleFile);
+        assertTrue(driver.getPrimaryText() instanceof MappedText);
+        assertEquals("\nMrs Miller wants the entire house repainted.\n", driver.getPrimaryText().toString());
+        assertEquals("Mrs Miller", ((ExtentTag) driver.getTagByTid("N0")).getText());
+
+        File saved = File.createTempFile("saved", ".xml");
+        saved.deleteOnExit();
+        MaeFileWriter.writeAnnotationToXML(driver, saved);
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(saved, driver.getPrimaryText()));
+    }
+
+    @Test
+    public void canReadTextDeliveredInChunks() throws Exception {
+        StringBuilder longText = new StringBuilder();
+        while (longText.length() < 100000) {
+            longText.append("Mrs Miller wants the entire house repainted &amp; ready.\n");
+        }
+        File longFile = File.createTempFile("longText", ".xml");
+        longFile.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(longFile), "UTF-8")) {
+            writer.write("<NounVerbTask>\n<TEXT>" + longText + "</TEXT>\n<TAGS>\n</TAGS>\n</NounVerbTask>");
+        }
+        String expected = longText.toString().replace("&amp;", "&");
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(longFile, expected));
+    }
+
+    @Test
+    public void canCapWarningsOfMismatchingFile() throws Exception {
+        readSimpleDTD();
+        StringBuilder tags = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            tags.append(String.format("<NOUN id=\"N%d\" spans=\"0~3\" type=\"animal\" />\n<PRONOUN id=\"P%d\" />\n", i, i));
+        }
+        File mismatching = File.createTempFile("mismatching", ".xml");
+        mismatching.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(mismatching), "UTF-8")) {
+            writer.write("<NounVerbTask>\n<TEXT>Mrs Miller</TEXT>\n<TAGS>\n" + tags + "</TAGS>\n</NounVerbTask>");
+        }
+        MaeXMLParser parser = new MaeXMLParser(driver);
+        parser.readAnnotationFile(mismatching);
+        ParseWarnings warnings = parser.getWarnings();
+        assertEquals(5000, warnings.getCount(ParseWarnings.Code.INVALID_VALUE));
+        assertEquals(5000, warnings.getCount(ParseWarnings.Code.UNEXPECTED_TAG_TYPE));
+        assertEquals(2 * ParseWarnings.DEFAULT_CAP_PER_CODE, warnings.getWarnings().size());
+        ParseWarnings.Warning first = warnings.getWarnings().get(0);
+        assertEquals("N0", first.getTid());
+        assertEquals("type", first.getAttName());
+        assertEquals(4, first.getLine());
+        assertEquals("other", parser.getParsedAtts().get(0).getAttValue());
+    }
+
     @Test
     public void canMatchTaskName() throws MaeIOException {
         URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
@@ -95,6 +184,24 @@ public class AnnotationLoaderTest {
         assertFalse(AnnotationLoader.isTaskNameMatching(sampleFile, "nounvERBtAsk"));
     }
 
+    @Test
+    public void canReadPlainText() throws Exception {
+        readSimpleDTD();
+        File txtFile = File.createTempFile("plainText", ".txt");
+        txtFile.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(txtFile), "UTF-8")) {
+            writer.write("if (a[b[0]]>1) {\r\n  return;\u0007\r\n}");
+        }
+        loader = new AnnotationLoader(driver);
+        loader.loadFile(txtFile);
+        String expected = "if (a[b[0]]>1) {\n  return;\n}";
+        assertEquals(expected, driver.getPrimaryText());
+        File xmlized = new File(driver.getAnnotationFileName());
+        xmlized.deleteOnExit();
+        assertTrue(xmlized.getName().endsWith(".xml"));
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(xmlized, expected));
+    }
+
     @Test
     public void canMatchText() throws MaeIOException {
         URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
@@ -0,0 +1,86 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class AnnotationPreambleTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File write(String xml) throws IOException {
+        File file = tempDir.newFile();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(xml);
+        }
+        return file;
+    }
+
+    @Test
+    public void canReadPreamble() throws Exception {
+        URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        AnnotationPreamble preamble = AnnotationPreamble.read(new File(sampleFileUrl.getPath()));
+        String text = "\nMrs Miller wants the entire house repainted.\n";
+        assertEquals("NounVerbTask", preamble.getTaskName());
+        assertEquals(text.length(), preamble.getTextLength());
+        assertEquals(AnnotationPreamble.digest(text), preamble.getTextDigest());
+    }
+
+    @Test
+    public void canStopAtEndOfText() throws Exception {
+        // the tail is not well-formed, but is never read
+        AnnotationPreamble preamble = AnnotationPreamble.read(
+                write("<NounVerbTask>\n<TEXT><![CDATA[Mrs Miller]]></TEXT>\n<TAGS>\n<NOUN id=\"N0\" </TAGS"));
+        assertEquals("NounVerbTask", preamble.getTaskName());
+        assertEquals(AnnotationPreamble.digest("Mrs Miller"), preamble.getTextDigest());
+    }
+
+    @Test
+    public void canCompareTexts() throws Exception {
+        StringBuilder longText = new StringBuilder();
+        while (longText.length() < 100000) {
+            longText.append("Mrs Miller wants the entire house repainted &amp; ready 😀.\n");
+        }
+        AnnotationPreamble chunked = AnnotationPreamble.read(write("<NounVerbTask><TEXT>" + longText + "</TEXT></NounVerbTask>"));
+        assertEquals(AnnotationPreamble.digest(longText.toString().replace("&amp;", "&")), chunked.getTextDigest());
+        AnnotationPreamble same = AnnotationPreamble.read(write("<NounVerbTask><TEXT>" + longText + "</TEXT><TAGS/></NounVerbTask>"));
+        assertTrue(chunked.isTextMatching(same));
+        AnnotationPreamble other = AnnotationPreamble.read(write("<NounVerbTask><TEXT>" + longText + ".</TEXT></NounVerbTask>"));
+        assertFalse(chunked.isTextMatching(other));
+        AnnotationPreamble noText = AnnotationPreamble.read(write("<NounVerbTask><TAGS/></NounVerbTask>"));
+        assertNull(noText.getTextDigest());
+        assertFalse(chunked.isTextMatching(noText));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.model.ExtentTag;
+import edu.brandeis.llc.mae.model.LinkTag;
+import edu.brandeis.llc.mae.model.Tag;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnnotationSnapshotTest {
+
+    @Rule
+    public SampleTaskFolder tempDir = new SampleTaskFolder();
+
+    private File annotationFile;
+
+    @Before
+    public void setUp() throws Exception {
+        annotationFile = tempDir.getAnnotationFile();
+    }
+
+    private LocalSqliteDriverImpl newDriver() throws Exception {
+        return tempDir.newDriver();
+    }
+
+    private void assertSameAnnotations(LocalSqliteDriverImpl expected, LocalSqliteDriverImpl actual) throws Exception {
+        assertEquals(expected.getPrimaryText(), actual.getPrimaryText());
+        assertEquals(expected.getAllExtentTagsOfAllTypes(false).size(), actual.getAllExtentTagsOfAllTypes(false).size());
+        assertEquals(expected.getAllLinkTagsOfAllTypes().size(), actual.getAllLinkTagsOfAllTypes().size());
+        for (ExtentTag tag : expected.getAllExtentTagsOfAllTypes(false)) {
+            ExtentTag other = (ExtentTag) actual.getTagByTid(tag.getId());
+            assertEquals(tag.getSpansAsString(), other.getSpansAsString());
+            assertEquals(tag.getText(), other.getText());
+            assertEquals(tag.getAttributesWithNames(), other.getAttributesWithNames());
+        }
+        for (LinkTag tag : expected.getAllLinkTagsOfAllTypes()) {
+            Tag other = actual.getTagByTid(tag.getId());
+            assertEquals(tag.getAttributesWithNames(), other.getAttributesWithNames());
+        }
+    }
+
+    @Test
+    public void canRoundTripThroughBytes() throws Exception {
+        MaeXMLParser parser = new MaeXMLParser(newDriver());
+        AnnotationSnapshot snapshot = AnnotationSnapshot.fromXML(parser, annotationFile);
+        snapshot.setSource(annotationFile, "fingerprint");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.write(bytes);
+        AnnotationSnapshot read = AnnotationSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals("NounVerbTask", read.getTaskName());
+        assertEquals(snapshot.getPrimaryText(), read.getPrimaryText());
+        assertEquals(snapshot.getParsedTags().size(), read.getParsedTags().size());
+        for (int i = 0; i < snapshot.getParsedTags().size(); i++) {
+            ParsedTag tag = snapshot.getParsedTags().get(i);
+            ParsedTag other = read.getParsedTags().get(i);
+            assertEquals(tag.getTid(), other.getTid());
+            assertEquals(tag.isLink(), other.isLink());
+            if (!tag.isLink()) {
+                assertArrayEquals(tag.getSpans(), other.getSpans());
+                assertEquals(tag.getText(), other.getText());
+            }
+        }
+        assertEquals(snapshot.getParsedAtts().size(), read.getParsedAtts().size());
+        assertEquals(snapshot.getParsedArgs().size(), read.getParsedArgs().size());
+        assertTrue(read.isUpToDate(annotationFile, "fingerprint"));
+        assertFalse(read.isUpToDate(annotationFile, "another"));
+    }
+
+    @Test
+    public void canRoundTripDiscontinuousSpans() throws Exception {
+        List<ParsedTag> tags = new ArrayList<>();
+        int[][] spansList = {{0, 1, 5}, {0, 3, 4}, {2}, {0, 1, 3, 5, 6}};
+        for (int i = 0; i < spansList.length; i++) {
+            ParsedTag tag = new ParsedTag();
+            tag.setTid("N" + i);
+            tag.setTagTypeName("NOUN");
+            tag.setSpans(spansList[i]);
+            tags.add(tag);
+        }
+        AnnotationSnapshot snapshot = new AnnotationSnapshot("NounVerbTask", "John loves Mary.", null,
+                tags, new ArrayList<>(), new ArrayList<>());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.write(bytes);
+        AnnotationSnapshot read = AnnotationSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        for (int i = 0; i < spansList.length; i++) {
+            assertArrayEquals(spansList[i], read.getParsedTags().get(i).getSpans());
+        }
+    }
+
+    @Test
+    public void canReopenFromCachedSnapshot() throws Exception {
+        LocalSqliteDriverImpl fromXml = newDriver();
+        fromXml.readAnnotation(annotationFile);
+        File snapshotFile = AnnotationSnapshot.getSnapshotFile(annotationFile);
+        assertTrue(snapshotFile.exists());
+
+        // mark a free-text attribute in the snapshot only,
+        // so that the mark shows up only when the snapshot is read
+        AnnotationSnapshot snapshot = AnnotationSnapshot.read(snapshotFile);
+        ParsedAtt marked = snapshot.getParsedAtts().stream()
+                .filter(att -> att.getAttTypeName().equals("comment")).findFirst().get();
+        marked.setAttValue("fromSnapshot");
+        snapshot.write(snapshotFile);
+
+        LocalSqliteDriverImpl fromSnapshot = newDriver();
+        fromSnapshot.readAnnotation(annotationFile);
+        assertEquals("fromSnapshot",
+                fromSnapshot.getTagByTid(marked.getTid()).getAttributesWithNames().get(marked.getAttTypeName()));
+    }
+
+    @Test
+    public void canRebuildSnapshotOfRewriteWithSameSizeAndTime() throws Exception {
+        LocalSqliteDriverImpl original = newDriver();
+        original.readAnnotation(annotationFile);
+
+        // rewrite the XML body without touching its length and timestamp
+        long lastModified = annotationFile.lastModified();
+        String xml = FileUtils.readFileToString(annotationFile, "UTF-8");
+        FileUtils.writeStringToFile(annotationFile, xml.replace("id=\"N0\"", "id=\"X0\""), "UTF-8");
+        assertTrue(annotationFile.setLastModified(lastModified));
+
+        LocalSqliteDriverImpl rewritten = newDriver();
+        rewritten.readAnnotation(annotationFile);
+        assertNull(rewritten.getTagByTid("N0"));
+        assertNotNull(rewritten.getTagByTid("X0"));
+        AnnotationSnapshot rebuilt = AnnotationSnapshot.read(AnnotationSnapshot.getSnapshotFile(annotationFile));
+        assertTrue(rebuilt.getParsedTags().stream().anyMatch(tag -> tag.getTid().equals("X0")));
+    }
+
+    @Test
+    public void canRebuildSnapshotOfOlderVersion() throws Exception {
+        LocalSqliteDriverImpl fromXml = newDriver();
+        fromXml.readAnnotation(annotationFile);
+        File snapshotFile = AnnotationSnapshot.getSnapshotFile(annotationFile);
+
+        // rewrite the version varint right after the magic bytes
+        byte[] bytes = FileUtils.readFileToByteArray(snapshotFile);
+        assertEquals(AnnotationSnapshot.VERSION, bytes[AnnotationSnapshot.MAGIC.length]);
+        bytes[AnnotationSnapshot.MAGIC.length] = 1;
+        FileUtils.writeByteArrayToFile(snapshotFile, bytes);
+        try {
+            AnnotationSnapshot.read(snapshotFile);
+            fail("should reject a snapshot of an older version");
+        } catch (MaeIOException ignored) {
+        }
+
+        LocalSqliteDriverImpl reopened = newDriver();
+        reopened.readAnnotation(annotationFile);
+        assertSameAnnotations(fromXml, reopened);
+        assertEquals(AnnotationSnapshot.VERSION, FileUtils.readFileToByteArray(snapshotFile)[AnnotationSnapshot.MAGIC.length]);
+    }
+
+    @Test
+    public void canConvertBackToXML() throws Exception {
+        LocalSqliteDriverImpl original = newDriver();
+        original.readAnnotation(annotationFile);
+
+        AnnotationSnapshot snapshot = AnnotationSnapshot.read(AnnotationSnapshot.getSnapshotFile(annotationFile));
+        File converted = tempDir.newFile("converted.xml");
+        snapshot.writeToXML(converted);
+
+        LocalSqliteDriverImpl reloaded = newDriver();
+        reloaded.readAnnotation(converted);
+        assertSameAnnotations(original, reloaded);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchProcessorTest {
+    private File taskFile;
+    private File inputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        taskFile = new File(Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd").getPath());
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        inputDir = Files.createTempDirectory("mae-batch-test").toFile();
+        inputDir.deleteOnExit();
+        for (String name : Arrays.asList("a.xml", "b.xml", "c.xml")) {
+            FileUtils.copyFile(new File(xmlUrl.getPath()), new File(inputDir, name));
+        }
+        FileUtils.writeStringToFile(new File(inputDir, "broken.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<NounVerbTask><TEXT>", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(inputDir, "d.txt"), "Mrs Miller wants the entire house repainted.", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void canValidateDirectoryOnWorkerPool() throws Exception {
+        BatchProcessor processor = new BatchProcessor(taskFile, BatchProcessor.Mode.VALIDATE, 2);
+        List<File> files = processor.collectFiles(Collections.singletonList(inputDir.getPath()));
+        assertEquals(4, files.size());
+        BatchProcessor.Summary summary = processor.process(files);
+        assertEquals(3, summary.count(BatchProcessor.Status.OK));
+        assertEquals(1, summary.count(BatchProcessor.Status.FAILED));
+        assertEquals("broken.xml", summary.getResults().get(2).getFile().getName());
+
+        StringWriter json = new StringWriter();
+        summary.write(json);
+        assertTrue(json.toString().contains("\"failed\" : 1"));
+        assertTrue(json.toString().contains("\"millis\""));
+    }
+
+    @Test
+    public void canConvertAndNormalize() throws Exception {
+        File outputDir = Files.createTempDirectory("mae-batch-out").toFile();
+        outputDir.deleteOnExit();
+        BatchProcessor converter = new BatchProcessor(taskFile, BatchProcessor.Mode.CONVERT, 1);
+        converter.setOutputDirectory(outputDir);
+        List<File> texts = converter.collectFiles(Collections.singletonList(inputDir.getPath() + "/*.txt"));
+        assertEquals(1, texts.size());
+        assertEquals(BatchProcessor.Status.OK, converter.process(texts).getResults().get(0).getStatus());
+        File converted = new File(outputDir, "d.xml");
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(converted, "Mrs Miller wants the entire house repainted."));
+
+        BatchProcessor normalizer = new BatchProcessor(taskFile, BatchProcessor.Mode.NORMALIZE, 2);
+        normalizer.setOutputDirectory(outputDir);
+        List<File> xmls = normalizer.collectFiles(Arrays.asList(
+                new File(inputDir, "a.xml").getPath(), new File(inputDir, "b.xml").getPath()));
+        BatchProcessor.Summary summary = normalizer.process(xmls);
+        assertEquals(2, summary.count(BatchProcessor.Status.OK));
+        String normalized = FileUtils.readFileToString(new File(outputDir, "a.xml"), StandardCharsets.UTF_8);
+        assertTrue(normalized.contains("id=\"N0\""));
+        assertTrue(normalized.contains("id=\"AR0\""));
+        assertEquals(normalized, FileUtils.readFileToString(new File(outputDir, "b.xml"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void canExportConllInParallel() throws Exception {
+        File outputDir = Files.createTempDirectory("mae-batch-conll").toFile();
+        outputDir.deleteOnExit();
+        BatchProcessor exporter = new BatchProcessor(taskFile, BatchProcessor.Mode.CONLL, 3);
+        exporter.setOutputDirectory(outputDir);
+        exporter.setLabelScheme(ConllExporter.Scheme.BILOU);
+        BatchProcessor.Summary summary = exporter.process(exporter.collectFiles(
+                Collections.singletonList(inputDir.getPath() + "/?.xml")));
+        assertEquals(3, summary.count(BatchProcessor.Status.OK));
+        String conll = FileUtils.readFileToString(new File(outputDir, "c.conll"), StandardCharsets.UTF_8);
+        assertTrue(conll.contains("Miller\tL-NOUN\tO\tO\n"));
+    }
+
+    @Test
+    public void canKeepSubdirectoriesUnderOutput() throws Exception {
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        File nestedDir = Files.createTempDirectory("mae-batch-nested").toFile();
+        nestedDir.deleteOnExit();
+        for (String name : Arrays.asList("one/a.xml", "two/a.xml")) {
+            FileUtils.copyFile(new File(xmlUrl.getPath()), new File(nestedDir, name));
+        }
+        File outputDir = Files.createTempDirectory("mae-batch-out").toFile();
+        outputDir.deleteOnExit();
+
+        BatchProcessor normalizer = new BatchProcessor(taskFile, BatchProcessor.Mode.NORMALIZE, 2);
+        normalizer.setOutputDirectory(outputDir);
+        BatchProcessor.Summary summary = normalizer.process(
+                normalizer.collectFiles(Collections.singletonList(nestedDir.getPath())));
+        assertEquals(2, summary.count(BatchProcessor.Status.OK));
+        assertTrue(new File(outputDir, "one/a.xml").exists());
+        assertTrue(new File(outputDir, "two/a.xml").exists());
+        assertFalse(new File(outputDir, "a.xml").exists());
+    }
+
+    @Test
+    public void cannotWriteTwoFilesToSameOutput() throws Exception {
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        File nestedDir = Files.createTempDirectory("mae-batch-nested").toFile();
+        nestedDir.deleteOnExit();
+        for (String name : Arrays.asList("one/a.xml", "two/a.xml")) {
+            FileUtils.copyFile(new File(xmlUrl.getPath()), new File(nestedDir, name));
+        }
+        File outputDir = Files.createTempDirectory("mae-batch-out").toFile();
+        outputDir.deleteOnExit();
+
+        BatchProcessor exporter = new BatchProcessor(taskFile, BatchProcessor.Mode.CONLL, 2);
+        exporter.setOutputDirectory(outputDir);
+        BatchProcessor.Summary summary = exporter.process(exporter.collectFiles(Arrays.asList(
+                new File(nestedDir, "one/a.xml").getPath(), new File(nestedDir, "two/a.xml").getPath())));
+        assertEquals(1, summary.count(BatchProcessor.Status.OK));
+        assertEquals(1, summary.count(BatchProcessor.Status.FAILED));
+        assertTrue(new File(outputDir, "a.conll").exists());
+    }
+
+    @Test
+    public void canConvertNextToExistingXML() throws Exception {
+        File existing = new File(inputDir, "d.xml");
+        FileUtils.writeStringToFile(existing, "not to be overwritten", StandardCharsets.UTF_8);
+
+        BatchProcessor converter = new BatchProcessor(taskFile, BatchProcessor.Mode.CONVERT, 1);
+        BatchProcessor.Summary summary = converter.process(
+                converter.collectFiles(Collections.singletonList(new File(inputDir, "d.txt").getPath())));
+        assertEquals(BatchProcessor.Status.OK, summary.getResults().get(0).getStatus());
+        assertEquals(new File(inputDir, "d_1.xml").getAbsoluteFile(), summary.getResults().get(0).getOutput());
+        assertEquals("not to be overwritten", FileUtils.readFileToString(existing, StandardCharsets.UTF_8));
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(summary.getResults().get(0).getOutput(),
+                "Mrs Miller wants the entire house repainted."));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.util.Tokenizer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConllExporterTest {
+    private LocalSqliteDriverImpl driver;
+    private ConllExporter exporter;
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        exporter = new ConllExporter(driver);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    private static ParsedTag tag(String tagTypeName, int[] spans) {
+        ParsedTag tag = new ParsedTag();
+        tag.setTagTypeName(tagTypeName);
+        tag.setSpans(spans);
+        return tag;
+    }
+
+    @Test
+    public void canExportSampleFile() throws Exception {
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        MaeXMLParser parser = new MaeXMLParser(driver);
+        parser.readAnnotationFile(new File(xmlUrl.getPath()));
+        StringWriter conll = new StringWriter();
+        exporter.write("sampleTask.xml", parser.getParsedPrimaryText(), parser.getParsedTags(), conll);
+        assertEquals("# sampleTask.xml\n" +
+                "Mrs\tB-NOUN\tO\tO\n" +
+                "Miller\tI-NOUN\tO\tO\n" +
+                "wants\tO\tB-VERB\tO\n" +
+                "the\tO\tO\tO\n" +
+                "entire\tO\tO\tB-ADJ_ADV\n" +
+                "house\tB-NOUN\tO\tO\n" +
+                "repainted\tO\tO\tB-ADJ_ADV\n" +
+                ".\tO\tO\tO\n\n", conll.toString());
+    }
+
+    @Test
+    public void canExportOverlappingAndSplitTagsInBILOU() throws Exception {
+        String text = "New York City is big.\nReally big.";
+        exporter.setScheme(ConllExporter.Scheme.BILOU);
+        exporter.setTokenizer(Tokenizer.WHITESPACE);
+        exporter.setTagTypes(Collections.singletonList("NOUN"));
+        StringWriter conll = new StringWriter();
+        int dropped = exporter.write("doc", text, Arrays.asList(
+                tag("NOUN", new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}),
+                // overlaps the one above
+                tag("NOUN", new int[]{4, 5, 6, 7}),
+                // discontiguous, "big" twice
+                tag("NOUN", new int[]{17, 18, 19, 29, 30, 31}),
+                // other types are not exported
+                tag("VERB", new int[]{14, 15})), conll);
+        assertEquals(1, dropped);
+        assertEquals("# doc\n" +
+                "New\tB-NOUN\n" +
+                "York\tI-NOUN\n" +
+                "City\tL-NOUN\n" +
+                "is\tO\n" +
+                "big.\tU-NOUN\n" +
+                "\n" +
+                "Really\tO\n" +
+                "big.\tU-NOUN\n\n", conll.toString());
+    }
+
+    @Test
+    public void canExportTagsSharingAToken() throws Exception {
+        String text = "Jean-Luc Picard and New-York";
+        exporter.setTokenizer(Tokenizer.WHITESPACE);
+        exporter.setTagTypes(Collections.singletonList("NOUN"));
+        StringWriter conll = new StringWriter();
+        int dropped = exporter.write("doc", text, Arrays.asList(
+                tag("NOUN", new int[]{0, 1, 2, 3}),
+                // starts in "Jean-Luc", but does not overlap the one above
+                tag("NOUN", new int[]{5, 6, 7, 8, 9, 10, 11, 12, 13, 14}),
+                tag("NOUN", new int[]{20, 21, 22}),
+                // has no token but the one taken by the one above
+                tag("NOUN", new int[]{24, 25, 26, 27})), conll);
+        assertEquals(1, dropped);
+        assertEquals("# doc\n" +
+                "Jean-Luc\tB-NOUN\n" +
+                "Picard\tB-NOUN\n" +
+                "and\tO\n" +
+                "New-York\tB-NOUN\n\n", conll.toString());
+    }
+}
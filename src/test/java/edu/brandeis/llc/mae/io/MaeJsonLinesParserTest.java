@@ -0,0 +1,122 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.model.ExtentTag;
+import edu.brandeis.llc.mae.model.LinkTag;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MaeJsonLinesParserTest {
+
+    @Rule
+    public SampleTaskFolder tempDir = new SampleTaskFolder();
+
+    private LocalSqliteDriverImpl original;
+
+    @Before
+    public void setUp() throws Exception {
+        original = newDriver();
+        original.readAnnotation(tempDir.getAnnotationFile());
+    }
+
+    private LocalSqliteDriverImpl newDriver() throws Exception {
+        return tempDir.newDriver();
+    }
+
+    @Test
+    public void canWriteTagsAsJson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode noun = mapper.readTree(original.getTagByTid("N0").toJsonString());
+        assertEquals("extent", noun.get("record").asText());
+        assertEquals("1~11", noun.get("spans").asText());
+        assertEquals("Mrs Miller", noun.get("text").asText());
+        assertEquals("other", noun.get("attributes").get("type").asText());
+
+        JsonNode action = mapper.readTree(original.getTagByTid("AC1").toJsonString());
+        assertEquals("link", action.get("record").asText());
+        assertEquals("A0", action.get("arguments").get("to").asText());
+        assertEquals("performs", action.get("attributes").get("relationship").asText());
+    }
+
+    @Test
+    public void canWriteOneRecordPerLine() throws Exception {
+        File jsonl = tempDir.newFile("sampleTask.jsonl");
+        MaeFileWriter.writeAnnotationToJsonLines(original, jsonl);
+        List<String> lines = FileUtils.readLines(jsonl, "UTF-8");
+        int tagCount = original.getAllExtentTagsOfAllTypes(false).size() + original.getAllLinkTagsOfAllTypes().size();
+        assertEquals(1 + tagCount, lines.size());
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode header = mapper.readTree(lines.get(0));
+        assertEquals("document", header.get("record").asText());
+        assertEquals("NounVerbTask", header.get("task").asText());
+    }
+
+    @Test
+    public void canRoundTripThroughJsonLines() throws Exception {
+        File jsonl = tempDir.newFile("sampleTask.jsonl");
+        MaeFileWriter.writeAnnotationToJsonLines(original, jsonl);
+
+        LocalSqliteDriverImpl reloaded = newDriver();
+        reloaded.readAnnotation(jsonl);
+        assertEquals(original.getPrimaryText(), reloaded.getPrimaryText());
+        for (ExtentTag tag : original.getAllExtentTagsOfAllTypes(false)) {
+            ExtentTag other = (ExtentTag) reloaded.getTagByTid(tag.getId());
+            assertEquals(tag.getSpansAsString(), other.getSpansAsString());
+            assertEquals(tag.getText(), other.getText());
+            assertEquals(tag.getAttributesWithNames(), other.getAttributesWithNames());
+        }
+        for (LinkTag tag : original.getAllLinkTagsOfAllTypes()) {
+            LinkTag other = (LinkTag) reloaded.getTagByTid(tag.getId());
+            assertEquals(tag.getAttributesWithNames(), other.getAttributesWithNames());
+        }
+    }
+
+    @Test
+    public void canWarnInvalidRecords() throws Exception {
+        MaeJsonLinesParser parser = new MaeJsonLinesParser(original);
+        parser.readAnnotation(new StringReader(
+                "{\"record\":\"document\",\"task\":\"NounVerbTask\",\"text\":\"a cat\"}\n" +
+                "{\"record\":\"extent\",\"id\":\"X0\",\"tagType\":\"CAT\",\"spans\":\"2~5\"}\n" +
+                "{\"record\":\"extent\",\"id\":\"N0\",\"tagType\":\"NOUN\",\"spans\":\"2~5\",\"attributes\":{\"type\":\"dog\"}}\n"));
+        assertEquals(1, parser.getParsedTags().size());
+        assertEquals("cat", parser.getParsedTags().get(0).getText());
+        assertEquals("other", parser.getParsedAtts().get(0).getAttValue());
+        assertTrue(parser.getParseWarnings().contains("CAT"));
+        assertTrue(parser.getParseWarnings().contains("dog"));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ParseWarningsTest {
+
+    @Test
+    public void canRenderWarnings() throws Exception {
+        ParseWarnings warnings = new ParseWarnings();
+        assertTrue(warnings.isEmpty());
+        assertEquals("", warnings.toString());
+        warnings.add(ParseWarnings.Code.UNEXPECTED_TAG_TYPE, "P0", "PRONOUN", null, null, 3);
+        warnings.add(ParseWarnings.Code.INVALID_VALUE, "N0", "NOUN", "type", "animal",
+                Arrays.asList("person", "place"), -1);
+        assertEquals("line 3: unexpected tag type found: \"PRONOUN\"\nIgnored.\n\n"
+                        + "\"animal\" is not a valid value for \"NOUN-type\", valid values are [person, place]\n"
+                        + "Set to its default value.",
+                warnings.toString());
+    }
+
+    @Test
+    public void canCapWarningsPerCode() throws Exception {
+        ParseWarnings warnings = new ParseWarnings(2);
+        for (int i = 0; i < 5; i++) {
+            warnings.add(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE, "N" + i, "NOUN", "color", "red", i);
+        }
+        assertFalse(warnings.add(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE, "N5", "NOUN", "color", "red", 5));
+        assertTrue(warnings.add(ParseWarnings.Code.UNEXPECTED_ARGUMENT, "A0", "ACTION", "by", "N0", 6));
+        assertEquals(6, warnings.getCount(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE));
+        assertEquals(7, warnings.getTotalCount());
+        assertEquals(3, warnings.getWarnings().size());
+        assertEquals(4, warnings.getDroppedCount());
+        assertTrue(warnings.toString().endsWith("... and 4 more UNEXPECTED_ATTRIBUTE warnings"));
+    }
+}
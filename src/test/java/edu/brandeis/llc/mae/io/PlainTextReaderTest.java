@@ -0,0 +1,70 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.util.MappedText;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class PlainTextReaderTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File writeText(String text) throws Exception {
+        File file = tempDir.newFile();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void canFilterNonXmlCharacters() throws Exception {
+        PlainTextReader reader = new PlainTextReader(MaeXMLParser.LARGE_DOCUMENT_THRESHOLD);
+        String text = "\uFEFFline\u0000one\r\nline\u000Btwo\rthree \uD83C\uDFA4 end\n";
+        assertEquals("lineone\nlinetwo\nthree \uD83C\uDFA4 end\n", reader.read(writeText(text)).toString());
+        assertEquals(2, reader.getDroppedCount());
+    }
+
+    @Test
+    public void canMapLargeText() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3 * (1 << 20)) {
+            text.append("Mrs Miller wants the entire house repainted.\r\n\uD83C\uDFA4");
+        }
+        PlainTextReader reader = new PlainTextReader(1 << 16);
+        CharSequence read = reader.read(writeText(text.toString()));
+        assertTrue(read instanceof MappedText);
+        assertEquals(text.toString().replace("\r\n", "\n"), read.toString());
+        assertEquals(0, reader.getDroppedCount());
+    }
+}
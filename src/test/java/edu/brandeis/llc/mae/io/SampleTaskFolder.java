@@ -0,0 +1,93 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.database.MaeDBException;
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary folder holding a copy of the sample annotation file,
+ * along with drivers loaded with the sample task that are destroyed
+ * when a test finishes.
+ */
+class SampleTaskFolder extends TemporaryFolder {
+
+    private File dtdFile;
+    private File annotationFile;
+    private List<LocalSqliteDriverImpl> drivers = new ArrayList<>();
+
+    @Override
+    protected void before() throws Throwable {
+        super.before();
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        dtdFile = new File(dtdUrl.getPath());
+        annotationFile = newFile("sampleTask.xml");
+        FileUtils.copyFile(new File(xmlUrl.getPath()), annotationFile);
+    }
+
+    @Override
+    protected void after() {
+        try {
+            for (LocalSqliteDriverImpl driver : drivers) {
+                driver.destroy();
+            }
+        } catch (MaeDBException e) {
+            throw new RuntimeException(e);
+        } finally {
+            drivers.clear();
+            super.after();
+        }
+    }
+
+    File getDtdFile() {
+        return dtdFile;
+    }
+
+    File getAnnotationFile() {
+        return annotationFile;
+    }
+
+    LocalSqliteDriverImpl newDriver() throws Exception {
+        LocalSqliteDriverImpl driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        driver.readTask(dtdFile);
+        drivers.add(driver);
+        return driver;
+    }
+
+    void destroyDriver(LocalSqliteDriverImpl driver) throws MaeDBException {
+        drivers.remove(driver);
+        driver.destroy();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.llc.mae.model.ExtentTag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StandoffImporterTest {
+    private LocalSqliteDriverImpl driver;
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        AnnotationLoader loader = new AnnotationLoader(driver);
+        loader.setSnapshotCaching(false);
+        loader.loadFile(new File(xmlUrl.getPath()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    @Test
+    public void canImportRowsInChunks() throws Exception {
+        String rows = "# start\tend\ttype\tattributes\n" +
+                "5\t11\tNOUN\ttype=person\n" +
+                "\n" +
+                "22\t28\tADJ_ADV\ttype=adjective\n" +
+                "29\t34\tNOUN\ttype=building\tcolor=white\n" +
+                "12\t17\tDESCRIPTION\n" +
+                "40\t99\tVERB\n" +
+                "x\t3\tVERB\n";
+        StandoffImporter importer = new StandoffImporter(driver);
+        importer.setChunkSize(2);
+        assertEquals(3, importer.importRows(new StringReader(rows)));
+
+        // N0 to N2 are taken by the file
+        ExtentTag n3 = (ExtentTag) driver.getTagByTid("N3");
+        assertEquals("Miller", n3.getText());
+        assertEquals("person", n3.getAttributesWithNames().get("type"));
+        assertEquals("entire", ((ExtentTag) driver.getTagByTid("A2")).getText());
+        ExtentTag n4 = (ExtentTag) driver.getTagByTid("N4");
+        assertEquals("house", n4.getText());
+        assertEquals("other", n4.getAttributesWithNames().get("type"));
+        assertNull(driver.getTagByTid("V1"));
+
+        ParseWarnings warnings = importer.getWarnings();
+        assertEquals(1, warnings.getCount(ParseWarnings.Code.INVALID_VALUE));
+        assertEquals(1, warnings.getCount(ParseWarnings.Code.UNEXPECTED_ATTRIBUTE));
+        assertEquals(1, warnings.getCount(ParseWarnings.Code.UNEXPECTED_TAG_TYPE));
+        assertEquals(2, warnings.getCount(ParseWarnings.Code.INVALID_SPANS));
+        assertEquals(5, warnings.getWarnings().get(1).getLine());
+        assertEquals("N5", driver.getNextId(driver.getTagTypeByName("NOUN")));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.io;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.LocalSqliteDriverImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+public class TaskSchemaTest {
+
+    private LocalSqliteDriverImpl driver;
+    private TaskSchema schema;
+
+    @Before
+    public void setUp() throws Exception {
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        driver = new LocalSqliteDriverImpl(MaeStrings.newTempTestDBFile());
+        driver.readTask(new File(dtdUrl.getPath()));
+        schema = TaskSchema.compile(driver);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    @Test
+    public void canLookUpTagTypes() throws Exception {
+        assertEquals("NounVerbTask", schema.getTaskName());
+        assertFalse(schema.getTagType("NOUN").isLink());
+        assertTrue(schema.getTagType("ACTION").isLink());
+        assertNull(schema.getTagType("PRONOUN"));
+        assertNull(schema.getAttribute("PRONOUN", "type"));
+    }
+
+    @Test
+    public void canValidateAttributeValues() throws Exception {
+        TaskSchema.AttSchema type = schema.getAttribute("NOUN", "type");
+        assertTrue(type.isValid("person"));
+        assertTrue(type.isValid(""));
+        assertFalse(type.isValid("animal"));
+        assertEquals("other", type.getDefaultValue());
+
+        TaskSchema.AttSchema comment = schema.getAttribute("NOUN", "comment");
+        assertTrue(comment.isValid("anything goes"));
+        assertNull(schema.getAttribute("VERB", "type"));
+    }
+
+    @Test
+    public void canLookUpArgumentsByIdAttribute() throws Exception {
+        TaskSchema.TagSchema action = schema.getTagType("ACTION");
+        assertEquals("from", action.getArgumentByIdAttribute("from" + MaeStrings.ARG_IDCOL_SUF).getName());
+        assertNull(action.getArgumentByIdAttribute("from"));
+        assertNull(action.getArgumentByIdAttribute("relationship"));
+        assertEquals("agent", schema.getArgument("ARGUMENTS", "agent").getName());
+    }
+
+    @Test
+    public void fingerprintIsStableAcrossCompilations() throws Exception {
+        assertEquals(schema.getFingerprint(), TaskSchema.compile(driver).getFingerprint());
+    }
+}
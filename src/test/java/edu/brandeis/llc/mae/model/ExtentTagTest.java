@@ -31,6 +31,7 @@ import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 import edu.brandeis.llc.mae.MaeStrings;
+import edu.brandeis.llc.mae.database.ExtentTagDao;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -90,6 +91,9 @@ public class ExtentTagTest {
         TableUtils.createTable(source, ArgumentType.class);
         TableUtils.createTable(source, Argument.class);
 
+        // tag text is sliced from the primary text shared by the DAO
+        ((ExtentTagDao) eTagDao).setPrimaryText("Crown John Smith");
+
         noun = new TagType("NOUN", "N", false);
         verb = new TagType("VERB", "V", false);
         tagTypeDao.create(noun);
@@ -118,10 +122,9 @@ public class ExtentTagTest {
         }
     }
 
-    protected ExtentTag createTag(String tid, TagType tagType, String text, int[] spans) throws Exception {
+    protected ExtentTag createTag(String tid, TagType tagType, int[] spans) throws Exception {
         ExtentTag tag = new ExtentTag(tid, tagType, "filename");
         for (CharIndex ci: tag.setSpans(spans)) { charIndexDao.create(ci); }
-        tag.setText(text);
         eTagDao.create(tag);
         return tag;
     }
@@ -129,8 +132,7 @@ public class ExtentTagTest {
     @Test
     public void canSaveTag() throws Exception {
         ExtentTag tag = new ExtentTag("N01", noun, "filename");
-        tag.setText("John");
-        for (CharIndex ci: tag.setSpans(1, 2, 3, 4)) { charIndexDao.create(ci); }
+        for (CharIndex ci: tag.setSpans(6, 7, 8, 9)) { charIndexDao.create(ci); }
         eTagDao.create(tag);
         assertEquals(
                 "Expected 1 tag in DB, found " + eTagDao.countOf(),
@@ -148,12 +150,11 @@ public class ExtentTagTest {
 
     @Test
     public void canQueryByTid() throws Exception {
-        int[] span = new int[] {0, 4};
+        int[] span = new int[] {0, 5};
         ArrayList<int[]> spans = new ArrayList<>();
         spans.add(span);
         ExtentTag nTag = new ExtentTag("N01", noun, "filename");
         for (CharIndex ci: nTag.setSpans(spans)) { charIndexDao.create(ci); }
-        nTag.setText("Crown");
         eTagDao.create(nTag);
 
         List<ExtentTag> retrievedTags
@@ -171,8 +172,8 @@ public class ExtentTagTest {
     @Test
     public void canQueryByTagType() throws Exception {
 
-        createTag("N01", noun, "Crown", new int[]{0,1,2,3,4});
-        createTag("V01", verb, "own", new int[]{2,3,4});
+        createTag("N01", noun, new int[]{0,1,2,3,4});
+        createTag("V01", verb, new int[]{2,3,4});
 
         assertEquals(
                 "Expected 2 tags in DB, found " + eTagDao.countOf(),
@@ -197,7 +198,7 @@ public class ExtentTagTest {
     @Test
     public void canHaveMutableAttribute() throws Exception {
 
-        ExtentTag nTag = createTag("N01", noun, "Crown", new int[]{0,1,2,3,4});
+        ExtentTag nTag = createTag("N01", noun, new int[]{0,1,2,3,4});
 
         AttributeType properNoun = new AttributeType(noun, "isProper");
         attTypeDao.create(properNoun);
@@ -232,8 +233,7 @@ public class ExtentTagTest {
 
     @Test
     public void canReturnSpansString() throws Exception {
-        createTag("N02", noun,
-                "John ... Smith", new int[]{3,4,5,6,10,11,12,13,14});
+        createTag("N02", noun, new int[]{3,4,5,6,10,11,12,13,14});
 
         ExtentTag retrievedTag = eTagDao.queryForAll().get(0);
 
@@ -244,8 +244,8 @@ public class ExtentTagTest {
 
     @Test
     public void canQueryByLocation() throws Exception {
-        createTag("N01", noun, "Crown", new int[]{0,1,2,3,4});
-        createTag("V01", verb, "own", new int[]{2,3,4});
+        createTag("N01", noun, new int[]{0,1,2,3,4});
+        createTag("V01", verb, new int[]{2,3,4});
 
         List<CharIndex> retrievedIndices
                 = charIndexDao.queryForEq(DBSchema.TAB_CI_COL_LOCATION, 3);
@@ -279,7 +279,7 @@ public class ExtentTagTest {
     @Test
     public void canDeleteTag() throws Exception{
 
-        ExtentTag nTag = createTag("N01", noun, "John", new int[]{0,1,2,3,4});
+        ExtentTag nTag = createTag("N01", noun, new int[]{0,1,2,3,4});
 
         AttributeType properNoun = new AttributeType(noun, "isProper");
         attTypeDao.create(properNoun);
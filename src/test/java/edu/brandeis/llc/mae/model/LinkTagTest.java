@@ -86,8 +86,8 @@ public class LinkTagTest extends ExtentTagTest {
 
     @Test
     public void canSaveLinkTagWithArguments() throws Exception {
-        ExtentTag nTag = createTag("N01", noun, "Crown", new int[]{0, 1, 2, 3, 4});
-        ExtentTag vTag = createTag("V01", verb, "own", new int[]{2, 3, 4});
+        ExtentTag nTag = createTag("N01", noun, new int[]{0, 1, 2, 3, 4});
+        ExtentTag vTag = createTag("V01", verb, new int[]{2, 3, 4});
 
         LinkTag link = new LinkTag("A01", semanticRole, "filename");
         Argument agentArg = new Argument(link, agent, nTag);
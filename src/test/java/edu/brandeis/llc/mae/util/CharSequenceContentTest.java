@@ -0,0 +1,97 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+
+package edu.brandeis.llc.mae.util;
+
+import org.junit.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.StyledDocument;
+import java.awt.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CharSequenceContentTest {
+
+    private static final String TEXT = "John loves Mary.\nMary loves\n\nJohn too.";
+
+    @Test
+    public void canBuildSameDocumentAsString() throws Exception {
+        StyledDocument fromString = FontHandler.stringToSimpleStyledDocument(TEXT, "Serif", 12, Color.BLACK);
+        StyledDocument fromSequence = FontHandler.stringToSimpleStyledDocument(new StringBuilder(TEXT), "Serif", 12, Color.BLACK);
+
+        assertEquals(TEXT, fromSequence.getText(0, fromSequence.getLength()));
+        Element stringRoot = fromString.getDefaultRootElement();
+        Element sequenceRoot = fromSequence.getDefaultRootElement();
+        assertEquals(stringRoot.getElementCount(), sequenceRoot.getElementCount());
+        for (int i = 0; i < stringRoot.getElementCount(); i++) {
+            assertEquals(stringRoot.getElement(i).getStartOffset(), sequenceRoot.getElement(i).getStartOffset());
+            assertEquals(stringRoot.getElement(i).getEndOffset(), sequenceRoot.getElement(i).getEndOffset());
+        }
+    }
+
+    @Test
+    public void canRevealInChunks() throws Exception {
+        CharSequenceContent content = new CharSequenceContent(new StringBuilder(TEXT));
+        assertEquals(1, content.length());
+        content.insertString(0, TEXT.substring(0, 5));
+        content.insertString(5, TEXT.substring(5));
+        assertEquals(TEXT.length() + 1, content.length());
+        assertEquals(TEXT + "\n", content.getString(0, content.length()));
+    }
+
+    @Test
+    public void canMovePositionsAlongReveal() throws Exception {
+        CharSequenceContent content = new CharSequenceContent(new StringBuilder(TEXT));
+        Position start = content.createPosition(0);
+        Position end = content.createPosition(1);
+        content.insertString(0, TEXT.substring(0, 5));
+        Position middle = content.createPosition(5);
+        content.insertString(5, TEXT.substring(5));
+        assertEquals(0, start.getOffset());
+        assertEquals(TEXT.length() + 1, end.getOffset());
+        assertEquals(TEXT.length(), middle.getOffset());
+    }
+
+    @Test
+    public void cannotEditText() throws Exception {
+        CharSequenceContent content = new CharSequenceContent(new StringBuilder(TEXT));
+        content.insertString(0, TEXT);
+        try {
+            content.insertString(0, "Hey, ");
+            fail("should not insert into a read-only content");
+        } catch (BadLocationException ignored) {
+        }
+        try {
+            content.remove(0, 4);
+            fail("should not remove from a read-only content");
+        } catch (BadLocationException ignored) {
+        }
+        assertEquals(TEXT, content.getString(0, TEXT.length()));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CodePointIndexTest {
+
+    // "a", U+1F600, "b", U+1F601, "c"
+    private static final String TEXT = "a😀b😁c";
+
+    @Test
+    public void canMarkSurrogatePairs() {
+        CodePointIndex index = CodePointIndex.of(TEXT);
+        assertTrue(index.hasSurrogatePairs());
+        assertEquals(7, index.length());
+        assertEquals(5, index.codePointCount());
+        assertTrue(index.isPairStart(1));
+        assertTrue(index.isPairEnd(2));
+        assertFalse(index.isPairStart(2));
+        assertEquals(2, index.charCountAt(4));
+        assertEquals(1, index.charCountAt(3));
+        assertEquals(4, index.nextPairStart(2));
+        assertEquals(-1, index.nextPairStart(5));
+    }
+
+    @Test
+    public void canSnapToCharacters() {
+        CodePointIndex index = CodePointIndex.of(TEXT);
+        assertEquals(1, index.snapToCharStart(2));
+        assertEquals(3, index.snapToCharEnd(2));
+        assertEquals(3, index.snapToCharStart(3));
+    }
+
+    @Test
+    public void canConvertOffsets() {
+        CodePointIndex index = CodePointIndex.of(TEXT);
+        int[] chars = {0, 1, 3, 4, 6, 7};
+        int[] codePoints = {0, 1, 2, 3, 4, 5};
+        assertArrayEquals(codePoints, index.toCodePointOffsets(chars));
+        assertArrayEquals(chars, index.toCharOffsets(codePoints));
+        for (int cp = 0; cp <= index.codePointCount(); cp++) {
+            assertEquals(TEXT.offsetByCodePoints(0, cp), index.toCharOffset(cp));
+        }
+        assertEquals(1, index.toCodePointOffset(2));
+    }
+
+    @Test
+    public void canHandleBmpOnlyText() {
+        CodePointIndex index = CodePointIndex.of("plain text");
+        assertFalse(index.hasSurrogatePairs());
+        assertEquals(5, index.toCharOffset(5));
+        assertEquals(5, index.toCodePointOffset(5));
+        assertEquals(0, CodePointIndex.of(null).length());
+    }
+}
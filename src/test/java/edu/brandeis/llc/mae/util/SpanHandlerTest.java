@@ -156,6 +156,16 @@ public class SpanHandlerTest {
                 SpanHandler.listOfArraysEquals(pairs, gold)
         );
 
+        array = new int[]{0,1,5};
+        pairs = SpanHandler.convertArrayToPairs(array);
+        gold.clear();
+        gold.add(new int[]{0,2});
+        gold.add(new int[]{5,6});
+        assertTrue(
+                "Should convert a multispan ending in a single character, found: " + SpanHandler.listOfArraysToString(pairs),
+                SpanHandler.listOfArraysEquals(pairs, gold)
+        );
+
     }
 
 
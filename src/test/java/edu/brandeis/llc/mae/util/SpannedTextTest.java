@@ -0,0 +1,64 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.llc.mae.util;
+
+import edu.brandeis.llc.mae.MaeStrings;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpannedTextTest {
+
+    private static final String PRIMARY = "John loves Mary.";
+
+    @Test
+    public void canViewContinuousSpan() {
+        SpannedText text = new SpannedText(PRIMARY, 5, 6, 7, 8, 9);
+        assertEquals(5, text.length());
+        assertEquals('l', text.charAt(0));
+        assertEquals("loves", text.toString());
+    }
+
+    @Test
+    public void canJoinDiscontinuousSpans() {
+        SpannedText text = new SpannedText(PRIMARY, 11, 12, 13, 14, 0, 1, 2, 3);
+        String expected = "John" + MaeStrings.SPANTEXTTRUNC + "Mary";
+        assertEquals(2, text.getSpanCount());
+        assertEquals(expected.length(), text.length());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals(expected.charAt(i), text.charAt(i));
+        }
+        assertEquals(expected, text.toString());
+        assertEquals("n" + MaeStrings.SPANTEXTTRUNC + "M", text.subSequence(3, 5 + MaeStrings.SPANTEXTTRUNC.length()).toString());
+    }
+
+    @Test
+    public void canCompareSpans() {
+        SpannedText text = new SpannedText(PRIMARY, 3, 1, 2);
+        assertTrue(text.isViewOf(PRIMARY, new int[]{1, 2, 3}));
+        assertEquals(0, new SpannedText(PRIMARY).length());
+    }
+}